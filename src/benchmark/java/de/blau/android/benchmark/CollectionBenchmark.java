@@ -0,0 +1,182 @@
+package de.blau.android.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.blau.android.osm.BoundingBox;
+import de.blau.android.osm.Node;
+import de.blau.android.osm.Storage;
+import de.blau.android.util.collections.LongOsmElementMap;
+import de.blau.android.util.rtree.RTree;
+
+/**
+ * Benchmarks for the element map and the spatial index with the Nodes from the fixture
+ *
+ * Run with -Pjmh="-prof gc" to compare the allocation of filtering the map with values() and with collect().
+ *
+ * @author simon
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollectionBenchmark {
+
+    private static final int QUERIES = 1000;
+
+    private List<Node>              nodes;
+    private long[]                  lookups;
+    private LongOsmElementMap<Node> map;
+    private RTree<Node>             tree;
+    private List<BoundingBox>       boxes;
+    private int                     medianLat;
+
+    /**
+     * Load the fixture and build the structures for the query benchmarks
+     *
+     * @throws IOException if reading the fixture fails
+     */
+    @Setup
+    public void setup() throws IOException {
+        Storage storage = Fixtures.readPbf();
+        nodes = new ArrayList<>(storage.getNodes());
+        Random random = new Random(42);
+        lookups = new long[nodes.size()];
+        for (int i = 0; i < lookups.length; i++) {
+            // half hits, half misses
+            lookups[i] = random.nextBoolean() ? nodes.get(random.nextInt(nodes.size())).getOsmId() : -random.nextInt(Integer.MAX_VALUE);
+        }
+        map = buildMap();
+        int[] lats = new int[nodes.size()];
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = nodes.get(i).getLat();
+        }
+        Arrays.sort(lats);
+        medianLat = lats[lats.length / 2];
+        tree = buildTree();
+        boxes = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            Node n = nodes.get(random.nextInt(nodes.size()));
+            int size = 10000 + random.nextInt(100000); // roughly 100m to 1km
+            boxes.add(new BoundingBox(n.getLon() - size, n.getLat() - size, n.getLon() + size, n.getLat() + size));
+        }
+    }
+
+    /**
+     * Fill a new LongOsmElementMap with all Nodes
+     *
+     * @return the map
+     */
+    @Benchmark
+    public LongOsmElementMap<Node> mapPut() {
+        return buildMap();
+    }
+
+    /**
+     * Look up ids, half of which are present
+     *
+     * @param blackhole sink for the results
+     */
+    @Benchmark
+    public void mapGet(Blackhole blackhole) {
+        for (long id : lookups) {
+            blackhole.consume(map.get(id));
+        }
+    }
+
+    /**
+     * Filter the Nodes by copying all values first, the way it was done before the visitor methods existed
+     *
+     * @return the Nodes in the northern half of the data
+     */
+    @Benchmark
+    public List<Node> mapFilterValues() {
+        List<Node> result = new ArrayList<>();
+        for (Node n : map.values()) {
+            if (n.getLat() > medianLat) {
+                result.add(n);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Filter the Nodes without copying all values
+     *
+     * @return the Nodes in the northern half of the data
+     */
+    @Benchmark
+    public List<Node> mapCollect() {
+        return map.collect(new ArrayList<>(), n -> n.getLat() > medianLat);
+    }
+
+    /**
+     * Insert all Nodes in to a new RTree
+     *
+     * @return the RTree
+     */
+    @Benchmark
+    public RTree<Node> rtreeInsert() {
+        return buildTree();
+    }
+
+    /**
+     * Query the RTree with small boxes around random Nodes
+     *
+     * @param blackhole sink for the results
+     */
+    @Benchmark
+    public void rtreeQuery(Blackhole blackhole) {
+        List<Node> result = new ArrayList<>();
+        for (BoundingBox box : boxes) {
+            result.clear();
+            tree.query(result, box);
+            blackhole.consume(result.size());
+        }
+    }
+
+    /**
+     * Create a LongOsmElementMap containing all Nodes
+     *
+     * @return the map
+     */
+    private LongOsmElementMap<Node> buildMap() {
+        LongOsmElementMap<Node> result = new LongOsmElementMap<>();
+        for (Node n : nodes) {
+            result.put(n.getOsmId(), n);
+        }
+        return result;
+    }
+
+    /**
+     * Create a RTree containing all Nodes
+     *
+     * @return the RTree
+     */
+    private RTree<Node> buildTree() {
+        RTree<Node> result = new RTree<>(2, 100);
+        for (Node n : nodes) {
+            result.insert(n);
+        }
+        return result;
+    }
+}
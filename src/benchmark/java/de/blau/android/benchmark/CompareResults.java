@@ -0,0 +1,245 @@
+package de.blau.android.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Compare JMH JSON results against a stored baseline and flag regressions
+ *
+ * Usage: CompareResults results.json baseline.json [threshold in percent]
+ *
+ * A benchmark is flagged if it is slower than the baseline by more than the threshold after taking the error margins
+ * of both measurements in to account. The process exits with status 1 if any regressions were found and with status 2
+ * if the arguments are wrong or the baseline is missing. Results depend on the machine, so the baseline has to be
+ * created on the machine the comparison runs on by running the benchmarks once and storing the results with the
+ * benchmarkBaseline task.
+ *
+ * @author simon
+ *
+ */
+public final class CompareResults {
+
+    static final double DEFAULT_THRESHOLD = 10d;
+
+    static final String THROUGHPUT_MODE = "thrpt";
+
+    /**
+     * Score of a single benchmark
+     */
+    static final class Score {
+        final String mode;
+        final double score;
+        final double error;
+        final String unit;
+
+        /**
+         * Construct a new instance
+         *
+         * @param mode the JMH mode
+         * @param score the score
+         * @param error the error margin of the score
+         * @param unit the unit of the score
+         */
+        Score(@NonNull String mode, double score, double error, @NonNull String unit) {
+            this.mode = mode;
+            this.score = score;
+            this.error = Double.isNaN(error) ? 0 : error;
+            this.unit = unit;
+        }
+    }
+
+    /**
+     * Private constructor to stop instantiation
+     */
+    private CompareResults() {
+        // private
+    }
+
+    /**
+     * Main entry point
+     *
+     * @param args results file, baseline file and optional threshold
+     * @throws IOException if the results can't be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareResults results.json baseline.json [threshold %]");
+            System.exit(2);
+        }
+        File baselineFile = new File(args[1]);
+        if (!baselineFile.exists()) {
+            System.err.println("No baseline " + baselineFile + " found, run the benchmark and benchmarkBaseline tasks to create one");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+        Map<String, Score> results = read(new File(args[0]));
+        Map<String, Score> baseline = read(baselineFile);
+        int regressions = compare(results, baseline, threshold, System.out);
+        if (regressions > 0) {
+            System.out.println(regressions + " regression(s) larger than " + threshold + "%");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compare results with a baseline
+     *
+     * @param results the current results
+     * @param baseline the baseline results
+     * @param threshold the allowed slow down in percent
+     * @param out where to print the report to
+     * @return the number of regressions
+     */
+    static int compare(@NonNull Map<String, Score> results, @NonNull Map<String, Score> baseline, double threshold,
+            @NonNull Appendable out) {
+        int regressions = 0;
+        StringBuilder line = new StringBuilder();
+        try {
+            for (Entry<String, Score> entry : new TreeMap<>(results).entrySet()) {
+                String name = entry.getKey();
+                Score current = entry.getValue();
+                Score base = baseline.get(name);
+                line.setLength(0);
+                line.append(name).append(' ').append(format(current));
+                if (base == null) {
+                    line.append(" (new)");
+                } else if (!base.mode.equals(current.mode) || !base.unit.equals(current.unit)) {
+                    line.append(" (not comparable with baseline ").append(format(base)).append(')');
+                } else {
+                    double change = change(current, base);
+                    line.append(" baseline ").append(format(base)).append(String.format(" %+.1f%%", change));
+                    if (isRegression(current, base, threshold)) {
+                        line.append(" REGRESSION");
+                        regressions++;
+                    }
+                }
+                out.append(line).append('\n');
+            }
+            for (String name : new TreeMap<>(baseline).keySet()) {
+                if (!results.containsKey(name)) {
+                    out.append(name).append(" (missing)\n");
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return regressions;
+    }
+
+    /**
+     * Calculate the slow down of a result compared to the baseline in percent
+     *
+     * @param current the current result
+     * @param base the baseline result
+     * @return the change in percent, positive values are slower
+     */
+    static double change(@NonNull Score current, @NonNull Score base) {
+        if (base.score == 0) {
+            return 0;
+        }
+        double change = (current.score - base.score) / base.score * 100;
+        return THROUGHPUT_MODE.equals(current.mode) ? -change : change;
+    }
+
+    /**
+     * Check if a result is a regression
+     *
+     * The error margins are applied in favour of the current result so that noise alone doesn't trigger a regression.
+     *
+     * @param current the current result
+     * @param base the baseline result
+     * @param threshold the allowed slow down in percent
+     * @return true if this is a regression
+     */
+    static boolean isRegression(@NonNull Score current, @NonNull Score base, double threshold) {
+        double factor = 1 + threshold / 100;
+        if (THROUGHPUT_MODE.equals(current.mode)) {
+            // higher is better
+            return (current.score + current.error) * factor < base.score - base.error;
+        }
+        return current.score - current.error > (base.score + base.error) * factor;
+    }
+
+    /**
+     * Read a JMH JSON result file
+     *
+     * @param file the file
+     * @return a map from benchmark name including parameters to score
+     * @throws IOException if reading fails
+     */
+    @NonNull
+    static Map<String, Score> read(@NonNull File file) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    /**
+     * Read JMH JSON results
+     *
+     * @param reader the Reader to read from
+     * @return a map from benchmark name including parameters to score
+     */
+    @NonNull
+    static Map<String, Score> read(@NonNull Reader reader) {
+        Map<String, Score> result = new LinkedHashMap<>();
+        JsonArray runs = new JsonParser().parse(reader).getAsJsonArray();
+        for (JsonElement e : runs) {
+            JsonObject run = e.getAsJsonObject();
+            StringBuilder name = new StringBuilder(run.get("benchmark").getAsString());
+            JsonElement params = run.get("params");
+            if (params != null && params.isJsonObject()) {
+                // sort so that the key doesn't depend on the order in the file
+                for (Entry<String, JsonElement> param : new TreeMap<>(toMap(params.getAsJsonObject())).entrySet()) {
+                    name.append(' ').append(param.getKey()).append('=').append(param.getValue().getAsString());
+                }
+            }
+            JsonObject metric = run.getAsJsonObject("primaryMetric");
+            JsonElement error = metric.get("scoreError");
+            result.put(name.toString(), new Score(run.get("mode").getAsString(), metric.get("score").getAsDouble(),
+                    error != null && !"NaN".equals(error.getAsString()) ? error.getAsDouble() : 0, metric.get("scoreUnit").getAsString()));
+        }
+        return result;
+    }
+
+    /**
+     * Convert a JsonObject to a Map
+     *
+     * @param object the JsonObject
+     * @return a Map with the same entries
+     */
+    @NonNull
+    private static Map<String, JsonElement> toMap(@NonNull JsonObject object) {
+        Map<String, JsonElement> map = new LinkedHashMap<>();
+        for (Entry<String, JsonElement> entry : object.entrySet()) {
+            map.put(entry.getKey(), entry.getValue());
+        }
+        return map;
+    }
+
+    /**
+     * Format a score for display
+     *
+     * @param score the score
+     * @return a String
+     */
+    @NonNull
+    private static String format(@NonNull Score score) {
+        return String.format("%.3f +- %.3f %s", score.score, score.error, score.unit);
+    }
+}
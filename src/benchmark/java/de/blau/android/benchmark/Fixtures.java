@@ -0,0 +1,191 @@
+package de.blau.android.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeSet;
+
+import org.openstreetmap.osmosis.osmbinary.file.BlockInputStream;
+import org.xmlpull.v1.XmlPullParserException;
+
+import androidx.annotation.NonNull;
+import de.blau.android.osm.OsmElement;
+import de.blau.android.osm.OsmPbfParser;
+import de.blau.android.osm.OsmXml;
+import de.blau.android.osm.Storage;
+import de.blau.android.osm.Tags;
+import de.blau.android.presets.Preset;
+import de.blau.android.presets.Preset.PresetGroup;
+import de.blau.android.presets.Preset.PresetItem;
+import de.blau.android.presets.PresetKeyType;
+
+/**
+ * Fixture data for the benchmarks
+ *
+ * The OSM data is the Liechtenstein extract from the unit test resources, everything else is generated from it.
+ *
+ * @author simon
+ *
+ */
+final class Fixtures {
+
+    static final String PBF = "/liechtenstein-latest.osm.pbf";
+
+    /**
+     * Keys we generate preset items for
+     */
+    private static final String[] PRESET_KEYS = { Tags.KEY_HIGHWAY, Tags.KEY_BUILDING, Tags.KEY_AMENITY, Tags.KEY_SHOP, Tags.KEY_LANDUSE, Tags.KEY_NATURAL,
+            Tags.KEY_LEISURE, Tags.KEY_TOURISM, "railway", "waterway", "barrier", "power", "man_made" };
+
+    /**
+     * Private constructor to stop instantiation
+     */
+    private Fixtures() {
+        // private
+    }
+
+    /**
+     * Read the PBF fixture
+     *
+     * @return a Storage instance holding the data
+     * @throws IOException if reading fails
+     */
+    @NonNull
+    static Storage readPbf() throws IOException {
+        return parsePbf(pbfBytes());
+    }
+
+    /**
+     * Parse PBF data
+     *
+     * @param pbf the PBF data
+     * @return a Storage instance holding the data
+     * @throws IOException if parsing fails
+     */
+    @NonNull
+    static Storage parsePbf(@NonNull byte[] pbf) throws IOException {
+        Storage storage = new Storage();
+        new BlockInputStream(new ByteArrayInputStream(pbf), new OsmPbfParser(storage)).process();
+        return storage;
+    }
+
+    /**
+     * Read the PBF fixture in to memory
+     *
+     * @return the contents
+     * @throws IOException if reading fails
+     */
+    @NonNull
+    static byte[] pbfBytes() throws IOException {
+        try (InputStream input = Fixtures.class.getResourceAsStream(PBF)) {
+            if (input == null) {
+                throw new IOException(PBF + " not found on the classpath");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[65536];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Generate OSM XML from the fixture
+     *
+     * @param storage the data
+     * @return the XML as bytes
+     * @throws IOException if writing fails
+     */
+    @NonNull
+    static byte[] toXml(@NonNull Storage storage) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            OsmXml.write(storage, null, out, "Vespucci Benchmarks");
+        } catch (XmlPullParserException e) {
+            throw new IOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Get the tags of all tagged elements
+     *
+     * @param storage the data
+     * @return a List of tag maps
+     */
+    @NonNull
+    static List<SortedMap<String, String>> tags(@NonNull Storage storage) {
+        List<SortedMap<String, String>> result = new ArrayList<>();
+        for (OsmElement e : storage.getElements()) {
+            if (e.isTagged()) {
+                result.add(e.getTags());
+            }
+        }
+        // stable but not in storage order
+        Collections.shuffle(result, new java.util.Random(42));
+        return result;
+    }
+
+    /**
+     * Get the values of all name tags
+     *
+     * @param storage the data
+     * @return a List of names
+     */
+    @NonNull
+    static List<String> names(@NonNull Storage storage) {
+        List<String> result = new ArrayList<>();
+        for (OsmElement e : storage.getElements()) {
+            String name = e.getTagWithKey(Tags.KEY_NAME);
+            if (name != null) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Generate a Preset with one item for every value of a set of common keys that is present in the data
+     *
+     * Items for values that are used together with a name get the name as an additional tag so that matching has to
+     * pick the most specific item.
+     *
+     * @param storage the data
+     * @return a Preset
+     */
+    @NonNull
+    static Preset preset(@NonNull Storage storage) {
+        Set<String> tags = new TreeSet<>();
+        for (OsmElement e : storage.getElements()) {
+            for (Entry<String, String> tag : e.getTags().entrySet()) {
+                for (String key : PRESET_KEYS) {
+                    if (key.equals(tag.getKey())) {
+                        tags.add(key + "\t" + tag.getValue());
+                    }
+                }
+            }
+        }
+        Preset preset = Preset.dummyInstance();
+        PresetGroup root = preset.getRootGroup();
+        for (String tag : tags) {
+            String[] keyValue = tag.split("\t", 2);
+            PresetItem item = preset.new PresetItem(root, keyValue[0] + " " + keyValue[1], null, null);
+            item.addTag(keyValue[0], PresetKeyType.TEXT, keyValue[1], null);
+            if (Tags.KEY_AMENITY.equals(keyValue[0]) || Tags.KEY_SHOP.equals(keyValue[0])) {
+                PresetItem named = preset.new PresetItem(root, keyValue[0] + " " + keyValue[1] + " with name", null, null);
+                named.addTag(keyValue[0], PresetKeyType.TEXT, keyValue[1], null);
+                named.addTag(Tags.KEY_NAME, PresetKeyType.TEXT, "", null);
+            }
+        }
+        return preset;
+    }
+}
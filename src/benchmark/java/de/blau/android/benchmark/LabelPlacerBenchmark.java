@@ -0,0 +1,133 @@
+package de.blau.android.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.blau.android.layer.data.LabelPlacer;
+import de.blau.android.osm.Node;
+import de.blau.android.osm.OsmElement;
+import de.blau.android.osm.OsmElementFactory;
+
+/**
+ * Benchmarks for label placement with a dense synthetic set of candidates, comparing the grid used by LabelPlacer with
+ * checking every placed label
+ *
+ * @author simon
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LabelPlacerBenchmark {
+
+    private static final int   WIDTH        = 1080;
+    private static final int   HEIGHT       = 1920;
+    private static final float CELL_SIZE    = 40;
+    private static final float LABEL_WIDTH  = 120;
+    private static final float LABEL_HEIGHT = 20;
+
+    @Param({ "2000", "20000" })
+    public int count;
+
+    private List<Node>  nodes;
+    private float[]     xs;
+    private float[]     ys;
+    private float[]     sizes;
+    private LabelPlacer placer;
+
+    /**
+     * Generate the candidates
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(1234);
+        nodes = new ArrayList<>();
+        xs = new float[count];
+        ys = new float[count];
+        sizes = new float[count];
+        for (int i = 0; i < count; i++) {
+            nodes.add(OsmElementFactory.createNode(i, 1L, 0L, OsmElement.STATE_UNCHANGED, 0, 0));
+            xs[i] = random.nextFloat() * WIDTH;
+            ys[i] = random.nextFloat() * HEIGHT;
+            sizes[i] = random.nextFloat() * 10000;
+        }
+        placer = new LabelPlacer();
+    }
+
+    /**
+     * Place all candidates with the LabelPlacer
+     *
+     * @return the number of placed labels
+     */
+    @Benchmark
+    public int grid() {
+        placer.reset(WIDTH, HEIGHT, CELL_SIZE, 18);
+        for (int i = 0; i < count; i++) {
+            placer.addCandidate(nodes.get(i), null, 0, xs[i], ys[i], 0, sizes[i]);
+        }
+        int placed = 0;
+        int candidates = placer.sortCandidates();
+        for (int i = 0; i < candidates; i++) {
+            int candidate = placer.getCandidate(i);
+            float x = placer.getX(candidate);
+            float y = placer.getY(candidate);
+            if (placer.isFree(candidate, x, y - LABEL_HEIGHT, x, y)
+                    && placer.place(candidate, x - LABEL_WIDTH / 2, y - LABEL_HEIGHT, x + LABEL_WIDTH / 2, y)) {
+                placed++;
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * Place all candidates by checking against all placed labels
+     *
+     * @return the number of placed labels
+     */
+    @Benchmark
+    public int pairwise() {
+        List<Integer> sorted = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            sorted.add(i);
+        }
+        sorted.sort((i1, i2) -> {
+            int result = Long.compare((long) sizes[i2], (long) sizes[i1]);
+            return result != 0 ? result : Integer.compare(i1, i2);
+        });
+        List<float[]> placed = new ArrayList<>();
+        for (int i : sorted) {
+            float left = xs[i] - LABEL_WIDTH / 2;
+            float right = xs[i] + LABEL_WIDTH / 2;
+            float top = ys[i] - LABEL_HEIGHT;
+            float bottom = ys[i];
+            boolean free = true;
+            for (float[] box : placed) {
+                if (left < box[2] && right > box[0] && top < box[3] && bottom > box[1]) {
+                    free = false;
+                    break;
+                }
+            }
+            if (free) {
+                placed.add(new float[] { left, top, right, bottom });
+            }
+        }
+        return placed.size();
+    }
+}
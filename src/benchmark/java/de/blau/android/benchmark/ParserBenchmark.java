@@ -0,0 +1,79 @@
+package de.blau.android.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+
+import de.blau.android.osm.OsmParser;
+import de.blau.android.osm.Storage;
+
+/**
+ * Benchmarks for parsing OSM XML and PBF
+ *
+ * The XML input is generated from the PBF fixture so that both parsers read the same data.
+ *
+ * @author simon
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ParserBenchmark {
+
+    private byte[] pbf;
+    private byte[] xml;
+
+    /**
+     * Load the fixture
+     *
+     * @throws IOException if reading the fixture fails
+     */
+    @Setup
+    public void setup() throws IOException {
+        pbf = Fixtures.pbfBytes();
+        xml = Fixtures.toXml(Fixtures.readPbf());
+    }
+
+    /**
+     * Parse OSM XML
+     *
+     * @return the parsed data
+     * @throws SAXException if the input is invalid
+     * @throws IOException if reading fails
+     * @throws ParserConfigurationException if the SAX parser can't be configured
+     */
+    @Benchmark
+    public Storage osmXml() throws SAXException, IOException, ParserConfigurationException {
+        OsmParser parser = new OsmParser();
+        parser.start(new ByteArrayInputStream(xml));
+        return parser.getStorage();
+    }
+
+    /**
+     * Parse PBF
+     *
+     * @return the parsed data
+     * @throws IOException if reading fails
+     */
+    @Benchmark
+    public Storage pbf() throws IOException {
+        return Fixtures.parsePbf(pbf);
+    }
+}
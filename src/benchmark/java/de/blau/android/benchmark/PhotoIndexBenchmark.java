@@ -0,0 +1,180 @@
+package de.blau.android.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import androidx.annotation.NonNull;
+import androidx.exifinterface.media.ExifInterface;
+import de.blau.android.photos.Photo;
+import de.blau.android.photos.PhotoIndex;
+import de.blau.android.photos.PhotoIndex.IndexedFile;
+
+/**
+ * Benchmarks for the file system side of photo indexing on a generated tree of 20'000 images
+ *
+ * The database isn't available on a plain JVM, so this covers scanning the directories against the files already in
+ * the index and the parallel EXIF extraction, which is where the time goes for large photo collections.
+ *
+ * @author simon
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PhotoIndexBenchmark {
+
+    private static final int    FILES            = 20000;
+    private static final int    FILES_PER_DIR    = 500;
+    private static final int    GEOREF_INTERVAL  = 100;
+    private static final int    CHANGED_INTERVAL = 100;
+    private static final byte[] EMPTY_JPEG       = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xD9 };
+
+    private File   root;
+    private File[] files;
+
+    /**
+     * Create the directory tree, every GEOREF_INTERVAL image has a location
+     *
+     * @throws IOException if creating the files fails
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("photos").toFile();
+        files = new File[FILES];
+        for (int i = 0; i < FILES; i++) {
+            File dir = new File(root, Integer.toString(i / FILES_PER_DIR));
+            dir.mkdirs();
+            File f = new File(dir, i + ".jpg");
+            try (FileOutputStream out = new FileOutputStream(f)) {
+                out.write(EMPTY_JPEG);
+            }
+            if (i % GEOREF_INTERVAL == 0) {
+                ExifInterface exif = new ExifInterface(f.getAbsolutePath());
+                exif.setLatLong(47.0 + i / 100000d, 8.0 + i / 100000d);
+                exif.saveAttributes();
+            }
+            files[i] = f;
+        }
+    }
+
+    /**
+     * Remove the directory tree
+     */
+    @TearDown(Level.Trial)
+    public void teardown() {
+        for (File f : files) {
+            f.delete(); // NOSONAR
+        }
+        File[] dirs = root.listFiles();
+        if (dirs != null) {
+            for (File dir : dirs) {
+                dir.delete(); // NOSONAR
+            }
+        }
+        root.delete(); // NOSONAR
+    }
+
+    /**
+     * State holding the files in the index as they would be read from the database
+     *
+     * @author simon
+     *
+     */
+    @State(Scope.Thread)
+    public static class IndexState {
+        Map<String, IndexedFile> unchanged;
+        Map<String, IndexedFile> changed;
+
+        /**
+         * Create fresh entries for every invocation, scanning marks them as seen and removes changed ones
+         *
+         * @param benchmark the enclosing benchmark state
+         */
+        @Setup(Level.Invocation)
+        public void setup(PhotoIndexBenchmark benchmark) {
+            unchanged = new HashMap<>();
+            changed = new HashMap<>();
+            for (int i = 0; i < FILES; i++) {
+                File f = benchmark.files[i];
+                boolean hasLocation = i % GEOREF_INTERVAL == 0;
+                unchanged.put(f.getAbsolutePath(), new IndexedFile(f.length(), f.lastModified(), hasLocation, 0, 0));
+                long modified = i % CHANGED_INTERVAL == 1 ? f.lastModified() - 1000 : f.lastModified();
+                changed.put(f.getAbsolutePath(), new IndexedFile(f.length(), modified, hasLocation, 0, 0));
+            }
+        }
+    }
+
+    /**
+     * Scan the tree and read all images as when nothing has been indexed yet
+     *
+     * @return the number of geo-referenced photos
+     */
+    @Benchmark
+    public int initial() {
+        return scanAndRead(new HashMap<>());
+    }
+
+    /**
+     * Re-scan the tree when nothing has changed
+     *
+     * @param state the current index
+     * @return the number of geo-referenced photos that had to be read
+     */
+    @Benchmark
+    public int rescan(IndexState state) {
+        return scanAndRead(state.unchanged);
+    }
+
+    /**
+     * Re-scan the tree when every CHANGED_INTERVAL image has changed
+     *
+     * @param state the current index
+     * @return the number of geo-referenced photos that had to be read
+     */
+    @Benchmark
+    public int incremental(IndexState state) {
+        return scanAndRead(state.changed);
+    }
+
+    /**
+     * Scan the tree and read the new and changed images
+     *
+     * @param indexed the files in the index
+     * @return the number of geo-referenced photos that were read
+     */
+    private int scanAndRead(@NonNull Map<String, IndexedFile> indexed) {
+        Map<String, IndexedFile> removed = new HashMap<>();
+        List<File> changed = new ArrayList<>();
+        PhotoIndex.scanDir(root, indexed, removed, changed);
+        int count = 0;
+        for (Photo p : PhotoIndex.readPhotos(changed)) {
+            if (p != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,95 @@
+package de.blau.android.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.blau.android.osm.Storage;
+import de.blau.android.presets.Preset;
+import de.blau.android.util.SearchIndexUtils;
+
+/**
+ * Benchmarks for preset matching and search normalisation
+ *
+ * The preset search index needs an Android Context, it is covered indirectly as it spends most of its time in name
+ * normalisation.
+ *
+ * @author simon
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PresetBenchmark {
+
+    private Preset[]                        presets;
+    private List<SortedMap<String, String>> tags;
+    private List<String>                    names;
+
+    /**
+     * Load the fixture and generate the preset
+     *
+     * @throws IOException if reading the fixture fails
+     */
+    @Setup
+    public void setup() throws IOException {
+        Storage storage = Fixtures.readPbf();
+        presets = new Preset[] { Fixtures.preset(storage) };
+        tags = Fixtures.tags(storage);
+        names = Fixtures.names(storage);
+    }
+
+    /**
+     * Match the tags of all tagged elements starting with an empty match cache, only repeated tag sets will hit the
+     * cache
+     *
+     * @param blackhole sink for the results
+     */
+    @Benchmark
+    public void findBestMatchCold(Blackhole blackhole) {
+        Preset.resetMatchCache();
+        for (SortedMap<String, String> t : tags) {
+            blackhole.consume(Preset.findBestMatch(presets, t));
+        }
+    }
+
+    /**
+     * Match the tags of all tagged elements with a warm match cache, as happens when rendering repeatedly
+     *
+     * @param blackhole sink for the results
+     */
+    @Benchmark
+    public void findBestMatchWarm(Blackhole blackhole) {
+        for (SortedMap<String, String> t : tags) {
+            blackhole.consume(Preset.findBestMatch(presets, t));
+        }
+    }
+
+    /**
+     * Normalise all names
+     *
+     * @param blackhole sink for the results
+     */
+    @Benchmark
+    public void normalize(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(SearchIndexUtils.normalize(name));
+        }
+    }
+}
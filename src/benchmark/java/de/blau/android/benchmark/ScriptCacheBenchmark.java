@@ -0,0 +1,100 @@
+package de.blau.android.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.blau.android.javascript.ScriptCache;
+
+/**
+ * Benchmarks for repeated evaluation of a preset script with and without compiling it only once
+ *
+ * Rhino runs interpreted as on Android. The Context is bound to the thread that entered it, so the state is per thread.
+ *
+ * @author simon
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScriptCacheBenchmark {
+
+    private static final String SCRIPT = "var result = value; var names = tags.get('name'); if (names != null) { result = names.get(0) + ' ' + value; } result";
+
+    private Context                   rhinoContext;
+    private Scriptable                sealed;
+    private ScriptCache               cache;
+    private Map<String, List<String>> tags;
+
+    /**
+     * Enter a Rhino Context and create a sealed scope similar to the restricted scope used in the app
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        rhinoContext = Context.enter();
+        rhinoContext.setOptimizationLevel(-1);
+        sealed = rhinoContext.initSafeStandardObjects(null, true);
+        cache = new ScriptCache(1);
+        tags = new HashMap<>();
+        List<String> values = new ArrayList<>();
+        values.add("Test");
+        tags.put("name", values);
+    }
+
+    /**
+     * Exit the Rhino Context
+     */
+    @TearDown(Level.Trial)
+    public void teardown() {
+        Context.exit();
+    }
+
+    /**
+     * Evaluate the script source the way it was done before caching
+     *
+     * @return the result of the script
+     */
+    @Benchmark
+    public Object uncached() {
+        Scriptable scope = rhinoContext.newObject(sealed);
+        scope.setPrototype(sealed);
+        scope.setParentScope(null);
+        ScriptableObject.putProperty(scope, "tags", Context.javaToJS(tags, scope));
+        ScriptableObject.putProperty(scope, "value", Context.javaToJS("value", scope));
+        return rhinoContext.evaluateString(scope, SCRIPT, "test", 1, null);
+    }
+
+    /**
+     * Execute the compiled script from the cache
+     *
+     * @return the result of the script
+     */
+    @Benchmark
+    public Object cached() {
+        Scriptable scope = ScriptCache.newScope(sealed);
+        ScriptCache.bind(scope, "tags", tags);
+        ScriptCache.bind(scope, "value", "value");
+        return cache.exec(rhinoContext, scope, "test", SCRIPT);
+    }
+}
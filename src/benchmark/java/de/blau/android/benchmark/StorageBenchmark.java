@@ -0,0 +1,149 @@
+package de.blau.android.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.nustaq.serialization.FSTObjectInput;
+import org.nustaq.serialization.FSTObjectOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.blau.android.App;
+import de.blau.android.osm.Storage;
+import de.blau.android.osm.StorageDelegator;
+
+/**
+ * Benchmarks for merging downloaded data and for saving and restoring state
+ *
+ * Serialization uses the same FST configuration and stream types as SavingHelper, but writes to memory so that file
+ * system performance doesn't influence the results.
+ *
+ * @author simon
+ *
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StorageBenchmark {
+
+    private byte[]           pbf;
+    private StorageDelegator delegator;
+    private byte[]           serialized;
+
+    /**
+     * Load the fixture and serialize it once for the read benchmark
+     *
+     * @throws IOException if reading the fixture or serializing fails
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        pbf = Fixtures.pbfBytes();
+        delegator = new StorageDelegator();
+        delegator.setCurrentStorage(parse());
+        serialized = write(delegator);
+    }
+
+    /**
+     * State for the merge benchmark, the delegator holds the fixture and the same data is merged again, as when
+     * re-downloading an area that is already loaded
+     *
+     * @author simon
+     *
+     */
+    @State(Scope.Thread)
+    public static class MergeState {
+        StorageDelegator target;
+        Storage          download;
+
+        /**
+         * Create fresh copies of the data for every invocation, merging modifies both sides
+         *
+         * @param benchmark the enclosing benchmark state
+         * @throws IOException if parsing fails
+         */
+        @Setup(Level.Invocation)
+        public void setup(StorageBenchmark benchmark) throws IOException {
+            target = new StorageDelegator();
+            target.setCurrentStorage(benchmark.parse());
+            download = benchmark.parse();
+        }
+    }
+
+    /**
+     * Merge a download in to existing data
+     *
+     * @param state the pre-loaded delegator and the data to merge
+     * @return the result of the merge
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public boolean mergeData(MergeState state) {
+        return state.target.mergeData(state.download, null);
+    }
+
+    /**
+     * Serialize the StorageDelegator
+     *
+     * @return the serialized state
+     * @throws IOException if serializing fails
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public byte[] fstWrite() throws IOException {
+        return write(delegator);
+    }
+
+    /**
+     * Deserialize a StorageDelegator
+     *
+     * @return the restored object
+     * @throws IOException if deserializing fails
+     * @throws ClassNotFoundException if a serialized class is missing
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public Object fstRead() throws IOException, ClassNotFoundException {
+        FSTObjectInput in = App.getFSTInstance().getObjectInput(new ByteArrayInputStream(serialized));
+        return in.readObject();
+    }
+
+    /**
+     * Parse the fixture
+     *
+     * @return a new Storage instance
+     * @throws IOException if parsing fails
+     */
+    Storage parse() throws IOException {
+        return Fixtures.parsePbf(pbf);
+    }
+
+    /**
+     * Serialize an object the same way SavingHelper does
+     *
+     * @param object the object to serialize
+     * @return the serialized object
+     * @throws IOException if serializing fails
+     */
+    private static byte[] write(Object object) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FSTObjectOutput outFST = App.getFSTInstance().getObjectOutput(out);
+        outFST.writeObject(object);
+        outFST.flush();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,100 @@
+package de.blau.android.benchmark;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.blau.android.App;
+import de.blau.android.osm.Node;
+import de.blau.android.osm.Relation;
+import de.blau.android.osm.Storage;
+import de.blau.android.osm.Tags;
+import de.blau.android.osm.Way;
+import de.blau.android.presets.Preset;
+import de.blau.android.util.collections.MultiHashMap;
+import de.blau.android.validation.BaseValidator;
+import de.blau.android.validation.PatternAndAge;
+
+/**
+ * Benchmark for validating all elements of the fixture
+ *
+ * The rules are the defaults from the rules database, no Map is available so the check for nearby highways that
+ * depends on the current view is skipped.
+ *
+ * @author simon
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidatorBenchmark {
+
+    private static final long ONE_YEAR = 365L * 24 * 3600;
+
+    private BaseValidator  validator;
+    private List<Node>     nodes;
+    private List<Way>      ways;
+    private List<Relation> relations;
+
+    /**
+     * Load the fixture and create the validator with the default rules
+     *
+     * @throws IOException if reading the fixture fails
+     */
+    @Setup
+    public void setup() throws IOException {
+        Storage storage = Fixtures.readPbf();
+        nodes = storage.getNodes();
+        ways = storage.getWays();
+        relations = storage.getRelations();
+        App.newLogic();
+
+        MultiHashMap<String, PatternAndAge> resurveyTags = new MultiHashMap<>();
+        resurveyTags.add(Tags.KEY_SHOP, new PatternAndAge(null, false, ONE_YEAR));
+        for (String value : new String[] { Tags.VALUE_RESTAURANT, Tags.VALUE_FAST_FOOD, Tags.VALUE_CAFE, Tags.VALUE_PUB, Tags.VALUE_BAR, Tags.VALUE_TOILETS }) {
+            resurveyTags.add(Tags.KEY_AMENITY, new PatternAndAge(value, false, ONE_YEAR));
+        }
+        Map<String, Boolean> checkTags = new HashMap<>();
+        checkTags.put(Tags.KEY_OPENING_HOURS, false);
+        checkTags.put(Tags.KEY_NAME + "|" + Tags.KEY_REF, false);
+        checkTags.put(Tags.KEY_WHEELCHAIR, false);
+        validator = new BaseValidator(new Preset[] { Fixtures.preset(storage) }, resurveyTags, checkTags);
+    }
+
+    /**
+     * Validate all elements
+     *
+     * @return the combined status so that the work can't be eliminated
+     */
+    @Benchmark
+    public int validate() {
+        Preset.resetMatchCache();
+        int status = 0;
+        for (Node n : nodes) {
+            status |= validator.validate(n);
+        }
+        for (Way w : ways) {
+            status |= validator.validate(w);
+        }
+        for (Relation r : relations) {
+            status |= validator.validate(r);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * JMH benchmarks for hot code paths that run on a plain JVM
+ */
+package de.blau.android.benchmark;
@@ -26,11 +26,11 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import de.blau.android.filter.PresetFilter;
 import de.blau.android.names.Names;
-import de.blau.android.names.Names.NameAndTags;
 import de.blau.android.net.OkHttpTlsCompat;
 import de.blau.android.net.UserAgentInterceptor;
 import de.blau.android.osm.DiscardedTags;
 import de.blau.android.osm.StorageDelegator;
+import de.blau.android.osm.UndoStorage;
 import de.blau.android.photos.Photo;
 import de.blau.android.prefs.Preferences;
 import de.blau.android.presets.MRUTags;
@@ -93,15 +93,13 @@ public class App extends android.app.Application implements android.app.Applicat
     /**
      * name index related stuff
      */
-    private static Names                             names                = null;
-    private static final Object                      namesLock            = new Object();
-    private static MultiHashMap<String, NameAndTags> namesSearchIndex     = null;
-    private static final Object                      namesSearchIndexLock = new Object();
+    private static Names        names     = null;
+    private static final Object namesLock = new Object();
 
     /**
      * Geo index to on device photos
      */
-    private static RTree<Photo> photoIndex;
+    private static volatile RTree<Photo> photoIndex;
 
     /**
      * Various attributes that are regional
@@ -167,6 +165,7 @@ public class App extends android.app.Application implements android.app.Applicat
         userAgent = appName + "/" + appVersion;
         currentInstance = this;
         setConfiguration(getResources().getConfiguration());
+        UndoStorage.setSpillDirectory(new File(getFilesDir(), UndoStorage.SPILL_DIRECTORY));
         // register a broadcast receiver for DeX mode
         // this will remain registered as long as the
         // application exists
@@ -314,6 +313,7 @@ public class App extends android.app.Application implements android.app.Applicat
             currentRootPreset = null;
             presetSearchIndex = null;
             translatedPresetSearchIndex = null;
+            Preset.resetMatchCache();
         }
     }
 
@@ -382,23 +382,6 @@ public class App extends android.app.Application implements android.app.Applicat
         }
     }
 
-    /**
-     * Get a normalized name to Names entries map
-     * 
-     * @param ctx Android Context
-     * @return a map between normalized names and NameAndTags objects
-     */
-    @NonNull
-    public static MultiHashMap<String, NameAndTags> getNameSearchIndex(@NonNull Context ctx) {
-        getNames(ctx);
-        synchronized (namesSearchIndexLock) {
-            if (namesSearchIndex == null) {
-                namesSearchIndex = names.getSearchIndex();
-            }
-            return namesSearchIndex;
-        }
-    }
-
     /**
      * Return the object containing the canonical name data
      * 
@@ -432,6 +415,17 @@ public class App extends android.app.Application implements android.app.Applicat
         photoIndex = new RTree<>(20, 50);
     }
 
+    /**
+     * Replace the in-memory index
+     * 
+     * The RTree is not thread safe, the new index must not be modified by the thread that created it afterwards
+     * 
+     * @param index the new index
+     */
+    public static void setPhotoIndex(@NonNull RTree<Photo> index) {
+        photoIndex = index;
+    }
+
     /**
      * Set up the GeoCOntext object
      * 
@@ -6,9 +6,11 @@ import java.util.Date;
 import org.acra.ACRA;
 
 import android.annotation.SuppressLint;
+import android.content.Intent;
 import android.location.LocationManager;
 import android.os.Bundle;
 import android.util.Log;
+import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.Button;
@@ -22,6 +24,7 @@ import de.blau.android.prefs.Preferences;
 import de.blau.android.tasks.TaskStorage;
 import de.blau.android.util.ACRAHelper;
 import de.blau.android.util.DateFormatter;
+import de.blau.android.util.Metrics;
 import de.blau.android.views.layers.MapTilesLayer;
 import de.blau.android.views.layers.MapTilesOverlayLayer;
 
@@ -30,6 +33,8 @@ public class DebugInformation extends AppCompatActivity {
 
     private static final String DATE_TIME_PATTERN = "yyyy-MM-dd HH:mm:ss";
 
+    private TextView textFull;
+
     @SuppressLint("NewApi")
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -45,11 +50,14 @@ public class DebugInformation extends AppCompatActivity {
         actionbar.setTitle(R.string.config_debugbutton_title);
 
         View container = View.inflate(this, R.layout.debug_viewer, null);
-        TextView textFull = (TextView) container.findViewById(R.id.debugText);
+        textFull = (TextView) container.findViewById(R.id.debugText);
 
         Button send = (Button) container.findViewById(R.id.sendDebug);
         send.setOnClickListener(v -> {
             ACRA.getErrorReporter().putCustomData("DEBUGINFO", getDebugText("<BR>"));
+            if (Metrics.isEnabled()) {
+                ACRA.getErrorReporter().putCustomData("METRICS", Metrics.toJson());
+            }
             ACRA.getErrorReporter().handleException(null);
         });
 
@@ -60,12 +68,30 @@ public class DebugInformation extends AppCompatActivity {
         setContentView(container);
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.debug_menu, menu);
+        return true;
+    }
+
     @Override
     public boolean onOptionsItemSelected(final MenuItem item) {
-        if (item.getItemId() == android.R.id.home) {
+        switch (item.getItemId()) {
+        case android.R.id.home:
             finish();
             return true;
-        } else {
+        case R.id.debug_menu_share_metrics:
+            Intent sendIntent = new Intent();
+            sendIntent.setAction(Intent.ACTION_SEND);
+            sendIntent.putExtra(Intent.EXTRA_TEXT, Metrics.toJson());
+            sendIntent.setType("application/json");
+            startActivity(Intent.createChooser(sendIntent, getString(R.string.share_metrics)));
+            return true;
+        case R.id.debug_menu_reset_metrics:
+            Metrics.reset();
+            textFull.setText(getDebugText("\n"));
+            return true;
+        default:
             Log.w(DEBUG_TAG, "Unknown menu item " + item.getItemId());
         }
         return super.onOptionsItemSelected(item);
@@ -116,6 +142,7 @@ public class DebugInformation extends AppCompatActivity {
         }
 
         ACRAHelper.addElementCounts(builder, eol);
+        Metrics.appendTo(builder, eol);
 
         builder.append("Available location providers\n");
         LocationManager locationManager = (LocationManager) getSystemService(LOCATION_SERVICE);
@@ -66,6 +66,7 @@ import de.blau.android.filter.Filter;
 import de.blau.android.gpx.Track;
 import de.blau.android.imageryoffset.Offset;
 import de.blau.android.layer.MapViewLayer;
+import de.blau.android.layer.data.HitTestGrid;
 import de.blau.android.osm.BoundingBox;
 import de.blau.android.osm.DiscardedTags;
 import de.blau.android.osm.GeoPoint;
@@ -89,6 +90,8 @@ import de.blau.android.osm.Server.Visibility;
 import de.blau.android.osm.Storage;
 import de.blau.android.osm.StorageDelegator;
 import de.blau.android.osm.Tags;
+import de.blau.android.osm.TiledDownloader;
+import de.blau.android.osm.TiledDownloader.TileListener;
 import de.blau.android.osm.UndoStorage;
 import de.blau.android.osm.ViewBox;
 import de.blau.android.osm.Way;
@@ -105,6 +108,7 @@ import de.blau.android.util.EditState;
 import de.blau.android.util.FileUtil;
 import de.blau.android.util.GeoMath;
 import de.blau.android.util.Geometry;
+import de.blau.android.util.Metrics;
 import de.blau.android.util.SavingHelper;
 import de.blau.android.util.Snack;
 import de.blau.android.util.Util;
@@ -130,6 +134,11 @@ public class Logic {
 
     private static final String DEBUG_TAG = Logic.class.getSimpleName();
 
+    private static final Metrics.Timer DOWNLOAD_TIMER         = Metrics.timer("download.total");
+    private static final Metrics.Timer DOWNLOAD_CONNECT_TIMER = Metrics.timer("download.network");
+    private static final Metrics.Timer DOWNLOAD_PARSE_TIMER   = Metrics.timer("download.parse");
+    private static final Metrics.Timer DOWNLOAD_MERGE_TIMER   = Metrics.timer("download.merge");
+
     /**
      * Enums for directions. Used for translation via cursor-pad.
      */
@@ -344,6 +353,7 @@ public class Logic {
     public void setPrefs(@NonNull final Preferences prefs) {
         this.prefs = prefs;
         DataStyle.switchTo(prefs.getMapProfile());
+        Metrics.setEnabled(prefs.areMetricsEnabled());
     }
 
     /**
@@ -434,9 +444,11 @@ public class Logic {
      */
     @Nullable
     public String undo() {
-        String name = getDelegator().getUndo().undo();
-        getDelegator().dirty();
-        return name;
+        try {
+            return getDelegator().getUndo().undo();
+        } finally {
+            getDelegator().dirty();
+        }
     }
 
     /**
@@ -447,9 +459,11 @@ public class Logic {
      */
     @Nullable
     public String undo(int checkpoint) {
-        String name = getDelegator().getUndo().undo(checkpoint);
-        getDelegator().dirty();
-        return name;
+        try {
+            return getDelegator().getUndo().undo(checkpoint);
+        } finally {
+            getDelegator().dirty();
+        }
     }
 
     /**
@@ -459,9 +473,11 @@ public class Logic {
      */
     @Nullable
     public String redo() {
-        String name = getDelegator().getUndo().redo();
-        getDelegator().dirty();
-        return name;
+        try {
+            return getDelegator().getUndo().redo();
+        } finally {
+            getDelegator().dirty();
+        }
     }
 
     /**
@@ -472,9 +488,11 @@ public class Logic {
      */
     @Nullable
     public String redo(int checkpoint) {
-        String name = getDelegator().getUndo().redo(checkpoint);
-        getDelegator().dirty();
-        return name;
+        try {
+            return getDelegator().getUndo().redo(checkpoint);
+        } finally {
+            getDelegator().dirty();
+        }
     }
 
     /**
@@ -811,7 +829,8 @@ public class Logic {
         java.util.Map<Way, Double> result = new HashMap<>();
         boolean showWayIcons = prefs.getShowWayIcons();
 
-        List<Way> ways = getCLickableWays();
+        DataStyle currentStyle = DataStyle.getCurrent();
+        List<Way> ways = getClickableWays(x, y, Math.max(currentStyle.getWayToleranceValue(), currentStyle.getNodeToleranceValue()));
 
         for (Way way : ways) {
             if (way.isClosed() && !includeClosed) {
@@ -888,6 +907,68 @@ public class Logic {
         return ways;
     }
 
+    /**
+     * Get a List of Ways that could be clicked at a screen position
+     * 
+     * If the hit test grid from the last rendered frame is available only Ways close to the position will be returned
+     * 
+     * @param x x display coordinate
+     * @param y y display coordinate
+     * @param tolerance the tolerance in px
+     * @return a List of Ways
+     */
+    @NonNull
+    private List<Way> getClickableWays(final float x, final float y, final float tolerance) {
+        HitTestGrid grid = getHitTestGrid();
+        if (grid == null) {
+            return getCLickableWays();
+        }
+        List<Way> ways = grid.getWays(x, y, tolerance, new ArrayList<>());
+        for (int i = ways.size() - 1; i >= 0; i--) {
+            Way way = ways.get(i);
+            if (!isClickable(way, filter != null && filter.include(way, isSelected(way)))) {
+                ways.remove(i);
+            }
+        }
+        return ways;
+    }
+
+    /**
+     * Get the hit test grid built when the data layer was last drawn
+     * 
+     * @return the grid or null if there is none or it is not valid for the current screen
+     */
+    @Nullable
+    private HitTestGrid getHitTestGrid() {
+        if (map != null) {
+            de.blau.android.layer.data.MapOverlay dataLayer = map.getDataLayer();
+            if (dataLayer != null) {
+                HitTestGrid grid = dataLayer.getHitTestGrid();
+                if (grid.isValid(map.getViewBox(), map.getWidth(), map.getHeight())) {
+                    return grid;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check if an element returned by the hit test grid should be considered clickable
+     * 
+     * @param e the OsmElement
+     * @param filterIncluded the result of applying the current filter, ignored if there is no filter
+     * @return true if the element could be clicked
+     */
+    private boolean isClickable(@NonNull OsmElement e, boolean filterIncluded) {
+        if (!getDelegator().getCurrentStorage().contains(e)) { // deleted since the grid was built
+            return false;
+        }
+        if (clickableElements != null) {
+            return clickableElements.contains(e);
+        }
+        return filter == null || filterIncluded;
+    }
+
     /**
      * Determine if the way should have an icon shown and should respond to a touch event on the icon
      * 
@@ -933,9 +1014,15 @@ public class Logic {
         float wayToleranceValue = DataStyle.getCurrent().getWayToleranceValue();
         float minLenForHandle = DataStyle.getCurrent().getMinLenForHandle();
 
-        List<Way> ways = filter != null ? filter.getVisibleWays() : getDelegator().getCurrentStorage().getWays(map.getViewBox());
-        if (filter != null && getSelectedWays() != null) { // selected Ways are always visible if a filter is applied
-            ways.addAll(getSelectedWays());
+        List<Way> ways;
+        HitTestGrid grid = getHitTestGrid();
+        if (grid != null) {
+            ways = grid.getWays(x, y, wayToleranceValue, new ArrayList<>());
+        } else {
+            ways = filter != null ? filter.getVisibleWays() : getDelegator().getCurrentStorage().getWays(map.getViewBox());
+            if (filter != null && getSelectedWays() != null) { // selected Ways are always visible if a filter is applied
+                ways.addAll(getSelectedWays());
+            }
         }
 
         for (Way way : ways) {
@@ -1044,7 +1131,8 @@ public class Logic {
     @NonNull
     private java.util.Map<Node, Double> getClickedNodesWithDistances(final float x, final float y, boolean inDownloadOnly) {
         java.util.Map<Node, Double> result = new HashMap<>();
-        for (Node node : getClickableNodes()) {
+        DataStyle currentStyle = DataStyle.getCurrent();
+        for (Node node : getClickableNodes(x, y, Math.max(currentStyle.getNodeToleranceValue(), currentStyle.getWayToleranceValue() / 2))) {
             int lat = node.getLat();
             int lon = node.getLon();
             if (!inDownloadOnly || node.getState() != OsmElement.STATE_UNCHANGED || getDelegator().isInDownload(lon, lat)) {
@@ -1086,6 +1174,32 @@ public class Logic {
         return nodes;
     }
 
+    /**
+     * Get all nodes that could be clicked at a screen position
+     * 
+     * If the hit test grid from the last rendered frame is available only Nodes close to the position will be returned
+     * 
+     * @param x x display coordinate
+     * @param y y display coordinate
+     * @param tolerance the tolerance in px
+     * @return a List of Nodes
+     */
+    @NonNull
+    private List<Node> getClickableNodes(final float x, final float y, final float tolerance) {
+        HitTestGrid grid = getHitTestGrid();
+        if (grid == null) {
+            return getClickableNodes();
+        }
+        List<Node> nodes = grid.getNodes(x, y, tolerance, new ArrayList<>());
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            Node node = nodes.get(i);
+            if (!isClickable(node, filter != null && (filter.include(node, false) || isSelected(node)))) {
+                nodes.remove(i);
+            }
+        }
+        return nodes;
+    }
+
     /**
      * Searches for a Node at x,y plus the shown node-tolerance. The Node has to lay in the mapBox.
      * 
@@ -1192,8 +1306,24 @@ public class Logic {
     @NonNull
     public Set<OsmElement> findClickableElements(@NonNull BoundingBox viewBox, @NonNull List<OsmElement> excludes) {
         Set<OsmElement> result = new HashSet<>();
-        result.addAll(getDelegator().getCurrentStorage().getNodes(viewBox));
-        result.addAll(getDelegator().getCurrentStorage().getWays(viewBox));
+        HitTestGrid grid = getHitTestGrid();
+        if (grid != null && map.getViewBox().equals(viewBox) && filter == null) {
+            // the grid contains exactly the elements drawn for this view, avoids a scan of the storage
+            Storage currentStorage = getDelegator().getCurrentStorage();
+            for (Node n : grid.getNodes()) {
+                if (currentStorage.contains(n)) {
+                    result.add(n);
+                }
+            }
+            for (Way w : grid.getWays()) {
+                if (currentStorage.contains(w)) {
+                    result.add(w);
+                }
+            }
+        } else {
+            result.addAll(getDelegator().getCurrentStorage().getNodes(viewBox));
+            result.addAll(getDelegator().getCurrentStorage().getWays(viewBox));
+        }
         for (OsmElement e : excludes) {
             result.remove(e);
         }
@@ -2247,17 +2377,19 @@ public class Logic {
         float jx = lonE7ToX(nodeToJoin.getLon());
         float jy = latE7ToY(nodeToJoin.getLat());
         // start by looking for the closest nodes
-        for (Node node : getDelegator().getCurrentStorage().getNodes()) {
+        Storage currentStorage = getDelegator().getCurrentStorage();
+        currentStorage.visitNodes(node -> {
             if (!nodeToJoin.equals(node)) {
                 Double distance = clickDistance(node, jx, jy);
                 if (distance != null && (filter == null || filter.include(node, false))) {
                     closestElements.add(node);
                 }
             }
-        }
+            return true;
+        });
         if (closestElements.isEmpty()) {
             // fall back to closest ways
-            for (Way way : getDelegator().getCurrentStorage().getWays()) {
+            currentStorage.visitWays(way -> {
                 if (!way.hasNode(nodeToJoin)) {
                     List<Node> wayNodes = way.getNodes();
                     Node firstNode = wayNodes.get(0);
@@ -2277,7 +2409,8 @@ public class Logic {
                         node1Y = node2Y;
                     }
                 }
-            }
+                return true;
+            });
         }
         return closestElements;
     }
@@ -2676,7 +2809,9 @@ public class Logic {
             @Nullable final PostAsyncActionHandler postLoadHandler) {
         final Validator validator = App.getDefaultValidator(activity);
 
-        mapBox.makeValidForApi();
+        if (TiledDownloader.tileCount(mapBox) > TiledDownloader.MAX_TILES) {
+            mapBox.makeValidForApi();
+        }
 
         final PostMergeHandler postMerge = new PostMergeHandler() {
             @Override
@@ -2685,7 +2820,7 @@ public class Logic {
             }
         };
 
-        new AsyncTask<Boolean, Void, ReadAsyncResult>() {
+        new AsyncTask<Boolean, Integer, ReadAsyncResult>() {
 
             @Override
             protected void onPreExecute() {
@@ -2695,7 +2830,12 @@ public class Logic {
             @Override
             protected ReadAsyncResult doInBackground(Boolean... arg) {
                 boolean merge = arg != null && arg[0] != null && arg[0].booleanValue();
-                return download(activity, prefs.getServer(), mapBox, postMerge, null, merge, false);
+                return download(activity, prefs.getServer(), mapBox, postMerge, null, merge, false, (tile, done, total) -> publishProgress(done, total));
+            }
+
+            @Override
+            protected void onProgressUpdate(Integer... progress) {
+                Progress.setMessage(activity, Progress.PROGRESS_DOWNLOAD, activity.getString(R.string.progress_download_tiles, progress[0], progress[1]));
             }
 
             @Override
@@ -2807,6 +2947,110 @@ public class Logic {
         }.execute();
     }
 
+    /**
+     * Loads multiple areas from the OSM-Server in parallel
+     * 
+     * The BoundingBoxes are expected to have already been added to the StorageDelegator and are removed if the
+     * download of the area fails. Will prune storage if the node count goes too high.
+     * 
+     * @param context android context
+     * @param server the Server object we are using
+     * @param validator the Validator to apply to downloaded data
+     * @param boxes the areas to load
+     * @param handler listener to call when the download is completed
+     */
+    public void autoDownloadBoxes(@NonNull final Context context, @NonNull final Server server, @NonNull final Validator validator,
+            @NonNull final List<BoundingBox> boxes, @Nullable PostAsyncActionHandler handler) {
+        if (boxes.size() == 1 || server.hasMapSplitSource()) {
+            for (BoundingBox box : boxes) {
+                autoDownloadBox(context, server, validator, box, handler);
+            }
+            return;
+        }
+        for (BoundingBox box : boxes) {
+            box.makeValidForApi();
+        }
+
+        final PostMergeHandler postMerge = new PostMergeHandler() {
+            @Override
+            public void handler(OsmElement e) {
+                e.hasProblem(context, validator);
+            }
+        };
+
+        new AsyncTask<Void, Void, ReadAsyncResult>() {
+            @Override
+            protected ReadAsyncResult doInBackground(Void... arg) {
+                ReadAsyncResult result = new ReadAsyncResult(ErrorCodes.OK);
+                final List<BoundingBox> pending = new ArrayList<>(boxes);
+                try {
+                    if (!downloadTiles(context, server, boxes, postMerge, (tile, done, total) -> pending.remove(tile))) {
+                        result = new ReadAsyncResult(ErrorCodes.DATA_CONFLICT);
+                    }
+                } catch (IllegalStateException iex) {
+                    result = new ReadAsyncResult(ErrorCodes.CORRUPTED_DATA);
+                } catch (SAXException | ParserConfigurationException | UnsupportedFormatException | IOException e) {
+                    ReadAsyncResult error = downloadError(e);
+                    if (error != null) {
+                        result = error;
+                    }
+                }
+                if (result.getCode() != ErrorCodes.OK) {
+                    for (BoundingBox box : pending) {
+                        removeBoundingBox(box);
+                    }
+                    if (handler != null) {
+                        handler.onError();
+                    }
+                } else if (handler != null) {
+                    handler.onSuccess();
+                }
+                if (getDelegator().getCurrentStorage().getNodeCount() > prefs.getAutoPruneNodeLimit()) {
+                    ViewBox pruneBox = new ViewBox(map.getViewBox());
+                    pruneBox.scale(1.6);
+                    getDelegator().prune(pruneBox);
+                }
+                return result;
+            }
+
+            @Override
+            protected void onPostExecute(ReadAsyncResult result) {
+                if (ErrorCodes.CORRUPTED_DATA == result.getCode()) {
+                    Snack.toastTopError(context, R.string.corrupted_data_message);
+                }
+            }
+
+        }.execute();
+    }
+
+    /**
+     * Download tiles in parallel and merge them, as tiles are merged their BoundingBoxes are merged too
+     * 
+     * @param ctx an Android Context
+     * @param server the API Server configuration
+     * @param tiles the tiles, each must be valid for the API
+     * @param postMerge handler to call after merging
+     * @param listener optional listener that is called after each tile has been merged
+     * @return true if all tiles were merged, false if there was a conflict
+     * @throws IOException on network errors
+     * @throws SAXException on parse errors
+     * @throws ParserConfigurationException if the parser couldn't be configured
+     */
+    private boolean downloadTiles(@NonNull final Context ctx, @NonNull final Server server, @NonNull List<BoundingBox> tiles,
+            @Nullable final PostMergeHandler postMerge, @Nullable TileListener listener) throws IOException, SAXException, ParserConfigurationException {
+        TiledDownloader downloader = new TiledDownloader(tile -> server.getStreamForBox(ctx, tile));
+        return downloader.download(tiles, (tile, storage) -> {
+            long start = DOWNLOAD_MERGE_TIMER.start();
+            boolean merged = getDelegator().mergeData(storage, postMerge);
+            DOWNLOAD_MERGE_TIMER.stop(start);
+            if (!merged) {
+                return false;
+            }
+            getDelegator().mergeBoundingBox(tile);
+            return true;
+        }, listener);
+    }
+
     /**
      * Download/Load a bounding box full of OSM data
      * 
@@ -2821,7 +3065,29 @@ public class Logic {
      */
     public ReadAsyncResult download(@NonNull final Context ctx, @NonNull Server server, @NonNull final BoundingBox mapBox,
             @Nullable final PostMergeHandler postMerge, @Nullable final PostAsyncActionHandler handler, boolean merge, boolean background) {
+        return download(ctx, server, mapBox, postMerge, handler, merge, background, null);
+    }
+
+    /**
+     * Download/Load a bounding box full of OSM data
+     * 
+     * If the bounding box is too large for a single API request it is downloaded as multiple tiles in parallel
+     * 
+     * @param ctx an Android Context
+     * @param server the API Server configuration
+     * @param mapBox the BoundingBox
+     * @param postMerge handler to call after merging
+     * @param handler handler to call when everything is finished
+     * @param merge if true merge the data with existing data, if false replace
+     * @param background this is being called in the background and shouldn't do any thing that effects the UI
+     * @param listener optional listener that is called after each tile has been merged
+     * @return a ReadAsyncResult with detailed result information
+     */
+    public ReadAsyncResult download(@NonNull final Context ctx, @NonNull Server server, @NonNull final BoundingBox mapBox,
+            @Nullable final PostMergeHandler postMerge, @Nullable final PostAsyncActionHandler handler, boolean merge, boolean background,
+            @Nullable TileListener listener) {
         ReadAsyncResult result = new ReadAsyncResult(ErrorCodes.OK);
+        final long start = DOWNLOAD_TIMER.start();
         try {
             if (!background) {
                 if (server.hasReadOnly()) {
@@ -2847,19 +3113,42 @@ public class Logic {
             }
 
             Storage input = null;
+            boolean tiled = false;
             if (server.hasMapSplitSource()) {
                 input = MapSplitSource.readBox(ctx, server.getMapSplitSource(), mapBox);
-            } else {
+            } else if (mapBox.isValidForApi()) {
+                long phase = DOWNLOAD_CONNECT_TIMER.start();
                 try (InputStream in = server.getStreamForBox(ctx, mapBox)) {
+                    DOWNLOAD_CONNECT_TIMER.stop(phase);
+                    phase = DOWNLOAD_PARSE_TIMER.start();
                     final OsmParser osmParser = new OsmParser();
                     osmParser.start(in);
                     input = osmParser.getStorage();
+                    DOWNLOAD_PARSE_TIMER.stop(phase);
                 }
+            } else {
+                tiled = true; // too large for a single request
             }
 
-            if (merge) { // incremental load
+            if (tiled) {
+                if (!merge) {
+                    getDelegator().reset(false);
+                }
                 try {
-                    if (!getDelegator().mergeData(input, postMerge)) {
+                    if (downloadTiles(ctx, server, TiledDownloader.split(mapBox), postMerge, listener)) {
+                        getDelegator().mergeBoundingBox(mapBox);
+                    } else {
+                        result = new ReadAsyncResult(ErrorCodes.DATA_CONFLICT);
+                    }
+                } catch (IllegalStateException iex) {
+                    result = new ReadAsyncResult(ErrorCodes.CORRUPTED_DATA);
+                }
+            } else if (merge) { // incremental load
+                try {
+                    long phase = DOWNLOAD_MERGE_TIMER.start();
+                    boolean merged = getDelegator().mergeData(input, postMerge);
+                    DOWNLOAD_MERGE_TIMER.stop(phase);
+                    if (!merged) {
                         result = new ReadAsyncResult(ErrorCodes.DATA_CONFLICT);
                     } else {
                         if (mapBox != null) {
@@ -2889,47 +3178,64 @@ public class Logic {
             if (handler != null) {
                 handler.onSuccess();
             }
-        } catch (SAXException e) {
+        } catch (SAXException | ParserConfigurationException | UnsupportedFormatException | IOException e) {
+            ReadAsyncResult error = downloadError(e);
+            if (error != null) {
+                result = error;
+            }
+        }
+        if (result.getCode() != ErrorCodes.OK) {
+            removeBoundingBox(mapBox);
+            if (handler != null) {
+                handler.onError();
+            }
+        } else {
+            DOWNLOAD_TIMER.stop(start);
+        }
+        return result;
+    }
+
+    /**
+     * Get the result for an Exception thrown during a download
+     * 
+     * @param e the Exception
+     * @return a ReadAsyncResult or null if the Exception doesn't indicate a specific error
+     */
+    @Nullable
+    private static ReadAsyncResult downloadError(@NonNull Exception e) {
+        if (e instanceof SAXException) {
             Log.e(DEBUG_TAG, "downloadBox problem parsing", e);
-            Exception ce = e.getException();
+            Exception ce = ((SAXException) e).getException();
             if ((ce instanceof StorageException) && ((StorageException) ce).getCode() == StorageException.OOM) {
-                result = new ReadAsyncResult(ErrorCodes.OUT_OF_MEMORY, "");
-            } else {
-                result = new ReadAsyncResult(ErrorCodes.INVALID_DATA_RECEIVED, e.getMessage());
+                return new ReadAsyncResult(ErrorCodes.OUT_OF_MEMORY, "");
             }
-        } catch (ParserConfigurationException | UnsupportedFormatException e) {
+            return new ReadAsyncResult(ErrorCodes.INVALID_DATA_RECEIVED, e.getMessage());
+        }
+        if (e instanceof ParserConfigurationException || e instanceof UnsupportedFormatException) {
             // crash and burn
             // TODO this seems to happen when the API call returns text from a proxy or similar intermediate
             // network device... need to display what we actually got
             Log.e(DEBUG_TAG, "downloadBox problem parsing", e);
-            result = new ReadAsyncResult(ErrorCodes.INVALID_DATA_RECEIVED, e.getMessage());
-        } catch (OsmServerException e) {
-            int code = e.getErrorCode();
+            return new ReadAsyncResult(ErrorCodes.INVALID_DATA_RECEIVED, e.getMessage());
+        }
+        if (e instanceof OsmServerException) {
+            int code = ((OsmServerException) e).getErrorCode();
             Log.e(DEBUG_TAG, "downloadBox problem downloading", e);
             if (code == HttpURLConnection.HTTP_BAD_REQUEST) {
                 // check error messages
                 Matcher m = Server.ERROR_MESSAGE_BAD_OAUTH_REQUEST.matcher(e.getMessage());
                 if (m.matches()) {
-                    result = new ReadAsyncResult(ErrorCodes.INVALID_LOGIN);
-                } else {
-                    result = new ReadAsyncResult(ErrorCodes.BOUNDING_BOX_TOO_LARGE);
+                    return new ReadAsyncResult(ErrorCodes.INVALID_LOGIN);
                 }
+                return new ReadAsyncResult(ErrorCodes.BOUNDING_BOX_TOO_LARGE);
             }
-        } catch (IOException e) {
-            if (e instanceof SSLProtocolException) {
-                result = new ReadAsyncResult(ErrorCodes.SSL_HANDSHAKE);
-            } else {
-                result = new ReadAsyncResult(ErrorCodes.NO_CONNECTION);
-            }
-            Log.e(DEBUG_TAG, "downloadBox problem downloading", e);
+            return null;
         }
-        if (result.getCode() != ErrorCodes.OK) {
-            removeBoundingBox(mapBox);
-            if (handler != null) {
-                handler.onError();
-            }
+        Log.e(DEBUG_TAG, "downloadBox problem downloading", e);
+        if (e instanceof SSLProtocolException) {
+            return new ReadAsyncResult(ErrorCodes.SSL_HANDSHAKE);
         }
-        return result;
+        return new ReadAsyncResult(ErrorCodes.NO_CONNECTION);
     }
 
     /**
@@ -3480,7 +3786,7 @@ public class Logic {
             protected Integer doInBackground(Void... arg) {
                 int result = 0;
                 try (OutputStream out = new BufferedOutputStream(fout)) {
-                    OsmXml.write(getDelegator().getCurrentStorage(), getDelegator().getApiStorage(), out, App.getUserAgent());
+                    OsmXml.write(getDelegator().getCurrentSnapshot(), getDelegator().getApiSnapshot(), out, App.getUserAgent());
                 } catch (IllegalArgumentException | IllegalStateException | XmlPullParserException | IOException e) {
                     result = ErrorCodes.FILE_WRITE_FAILED;
                     Log.e(DEBUG_TAG, "Problem writing", e);
@@ -4677,6 +4983,10 @@ public class Logic {
      */
     void invalidateMap() {
         if (map != null) {
+            de.blau.android.layer.data.MapOverlay dataLayer = map.getDataLayer();
+            if (dataLayer != null) {
+                dataLayer.invalidateHitTestGrid();
+            }
             map.invalidate();
         }
     }
@@ -110,6 +110,7 @@ import de.blau.android.easyedit.EasyEditManager;
 import de.blau.android.easyedit.SimpleActionModeCallback;
 import de.blau.android.exception.OsmException;
 import de.blau.android.exception.OsmIllegalOperationException;
+import de.blau.android.exception.StorageException;
 import de.blau.android.filter.Filter;
 import de.blau.android.filter.PresetFilter;
 import de.blau.android.filter.TagFilter;
@@ -852,6 +853,7 @@ public class Main extends FullScreenAppCompatActivity
      */
     public void updatePrefs(@NonNull Preferences prefs) {
         this.prefs = prefs;
+        UndoStorage.setMemoryBudget(prefs.getUndoMemoryBudget() * 1024L * 1024L);
     }
 
     /**
@@ -1220,7 +1222,7 @@ public class Main extends FullScreenAppCompatActivity
      */
     private void loadGPXFile(@NonNull final Uri uri) {
         addGpxLayer();
-        if (!getTracker().getTrackPoints().isEmpty()) {
+        if (getTracker().hasTrackPoints()) {
             ImportTrack.showDialog(Main.this, uri);
         } else {
             getTracker().stopTracking(false);
@@ -2491,11 +2493,8 @@ public class Main extends FullScreenAppCompatActivity
      */
     private void gotoFirstTrackPoint() {
         TrackerService ts = getTracker();
-        if (ts != null) {
-            List<TrackPoint> l = ts.getTrackPoints();
-            if (!l.isEmpty()) {
-                gotoTrackPoint(App.getLogic(), l.get(0));
-            }
+        if (ts != null && ts.hasTrackPoints()) {
+            gotoTrackPoint(App.getLogic(), ts.getTrack().getTrack().get(0));
         }
     }
 
@@ -3243,7 +3242,13 @@ public class Main extends FullScreenAppCompatActivity
     public void onBackPressed() {
         Log.d(DEBUG_TAG, "onBackPressed()");
         if (prefs.useBackForUndo()) {
-            String name = App.getLogic().undo();
+            String name;
+            try {
+                name = App.getLogic().undo();
+            } catch (StorageException e) {
+                Snack.barError(this, R.string.undo_failed);
+                return;
+            }
             if (name != null) {
                 Snack.barInfo(this, getResources().getString(R.string.undo) + ": " + name);
             } else {
@@ -3327,11 +3332,15 @@ public class Main extends FullScreenAppCompatActivity
          * @param logic the current Logic instance
          */
         void undo(@NonNull final Logic logic) {
-            String name = logic.undo();
-            if (name != null) {
-                Snack.toastTopInfo(Main.this, getResources().getString(R.string.undo) + ": " + name);
-            } else {
-                Snack.toastTopInfo(Main.this, R.string.undo_nothing);
+            try {
+                String name = logic.undo();
+                if (name != null) {
+                    Snack.toastTopInfo(Main.this, getResources().getString(R.string.undo) + ": " + name);
+                } else {
+                    Snack.toastTopInfo(Main.this, R.string.undo_nothing);
+                }
+            } catch (StorageException e) {
+                Snack.toastTopError(Main.this, R.string.undo_failed);
             }
             resync(logic);
             map.invalidate();
@@ -5,6 +5,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Locale;
 
@@ -53,6 +54,7 @@ import de.blau.android.resources.TileLayerSource;
 import de.blau.android.services.TrackerService;
 import de.blau.android.util.Density;
 import de.blau.android.util.GeoMath;
+import de.blau.android.util.Metrics;
 import de.blau.android.util.Snack;
 import de.blau.android.util.ThemeUtils;
 import de.blau.android.util.collections.FloatPrimitiveList;
@@ -72,6 +74,8 @@ public class Map extends View implements IMapView {
 
     private static final String DEBUG_TAG = Map.class.getSimpleName();
 
+    private static final Metrics.Timer DRAW_TIMER = Metrics.timer("map.draw");
+
     public static final int ICON_SIZE_DP = 20;
 
     /** Use reflection to access Canvas method only available in API11. */
@@ -111,6 +115,11 @@ public class Map extends View implements IMapView {
      */
     private final List<MapViewLayer> renderLayers = new ArrayList<>();
 
+    /**
+     * Per layer type draw timers
+     */
+    private final EnumMap<LayerType, Metrics.Timer> layerTimers = new EnumMap<>(LayerType.class);
+
     /**
      * The visible area in decimal-degree (WGS84) -space.
      */
@@ -542,8 +551,17 @@ public class Map extends View implements IMapView {
             }
             Collections.reverse(renderLayers);
         }
+        final long drawStart = DRAW_TIMER.start();
+        final boolean timeLayers = Metrics.isEnabled();
         for (MapViewLayer osmvo : renderLayers) {
-            osmvo.onManagedDraw(canvas, this);
+            if (timeLayers) {
+                Metrics.Timer timer = getLayerTimer(osmvo.getType());
+                long start = timer.start();
+                osmvo.onManagedDraw(canvas, this);
+                timer.stop(start);
+            } else {
+                osmvo.onManagedDraw(canvas, this);
+            }
         }
         int attributionOffset = INITIAL_ATTRIBUTION_OFFSET;
         for (MapViewLayer osmvo : renderLayers) {
@@ -569,12 +587,29 @@ public class Map extends View implements IMapView {
             paintZoomAndOffset(canvas);
         }
 
+        DRAW_TIMER.stop(drawStart);
         if (prefs.isStatsVisible()) {
             time = System.currentTimeMillis() - time;
             paintStats(canvas, (int) (1 / (time / 1000f)));
         }
     }
 
+    /**
+     * Get the draw timer for a layer type
+     * 
+     * @param type the LayerType
+     * @return the Timer
+     */
+    @NonNull
+    private Metrics.Timer getLayerTimer(@NonNull LayerType type) {
+        Metrics.Timer timer = layerTimers.get(type);
+        if (timer == null) {
+            timer = Metrics.timer("map.draw." + type.name().toLowerCase(Locale.US));
+            layerTimers.put(type, timer);
+        }
+        return timer;
+    }
+
     @Override
     protected void onSizeChanged(final int w, final int h, final int oldw, final int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
@@ -20,6 +20,7 @@ import androidx.annotation.Nullable;
 import de.blau.android.App;
 import de.blau.android.exception.OsmException;
 import de.blau.android.osm.BoundingBox;
+import de.blau.android.osm.ElementNameIndex;
 import de.blau.android.osm.Node;
 import de.blau.android.osm.OsmElement;
 import de.blau.android.osm.Relation;
@@ -368,13 +369,10 @@ public final class Address implements Serializable {
                         SortedMap<Integer, Address> list = getHouseNumbers(street, streetId, side, lastAddresses);
                         if (list.size() == 0) { // try to seed lastAddresses from OSM data
                             Log.d(DEBUG_TAG, "Seeding from street " + street);
-                            // nodes
-                            for (Node n : storageDelegator.getCurrentStorage().getNodes()) {
-                                seedAddressList(context, street, n, lastAddresses);
-                            }
-                            // ways
-                            for (Way w : storageDelegator.getCurrentStorage().getWays()) {
-                                seedAddressList(context, street, w, lastAddresses);
+                            ElementNameIndex index = storageDelegator.getNameIndex();
+                            // nodes first, then ways
+                            for (OsmElement e : index.getAddresses(street)) {
+                                seedAddressList(context, street, index, e, lastAddresses);
                             }
                             // and try again
                             list = getHouseNumbers(street, streetId, side, lastAddresses);
@@ -831,21 +829,29 @@ public final class Address implements Serializable {
      * 
      * @param context Android Context
      * @param street the street name
-     * @param streetId the osm id of the street
+     * @param index the ElementNameIndex used to find the nearest street
      * @param e the OsmElement
      * @param addresses the list of addresses
      */
-    private static void seedAddressList(@NonNull Context context, @NonNull String street, @NonNull OsmElement e, @NonNull LinkedList<Address> addresses) {
+    private static void seedAddressList(@NonNull Context context, @NonNull String street, @NonNull ElementNameIndex index, @NonNull OsmElement e,
+            @NonNull LinkedList<Address> addresses) {
         if (e.hasTag(Tags.KEY_ADDR_STREET, street) && e.hasTagKey(Tags.KEY_ADDR_HOUSENUMBER)) {
             Address seed = new Address(e, null);
             seed.setTags(getAddressTags(context, seed.lon, seed.lat, new LinkedHashMap<>(e.getTags())));
-            ElementSearch es = new ElementSearch(new IntCoordinates((int) (seed.lon * 1E7), (int) (seed.lat * 1E7)), true);
+            IntCoordinates location = new IntCoordinates((int) (seed.lon * 1E7), (int) (seed.lat * 1E7));
+            Way way;
             try {
-                seed.setSide(es.getStreetId(street));
+                way = index.getNearestStreet(street, new int[] { location.lon, location.lat },
+                        GeoMath.createBoundingBoxForCoordinates(location, ElementSearch.MAX_DISTANCE));
             } catch (OsmException ex) {
                 Log.e(DEBUG_TAG, "seedAddressList " + ex.getMessage());
                 return;
             }
+            if (way == null) {
+                Log.e(DEBUG_TAG, "seedAddressList way not found for " + street);
+                return;
+            }
+            seed.setSide(way.getOsmId());
             if (addresses.size() >= MAX_SAVED_ADDRESSES) { // arbitrary limit for now
                 addresses.removeLast();
             }
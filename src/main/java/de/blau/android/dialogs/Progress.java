@@ -3,10 +3,13 @@ package de.blau.android.dialogs;
 import android.app.Dialog;
 import android.os.Bundle;
 import android.util.Log;
+import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentActivity;
 import androidx.fragment.app.FragmentManager;
+import de.blau.android.R;
 import de.blau.android.util.ImmersiveDialogFragment;
 
 /**
@@ -101,6 +104,24 @@ public class Progress extends ImmersiveDialogFragment {
         de.blau.android.dialogs.Util.dismissDialog(activity, tag);
     }
 
+    /**
+     * Change the message of a displayed progress spinner
+     * 
+     * @param activity the calling FragmentActivity
+     * @param dialogType an int indicating which heading to show
+     * @param message the new message
+     */
+    public static void setMessage(@NonNull FragmentActivity activity, int dialogType, @NonNull String message) {
+        Fragment fragment = activity.getSupportFragmentManager().findFragmentByTag(getTag(dialogType));
+        if (fragment instanceof Progress) {
+            Dialog dialog = ((Progress) fragment).getDialog();
+            TextView view = dialog != null ? (TextView) dialog.findViewById(R.id.progressMessage) : null;
+            if (view != null) {
+                view.setText(message);
+            }
+        }
+    }
+
     /**
      * Dismiss all possible progress dialogs to stop them being recreated
      * 
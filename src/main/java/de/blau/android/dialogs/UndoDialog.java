@@ -31,10 +31,12 @@ import de.blau.android.App;
 import de.blau.android.Logic;
 import de.blau.android.Main;
 import de.blau.android.R;
+import de.blau.android.exception.StorageException;
 import de.blau.android.osm.UndoStorage;
 import de.blau.android.util.ACRAHelper;
 import de.blau.android.util.Density;
 import de.blau.android.util.ImmersiveDialogFragment;
+import de.blau.android.util.Snack;
 import de.blau.android.util.ThemeUtils;
 import de.blau.android.views.ExtendedViewPager;
 
@@ -168,22 +170,34 @@ public class UndoDialog extends ImmersiveDialogFragment {
                 builder.setNeutralButton(R.string.cancel, null);
                 builder.setNegativeButton(R.string.undo_redo_one, (dialog, which) -> {
                     int checkpointIndex = actions.length - item.index;
-                    if (item.isRedo) {
-                        logic.redo(checkpointIndex);
-                    } else {
-                        logic.undo(checkpointIndex);
+                    try {
+                        if (item.isRedo) {
+                            logic.redo(checkpointIndex);
+                        } else {
+                            logic.undo(checkpointIndex);
+                        }
+                    } catch (StorageException e) {
+                        Snack.toastTopError(activity, R.string.undo_failed);
                     }
                     dismissAndInvalidate(activity, logic, undoDialog);
                 });
                 builder.setPositiveButton(item.isRedo ? R.string.redo_all : R.string.undo_all, (dialog, which) -> {
-                    for (int i = 0; i < item.index; i++) {
-                        undoRedoLast(logic, item.isRedo);
+                    try {
+                        for (int i = 0; i < item.index; i++) {
+                            undoRedoLast(logic, item.isRedo);
+                        }
+                    } catch (StorageException e) {
+                        Snack.toastTopError(activity, R.string.undo_failed);
                     }
                     dismissAndInvalidate(activity, logic, undoDialog);
                 });
                 builder.create().show();
             } else { // just undo/redo top item without asking
-                undoRedoLast(logic, item.isRedo);
+                try {
+                    undoRedoLast(logic, item.isRedo);
+                } catch (StorageException e) {
+                    Snack.toastTopError(activity, R.string.undo_failed);
+                }
                 dismissAndInvalidate(activity, logic, undoDialog);
             }
         }
@@ -12,7 +12,13 @@ public class StorageException extends RuntimeException {
      * Out of memory
      */
     public static final int OOM = 0;
-    private final int       code;
+
+    /**
+     * Saved undo states could not be read back
+     */
+    public static final int UNDO_LOST = 1;
+
+    private final int code;
 
     /**
      * Construct a new exception
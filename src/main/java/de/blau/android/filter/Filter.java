@@ -2,11 +2,7 @@ package de.blau.android.filter;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 
 import android.content.Context;
 import android.view.ViewGroup;
@@ -35,9 +31,9 @@ public abstract class Filter implements Serializable {
     /**
      * cache for element filter actions
      */
-    transient Map<Node, Include>     cachedNodes     = new HashMap<>(100);
-    transient Map<Way, Include>      cachedWays      = new HashMap<>(100);
-    transient Map<Relation, Include> cachedRelations = new HashMap<>(100);
+    transient IncludeCache<Node>     cachedNodes     = new IncludeCache<>();
+    transient IncludeCache<Way>      cachedWays      = new IncludeCache<>();
+    transient IncludeCache<Relation> cachedRelations = new IncludeCache<>();
 
     private transient Logic logic = App.getLogic();
 
@@ -172,13 +168,7 @@ public abstract class Filter implements Serializable {
      */
     @NonNull
     public List<Node> getVisibleNodes() {
-        List<Node> result = new ArrayList<>();
-        for (Entry<Node, Include> e : cachedNodes.entrySet()) {
-            if (e.getValue() != Include.DONT) {
-                result.add(e.getKey());
-            }
-        }
-        return result;
+        return cachedNodes.getIncluded();
     }
 
     /**
@@ -188,13 +178,7 @@ public abstract class Filter implements Serializable {
      */
     @NonNull
     public List<Way> getVisibleWays() {
-        List<Way> result = new ArrayList<>();
-        for (Entry<Way, Include> e : cachedWays.entrySet()) {
-            if (e.getValue() != Include.DONT) {
-                result.add(e.getKey());
-            }
-        }
-        return result;
+        return cachedWays.getIncluded();
     }
 
     /**
@@ -225,8 +209,8 @@ public abstract class Filter implements Serializable {
     private void readObject(@NonNull java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
         // Normal deserialization will not initialize transient objects, need to do it here
-        cachedNodes = new HashMap<>(100);
-        cachedWays = new HashMap<>(100);
-        cachedRelations = new HashMap<>(100);
+        cachedNodes = new IncludeCache<>();
+        cachedWays = new IncludeCache<>();
+        cachedRelations = new IncludeCache<>();
     }
 }
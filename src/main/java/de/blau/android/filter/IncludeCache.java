@@ -0,0 +1,203 @@
+package de.blau.android.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.blau.android.filter.Filter.Include;
+import de.blau.android.osm.OsmElement;
+
+/**
+ * Cache of filter results for one element type
+ *
+ * Results are stored in an open addressing hash table keyed by the OSM id with the Include value encoded as a byte,
+ * this avoids allocating a map entry per element and clearing the cache simply resets the arrays so that refilling it
+ * after a change doesn't allocate either once the table has grown to size. The element itself is retained so that a
+ * stale result for a different object with the same id is never returned and so that the included elements can be
+ * listed.
+ *
+ * Not thread safe, as the HashMaps this replaces.
+ *
+ * @author simon
+ *
+ * @param <T> the OsmElement type
+ */
+final class IncludeCache<T extends OsmElement> {
+
+    private static final byte FREE    = 0;
+    private static final byte PENDING = 1; // entry exists but no result yet, used for loop detection
+    private static final byte OFFSET  = 2; // Include ordinal + OFFSET
+
+    private static final Include[] INCLUDE_VALUES = Include.values();
+
+    private static final float FILL_FACTOR      = 0.75f;
+    private static final int   DEFAULT_CAPACITY = 128;
+
+    private long[]       keys;
+    private byte[]       states;
+    private OsmElement[] elements;
+    private int          mask;
+    private int          threshold;
+    private int          size;
+
+    /**
+     * Construct a new cache with the default capacity
+     */
+    IncludeCache() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Allocate the backing arrays
+     *
+     * @param capacity the capacity, must be a power of 2
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        states = new byte[capacity];
+        elements = new OsmElement[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * FILL_FACTOR);
+    }
+
+    /**
+     * Get the cached result for an element
+     *
+     * @param element the OsmElement
+     * @return the Include value or null if there is no result
+     */
+    @Nullable
+    Include get(@NonNull T element) {
+        int pos = find(element);
+        if (pos < 0 || states[pos] == PENDING) {
+            return null;
+        }
+        return INCLUDE_VALUES[states[pos] - OFFSET];
+    }
+
+    /**
+     * Check if there is an entry for an element, this will be true if put was called with a null value
+     *
+     * @param element the OsmElement
+     * @return true if there is an entry
+     */
+    boolean containsKey(@NonNull T element) {
+        return find(element) >= 0;
+    }
+
+    /**
+     * Set the result for an element
+     *
+     * @param element the OsmElement
+     * @param include the Include value, null will create a pending entry
+     */
+    void put(@NonNull T element, @Nullable Include include) {
+        byte state = include == null ? PENDING : (byte) (include.ordinal() + OFFSET);
+        long id = element.getOsmId();
+        int pos = hash(id) & mask;
+        while (states[pos] != FREE) {
+            if (keys[pos] == id) {
+                elements[pos] = element; // replaces a stale entry too
+                states[pos] = state;
+                return;
+            }
+            pos = (pos + 1) & mask;
+        }
+        keys[pos] = id;
+        states[pos] = state;
+        elements[pos] = element;
+        size++;
+        if (size >= threshold) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    /**
+     * Find the slot for an element
+     *
+     * @param element the OsmElement
+     * @return the slot or -1 if not found
+     */
+    private int find(@NonNull T element) {
+        long id = element.getOsmId();
+        int pos = hash(id) & mask;
+        while (states[pos] != FREE) {
+            if (keys[pos] == id) {
+                return elements[pos] == element ? pos : -1;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Grow the table
+     *
+     * @param newCapacity the new capacity, must be a power of 2
+     */
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        byte[] oldStates = states;
+        OsmElement[] oldElements = elements;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldStates[i] != FREE) {
+                int pos = hash(oldKeys[i]) & mask;
+                while (states[pos] != FREE) {
+                    pos = (pos + 1) & mask;
+                }
+                keys[pos] = oldKeys[i];
+                states[pos] = oldStates[i];
+                elements[pos] = oldElements[i];
+            }
+        }
+    }
+
+    /**
+     * Spread the bits of an id
+     *
+     * @param id the id
+     * @return a hash value
+     */
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Remove all entries, retaining the current capacity
+     */
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(states, FREE);
+            Arrays.fill(elements, null);
+            size = 0;
+        }
+    }
+
+    /**
+     * @return the number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get all elements with a result that is not DONT
+     *
+     * @return a List of the elements
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    List<T> getIncluded() {
+        List<T> result = new ArrayList<>(size);
+        for (int i = 0; i < states.length; i++) {
+            if (states[i] > OFFSET) { // neither FREE, PENDING nor DONT
+                result.add((T) elements[i]);
+            }
+        }
+        return result;
+    }
+}
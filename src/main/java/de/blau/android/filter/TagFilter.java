@@ -5,7 +5,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.SortedMap;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -68,6 +67,18 @@ public class TagFilter extends CommonFilter {
          * Regular expression for values of tags
          */
         Pattern value;
+        /**
+         * Key as a plain string if the regular expression doesn't contain any meta characters
+         */
+        transient String literalKey;
+        /**
+         * Value as a plain string if the regular expression doesn't contain any meta characters
+         */
+        transient String literalValue;
+        /**
+         * true if literalKey and literalValue have been determined
+         */
+        transient boolean compiled = false;
 
         /**
          * Construct a new FilterEntry
@@ -89,30 +100,73 @@ public class TagFilter extends CommonFilter {
         }
 
         /**
-         * Test it filter entry matches
+         * Test if the entry applies to an OSM object type
          * 
          * @param type OSM object type
+         * @return true if a match
+         */
+        boolean matchType(@NonNull String type) {
+            return allElements || this.type.equals(type);
+        }
+
+        /**
+         * Determine if the key and value expressions are simple strings so that we can avoid using the regexp engine
+         */
+        void compile() {
+            literalKey = key != null && isLiteral(key.pattern()) ? key.pattern() : null;
+            literalValue = value != null && isLiteral(value.pattern()) ? value.pattern() : null;
+            compiled = true;
+        }
+
+        /**
+         * Test if a tag matches this entry, the type is assumed to have already been checked
+         * 
          * @param key key of tag
          * @param value value of tag
          * @return true if a match
          */
-        boolean match(@NonNull String type, @Nullable String key, @Nullable String value) {
-            if (allElements || this.type.equals(type)) {
-                Matcher keyMatcher = null;
-                if (this.key != null) {
-                    if (key == null) {
-                        return false;
-                    }
-                    keyMatcher = this.key.matcher(key);
+        boolean matchTag(@Nullable String key, @Nullable String value) {
+            if (!compiled) {
+                compile();
+            }
+            if (this.key != null) {
+                if (key == null) {
+                    return false;
                 }
-                Matcher valueMatcher = null;
-                if (this.value != null) {
-                    if (value == null) {
-                        return false;
-                    }
-                    valueMatcher = this.value.matcher(value);
+                if (literalKey != null ? !literalKey.equals(key) : !this.key.matcher(key).matches()) {
+                    return false;
+                }
+            }
+            if (this.value != null) {
+                if (value == null) {
+                    return false;
+                }
+                return literalValue != null ? literalValue.equals(value) : this.value.matcher(value).matches();
+            }
+            return true;
+        }
+
+        /**
+         * Test if the entry matches an element with the tags provided
+         * 
+         * @param tags the tags of the element
+         * @return true if a match
+         */
+        boolean matchTags(@Nullable SortedMap<String, String> tags) {
+            if (tags == null || tags.isEmpty()) {
+                return matchTag(null, null);
+            }
+            if (!compiled) {
+                compile();
+            }
+            if (literalKey != null) { // direct lookup instead of testing every tag
+                String tagValue = tags.get(literalKey);
+                return tagValue != null && matchTag(literalKey, tagValue);
+            }
+            for (Entry<String, String> t : tags.entrySet()) {
+                if (matchTag(t.getKey(), t.getValue())) {
+                    return true;
                 }
-                return (keyMatcher == null || keyMatcher.matches()) && (valueMatcher == null || valueMatcher.matches());
             }
             return false;
         }
@@ -125,6 +179,23 @@ public class TagFilter extends CommonFilter {
 
     private List<FilterEntry> filter = new ArrayList<>();
 
+    private static final String REGEXP_META_CHARACTERS = "\\[](){}.*+?^$|";
+
+    /**
+     * Check if a regular expression will only match the string itself
+     * 
+     * @param regexp the regular expression
+     * @return true if the expression doesn't contain any meta characters
+     */
+    private static boolean isLiteral(@NonNull String regexp) {
+        for (int i = 0; i < regexp.length(); i++) {
+            if (REGEXP_META_CHARACTERS.indexOf(regexp.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * 
      */
@@ -172,20 +243,10 @@ public class TagFilter extends CommonFilter {
     protected Include filter(OsmElement e) {
         Include include = Include.DONT;
         String type = e.getName();
+        SortedMap<String, String> tags = e.getTags();
         for (FilterEntry f : filter) {
-            if (f.active) {
-                Include match = Include.DONT;
-                SortedMap<String, String> tags = e.getTags();
-                if (tags != null && tags.size() > 0) {
-                    for (Entry<String, String> t : tags.entrySet()) {
-                        if (f.match(type, t.getKey(), t.getValue())) {
-                            match = f.withWayNodes ? Include.INCLUDE_WITH_WAYNODES : Include.INCLUDE;
-                            break;
-                        }
-                    }
-                } else {
-                    match = f.match(type, null, null) ? (f.withWayNodes ? Include.INCLUDE_WITH_WAYNODES : Include.INCLUDE) : Include.DONT;
-                }
+            if (f.active && f.matchType(type)) {
+                Include match = f.matchTags(tags) ? (f.withWayNodes ? Include.INCLUDE_WITH_WAYNODES : Include.INCLUDE) : Include.DONT;
                 if (match != Include.DONT) {
                     // we have a match
                     include = f.include ? match : Include.DONT; // FIXME should relation membership be able to override
@@ -69,7 +69,7 @@ public final class LoadTrack {
                         if (handler != null) {
                             handler.onSuccess();
                         }
-                        int trackPointCount = track.getTrackPoints().size();
+                        int trackPointCount = track.size();
                         int wayPointCount = track.getWayPoints().length;
                         String message = activity.getResources().getQuantityString(R.plurals.toast_imported_track_points, wayPointCount, trackPointCount,
                                 wayPointCount);
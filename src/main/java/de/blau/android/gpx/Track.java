@@ -53,7 +53,7 @@ public class Track extends DefaultHandler implements GpxTimeFormater {
     private static final String TRK_ELEMENT    = "trk";
     private static final String GPX_ELEMENT    = "gpx";
 
-    private final List<TrackPoint> currentTrack;
+    private final TrackPointStore currentTrack;
 
     private final ArrayList<WayPoint> currentWayPoints;
 
@@ -118,7 +118,7 @@ public class Track extends DefaultHandler implements GpxTimeFormater {
         ISO8601FORMAT = new SimpleDateFormat(DATE_PATTERN_ISO8601_UTC, Locale.US);
         ISO8601FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
 
-        currentTrack = new ArrayList<>();
+        currentTrack = new TrackPointStore();
         currentWayPoints = new ArrayList<>();
         ctx = context;
         synchronized (openLock) {
@@ -150,6 +150,15 @@ public class Track extends DefaultHandler implements GpxTimeFormater {
         return (currentTrack == null || currentTrack.isEmpty()) && (currentWayPoints == null || currentWayPoints.isEmpty());
     }
 
+    /**
+     * Get the number of stored TrackPoints without copying them
+     * 
+     * @return the number of TrackPoints
+     */
+    public int size() {
+        return currentTrack.size();
+    }
+
     /**
      * Create and add a TrackPoint from an Android Location
      * 
@@ -157,7 +166,8 @@ public class Track extends DefaultHandler implements GpxTimeFormater {
      */
     public void addTrackPoint(final Location location) {
         if (location != null) {
-            currentTrack.add(new TrackPoint(location, nextIsNewSegment));
+            TrackPoint point = new TrackPoint(location, nextIsNewSegment);
+            currentTrack.add(point.flags, point.latitude, point.longitude, point.altitude, point.time);
             nextIsNewSegment = false;
         }
     }
@@ -220,15 +230,17 @@ public class Track extends DefaultHandler implements GpxTimeFormater {
 
         // There are records to be saved
         ensureFileOpen();
-        while (savedTrackPoints < currentTrack.size()) {
-            try {
-                currentTrack.get(savedTrackPoints).toStream(saveFileStream);
-            } catch (IOException e) {
-                markSavingBroken("Failed to save track point", e);
-                return;
-            }
-            savedTrackPoints++;
+        if (saveFileStream == null) {
+            return;
         }
+        int size = currentTrack.size();
+        try {
+            currentTrack.write(saveFileStream, savedTrackPoints, size);
+        } catch (IOException e) {
+            markSavingBroken("Failed to save track point", e);
+            return;
+        }
+        savedTrackPoints = size;
     }
 
     /**
@@ -303,7 +315,7 @@ public class Track extends DefaultHandler implements GpxTimeFormater {
      */
     private void asyncLoad() {
         new AsyncTask<Void, Void, Void>() {
-            private ArrayList<TrackPoint> loaded = new ArrayList<>();
+            private TrackPointStore loaded = new TrackPointStore();
 
             @Override
             protected Void doInBackground(Void... params) {
@@ -347,7 +359,7 @@ public class Track extends DefaultHandler implements GpxTimeFormater {
 
             @Override
             protected void onPostExecute(Void result) {
-                currentTrack.addAll(0, loaded);
+                currentTrack.prepend(loaded); // points recorded while loading go after the loaded ones
                 loadingFinished = true;
                 // See end of doInBackground for possible states
                 Log.i(DEBUG_TAG, "Track loading finished, loaded entries: " + loaded.size());
@@ -357,7 +369,7 @@ public class Track extends DefaultHandler implements GpxTimeFormater {
             }
 
             /**
-             * Loads a track from the file to the "loaded" ArrayList.
+             * Loads a track from the file to the "loaded" TrackPointStore.
              * 
              * @return true if the file was loaded without problems, false if some problem occurred and the file needs
              *         to be rewritten
@@ -374,15 +386,12 @@ public class Track extends DefaultHandler implements GpxTimeFormater {
                     // you deserve the problem you are going to get when the integer overflows in the next line.
                     int records = (int) ((size - 4) / TrackPoint.RECORD_SIZE);
 
-                    loaded.ensureCapacity(records);
                     if (in.readInt() != TrackPoint.FORMAT_VERSION) {
                         Log.e(DEBUG_TAG, "cannot load track, incompatible data format");
                         return false;
                     }
 
-                    for (int i = 0; i < records; i++) {
-                        loaded.add(TrackPoint.fromStream(in));
-                    }
+                    loaded.read(in, records);
 
                     if ((size - 4) % TrackPoint.RECORD_SIZE != 0) {
                         Log.e(DEBUG_TAG, "track file contains partial record");
@@ -405,16 +414,14 @@ public class Track extends DefaultHandler implements GpxTimeFormater {
             /**
              * Saves the given data to disk, overwriting anything already saved
              */
-            private void rewriteSaveFile(Iterable<TrackPoint> data) {
+            private void rewriteSaveFile(@NonNull TrackPointStore data) {
                 FileOutputStream fileOutput = null;
                 DataOutputStream out = null;
                 try {
                     fileOutput = ctx.openFileOutput(SAVEFILE, Context.MODE_PRIVATE);
                     out = new DataOutputStream(new BufferedOutputStream(fileOutput));
                     out.writeInt(TrackPoint.FORMAT_VERSION);
-                    for (TrackPoint point : data) {
-                        point.toStream(out);
-                    }
+                    data.write(out, 0, data.size());
                 } catch (Exception e) {
                     markSavingBroken("Failed to rewrite broken save file", e);
                 } finally {
@@ -481,7 +488,7 @@ public class Track extends DefaultHandler implements GpxTimeFormater {
         serializer.startTag(null, TRK_ELEMENT);
         serializer.startTag(null, TRKSEG_ELEMENT);
         boolean hasPoints = false;
-        for (TrackPoint pt : getTrackPoints()) {
+        for (TrackPoint pt : currentTrack) {
             if (hasPoints && pt.isNewSegment()) {
                 // start new segment
                 serializer.endTag(null, TRKSEG_ELEMENT);
@@ -652,7 +659,7 @@ public class Track extends DefaultHandler implements GpxTimeFormater {
         case TRKSEG_ELEMENT:
             break;
         case TrackPoint.TRKPT_ELEMENT:
-            currentTrack.add(new TrackPoint(newSegment ? TrackPoint.FLAG_NEWSEGMENT : 0, parsedLat, parsedLon, parsedEle, parsedTime));
+            currentTrack.add(newSegment ? TrackPoint.FLAG_NEWSEGMENT : 0, parsedLat, parsedLon, parsedEle, parsedTime);
             newSegment = false;
             parsedEle = Double.NaN;
             parsedTime = 0L;
@@ -684,9 +691,12 @@ public class Track extends DefaultHandler implements GpxTimeFormater {
     /**
      * Get the list of TrackPoints
      * 
+     * Note that the list is backed by the chunked storage and creates a new TrackPoint for each access
+     * 
      * @return a List of TrackPoint
      */
-    public List<TrackPoint> getTrack() {
+    @NonNull
+    public TrackPointStore getTrack() {
         return currentTrack;
     }
 }
@@ -0,0 +1,267 @@
+package de.blau.android.gpx;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Chunked columnar storage for track points
+ *
+ * Points are stored in fixed size chunks of primitive arrays instead of one object per point, each chunk maintains a
+ * bounding box so that rendering can skip chunks that are not on screen. The box includes the last point of the
+ * previous chunk so that the segment connecting two chunks is covered too.
+ *
+ * For compatibility this implements a read only List of TrackPoint, however note that get creates a new TrackPoint
+ * object for every call. Coordinates are stored as 1E7 scaled ints, elevation as float.
+ *
+ * @author simon
+ *
+ */
+public class TrackPointStore extends AbstractList<TrackPoint> {
+
+    public static final int CHUNK_SIZE = 1024;
+
+    /**
+     * A chunk of track points
+     */
+    public static final class Chunk {
+        private final byte[]  flags  = new byte[CHUNK_SIZE];
+        private final int[]   lats   = new int[CHUNK_SIZE];
+        private final int[]   lons   = new int[CHUNK_SIZE];
+        private final float[] eles   = new float[CHUNK_SIZE];
+        private final long[]  times  = new long[CHUNK_SIZE];
+        private volatile int  size   = 0;
+        private int           left   = Integer.MAX_VALUE;
+        private int           bottom = Integer.MAX_VALUE;
+        private int           right  = Integer.MIN_VALUE;
+        private int           top    = Integer.MIN_VALUE;
+
+        /**
+         * Extend the bounding box to include a point
+         *
+         * @param lonE7 longitude * 1E7
+         * @param latE7 latitude * 1E7
+         */
+        private void union(int lonE7, int latE7) {
+            left = Math.min(left, lonE7);
+            right = Math.max(right, lonE7);
+            bottom = Math.min(bottom, latE7);
+            top = Math.max(top, latE7);
+        }
+
+        /**
+         * @return the number of points in this chunk
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Get the latitude of a point
+         *
+         * @param i index in the chunk
+         * @return latitude * 1E7
+         */
+        public int getLat(int i) {
+            return lats[i];
+        }
+
+        /**
+         * Get the longitude of a point
+         *
+         * @param i index in the chunk
+         * @return longitude * 1E7
+         */
+        public int getLon(int i) {
+            return lons[i];
+        }
+
+        /**
+         * Check if a point starts a new segment
+         *
+         * @param i index in the chunk
+         * @return true if a new segment starts at the point
+         */
+        public boolean isNewSegment(int i) {
+            return (flags[i] & TrackPoint.FLAG_NEWSEGMENT) != 0;
+        }
+
+        /**
+         * @return the left border of the bounding box of this chunk (lon * 1E7)
+         */
+        public int getLeft() {
+            return left;
+        }
+
+        /**
+         * @return the bottom border of the bounding box of this chunk (lat * 1E7)
+         */
+        public int getBottom() {
+            return bottom;
+        }
+
+        /**
+         * @return the right border of the bounding box of this chunk (lon * 1E7)
+         */
+        public int getRight() {
+            return right;
+        }
+
+        /**
+         * @return the top border of the bounding box of this chunk (lat * 1E7)
+         */
+        public int getTop() {
+            return top;
+        }
+    }
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    private int               size   = 0;
+
+    /**
+     * Add a point
+     *
+     * @param flags flags (new segment)
+     * @param latitude the latitude (WGS84)
+     * @param longitude the longitude (WSG84)
+     * @param altitude altitude in meters or NaN
+     * @param time time (ms since the epoch)
+     */
+    public synchronized void add(byte flags, double latitude, double longitude, double altitude, long time) {
+        int pos = size % CHUNK_SIZE;
+        Chunk chunk;
+        if (pos == 0) {
+            Chunk previous = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            chunk = new Chunk();
+            if (previous != null) {
+                chunk.union(previous.lons[CHUNK_SIZE - 1], previous.lats[CHUNK_SIZE - 1]);
+            }
+            chunks.add(chunk);
+        } else {
+            chunk = chunks.get(chunks.size() - 1);
+        }
+        int latE7 = (int) Math.round(latitude * 1E7);
+        int lonE7 = (int) Math.round(longitude * 1E7);
+        chunk.flags[pos] = flags;
+        chunk.lats[pos] = latE7;
+        chunk.lons[pos] = lonE7;
+        chunk.eles[pos] = (float) altitude;
+        chunk.times[pos] = time;
+        chunk.union(lonE7, latE7);
+        chunk.size = pos + 1;
+        size++;
+    }
+
+    @Override
+    public boolean add(TrackPoint point) {
+        add(point.flags, point.latitude, point.longitude, point.altitude, point.time);
+        return true;
+    }
+
+    @Override
+    public synchronized TrackPoint get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " size " + size);
+        }
+        Chunk chunk = chunks.get(index / CHUNK_SIZE);
+        int pos = index % CHUNK_SIZE;
+        return new TrackPoint(chunk.flags[pos], chunk.lats[pos] / 1E7d, chunk.lons[pos] / 1E7d, chunk.eles[pos], chunk.times[pos]);
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void clear() {
+        chunks.clear();
+        size = 0;
+    }
+
+    /**
+     * Insert the points of another store before the points of this one
+     *
+     * The chunks of the other store are taken over and only the points of this store are copied, the other store must
+     * not be used afterwards
+     *
+     * @param other the TrackPointStore with the points to insert
+     */
+    public synchronized void prepend(@NonNull TrackPointStore other) {
+        synchronized (other) {
+            for (Chunk chunk : chunks) {
+                for (int pos = 0; pos < chunk.size; pos++) {
+                    other.add(chunk.flags[pos], chunk.lats[pos] / 1E7d, chunk.lons[pos] / 1E7d, chunk.eles[pos], chunk.times[pos]);
+                }
+            }
+            chunks.clear();
+            chunks.addAll(other.chunks);
+            size = other.size;
+        }
+    }
+
+    /**
+     * @return the number of chunks
+     */
+    public synchronized int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Get a chunk
+     *
+     * Chunks are only ever appended to and the size of a chunk is only updated after the point and the bounding box
+     * have been written, so reading a chunk outside of a lock is safe as long as only the points up to the size read
+     * beforehand are accessed
+     *
+     * @param index the index of the chunk
+     * @return the Chunk
+     */
+    @NonNull
+    public synchronized Chunk getChunk(int index) {
+        return chunks.get(index);
+    }
+
+    /**
+     * Write points to a stream in the format of {@link TrackPoint#toStream(DataOutputStream)}
+     *
+     * The stream is flushed after each chunk, so that the file is appended to chunk by chunk
+     *
+     * @param stream target stream
+     * @param from index of the first point to write
+     * @param to index after the last point to write
+     * @throws IOException if writing to the stream fails
+     */
+    public void write(@NonNull DataOutputStream stream, int from, int to) throws IOException {
+        for (int i = from; i < to;) {
+            Chunk chunk = getChunk(i / CHUNK_SIZE);
+            int end = Math.min(to - (i - i % CHUNK_SIZE), CHUNK_SIZE);
+            for (int pos = i % CHUNK_SIZE; pos < end; pos++, i++) {
+                stream.writeByte(chunk.flags[pos]);
+                stream.writeDouble(chunk.lats[pos] / 1E7d);
+                stream.writeDouble(chunk.lons[pos] / 1E7d);
+                stream.writeDouble(chunk.eles[pos]);
+                stream.writeLong(chunk.times[pos]);
+            }
+            stream.flush();
+        }
+    }
+
+    /**
+     * Read points from a stream in the format of {@link TrackPoint#fromStream(DataInputStream)} and append them
+     *
+     * @param stream the stream to read from
+     * @param count the number of points to read
+     * @throws IOException if reading fails
+     */
+    public void read(@NonNull DataInputStream stream, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            add(stream.readByte(), stream.readDouble(), stream.readDouble(), stream.readDouble(), stream.readLong());
+        }
+    }
+}
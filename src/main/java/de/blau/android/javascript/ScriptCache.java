@@ -0,0 +1,219 @@
+package de.blau.android.javascript;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Bounded LRU cache of compiled scripts and helpers for cheap per evaluation scopes
+ *
+ * Compiled Scripts don't hold any state and can be executed in any Context and scope, so repeated evaluation of the
+ * same source only needs to parse and compile it once. Scripts are keyed by the hash of their source and name, the
+ * name is part of the key as it is used in error messages.
+ *
+ * Evaluation scopes are plain objects without a parent that have a shared, sealed, scope as prototype, creating them
+ * doesn't involve any lookups in the prototype scope.
+ *
+ * @author simon
+ *
+ */
+public final class ScriptCache {
+
+    static final int DEFAULT_SIZE = 64;
+
+    /**
+     * Key for a script
+     */
+    private static final class Key {
+        private final String name;
+        private final String source;
+        private final int    hash;
+
+        /**
+         * Construct a new key
+         *
+         * @param name the name of the script
+         * @param source the source of the script
+         */
+        Key(@NonNull String name, @NonNull String source) {
+            this.name = name;
+            this.source = source;
+            hash = 31 * source.hashCode() + name.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && source.equals(other.source) && name.equals(other.name);
+        }
+    }
+
+    private final Map<Key, Script> cache;
+
+    private int hits   = 0;
+    private int misses = 0;
+
+    /**
+     * Construct a new cache
+     *
+     * @param maxSize the maximum number of compiled scripts to retain
+     */
+    public ScriptCache(final int maxSize) {
+        cache = new LinkedHashMap<Key, Script>(maxSize, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Script> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the compiled version of a script, compiling it if necessary
+     *
+     * @param rhinoContext the current Rhino Context
+     * @param name the name of the script for error reporting
+     * @param source the source of the script
+     * @return the compiled Script
+     */
+    @NonNull
+    public Script get(@NonNull Context rhinoContext, @NonNull String name, @NonNull String source) {
+        Key key = new Key(name, source);
+        synchronized (cache) {
+            Script script = cache.get(key);
+            if (script != null) {
+                hits++;
+                return script;
+            }
+            misses++;
+        }
+        // compile outside of the lock, a script that fails to compile is not cached
+        Script script = rhinoContext.compileString(source, name, 1, null);
+        synchronized (cache) {
+            cache.put(key, script);
+        }
+        return script;
+    }
+
+    /**
+     * Compile, if necessary, and execute a script
+     *
+     * @param rhinoContext the current Rhino Context
+     * @param scope the scope to execute the script in
+     * @param name the name of the script for error reporting
+     * @param source the source of the script
+     * @return whatever the script returned
+     */
+    @Nullable
+    public Object exec(@NonNull Context rhinoContext, @NonNull Scriptable scope, @NonNull String name, @NonNull String source) {
+        return get(rhinoContext, name, source).exec(rhinoContext, scope);
+    }
+
+    /**
+     * Remove all compiled scripts
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Get the number of cached scripts
+     *
+     * @return the number of compiled scripts in the cache
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Get the number of lookups that found a compiled script
+     *
+     * @return the hit count
+     */
+    public int getHits() {
+        synchronized (cache) {
+            return hits;
+        }
+    }
+
+    /**
+     * Get the number of lookups that required compilation
+     *
+     * @return the miss count
+     */
+    public int getMisses() {
+        synchronized (cache) {
+            return misses;
+        }
+    }
+
+    /**
+     * Create a new evaluation scope
+     *
+     * Global variables defined by a script end up in the new scope, the prototype is not modified.
+     *
+     * @param prototype the shared, typically sealed, scope
+     * @return a new scope
+     */
+    @NonNull
+    public static Scriptable newScope(@NonNull Scriptable prototype) {
+        Scriptable scope = new NativeObject();
+        scope.setPrototype(prototype);
+        scope.setParentScope(null);
+        return scope;
+    }
+
+    /**
+     * Create a new sealed scope that adds constant bindings to a prototype
+     *
+     * @param prototype the shared scope
+     * @param bindings the names and values to bind
+     * @return a sealed scope that can be used as prototype for evaluation scopes
+     */
+    @NonNull
+    public static Scriptable newSealedScope(@NonNull Scriptable prototype, @NonNull Map<String, Object> bindings) {
+        NativeObject scope = new NativeObject();
+        scope.setPrototype(prototype);
+        scope.setParentScope(null);
+        for (Map.Entry<String, Object> binding : bindings.entrySet()) {
+            bind(scope, binding.getKey(), binding.getValue());
+        }
+        scope.sealObject();
+        return scope;
+    }
+
+    /**
+     * Bind a Java object to a name in a scope
+     *
+     * @param scope the scope
+     * @param name the name the value will be available as
+     * @param value the value
+     */
+    public static void bind(@NonNull Scriptable scope, @NonNull String name, @Nullable Object value) {
+        // define directly in the scope, even if the name exists further up the prototype chain
+        scope.put(name, scope, Context.javaToJS(value, scope));
+    }
+}
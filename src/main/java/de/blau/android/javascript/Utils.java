@@ -4,11 +4,11 @@ import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.mozilla.javascript.Scriptable;
-import org.mozilla.javascript.ScriptableObject;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
@@ -63,6 +63,13 @@ public final class Utils {
 
     private static final String DEBUG_TAG = "javascript.Utils";
 
+    private static final String VERSION_CODE = "versionCode";
+
+    private static final ScriptCache scriptCache = new ScriptCache(ScriptCache.DEFAULT_SIZE);
+
+    private static Scriptable    versionScope     = null;
+    private static final Object  versionScopeLock = new Object();
+
     /**
      * Empty private constructor
      */
@@ -83,11 +90,8 @@ public final class Utils {
         Log.d(DEBUG_TAG, "Eval " + script);
         org.mozilla.javascript.Context rhinoContext = App.getRhinoHelper(ctx).enterContext();
         try {
-            Scriptable restrictedScope = App.getRestrictedRhinoScope(ctx);
-            Scriptable scope = rhinoContext.newObject(restrictedScope);
-            scope.setPrototype(restrictedScope);
-            scope.setParentScope(null);
-            Object result = rhinoContext.evaluateString(scope, script, scriptName, 1, null);
+            Scriptable scope = ScriptCache.newScope(App.getRestrictedRhinoScope(ctx));
+            Object result = scriptCache.exec(rhinoContext, scope, scriptName, script);
             return org.mozilla.javascript.Context.toString(result);
         } finally {
             org.mozilla.javascript.Context.exit();
@@ -112,24 +116,14 @@ public final class Utils {
             @NonNull Map<String, List<String>> tags, @NonNull String value, @NonNull Map<String, PresetItem> key2PresetItem, @NonNull Preset[] presets) {
         org.mozilla.javascript.Context rhinoContext = App.getRhinoHelper(ctx).enterContext();
         try {
-            Scriptable restrictedScope = App.getRestrictedRhinoScope(ctx);
-            Scriptable scope = rhinoContext.newObject(restrictedScope);
-            scope.setPrototype(restrictedScope);
-            scope.setParentScope(null);
-            Object wrappedOut = org.mozilla.javascript.Context.javaToJS(BuildConfig.VERSION_CODE, scope);
-            ScriptableObject.putProperty(scope, "versionCode", wrappedOut);
-            wrappedOut = org.mozilla.javascript.Context.javaToJS(originalTags, scope);
-            ScriptableObject.putProperty(scope, "originalTags", wrappedOut);
-            wrappedOut = org.mozilla.javascript.Context.javaToJS(tags, scope);
-            ScriptableObject.putProperty(scope, "tags", wrappedOut);
-            wrappedOut = org.mozilla.javascript.Context.javaToJS(value, scope);
-            ScriptableObject.putProperty(scope, "value", wrappedOut);
-            wrappedOut = org.mozilla.javascript.Context.javaToJS(key2PresetItem, scope);
-            ScriptableObject.putProperty(scope, "key2PresetItem", wrappedOut);
-            wrappedOut = org.mozilla.javascript.Context.javaToJS(presets, scope);
-            ScriptableObject.putProperty(scope, "presets", wrappedOut);
+            Scriptable scope = ScriptCache.newScope(getVersionScope(ctx));
+            ScriptCache.bind(scope, "originalTags", originalTags);
+            ScriptCache.bind(scope, "tags", tags);
+            ScriptCache.bind(scope, "value", value);
+            ScriptCache.bind(scope, "key2PresetItem", key2PresetItem);
+            ScriptCache.bind(scope, "presets", presets);
             Log.d(DEBUG_TAG, "Eval (preset): " + script);
-            Object result = rhinoContext.evaluateString(scope, script, scriptName, 1, null);
+            Object result = scriptCache.exec(rhinoContext, scope, scriptName, script);
             if (result == null) {
                 return null;
             } else {
@@ -153,16 +147,10 @@ public final class Utils {
     public static String evalString(@NonNull Context ctx, @NonNull String scriptName, @NonNull String script, @NonNull Logic logic) {
         org.mozilla.javascript.Context rhinoContext = App.getRhinoHelper(ctx).enterContext();
         try {
-            Scriptable restrictedScope = App.getRestrictedRhinoScope(ctx);
-            Scriptable scope = rhinoContext.newObject(restrictedScope);
-            scope.setPrototype(restrictedScope);
-            scope.setParentScope(null);
-            Object wrappedOut = org.mozilla.javascript.Context.javaToJS(BuildConfig.VERSION_CODE, scope);
-            ScriptableObject.putProperty(scope, "versionCode", wrappedOut);
-            wrappedOut = org.mozilla.javascript.Context.javaToJS(logic, scope);
-            ScriptableObject.putProperty(scope, "logic", wrappedOut);
+            Scriptable scope = ScriptCache.newScope(getVersionScope(ctx));
+            ScriptCache.bind(scope, "logic", logic);
             Log.d(DEBUG_TAG, "Eval (logic): " + script);
-            Object result = rhinoContext.evaluateString(scope, script, scriptName, 1, null);
+            Object result = scriptCache.exec(rhinoContext, scope, scriptName, script);
             if (result == null) {
                 return null;
             } else {
@@ -173,6 +161,26 @@ public final class Utils {
         }
     }
 
+    /**
+     * Get a sealed scope with the app version code bound that uses the restricted scope as prototype
+     * 
+     * Needs to be called with a entered Rhino Context.
+     * 
+     * @param ctx android context
+     * @return the shared scope
+     */
+    @NonNull
+    private static Scriptable getVersionScope(@NonNull Context ctx) {
+        synchronized (versionScopeLock) {
+            if (versionScope == null) {
+                Map<String, Object> bindings = new HashMap<>();
+                bindings.put(VERSION_CODE, BuildConfig.VERSION_CODE);
+                versionScope = ScriptCache.newSealedScope(App.getRestrictedRhinoScope(ctx), bindings);
+            }
+            return versionScope;
+        }
+    }
+
     /**
      * Display a simple console with multi-line input and output from the eval method
      * 
@@ -0,0 +1,307 @@
+package de.blau.android.layer.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import de.blau.android.osm.BoundingBox;
+import de.blau.android.osm.Node;
+import de.blau.android.osm.Way;
+
+/**
+ * Uniform screen space grid of the Nodes and Way segments drawn in the last frame
+ *
+ * The grid is filled as a side effect of rendering and allows click/selection queries to only look at elements that are
+ * close to the touch point instead of projecting all elements on screen again. Entries are stored in per cell linked
+ * lists backed by primitive arrays so that rebuilding the grid every frame doesn't allocate once the arrays have grown
+ * to the necessary size.
+ *
+ * Note that the grid only stores candidates, callers need to do the exact distance calculation themselves.
+ *
+ * @author simon
+ *
+ */
+public class HitTestGrid {
+
+    private static final int NO_ENTRY = -1;
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final List<Way>  ways  = new ArrayList<>();
+
+    private int[] cellHeads = new int[0];
+    private int[] entries   = new int[1024]; // >= 0 node index, < 0 -(way index + 1)
+    private int[] next      = new int[1024];
+    private int   entryCount;
+
+    private int[] wayMarks  = new int[256];
+    private int   queryMark = 0;
+
+    private float cellSize;
+    private int   columns;
+    private int   rows;
+
+    private boolean valid = false;
+    private int     left;
+    private int     bottom;
+    private int     right;
+    private int     top;
+    private int     width;
+    private int     height;
+
+    /**
+     * Reset the grid for a new frame
+     *
+     * @param viewBox the BoundingBox that is being rendered
+     * @param width screen width in px
+     * @param height screen height in px
+     * @param cellSize the size of a grid cell in px
+     */
+    public void reset(@NonNull BoundingBox viewBox, int width, int height, float cellSize) {
+        left = viewBox.getLeft();
+        bottom = viewBox.getBottom();
+        right = viewBox.getRight();
+        top = viewBox.getTop();
+        this.width = width;
+        this.height = height;
+        this.cellSize = Math.max(1f, cellSize);
+        columns = Math.max(1, (int) Math.ceil(width / this.cellSize));
+        rows = Math.max(1, (int) Math.ceil(height / this.cellSize));
+        int cellCount = columns * rows;
+        if (cellHeads.length < cellCount) {
+            cellHeads = new int[cellCount];
+        }
+        Arrays.fill(cellHeads, 0, cellCount, NO_ENTRY);
+        entryCount = 0;
+        nodes.clear();
+        ways.clear();
+        valid = true;
+    }
+
+    /**
+     * Mark the grid as not usable, for example because the data has changed since it was built
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Check if the grid was built for the current screen
+     *
+     * @param viewBox the currently displayed BoundingBox
+     * @param width screen width in px
+     * @param height screen height in px
+     * @return true if the grid can be used for queries
+     */
+    public boolean isValid(@NonNull BoundingBox viewBox, int width, int height) {
+        return valid && left == viewBox.getLeft() && bottom == viewBox.getBottom() && right == viewBox.getRight() && top == viewBox.getTop()
+                && this.width == width && this.height == height;
+    }
+
+    /**
+     * Add a Node
+     *
+     * @param node the Node
+     * @param x screen x coordinate
+     * @param y screen y coordinate
+     */
+    public void addNode(@NonNull Node node, float x, float y) {
+        int index = nodes.size();
+        nodes.add(node);
+        addEntry(cell(column(x), row(y)), index);
+    }
+
+    /**
+     * Add the segments of a Way
+     *
+     * @param way the Way
+     * @param linePoints segments in the format produced by Map.pointListToLinePointsArray
+     * @param pointsSize number of coordinates in linePoints
+     */
+    public void addWay(@NonNull Way way, @NonNull float[] linePoints, int pointsSize) {
+        if (pointsSize < 4) {
+            return;
+        }
+        int entry = addWay(way);
+        for (int i = 0; i + 3 < pointsSize; i = i + 4) {
+            addWaySegment(entry, linePoints[i], linePoints[i + 1], linePoints[i + 2], linePoints[i + 3]);
+        }
+    }
+
+    /**
+     * Add a point for a Way, typically the position of an area icon
+     *
+     * @param way the Way
+     * @param x screen x coordinate
+     * @param y screen y coordinate
+     */
+    public void addWayPoint(@NonNull Way way, float x, float y) {
+        int entry = ways.isEmpty() || ways.get(ways.size() - 1) != way ? addWay(way) : -ways.size();
+        addEntry(cell(column(x), row(y)), entry);
+    }
+
+    /**
+     * Add a Way to the list of ways
+     *
+     * @param way the Way
+     * @return the encoded entry value for the way
+     */
+    private int addWay(@NonNull Way way) {
+        ways.add(way);
+        return -ways.size();
+    }
+
+    /**
+     * Add a segment to all cells covered by its bounding box
+     *
+     * @param entry encoded way entry
+     * @param x1 screen x coordinate of the first point
+     * @param y1 screen y coordinate of the first point
+     * @param x2 screen x coordinate of the second point
+     * @param y2 screen y coordinate of the second point
+     */
+    private void addWaySegment(int entry, float x1, float y1, float x2, float y2) {
+        int c1 = column(Math.min(x1, x2));
+        int c2 = column(Math.max(x1, x2));
+        int r1 = row(Math.min(y1, y2));
+        int r2 = row(Math.max(y1, y2));
+        for (int r = r1; r <= r2; r++) {
+            for (int c = c1; c <= c2; c++) {
+                int cell = cell(c, r);
+                int head = cellHeads[cell];
+                if (head == NO_ENTRY || entries[head] != entry) { // consecutive segments of a way often share cells
+                    addEntry(cell, entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add an entry to the front of a cells list
+     *
+     * @param cell the cell
+     * @param value the encoded value
+     */
+    private void addEntry(int cell, int value) {
+        if (entryCount == entries.length) {
+            entries = Arrays.copyOf(entries, entryCount * 2);
+            next = Arrays.copyOf(next, entryCount * 2);
+        }
+        entries[entryCount] = value;
+        next[entryCount] = cellHeads[cell];
+        cellHeads[cell] = entryCount;
+        entryCount++;
+    }
+
+    /**
+     * Get the Nodes in the cells within tolerance of a screen position
+     *
+     * @param x screen x coordinate
+     * @param y screen y coordinate
+     * @param tolerance tolerance in px
+     * @param result a List to add the Nodes to
+     * @return the result List
+     */
+    @NonNull
+    public List<Node> getNodes(float x, float y, float tolerance, @NonNull List<Node> result) {
+        int c2 = column(x + tolerance);
+        int r2 = row(y + tolerance);
+        for (int r = row(y - tolerance); r <= r2; r++) {
+            for (int c = column(x - tolerance); c <= c2; c++) {
+                for (int i = cellHeads[cell(c, r)]; i != NO_ENTRY; i = next[i]) {
+                    int value = entries[i];
+                    if (value >= 0) {
+                        result.add(nodes.get(value));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the Ways in the cells within tolerance of a screen position, each Way is only returned once
+     *
+     * @param x screen x coordinate
+     * @param y screen y coordinate
+     * @param tolerance tolerance in px
+     * @param result a List to add the Ways to
+     * @return the result List
+     */
+    @NonNull
+    public List<Way> getWays(float x, float y, float tolerance, @NonNull List<Way> result) {
+        if (wayMarks.length < ways.size()) {
+            wayMarks = new int[Math.max(ways.size(), wayMarks.length * 2)];
+            queryMark = 0;
+        }
+        queryMark++;
+        if (queryMark == 0) { // wrapped
+            Arrays.fill(wayMarks, 0);
+            queryMark = 1;
+        }
+        int c2 = column(x + tolerance);
+        int r2 = row(y + tolerance);
+        for (int r = row(y - tolerance); r <= r2; r++) {
+            for (int c = column(x - tolerance); c <= c2; c++) {
+                for (int i = cellHeads[cell(c, r)]; i != NO_ENTRY; i = next[i]) {
+                    int value = entries[i];
+                    if (value < 0) {
+                        int index = -value - 1;
+                        if (wayMarks[index] != queryMark) {
+                            wayMarks[index] = queryMark;
+                            result.add(ways.get(index));
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return all Nodes added in the last frame
+     */
+    @NonNull
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return all Ways added in the last frame
+     */
+    @NonNull
+    public List<Way> getWays() {
+        return ways;
+    }
+
+    /**
+     * Get the column for a screen x coordinate, coordinates outside of the screen are clamped to the border cells
+     *
+     * @param x screen x coordinate
+     * @return the column
+     */
+    private int column(float x) {
+        return Math.min(columns - 1, Math.max(0, (int) (x / cellSize)));
+    }
+
+    /**
+     * Get the row for a screen y coordinate, coordinates outside of the screen are clamped to the border cells
+     *
+     * @param y screen y coordinate
+     * @return the row
+     */
+    private int row(float y) {
+        return Math.min(rows - 1, Math.max(0, (int) (y / cellSize)));
+    }
+
+    /**
+     * Get the cell index
+     *
+     * @param column the column
+     * @param row the row
+     * @return the index of the cell
+     */
+    private int cell(int column, int row) {
+        return row * columns + column;
+    }
+}
@@ -0,0 +1,224 @@
+package de.blau.android.layer.data;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff.Mode;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.blau.android.util.Metrics;
+
+/**
+ * Memory bounded cache of map icons packed in to a small number of shared bitmaps
+ *
+ * Icons are keyed by their identity, typically the icon path, so that all elements that use the same icon share one
+ * instance independent of their tags. All icons have the same size and are stored in a fixed grid of cells on atlas
+ * pages that are allocated on demand. When the budget is exhausted the least recently used icon is evicted and its cell
+ * reused, evicted Icon instances are marked invalid so that holders of references know they have to retrieve the icon
+ * again.
+ *
+ * @author simon
+ *
+ */
+public class IconAtlas {
+
+    static final int PAGE_SIZE = 512; // minimum size of a page in pixels
+
+    private static final Metrics.Counter EVICTIONS = Metrics.counter("icons.atlas.evictions");
+
+    /**
+     * Placeholder for elements that don't have an icon
+     */
+    static final Icon NO_ICON = new Icon(null, null, null, -1);
+
+    /**
+     * Handle for an icon in the atlas
+     */
+    public static final class Icon {
+        final String     key;
+        final Bitmap     page;
+        final Rect       src;
+        final int        cell;
+        volatile boolean valid = true;
+
+        /**
+         * Construct a new handle
+         *
+         * @param key the key of the icon
+         * @param page the page holding the icon
+         * @param src the area of the page the icon is in
+         * @param cell the cell number
+         */
+        private Icon(@Nullable String key, @Nullable Bitmap page, @Nullable Rect src, int cell) {
+            this.key = key;
+            this.page = page;
+            this.src = src;
+            this.cell = cell;
+        }
+
+        /**
+         * Check if the icon is still in the atlas
+         *
+         * @return true if the icon can be drawn
+         */
+        public boolean isValid() {
+            return valid;
+        }
+    }
+
+    private final int iconSize;
+    private final int pageSize;
+    private final int cellsPerRow;
+    private final int cellsPerPage;
+    private final int maxCells;
+
+    private final List<Bitmap>                pages    = new ArrayList<>();
+    private int                               nextCell = 0;
+    private final LinkedHashMap<String, Icon> icons    = new LinkedHashMap<>(16, 0.75f, true);
+    private final RectF                       dst      = new RectF();
+
+    /**
+     * Construct a new atlas
+     *
+     * @param iconSize the width and height of the icons in pixels
+     * @param maxBytes the maximum memory the pages may use
+     */
+    public IconAtlas(int iconSize, int maxBytes) {
+        this.iconSize = Math.max(1, iconSize);
+        pageSize = Math.max(PAGE_SIZE, this.iconSize);
+        cellsPerRow = pageSize / this.iconSize;
+        cellsPerPage = cellsPerRow * cellsPerRow;
+        int maxPages = Math.max(1, maxBytes / (pageSize * pageSize * 4));
+        maxCells = maxPages * cellsPerPage;
+    }
+
+    /**
+     * Get the size of the icons
+     *
+     * @return the width and height in pixels
+     */
+    public int getIconSize() {
+        return iconSize;
+    }
+
+    /**
+     * Get an icon
+     *
+     * @param key the key of the icon
+     * @return the Icon or null if it isn't in the atlas
+     */
+    @Nullable
+    public synchronized Icon get(@NonNull String key) {
+        return icons.get(key);
+    }
+
+    /**
+     * Render an icon in to the atlas, evicting the least recently used icon if necessary
+     *
+     * @param key the key of the icon
+     * @param drawable a Drawable with bounds of at most the icon size
+     * @return the Icon
+     */
+    @NonNull
+    public synchronized Icon add(@NonNull String key, @NonNull Drawable drawable) {
+        Icon icon = icons.get(key);
+        if (icon != null) {
+            return icon;
+        }
+        int cell = allocate();
+        int pageIndex = cell / cellsPerPage;
+        if (pageIndex == pages.size()) {
+            pages.add(Bitmap.createBitmap(pageSize, pageSize, Config.ARGB_8888));
+        }
+        Bitmap page = pages.get(pageIndex);
+        int left = (cell % cellsPerPage % cellsPerRow) * iconSize;
+        int top = (cell % cellsPerPage / cellsPerRow) * iconSize;
+        Rect src = new Rect(left, top, left + iconSize, top + iconSize);
+        Canvas canvas = new Canvas(page);
+        canvas.clipRect(src);
+        canvas.drawColor(Color.TRANSPARENT, Mode.CLEAR);
+        canvas.translate(left, top);
+        drawable.draw(canvas);
+        icon = new Icon(key, page, src, cell);
+        icons.put(key, icon);
+        return icon;
+    }
+
+    /**
+     * Get a free cell, evicting the least recently used icon if there is none
+     *
+     * @return the cell number
+     */
+    private int allocate() {
+        if (nextCell < maxCells) {
+            return nextCell++;
+        }
+        Iterator<Entry<String, Icon>> it = icons.entrySet().iterator();
+        Icon eldest = it.next().getValue();
+        it.remove();
+        eldest.valid = false;
+        EVICTIONS.inc();
+        return eldest.cell;
+    }
+
+    /**
+     * Draw an icon and mark it as recently used
+     *
+     * Icons may be added from other threads, drawing holds the lock so that the cell can't be reused at the same time.
+     *
+     * @param canvas the Canvas to draw on
+     * @param icon the Icon
+     * @param left screen x of the left side of the icon
+     * @param top screen y of the top of the icon
+     * @return true if the icon was drawn, false if it has been evicted
+     */
+    public synchronized boolean draw(@NonNull Canvas canvas, @NonNull Icon icon, float left, float top) {
+        if (!icon.valid) {
+            return false;
+        }
+        icons.get(icon.key); // access order
+        dst.set(left, top, left + iconSize, top + iconSize);
+        canvas.drawBitmap(icon.page, icon.src, dst, null);
+        return true;
+    }
+
+    /**
+     * Get the number of icons in the atlas
+     *
+     * @return the number of icons
+     */
+    public synchronized int size() {
+        return icons.size();
+    }
+
+    /**
+     * Get the number of allocated pages
+     *
+     * @return the page count
+     */
+    public synchronized int getPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * Remove all icons and release the pages
+     */
+    public synchronized void clear() {
+        for (Icon icon : icons.values()) {
+            icon.valid = false;
+        }
+        icons.clear();
+        pages.clear();
+        nextCell = 0;
+    }
+}
@@ -0,0 +1,437 @@
+package de.blau.android.layer.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.blau.android.osm.OsmElement;
+import de.blau.android.resources.DataStyle.FeatureStyle;
+
+/**
+ * Screen space label placement with collision avoidance
+ *
+ * Labels are not drawn immediately, instead they are collected as candidates while rendering and placed once all
+ * icons are known, in order of priority. A label is only placed if its box doesn't overlap with an icon or an already
+ * placed label, the occupied boxes are stored in a uniform grid with per cell linked lists backed by primitive arrays
+ * in the same way as in {@link HitTestGrid}. Boxes can be owned by an element, the icon of an element doesn't block its
+ * own label.
+ *
+ * Placement is kept stable while panning by preferring candidates whose label was placed in the previous frame at the
+ * same zoom level, measured label widths are cached so that most labels are never measured again.
+ *
+ * @author simon
+ *
+ */
+public class LabelPlacer {
+
+    static final int RANK_SELECTED  = 4;
+    static final int RANK_IMPORTANT = 2;
+    static final int RANK_PREVIOUS  = 1;
+
+    private static final int NO_ENTRY        = -1;
+    private static final int MAX_CANDIDATES  = 0xFFFFFF;
+    private static final int MAX_WIDTHS      = 4096;
+    private static final int INITIAL_ENTRIES = 1024;
+
+    // occupancy grid
+    private int[]        cellHeads  = new int[0];
+    private int[]        entries    = new int[INITIAL_ENTRIES];
+    private int[]        next       = new int[INITIAL_ENTRIES];
+    private int          entryCount;
+    private float[]      boxes      = new float[INITIAL_ENTRIES];
+    private OsmElement[] owners     = new OsmElement[INITIAL_ENTRIES / 4];
+    private int          boxCount;
+    private float        cellSize;
+    private int          columns;
+    private int          rows;
+    private int          width;
+    private int          height;
+
+    // candidates
+    private final List<OsmElement>   elements = new ArrayList<>();
+    private final List<FeatureStyle> styles   = new ArrayList<>();
+    private float[]                  xs       = new float[INITIAL_ENTRIES];
+    private float[]                  ys       = new float[INITIAL_ENTRIES];
+    private int[]                    colors   = new int[INITIAL_ENTRIES];
+    private long[]                   order    = new long[INITIAL_ENTRIES];
+
+    // placement of the previous frame
+    private Set<OsmElement> placed         = new HashSet<>();
+    private Set<OsmElement> previousPlaced = new HashSet<>();
+    private int             zoomLevel      = -1;
+
+    private final Map<FeatureStyle, Map<String, Float>> widths = new HashMap<>();
+
+    /**
+     * Reset for a new frame
+     *
+     * @param width screen width in px
+     * @param height screen height in px
+     * @param cellSize the size of a grid cell in px
+     * @param zoomLevel the current zoom level
+     */
+    public void reset(int width, int height, float cellSize, int zoomLevel) {
+        this.width = width;
+        this.height = height;
+        this.cellSize = Math.max(1f, cellSize);
+        columns = Math.max(1, (int) Math.ceil(width / this.cellSize));
+        rows = Math.max(1, (int) Math.ceil(height / this.cellSize));
+        int cellCount = columns * rows;
+        if (cellHeads.length < cellCount) {
+            cellHeads = new int[cellCount];
+        }
+        Arrays.fill(cellHeads, 0, cellCount, NO_ENTRY);
+        entryCount = 0;
+        Arrays.fill(owners, 0, boxCount, null);
+        boxCount = 0;
+        elements.clear();
+        styles.clear();
+        // swap the sets instead of allocating new ones
+        Set<OsmElement> temp = previousPlaced;
+        previousPlaced = placed;
+        placed = temp;
+        placed.clear();
+        if (zoomLevel != this.zoomLevel) {
+            previousPlaced.clear();
+            this.zoomLevel = zoomLevel;
+        }
+    }
+
+    /**
+     * Mark a box as occupied without checking for collisions, used for icons and similar
+     *
+     * @param left left screen coordinate
+     * @param top top screen coordinate
+     * @param right right screen coordinate
+     * @param bottom bottom screen coordinate
+     */
+    public void occupy(float left, float top, float right, float bottom) {
+        occupy(null, left, top, right, bottom);
+    }
+
+    /**
+     * Mark a box as occupied by an element without checking for collisions
+     *
+     * The box will not block the label of the element
+     *
+     * @param owner the OsmElement the box belongs to or null
+     * @param left left screen coordinate
+     * @param top top screen coordinate
+     * @param right right screen coordinate
+     * @param bottom bottom screen coordinate
+     */
+    public void occupy(@Nullable OsmElement owner, float left, float top, float right, float bottom) {
+        if (right < 0 || left >= width || bottom < 0 || top >= height) {
+            return; // off screen
+        }
+        if (boxCount * 4 == boxes.length) {
+            boxes = Arrays.copyOf(boxes, boxes.length * 2);
+            owners = Arrays.copyOf(owners, owners.length * 2);
+        }
+        int box = boxCount++;
+        owners[box] = owner;
+        boxes[box * 4] = left;
+        boxes[box * 4 + 1] = top;
+        boxes[box * 4 + 2] = right;
+        boxes[box * 4 + 3] = bottom;
+        int firstColumn = column(left);
+        int lastColumn = column(right);
+        int lastRow = row(bottom);
+        for (int r = row(top); r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                addEntry(r * columns + c, box);
+            }
+        }
+    }
+
+    /**
+     * Check if a box doesn't overlap with any occupied box
+     *
+     * Boxes that only touch are not considered overlapping.
+     *
+     * @param left left screen coordinate
+     * @param top top screen coordinate
+     * @param right right screen coordinate
+     * @param bottom bottom screen coordinate
+     * @return true if the box is free
+     */
+    public boolean isFree(float left, float top, float right, float bottom) {
+        return isFree(null, left, top, right, bottom);
+    }
+
+    /**
+     * Check if a box for the label of a candidate doesn't overlap with any occupied box
+     *
+     * Boxes owned by the element of the candidate are ignored.
+     *
+     * @param candidate the candidate index
+     * @param left left screen coordinate
+     * @param top top screen coordinate
+     * @param right right screen coordinate
+     * @param bottom bottom screen coordinate
+     * @return true if the box is free
+     */
+    public boolean isFree(int candidate, float left, float top, float right, float bottom) {
+        return isFree(elements.get(candidate), left, top, right, bottom);
+    }
+
+    /**
+     * Check if a box doesn't overlap with any occupied box that isn't owned by an element
+     *
+     * @param owner the OsmElement whose boxes should be ignored or null
+     * @param left left screen coordinate
+     * @param top top screen coordinate
+     * @param right right screen coordinate
+     * @param bottom bottom screen coordinate
+     * @return true if the box is free
+     */
+    private boolean isFree(@Nullable OsmElement owner, float left, float top, float right, float bottom) {
+        if (right < 0 || left >= width || bottom < 0 || top >= height) {
+            return true;
+        }
+        int firstColumn = column(left);
+        int lastColumn = column(right);
+        int lastRow = row(bottom);
+        for (int r = row(top); r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                for (int e = cellHeads[r * columns + c]; e != NO_ENTRY; e = next[e]) {
+                    int index = entries[e];
+                    if (owner != null && owners[index] == owner) {
+                        continue;
+                    }
+                    int box = index * 4;
+                    if (left < boxes[box + 2] && right > boxes[box] && top < boxes[box + 3] && bottom > boxes[box + 1]) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add a label candidate
+     *
+     * @param e the OsmElement the label is for
+     * @param style the style to draw the label with
+     * @param color the color of the label when it was added
+     * @param x the horizontal center of the label
+     * @param y the baseline of the label
+     * @param rank a combination of RANK_SELECTED and RANK_IMPORTANT
+     * @param size the size of the labeled feature in px^2, larger features are labeled first
+     */
+    public void addCandidate(@NonNull OsmElement e, @NonNull FeatureStyle style, int color, float x, float y, int rank, float size) {
+        int index = elements.size();
+        if (index >= MAX_CANDIDATES) {
+            return;
+        }
+        if (index == xs.length) {
+            int newLength = xs.length * 2;
+            xs = Arrays.copyOf(xs, newLength);
+            ys = Arrays.copyOf(ys, newLength);
+            colors = Arrays.copyOf(colors, newLength);
+            order = Arrays.copyOf(order, newLength);
+        }
+        elements.add(e);
+        styles.add(style);
+        xs[index] = x;
+        ys[index] = y;
+        colors[index] = color;
+        if (previousPlaced.contains(e)) {
+            rank |= RANK_PREVIOUS;
+        }
+        // rank in the top bits, then size, then insertion order reversed so that sorting descending keeps it
+        long sizeKey = (long) Math.min(Math.max(size, 0f), Integer.MAX_VALUE);
+        order[index] = ((long) (rank & 7) << 55) | (sizeKey << 24) | (MAX_CANDIDATES - index);
+    }
+
+    /**
+     * Sort the candidates in order of priority
+     *
+     * @return the number of candidates
+     */
+    public int sortCandidates() {
+        int count = elements.size();
+        Arrays.sort(order, 0, count);
+        // reverse for descending order
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            long temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+        }
+        return count;
+    }
+
+    /**
+     * Get the index of the n-th candidate in order of priority, only valid after sortCandidates has been called
+     *
+     * @param n position in the sorted order
+     * @return the index of the candidate
+     */
+    public int getCandidate(int n) {
+        return MAX_CANDIDATES - (int) (order[n] & MAX_CANDIDATES);
+    }
+
+    /**
+     * Get the element of a candidate
+     *
+     * @param candidate the candidate index
+     * @return the OsmElement
+     */
+    @NonNull
+    public OsmElement getElement(int candidate) {
+        return elements.get(candidate);
+    }
+
+    /**
+     * Get the style of a candidate
+     *
+     * @param candidate the candidate index
+     * @return the FeatureStyle for the label
+     */
+    @NonNull
+    public FeatureStyle getStyle(int candidate) {
+        return styles.get(candidate);
+    }
+
+    /**
+     * Get the color of a candidate
+     *
+     * @param candidate the candidate index
+     * @return the color
+     */
+    public int getColor(int candidate) {
+        return colors[candidate];
+    }
+
+    /**
+     * Get the x coordinate of a candidate
+     *
+     * @param candidate the candidate index
+     * @return the horizontal center of the label
+     */
+    public float getX(int candidate) {
+        return xs[candidate];
+    }
+
+    /**
+     * Get the y coordinate of a candidate
+     *
+     * @param candidate the candidate index
+     * @return the baseline of the label
+     */
+    public float getY(int candidate) {
+        return ys[candidate];
+    }
+
+    /**
+     * Place the label of a candidate if the box is free
+     *
+     * @param candidate the candidate index
+     * @param left left screen coordinate
+     * @param top top screen coordinate
+     * @param right right screen coordinate
+     * @param bottom bottom screen coordinate
+     * @return true if the label was placed and should be drawn
+     */
+    public boolean place(int candidate, float left, float top, float right, float bottom) {
+        OsmElement e = elements.get(candidate);
+        if (!isFree(e, left, top, right, bottom)) {
+            return false;
+        }
+        occupy(e, left, top, right, bottom);
+        placed.add(e);
+        return true;
+    }
+
+    /**
+     * Check if the label for an element was placed in the current frame
+     *
+     * @param e the OsmElement
+     * @return true if the label was placed
+     */
+    public boolean wasPlaced(@NonNull OsmElement e) {
+        return placed.contains(e);
+    }
+
+    /**
+     * Get the cached width of a label
+     *
+     * @param style the style the label is drawn with
+     * @param label the label
+     * @return the width or null if not cached
+     */
+    @Nullable
+    public Float getWidth(@NonNull FeatureStyle style, @NonNull String label) {
+        Map<String, Float> styleWidths = widths.get(style);
+        return styleWidths != null ? styleWidths.get(label) : null;
+    }
+
+    /**
+     * Cache the width of a label
+     *
+     * @param style the style the label is drawn with
+     * @param label the label
+     * @param width the measured width
+     */
+    public void putWidth(@NonNull FeatureStyle style, @NonNull String label, float width) {
+        Map<String, Float> styleWidths = widths.get(style);
+        if (styleWidths == null) {
+            styleWidths = new HashMap<>();
+            widths.put(style, styleWidths);
+        } else if (styleWidths.size() >= MAX_WIDTHS) {
+            styleWidths.clear();
+        }
+        styleWidths.put(label, width);
+    }
+
+    /**
+     * Remove all cached widths, needs to be called when the styles change
+     */
+    public void clearWidths() {
+        widths.clear();
+    }
+
+    /**
+     * Add an entry to the linked list of a cell
+     *
+     * @param cell the cell index
+     * @param box the box index
+     */
+    private void addEntry(int cell, int box) {
+        if (entryCount == entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2);
+            next = Arrays.copyOf(next, next.length * 2);
+        }
+        entries[entryCount] = box;
+        next[entryCount] = cellHeads[cell];
+        cellHeads[cell] = entryCount;
+        entryCount++;
+    }
+
+    /**
+     * Get the clamped column for a screen x coordinate
+     *
+     * @param x screen x
+     * @return the column
+     */
+    private int column(float x) {
+        return Math.max(0, Math.min(columns - 1, (int) (x / cellSize)));
+    }
+
+    /**
+     * Get the clamped row for a screen y coordinate
+     *
+     * @param y screen y
+     * @return the row
+     */
+    private int row(float y) {
+        return Math.max(0, Math.min(rows - 1, (int) (y / cellSize)));
+    }
+}
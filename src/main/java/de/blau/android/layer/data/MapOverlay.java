@@ -1,6 +1,5 @@
 package de.blau.android.layer.data;
 
-import static de.blau.android.util.Winding.CLOCKWISE;
 import static de.blau.android.util.Winding.COUNTERCLOCKWISE;
 import static de.blau.android.util.Winding.winding;
 
@@ -14,7 +13,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedMap;
-import java.util.TreeMap;
 import java.util.WeakHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -22,8 +20,6 @@ import java.util.concurrent.TimeUnit;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.Bitmap.Config;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Paint.FontMetrics;
@@ -35,7 +31,6 @@ import android.os.Build;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.core.util.Pools.SimplePool;
 import androidx.fragment.app.FragmentActivity;
 import de.blau.android.App;
 import de.blau.android.ErrorCodes;
@@ -57,8 +52,10 @@ import de.blau.android.osm.Node;
 import de.blau.android.osm.OsmElement;
 import de.blau.android.osm.PostMergeHandler;
 import de.blau.android.osm.Relation;
+import de.blau.android.osm.RingCache;
 import de.blau.android.osm.RelationMember;
 import de.blau.android.osm.StorageDelegator;
+import de.blau.android.osm.StorageSnapshot;
 import de.blau.android.osm.Tags;
 import de.blau.android.osm.ViewBox;
 import de.blau.android.osm.Way;
@@ -73,6 +70,7 @@ import de.blau.android.util.Coordinates;
 import de.blau.android.util.Density;
 import de.blau.android.util.GeoMath;
 import de.blau.android.util.Geometry;
+import de.blau.android.util.ProjectedPath;
 import de.blau.android.util.Snack;
 import de.blau.android.util.Util;
 import de.blau.android.util.collections.FloatPrimitiveList;
@@ -101,9 +99,10 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
     /**
      * zoom level from which on we display icons and house numbers
      */
-    private static final int    SHOW_ICONS_LIMIT        = 15;
-    public static final int     SHOW_LABEL_LIMIT        = SHOW_ICONS_LIMIT + 5;
-    protected static final long AUTOPRUNE_MIN_INTERVALL = 10;                  // seconds between autoprunes
+    private static final int     SHOW_ICONS_LIMIT        = 15;
+    public static final int      SHOW_LABEL_LIMIT        = SHOW_ICONS_LIMIT + 5;
+    protected static final long  AUTOPRUNE_MIN_INTERVALL = 10;                  // seconds between autoprunes
+    protected static final float AUTOPRUNE_TARGET        = 0.8f;                // fraction of the node limit to prune to
 
     /** half the width/height of a node icon in px */
     private final int iconRadius;
@@ -152,13 +151,28 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
     /**
      * Stores icons that apply to a certain "thing". This can be e.g. a node or a SortedMap of tags.
      */
-    private final WeakHashMap<java.util.Map<String, String>, Bitmap> iconCache = new WeakHashMap<>();
+    private final WeakHashMap<java.util.Map<String, String>, IconAtlas.Icon> iconCache = new WeakHashMap<>();
 
     /**
      * Stores icons that apply to a certain "thing". This can be e.g. a node or a SortedMap of tags. This stores icons
      * for areas
      */
-    private final WeakHashMap<java.util.Map<String, String>, Bitmap> areaIconCache = new WeakHashMap<>();
+    private final WeakHashMap<java.util.Map<String, String>, IconAtlas.Icon> areaIconCache = new WeakHashMap<>();
+
+    /**
+     * Memory budget for the icon bitmaps
+     */
+    private static final int ICON_ATLAS_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * The actual icon bitmaps, shared between all elements with the same icon
+     */
+    private final IconAtlas iconAtlas;
+
+    /**
+     * The Presets the icons in the atlas were retrieved from
+     */
+    private Preset[] atlasPresets;
 
     /**
      * Stores strings that apply to a certain "thing". This can be e.g. a node or a SortedMap of tags.
@@ -275,13 +289,18 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
     /**
      * Stuff for multipolygon support Instantiate these objects just once
      */
-    List<RelationMember>   waysOnly       = new ArrayList<>();
-    List<List<Node>>       outerRings     = new ArrayList<>();
-    List<List<Node>>       innerRings     = new ArrayList<>();
-    List<List<Node>>       unknownRings   = new ArrayList<>();
-    SimplePool<List<Node>> ringPool       = new SimplePool<>(10);
-    List<Node>             areaNodes      = new ArrayList<>();   // temp for reversing winding and assembling MPs
-    Set<Relation>          paintRelations = new HashSet<>();
+    List<Node>    areaNodes      = new ArrayList<>(); // temp for reversing winding
+    Set<Relation> paintRelations = new HashSet<>();
+
+    /**
+     * Screen space index of the elements drawn in the last frame for click queries
+     */
+    private final HitTestGrid hitTestGrid = new HitTestGrid();
+
+    /**
+     * Collision avoiding placement of labels
+     */
+    private final LabelPlacer labelPlacer = new LabelPlacer();
 
     private ThreadPoolExecutor dataThreadPoolExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(THREAD_POOL_SIZE);
     private ThreadPoolExecutor iconThreadPoolExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(THREAD_POOL_SIZE);
@@ -299,6 +318,7 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
         prefs = map.getPrefs();
 
         iconRadius = Density.dpToPx(context, ICON_SIZE_DP / 2);
+        iconAtlas = new IconAtlas(iconRadius * 2, ICON_ATLAS_BYTES);
         houseNumberRadius = Density.dpToPx(context, HOUSE_NUMBER_RADIUS);
         verticalNumberOffset = Density.dpToPx(context, HOUSE_NUMBER_RADIUS / 2);
         iconSelectedBorder = Density.dpToPx(context, ICON_SELECTED_BORDER);
@@ -357,6 +377,7 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
             ViewBox box = new ViewBox(map.getViewBox());
             box.scale(1.2); // make sides 20% larger
             box.ensureMinumumSize(minDownloadSize); // enforce a minimum size
+            delegator.getAutoPruner().viewed(box);
             List<BoundingBox> bboxes = BoundingBox.newBoxes(bbList, box);
             for (BoundingBox b : bboxes) {
                 if (b.getWidth() <= 1 || b.getHeight() <= 1) {
@@ -375,9 +396,9 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
                     }
                 });
             }
-            if (delegator.getCurrentStorage().getNodeCount() > autoPruneNodeLimit
+            if (delegator.getCurrentSnapshot().getNodeCount() > autoPruneNodeLimit
                     && (System.currentTimeMillis() - lastAutoPrune) > AUTOPRUNE_MIN_INTERVALL * 1000) {
-                dataThreadPoolExecutor.execute(MapOverlay.this::prune);
+                dataThreadPoolExecutor.execute(MapOverlay.this::autoPrune);
                 lastAutoPrune = System.currentTimeMillis();
             }
         }
@@ -389,6 +410,7 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
     @Override
     protected void onDraw(Canvas canvas, IMapView osmv) {
         if (!isVisible) {
+            hitTestGrid.invalidate();
             return;
         }
         zoomLevel = map.getZoomLevel();
@@ -426,10 +448,14 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
         ViewBox viewBox = map.getViewBox();
 
         paintRelations.clear();
+        labelPlacer.reset(screenWidth, screenHeight, 2f * iconRadius, zoomLevel);
+
+        // use one consistent view of the data for the whole frame, this doesn't block if data is being modified
+        StorageSnapshot snapshot = delegator.getCurrentSnapshot();
 
         // first find all nodes that we need to display
         nodesResult.clear();
-        List<Node> paintNodes = delegator.getCurrentStorage().getNodes(viewBox, nodesResult);
+        List<Node> paintNodes = snapshot.getNodes(viewBox, nodesResult);
 
         // the following should guarantee that if the selected node is off screen but the handle not, the handle gets
         // drawn, this isn't perfect because touch areas of other nodes just outside the screen still won't get drawn
@@ -445,6 +471,11 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
 
         //
         tmpDrawingInEditRange = App.getLogic().isInEditZoomRange();
+        if (tmpDrawingInEditRange) {
+            hitTestGrid.reset(viewBox, screenWidth, screenHeight, 2 * DataStyle.getCurrent().getNodeToleranceValue());
+        } else {
+            hitTestGrid.invalidate();
+        }
 
         boolean drawTolerance = tmpDrawingInEditRange // if we are not in editing range none of the further checks are
                                                       // necessary
@@ -452,7 +483,7 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
 
         // Paint all ways
         waysResult.clear();
-        List<Way> ways = delegator.getCurrentStorage().getWays(viewBox, waysResult);
+        List<Way> ways = snapshot.getWays(viewBox, waysResult);
 
         List<Way> waysToDraw = ways;
         if (filterMode) {
@@ -522,6 +553,9 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
             float y = GeoMath.latE7ToY(screenHeight, screenWidth, viewBox, lat);
             int lon = n.getLon();
             float x = GeoMath.lonE7ToX(screenWidth, viewBox, lon);
+            if (tmpDrawingInEditRange) {
+                hitTestGrid.addNode(n, x, y);
+            }
             if (drawTolerance) {
                 // this reduces the number of tolerance fields drawn
                 // while it rather expensive traversing the array is
@@ -554,6 +588,7 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
                 }
             }
         }
+        paintLabels(canvas);
         paintHandles(canvas);
     }
 
@@ -611,6 +646,8 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
     /**
      * Draw a multipolygon
      * 
+     * The rings are assembled once and cached by the StorageDelegator, here they are only culled and projected
+     * 
      * @param canvas the Canvas to draw on
      * @param viewBox the current ViewBox
      * @param rel the Relation for the multipolygon
@@ -627,68 +664,21 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
             return;
         }
 
-        // remove any non-Way non-downloaded members
-        waysOnly.clear();
-
         for (RelationMember m : rel.getMembers()) {
-            if (m.downloaded() && Way.NAME.equals(m.getType())) {
-                waysOnly.add(m);
-            }
-        }
-        List<RelationMember> members = Util.sortRelationMembers(waysOnly);
-        outerRings.clear();
-        innerRings.clear();
-        unknownRings.clear();
-        List<Node> ring = getNewRing();
-
-        int ms = members.size();
-        String ringRole = "";
-        for (int i = 0; i < ms; i++) {
-            ringRole = "";
-            RelationMember current = members.get(i);
-            Way currentWay = (Way) current.getElement();
-            String currentRole = current.getRole();
-            if (currentRole != null && !"".equals(currentRole) && "".equals(ringRole)) {
-                ringRole = currentRole;
-            }
-            if (currentWay != null) {
-                // a bit of a hack stop this way from being rendered as a way if it doesn't have any tags
-                if (!currentWay.hasTags() && !"".equals(ringRole)) {
-                    currentWay.setStyle(DataStyle.getInternal(DataStyle.DONTRENDER_WAY));
-                }
-                areaNodes.clear();
-                areaNodes.addAll(currentWay.getNodes());
-                int rs = ring.size();
-                int ns = areaNodes.size();
-                if (ring.isEmpty()) {
-                    ring.addAll(areaNodes);
-                } else if (ring.get(rs - 1).equals(areaNodes.get(0))) {
-                    ring.addAll(areaNodes.subList(1, ns));
-                } else if (ring.get(rs - 1).equals(areaNodes.get(ns - 1))) {
-                    Collections.reverse(areaNodes);
-                    ring.addAll(areaNodes.subList(1, ns));
-                }
-            }
-
-            RelationMember next = members.get((i + 1) % ms);
-            Way nextWay = (Way) next.getElement();
-            Node lastRingNode = ring.get(ring.size() - 1);
-            if (nextWay != null) {
-                List<Node> nextNodes = nextWay.getNodes();
-                int ns1 = nextNodes.size() - 1;
-                if (!nextNodes.get(0).equals(lastRingNode) && !nextNodes.get(ns1).equals(lastRingNode)) {
-                    Node firstRingNode = ring.get(0);
-                    if (nextNodes.get(0).equals(firstRingNode) || nextNodes.get(ns1).equals(firstRingNode)) {
-                        Collections.reverse(ring);
-                        continue;
-                    }
-                    addRing(ringRole, ring);
-                    ring = getNewRing();
+            // a bit of a hack stop this way from being rendered as a way if it doesn't have any tags
+            String role = m.getRole();
+            if (role != null && !"".equals(role) && m.downloaded() && Way.NAME.equals(m.getType())) {
+                Way memberWay = (Way) m.getElement();
+                if (memberWay != null && !memberWay.hasTags()) {
+                    memberWay.setStyle(DataStyle.getInternal(DataStyle.DONTRENDER_WAY));
                 }
             }
         }
-        if (!ring.isEmpty()) {
-            addRing(ringRole, ring);
+
+        RingCache.Rings rings = delegator.getRingCache().get(rel);
+        BoundingBox bounds = rings.getBounds();
+        if (bounds == null || !viewBox.intersects(bounds)) {
+            return;
         }
 
         path.reset();
@@ -696,66 +686,30 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
         Paint paint = style.getPaint();
         boolean closeRings = paint.getStyle() != Paint.Style.STROKE;
 
-        outerRings.addAll(innerRings);
-        outerRings.addAll(unknownRings);
-
-        for (List<Node> r : outerRings) {
-            map.pointListToLinePointsArray(points, r);
-            float[] linePoints = points.getArray();
-            int pointsSize = points.size();
-            path.moveTo(linePoints[0], linePoints[1]);
-            for (int i = 0; i < pointsSize; i = i + 4) {
-                path.lineTo(linePoints[i + 2], linePoints[i + 3]);
-            }
-            if (closeRings) {
-                path.close();
-            }
-            ringPool.release(r);
-        }
+        int screenWidth = map.getWidth();
+        int screenHeight = map.getHeight();
+        addRingsToPath(rings.getOuter(), viewBox, screenWidth, screenHeight, closeRings);
+        addRingsToPath(rings.getInner(), viewBox, screenWidth, screenHeight, closeRings);
+        addRingsToPath(rings.getUnknown(), viewBox, screenWidth, screenHeight, closeRings);
 
         path.setFillType(Path.FillType.EVEN_ODD);
         canvas.drawPath(path, paint);
     }
 
     /**
-     * Get a new ring from the pool or instantiate one if the pool is empty
+     * Project rings and add them to path, rings that are not in view are skipped
      * 
-     * @return a List&lt;Node&gt;
-     */
-    @NonNull
-    private List<Node> getNewRing() {
-        List<Node> ring = ringPool.acquire();
-        if (ring == null) {
-            ring = new ArrayList<>();
-        } else {
-            ring.clear();
-        }
-        return ring;
-    }
-
-    /**
-     * Add rings to the list depending on their role If the winding is wrong reverse the List
-     * 
-     * @param role the role of the the ring
-     * @param ring the ring
+     * @param rings the rings
+     * @param viewBox the current ViewBox
+     * @param screenWidth screen width in pixels
+     * @param screenHeight screen height in pixels
+     * @param closeRings if true close the rings
      */
-    private void addRing(@NonNull String role, @NonNull List<Node> ring) {
-        final int winding = winding(ring);
-        switch (role) {
-        case Tags.ROLE_OUTER:
-            if (winding == COUNTERCLOCKWISE) {
-                Collections.reverse(ring);
-            }
-            outerRings.add(ring);
-            break;
-        case Tags.ROLE_INNER:
-            if (winding == CLOCKWISE) {
-                Collections.reverse(ring);
+    private void addRingsToPath(@NonNull List<RingCache.Ring> rings, @NonNull ViewBox viewBox, int screenWidth, int screenHeight, boolean closeRings) {
+        for (RingCache.Ring ring : rings) {
+            if (viewBox.intersects(ring.getBounds())) {
+                ProjectedPath.add(path, ring.getLons(), ring.getMercatorLats(), 0, ring.size(), viewBox, screenWidth, screenHeight, 0, closeRings);
             }
-            innerRings.add(ring);
-            break;
-        default:
-            unknownRings.add(ring);
         }
     }
 
@@ -968,7 +922,7 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
                         return;
                     }
                 } else if (zoomLevel > SHOW_LABEL_LIMIT) {
-                    paintLabel(x, y, canvas, featureStyleFont, node, nodeFeatureStyleTagged.getPaint().getStrokeWidth(), true);
+                    addLabel(x, y, featureStyleFont, node, nodeFeatureStyleTagged.getPaint().getStrokeWidth(), true, isSelected, 0);
                 }
             }
 
@@ -985,7 +939,7 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
                     canvas.drawPoint(x, y, paint);
                 }
                 if (inNodeIconZoomRange) {
-                    paintLabel(x, y, canvas, featureStyleFont, node, strokeWidth, false);
+                    addLabel(x, y, featureStyleFont, node, strokeWidth, false, isSelected, 0);
                 }
             }
         } else {
@@ -1018,25 +972,88 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
         canvas.drawCircle(x, y, houseNumberRadius, featureStyleThin.getPaint());
         canvas.drawCircle(x, y, houseNumberRadius, labelBackground);
         canvas.drawText(houseNumber, x - fontPaint.measureText(houseNumber) / 2, y + verticalNumberOffset, fontPaint);
+        labelPlacer.occupy(x - houseNumberRadius, y - houseNumberRadius, x + houseNumberRadius, y + houseNumberRadius);
     }
 
     /**
-     * Paint a label under the node, does not try to do collision avoidance
+     * Add a label under the node, or the icon of an area, as a candidate for placement
+     * 
+     * The label is only drawn if it doesn't collide with an icon or a label with higher priority, see
+     * {@link #paintLabels(Canvas)}
      * 
      * @param x screen x
      * @param y screen y
-     * @param canvas canvas we are drawing on
      * @param labelStyle style to use for the label
      * @param e the OsmElement
      * @param strokeWidth current stroke scaling factor
      * @param withIcon offset the label so that we don't overlap an icon
+     * @param isSelected true if the element is selected
+     * @param size size of the labeled feature in px^2
      */
-    private void paintLabel(final float x, final float y, @NonNull final Canvas canvas, @NonNull final FeatureStyle labelStyle, @NonNull final OsmElement e,
-            final float strokeWidth, final boolean withIcon) {
+    private void addLabel(final float x, final float y, @NonNull final FeatureStyle labelStyle, @NonNull final OsmElement e, final float strokeWidth,
+            final boolean withIcon, final boolean isSelected, final float size) {
+        if (e.isInCache(labelCache) && e.getFromCache(labelCache) == null) {
+            return; // no label
+        }
+        float yOffset = y + strokeWidth + (withIcon ? 2 * iconRadius : iconRadius);
+        int rank = (isSelected ? LabelPlacer.RANK_SELECTED : 0) | (withIcon ? LabelPlacer.RANK_IMPORTANT : 0);
+        labelPlacer.addCandidate(e, labelStyle, labelStyle.getPaint().getColor(), x, yOffset, rank, size);
+    }
+
+    /**
+     * Paint the labels that can be placed without collisions in order of priority
+     * 
+     * Candidates that are already blocked at their anchor point are dropped before the label is determined or measured
+     * 
+     * @param canvas canvas we are drawing on
+     */
+    private void paintLabels(@NonNull final Canvas canvas) {
+        int count = labelPlacer.sortCandidates();
+        for (int n = 0; n < count; n++) {
+            int candidate = labelPlacer.getCandidate(n);
+            FeatureStyle labelStyle = labelPlacer.getStyle(candidate);
+            Paint paint = labelStyle.getPaint();
+            FontMetrics fm = labelStyle.getFontMetrics();
+            float x = labelPlacer.getX(candidate);
+            float yOffset = labelPlacer.getY(candidate);
+            float top = yOffset - paint.getTextSize() + fm.bottom;
+            float bottom = yOffset + fm.bottom;
+            if (!labelPlacer.isFree(candidate, x, top, x, bottom)) {
+                continue;
+            }
+            String label = getLabel(labelPlacer.getElement(candidate));
+            if (label == null) {
+                continue;
+            }
+            Float width = labelPlacer.getWidth(labelStyle, label);
+            if (width == null) {
+                width = paint.measureText(label);
+                labelPlacer.putWidth(labelStyle, label, width);
+            }
+            float halfTextWidth = width / 2;
+            if (labelPlacer.place(candidate, x - halfTextWidth, top, x + halfTextWidth, bottom)) {
+                int color = labelPlacer.getColor(candidate);
+                if (paint.getColor() != color) { // problem styles are shared
+                    paint.setColor(color);
+                }
+                canvas.drawRect(x - halfTextWidth, bottom, x + halfTextWidth, top, labelBackground);
+                canvas.drawText(label, x - halfTextWidth, yOffset, paint);
+            }
+        }
+    }
+
+    /**
+     * Get the label for an element
+     * 
+     * @param e the OsmElement
+     * @return the label or null if there is none
+     */
+    @Nullable
+    private String getLabel(@NonNull final OsmElement e) {
         String label = e.getFromCache(labelCache); // may be null!
         if (label == null) {
             if (e.isInCache(labelCache)) {
-                return;
+                return null;
             }
             FeatureStyle style = DataStyle.matchStyle(e);
             if (style.usePresetLabel() && tmpPresets != null) {
@@ -1052,25 +1069,11 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
             }
             synchronized (labelCache) {
                 e.addToCache(labelCache, label);
-                if (label == null) {
-                    return;
-                }
             }
         }
-        // draw the label
-        Paint paint = labelStyle.getPaint();
-        float halfTextWidth = paint.measureText(label) / 2;
-        FontMetrics fm = labelStyle.getFontMetrics();
-        float yOffset = y + strokeWidth + (withIcon ? 2 * iconRadius : iconRadius);
-        canvas.drawRect(x - halfTextWidth, yOffset + fm.bottom, x + halfTextWidth, yOffset - paint.getTextSize() + fm.bottom, labelBackground);
-        canvas.drawText(label, x - halfTextWidth, yOffset, paint);
+        return label;
     }
 
-    /**
-     * Dummy bitmap for the cache
-     */
-    private static final Bitmap NOICON = Bitmap.createBitmap(2, 2, Config.ARGB_8888);
-
     /**
      * Get icon for the element
      * 
@@ -1080,14 +1083,16 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
      * @return icon or null if none is found
      */
     @Nullable
-    private Bitmap getIcon(@NonNull OsmElement element) {
+    private IconAtlas.Icon getIcon(@NonNull OsmElement element) {
         boolean isWay = element instanceof Way;
-        WeakHashMap<java.util.Map<String, String>, Bitmap> tempCache = isWay ? areaIconCache : iconCache;
-        Bitmap icon = element.getFromCache(tempCache); // may be null!
-        if (icon == null) {
+        WeakHashMap<java.util.Map<String, String>, IconAtlas.Icon> tempCache = isWay ? areaIconCache : iconCache;
+        IconAtlas.Icon icon = element.getFromCache(tempCache); // may be null!
+        if (icon == null || !icon.isValid()) {
+            // not retrieved yet or evicted from the atlas
             iconThreadPoolExecutor.execute(() -> retrieveIcon(element, isWay, tempCache));
+            return null;
         }
-        return icon != NOICON ? icon : null;
+        return icon != IconAtlas.NO_ICON ? icon : null;
     }
 
     /**
@@ -1098,47 +1103,56 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
      * @param isWayif the element is a Way
      * @param cache the relevant cache
      */
-    private void retrieveIcon(@NonNull OsmElement element, boolean isWay, @NonNull WeakHashMap<java.util.Map<String, String>, Bitmap> cache) {
-        BitmapDrawable iconDrawable = null;
+    private void retrieveIcon(@NonNull OsmElement element, boolean isWay, @NonNull WeakHashMap<java.util.Map<String, String>, IconAtlas.Icon> cache) {
+        IconAtlas.Icon icon = null;
 
-        // icon not cached, ask the preset/style, render to a bitmap and cache result
+        // icon not cached, ask the preset/style, render in to the atlas if necessary and cache result
         FeatureStyle style = DataStyle.matchStyle(element);
         String iconPath = style.getIconPath();
         boolean usePresetIcon = style.usePresetIcon();
 
         if (iconPath != null && !usePresetIcon) {
-            iconDrawable = customIconCache.get(iconPath);
-            if (iconDrawable == null && !customIconCache.containsKey(iconPath)) {
-                try (FileInputStream pngStream = new FileInputStream(iconPath)) {
-                    iconDrawable = PresetIconManager.bitmapDrawableFromStream(context, ICON_SIZE_DP, pngStream);
-                    customIconCache.put(iconPath, iconDrawable);
-                } catch (IOException e) {
-                    Log.e(DEBUG_TAG, "Icon " + iconPath + " not found");
+            String key = "file:" + iconPath;
+            icon = iconAtlas.get(key);
+            if (icon == null) {
+                BitmapDrawable iconDrawable = customIconCache.get(iconPath);
+                if (iconDrawable == null && !customIconCache.containsKey(iconPath)) {
+                    try (FileInputStream pngStream = new FileInputStream(iconPath)) {
+                        iconDrawable = PresetIconManager.bitmapDrawableFromStream(context, ICON_SIZE_DP, pngStream);
+                        customIconCache.put(iconPath, iconDrawable);
+                    } catch (IOException e) {
+                        Log.e(DEBUG_TAG, "Icon " + iconPath + " not found");
+                    }
+                }
+                if (iconDrawable != null) {
+                    icon = iconAtlas.add(key, iconDrawable);
                 }
             }
         } else if (tmpPresets != null) {
+            Preset[] presets = tmpPresets;
             SortedMap<String, String> tags = element.getTags();
             PresetItem match = null;
             if (isWay) {
                 if (usePresetIcon) {
                     // don't show building icons, only icons for those with POI tags
-                    SortedMap<String, String> tempTags = new TreeMap<>(tags);
-                    tempTags.remove(Tags.KEY_BUILDING);
-                    match = Preset.findBestMatch(tmpPresets, tempTags);
+                    match = Preset.findBestMatch(presets, tags, Tags.KEY_BUILDING, false);
                 }
             } else {
-                match = Preset.findBestMatch(tmpPresets, tags);
+                match = Preset.findBestMatch(presets, tags);
             }
-            if (match != null) {
-                iconDrawable = match.getMapIcon(context);
+            String key = match != null ? presetIconKey(presets, match) : null;
+            if (key != null) {
+                icon = iconAtlas.get(key);
+                if (icon == null) {
+                    BitmapDrawable iconDrawable = match.getMapIcon(context);
+                    if (iconDrawable != null) {
+                        icon = iconAtlas.add(key, iconDrawable);
+                    }
+                }
             }
         }
-        Bitmap icon;
-        if (iconDrawable != null) {
-            icon = Bitmap.createBitmap(iconRadius * 2, iconRadius * 2, Config.ARGB_8888);
-            iconDrawable.draw(new Canvas(icon));
-        } else {
-            icon = NOICON;
+        if (icon == null) {
+            icon = IconAtlas.NO_ICON;
         }
         synchronized (MapOverlay.this) {
             element.addToCache(cache, icon);
@@ -1146,6 +1160,37 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
         map.postInvalidate();
     }
 
+    /**
+     * Get the key for a preset icon in the atlas
+     * 
+     * Icon paths are relative to the Preset they are from, so the key includes the position of the Preset, if the
+     * Presets have changed the atlas is cleared
+     * 
+     * @param presets the current Presets
+     * @param match the PresetItem
+     * @return the key or null if the item doesn't have an icon
+     */
+    @Nullable
+    private String presetIconKey(@NonNull Preset[] presets, @NonNull PresetItem match) {
+        String path = match.getIconpath();
+        if (path == null) {
+            return null;
+        }
+        synchronized (iconAtlas) {
+            if (presets != atlasPresets) {
+                iconAtlas.clear();
+                atlasPresets = presets;
+            }
+        }
+        Preset preset = match.getPreset();
+        for (int i = 0; i < presets.length; i++) {
+            if (presets[i] == preset) {
+                return i + ":" + path;
+            }
+        }
+        return null;
+    }
+
     /**
      * Remove everything from the iconCache
      */
@@ -1162,6 +1207,7 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
         synchronized (customIconCache) {
             customIconCache.clear();
         }
+        iconAtlas.clear();
     }
 
     /**
@@ -1175,17 +1221,19 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
      * @return true if an icon was found and drawn
      */
     private boolean paintNodeIcon(@NonNull OsmElement element, @NonNull Canvas canvas, float x, float y, @Nullable FeatureStyle highlightStyle) {
-        Bitmap icon = getIcon(element);
+        IconAtlas.Icon icon = getIcon(element);
         if (icon != null) {
-            float w2 = icon.getWidth() / 2f;
-            float h2 = icon.getHeight() / 2f;
+            float w2 = iconAtlas.getIconSize() / 2f;
+            float h2 = w2;
             if (highlightStyle != null) { // selected or error
                 RectF r = new RectF(x - w2 - iconSelectedBorder, y - h2 - iconSelectedBorder, x + w2 + iconSelectedBorder, y + h2 + iconSelectedBorder);
                 canvas.drawRoundRect(r, iconSelectedBorder, iconSelectedBorder, highlightStyle.getPaint());
             }
             // we have an icon! draw it.
-            canvas.drawBitmap(icon, x - w2, y - h2, null);
-            return true;
+            if (iconAtlas.draw(canvas, icon, x - w2, y - h2)) {
+                labelPlacer.occupy(element, x - w2, y - h2, x + w2, y + h2);
+                return true;
+            }
         }
         return false;
     }
@@ -1221,6 +1269,7 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
         }
 
         if (zoomLevel < style.getMinVisibleZoom()) {
+            addToHitTestGrid(way);
             return;
         }
 
@@ -1230,6 +1279,7 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
         boolean isMemberOfSelectedRelation = tmpDrawingInEditRange && tmpDrawingSelectedRelationWays != null && tmpDrawingSelectedRelationWays.contains(way);
 
         if (style.dontRender() && !(isSelected || isMemberOfSelectedRelation)) {
+            addToHitTestGrid(way);
             return; // the way has already been rendered by something else
         }
 
@@ -1247,6 +1297,9 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
 
         float[] linePoints = points.getArray();
         int pointsSize = points.size();
+        if (tmpDrawingInEditRange) {
+            hitTestGrid.addWay(way, linePoints, pointsSize);
+        }
         Paint paint;
         FeatureStyle labelFontStyle = labelTextStyleNormal;
         FeatureStyle labelFontStyleSmall = labelTextStyleSmall;
@@ -1328,6 +1381,10 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
                 boolean iconDrawn = false;
                 if (tmpPresets != null) {
                     iconDrawn = paintNodeIcon(way, canvas, (float) X, (float) Y, isSelected ? nodeFeatureStyleTaggedSelected : null);
+                    if (iconDrawn && tmpDrawingInEditRange) {
+                        // only icons that are actually visible can be touched
+                        hitTestGrid.addWayPoint(way, (float) X, (float) Y);
+                    }
                     boolean doLabel = false;
                     if (!iconDrawn) {
                         String houseNumber = way.getTagWithKey(Tags.KEY_ADDR_HOUSENUMBER);
@@ -1342,7 +1399,7 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
                     }
                     if (doLabel) {
                         Paint p = nodeFeatureStyleTaggedSelected.getPaint();
-                        paintLabel((float) X, (float) Y, canvas, labelFontStyle, way, iconDrawn ? p.getStrokeWidth() : 0, iconDrawn);
+                        addLabel((float) X, (float) Y, labelFontStyle, way, iconDrawn ? p.getStrokeWidth() : 0, iconDrawn, isSelected, (float) Math.abs(A / 2));
                     }
                 }
             }
@@ -1358,12 +1415,16 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
     private void paintHiddenWay(@NonNull final Canvas canvas, @NonNull final Way way) {
         //
         if (zoomLevel < wayFeatureStyleHidden.getMinVisibleZoom()) {
+            addToHitTestGrid(way);
             return;
         }
 
         map.pointListToLinePointsArray(points, way.getNodes());
         float[] linePoints = points.getArray();
         int pointsSize = points.size();
+        if (tmpDrawingInEditRange) {
+            hitTestGrid.addWay(way, linePoints, pointsSize);
+        }
 
         // draw the way itself
         // this doesn't work properly with HW acceleration: canvas.drawLines(linePoints, fp.getPaint());
@@ -1377,6 +1438,18 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
         }
     }
 
+    /**
+     * Add a Way that isn't being drawn to the hit test grid
+     * 
+     * @param way the Way
+     */
+    private void addToHitTestGrid(@NonNull final Way way) {
+        if (tmpDrawingInEditRange) {
+            map.pointListToLinePointsArray(points, way.getNodes());
+            hitTestGrid.addWay(way, points.getArray(), points.size());
+        }
+    }
+
     /**
      * Draw geometry improvement handles
      * 
@@ -1505,6 +1578,7 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
         wayTolerancePaint = DataStyle.getInternal(DataStyle.WAY_TOLERANCE).getPaint();
         wayTolerancePaint2 = DataStyle.getInternal(DataStyle.WAY_TOLERANCE_2).getPaint();
         labelBackground = DataStyle.getInternal(DataStyle.LABELTEXT_BACKGROUND).getPaint();
+        labelPlacer.clearWidths();
 
         // general node style
         nodeFeatureStyle = DataStyle.getInternal(DataStyle.NODE_UNTAGGED);
@@ -1558,6 +1632,25 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
         return iconRadius;
     }
 
+    /**
+     * Get the screen space index of the elements drawn in the last frame
+     * 
+     * Callers need to check that the grid is valid for the current screen before using it
+     * 
+     * @return the HitTestGrid
+     */
+    @NonNull
+    public HitTestGrid getHitTestGrid() {
+        return hitTestGrid;
+    }
+
+    /**
+     * Mark the hit test grid as stale, it will be rebuilt on the next redraw
+     */
+    public void invalidateHitTestGrid() {
+        hitTestGrid.invalidate();
+    }
+
     @Override
     protected void onDrawFinished(Canvas c, IMapView osmv) {
         // unused
@@ -1576,7 +1669,7 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
 
     @Override
     public BoundingBox getExtent() {
-        List<BoundingBox> boxes = delegator.getCurrentStorage().getBoundingBoxes();
+        List<BoundingBox> boxes = delegator.getCurrentSnapshot().getBoundingBoxes();
         if (!boxes.isEmpty()) {
             return BoundingBox.union(new ArrayList<>(boxes));
         } else if (prefs.getServer().hasMapSplitSource()) {
@@ -1609,6 +1702,17 @@ public class MapOverlay extends MapViewLayer implements ExtentInterface, Configu
         delegator.prune(pruneBox);
     }
 
+    /**
+     * Incrementally remove data that hasn't been viewed recently until we are comfortably below the autoprune limit
+     */
+    private void autoPrune() {
+        ViewBox pruneBox = new ViewBox(map.getViewBox());
+        pruneBox.scale(1.6);
+        if (delegator.getAutoPruner().prune(App.getLogic(), pruneBox, (int) (autoPruneNodeLimit * AUTOPRUNE_TARGET)) > 0) {
+            map.postInvalidate();
+        }
+    }
+
     @Override
     public LayerType getType() {
         return LayerType.OSMDATA;
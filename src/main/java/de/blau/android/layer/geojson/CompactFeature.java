@@ -0,0 +1,112 @@
+package de.blau.android.layer.geojson;
+
+import java.io.Serializable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.mapbox.geojson.Feature;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.blau.android.osm.BoundingBox;
+import de.blau.android.util.rtree.BoundedObject;
+
+/**
+ * Memory efficient stand-in for a GeoJSON Feature
+ *
+ * The properties are retained as a JSON string and only parsed when needed, a full mapbox Feature is only created for
+ * display of information on the Feature.
+ *
+ * @author simon
+ *
+ */
+class CompactFeature implements BoundedObject, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String          id;
+    private final String          properties;
+    private final CompactGeometry geometry;
+
+    private transient String labelKey;
+    private transient String label;
+
+    /**
+     * Construct a new instance
+     *
+     * @param id the optional id of the Feature
+     * @param properties the properties as a JSON string or null
+     * @param geometry the geometry, must not be empty
+     */
+    CompactFeature(@Nullable String id, @Nullable String properties, @NonNull CompactGeometry geometry) {
+        this.id = id;
+        this.properties = properties;
+        this.geometry = geometry;
+    }
+
+    @Override
+    public BoundingBox getBounds() {
+        return geometry.getBounds();
+    }
+
+    /**
+     * Get the geometry
+     *
+     * @return the CompactGeometry
+     */
+    @NonNull
+    CompactGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Get the properties
+     *
+     * @return a new JsonObject or null if the Feature doesn't have any properties
+     */
+    @Nullable
+    JsonObject getProperties() {
+        if (properties == null) {
+            return null;
+        }
+        JsonElement e = new JsonParser().parse(properties);
+        return e.isJsonObject() ? e.getAsJsonObject() : null;
+    }
+
+    /**
+     * Get the value of a property for use as a label, the last result is cached
+     *
+     * @param key the property key
+     * @return the value or null if not present or not a primitive
+     */
+    @Nullable
+    String getLabel(@Nullable String key) {
+        if (key == null || "".equals(key)) {
+            return null;
+        }
+        if (!key.equals(labelKey)) {
+            label = null;
+            JsonObject props = getProperties();
+            if (props != null) {
+                JsonElement e = props.get(key);
+                if (e != null && e.isJsonPrimitive()) {
+                    label = e.getAsString();
+                }
+            }
+            labelKey = key;
+        }
+        return label;
+    }
+
+    /**
+     * Create a mapbox Feature from this
+     *
+     * @return a new Feature
+     */
+    @NonNull
+    Feature toFeature() {
+        JsonObject props = getProperties();
+        return Feature.fromGeometry(geometry.toGeometry(), props != null ? props : new JsonObject(), id);
+    }
+}
@@ -0,0 +1,293 @@
+package de.blau.android.layer.geojson;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.GeometryCollection;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.MultiLineString;
+import com.mapbox.geojson.MultiPoint;
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.blau.android.osm.BoundingBox;
+import de.blau.android.util.GeoJSONConstants;
+import de.blau.android.util.GeoMath;
+import de.blau.android.util.collections.IntPrimitiveList;
+
+/**
+ * Memory efficient representation of a GeoJSON geometry
+ *
+ * All coordinates are stored in primitive arrays, longitudes and latitudes in WGS84*1E7 and additionally the latitudes
+ * projected to web mercator*1E7 so that drawing doesn't need to project them again. Lines and rings are runs of
+ * coordinates starting at the indices in parts, polygons are runs of parts starting at the indices in polygons.
+ *
+ * @author simon
+ *
+ */
+class CompactGeometry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int[] EMPTY = new int[0];
+
+    final String            type;
+    final int[]             lons;
+    final int[]             lats;
+    final int[]             mercatorLats;
+    final int[]             parts;
+    final int[]             polygons;
+    final CompactGeometry[] geometries;
+    private BoundingBox     bounds;
+
+    /**
+     * Construct a new geometry from coordinates
+     *
+     * @param type the GeoJSON geometry type
+     * @param coordinates the coordinates
+     */
+    CompactGeometry(@NonNull String type, @NonNull Coordinates coordinates) {
+        this.type = type;
+        lons = coordinates.lons.values();
+        lats = coordinates.lats.values();
+        mercatorLats = new int[lats.length];
+        for (int i = 0; i < lats.length; i++) {
+            mercatorLats[i] = GeoMath.latE7ToMercatorE7(lats[i]);
+        }
+        parts = coordinates.parts.values();
+        polygons = coordinates.polygons.values();
+        geometries = null;
+    }
+
+    /**
+     * Construct a new GeometryCollection
+     *
+     * @param geometries the member geometries
+     */
+    CompactGeometry(@NonNull List<CompactGeometry> geometries) {
+        type = GeoJSONConstants.GEOMETRYCOLLECTION;
+        lons = EMPTY;
+        lats = EMPTY;
+        mercatorLats = EMPTY;
+        parts = EMPTY;
+        polygons = EMPTY;
+        this.geometries = geometries.toArray(new CompactGeometry[0]);
+    }
+
+    /**
+     * Coordinates and structure as read from GeoJSON
+     */
+    static class Coordinates {
+        final IntPrimitiveList lons     = new IntPrimitiveList();
+        final IntPrimitiveList lats     = new IntPrimitiveList();
+        final IntPrimitiveList parts    = new IntPrimitiveList();
+        final IntPrimitiveList polygons = new IntPrimitiveList();
+
+        /**
+         * Add a position
+         *
+         * @param lon WGS84 longitude
+         * @param lat WGS84 latitude
+         */
+        void add(double lon, double lat) {
+            lons.add((int) Math.round(lon * 1E7D));
+            lats.add((int) Math.round(lat * 1E7D));
+        }
+    }
+
+    /**
+     * Get the GeoJSON type
+     *
+     * @return the type
+     */
+    @NonNull
+    String getType() {
+        return type;
+    }
+
+    /**
+     * Check if the geometry doesn't contain any coordinates
+     *
+     * @return true if empty
+     */
+    boolean isEmpty() {
+        if (geometries != null) {
+            for (CompactGeometry g : geometries) {
+                if (!g.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return lons.length == 0;
+    }
+
+    /**
+     * Get the index after the last coordinate of a part
+     *
+     * @param part the index of the part
+     * @return the end index
+     */
+    int partEnd(int part) {
+        return part + 1 < parts.length ? parts[part + 1] : lons.length;
+    }
+
+    /**
+     * Get the index after the last part of a polygon
+     *
+     * @param polygon the index of the polygon
+     * @return the end index
+     */
+    int polygonEnd(int polygon) {
+        return polygon + 1 < polygons.length ? polygons[polygon + 1] : parts.length;
+    }
+
+    /**
+     * Get the bounding box of the geometry
+     *
+     * @return the BoundingBox, must not be modified, null if the geometry is empty
+     */
+    @Nullable
+    BoundingBox getBounds() {
+        if (bounds == null && !isEmpty()) {
+            if (geometries != null) {
+                for (CompactGeometry g : geometries) {
+                    BoundingBox box = g.getBounds();
+                    if (box == null) {
+                        continue;
+                    }
+                    if (bounds == null) {
+                        bounds = new BoundingBox(box);
+                    } else {
+                        bounds.union(box);
+                    }
+                }
+            } else {
+                BoundingBox box = new BoundingBox(lons[0], lats[0]);
+                for (int i = 1; i < lons.length; i++) {
+                    box.union(lons[i], lats[i]);
+                }
+                bounds = box;
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Check if a polygonal geometry contains a position
+     *
+     * Uses the even-odd rule over all rings, which is equivalent to being inside an outer ring and outside of its
+     * holes for valid geometries
+     *
+     * @param lon WGS84*1E7 longitude
+     * @param lat WGS84*1E7 latitude
+     * @return true if the position is inside
+     */
+    boolean contains(int lon, int lat) {
+        if (geometries != null) {
+            for (CompactGeometry g : geometries) {
+                if (g.contains(lon, lat)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (!GeoJSONConstants.POLYGON.equals(type) && !GeoJSONConstants.MULTIPOLYGON.equals(type)) {
+            return false;
+        }
+        boolean inside = false;
+        for (int p = 0; p < parts.length; p++) {
+            int end = partEnd(p);
+            for (int i = parts[p], j = end - 1; i < end; j = i++) {
+                if ((lats[i] > lat) != (lats[j] > lat)
+                        && lon < (double) (lons[j] - lons[i]) * (lat - lats[i]) / (double) (lats[j] - lats[i]) + lons[i]) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Create a mapbox Geometry from this
+     *
+     * @return a Geometry
+     */
+    @NonNull
+    Geometry toGeometry() {
+        switch (type) {
+        case GeoJSONConstants.POINT:
+            return point(0);
+        case GeoJSONConstants.MULTIPOINT:
+            return MultiPoint.fromLngLats(points(0, lons.length));
+        case GeoJSONConstants.LINESTRING:
+            return LineString.fromLngLats(points(0, lons.length));
+        case GeoJSONConstants.MULTILINESTRING:
+            return MultiLineString.fromLngLats(lines(0, parts.length));
+        case GeoJSONConstants.POLYGON:
+            return Polygon.fromLngLats(lines(0, parts.length));
+        case GeoJSONConstants.MULTIPOLYGON:
+            List<List<List<Point>>> result = new ArrayList<>();
+            for (int p = 0; p < polygons.length; p++) {
+                result.add(lines(polygons[p], polygonEnd(p)));
+            }
+            return MultiPolygon.fromLngLats(result);
+        case GeoJSONConstants.GEOMETRYCOLLECTION:
+            List<Geometry> members = new ArrayList<>();
+            for (CompactGeometry g : geometries) {
+                members.add(g.toGeometry());
+            }
+            return GeometryCollection.fromGeometries(members);
+        default:
+            throw new IllegalStateException("Unknown geometry type " + type);
+        }
+    }
+
+    /**
+     * Create a Point
+     *
+     * @param i the index of the coordinate
+     * @return a Point
+     */
+    @NonNull
+    private Point point(int i) {
+        return Point.fromLngLat(lons[i] / 1E7D, lats[i] / 1E7D);
+    }
+
+    /**
+     * Create a List of Points
+     *
+     * @param start index of the first coordinate
+     * @param end index after the last coordinate
+     * @return a List of Point
+     */
+    @NonNull
+    private List<Point> points(int start, int end) {
+        List<Point> result = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            result.add(point(i));
+        }
+        return result;
+    }
+
+    /**
+     * Create a List of Lists of Points for parts
+     *
+     * @param start index of the first part
+     * @param end index after the last part
+     * @return a List of List of Point
+     */
+    @NonNull
+    private List<List<Point>> lines(int start, int end) {
+        List<List<Point>> result = new ArrayList<>(end - start);
+        for (int p = start; p < end; p++) {
+            result.add(points(parts[p], partEnd(p)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,266 @@
+package de.blau.android.layer.geojson;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.blau.android.util.GeoJSONConstants;
+
+/**
+ * Streaming GeoJSON reader
+ *
+ * Reads FeatureCollections, single Features and bare Geometries directly in to CompactFeatures without creating an
+ * intermediate String or object tree of the whole input. Only the properties of a Feature are parsed to a JSON tree,
+ * and they are immediately stored as a string.
+ *
+ * Altitudes and any further position elements are ignored, as are foreign members.
+ *
+ * @author simon
+ *
+ */
+final class GeoJsonReader {
+
+    private static final String TYPE        = "type";
+    private static final String FEATURES    = "features";
+    private static final String GEOMETRY    = "geometry";
+    private static final String GEOMETRIES  = "geometries";
+    private static final String PROPERTIES  = "properties";
+    private static final String ID          = "id";
+    private static final String COORDINATES = "coordinates";
+
+    /**
+     * The members of a GeoJSON object that we are interested in
+     */
+    private static class Content {
+        String                      type;
+        String                      id;
+        String                      properties;
+        CompactGeometry             geometry;
+        CompactGeometry.Coordinates coordinates;
+        int                         depth;
+        List<CompactGeometry>       geometries;
+    }
+
+    /**
+     * Private constructor to stop instantiation
+     */
+    private GeoJsonReader() {
+        // private
+    }
+
+    /**
+     * Read GeoJSON
+     *
+     * Features without geometry or with empty geometries are skipped.
+     *
+     * @param in the Reader to read from
+     * @return a List of CompactFeature
+     * @throws IOException if reading fails
+     * @throws JsonSyntaxException if the input isn't valid GeoJSON
+     */
+    @NonNull
+    static List<CompactFeature> read(@NonNull Reader in) throws IOException {
+        List<CompactFeature> features = new ArrayList<>();
+        JsonReader reader = new JsonReader(in);
+        try {
+            Content content = readObject(reader, features);
+            if (GeoJSONConstants.FEATURE.equals(content.type)) {
+                addFeature(content, features);
+            } else if (!GeoJSONConstants.FEATURE_COLLECTION.equals(content.type)) {
+                CompactGeometry geometry = toGeometry(content);
+                if (geometry != null && !geometry.isEmpty()) {
+                    features.add(new CompactFeature(null, null, geometry));
+                }
+            }
+        } catch (IllegalStateException | NumberFormatException | MalformedJsonException | EOFException e) {
+            // JsonReader signals unexpected tokens and truncated input with these
+            throw new JsonSyntaxException(e);
+        }
+        return features;
+    }
+
+    /**
+     * Read a GeoJSON object
+     *
+     * @param reader the JsonReader positioned at the start of the object
+     * @param features List that Features in a "features" member are added to
+     * @return the relevant content of the object
+     * @throws IOException if reading fails
+     */
+    @NonNull
+    private static Content readObject(@NonNull JsonReader reader, @NonNull List<CompactFeature> features) throws IOException {
+        Content content = new Content();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+            case TYPE:
+                content.type = reader.nextString();
+                break;
+            case ID:
+                if (reader.peek() == JsonToken.STRING || reader.peek() == JsonToken.NUMBER) {
+                    content.id = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+                break;
+            case PROPERTIES:
+                content.properties = new JsonParser().parse(reader).toString();
+                break;
+            case GEOMETRY:
+                content.geometry = toGeometry(readObject(reader, features));
+                break;
+            case COORDINATES:
+                content.coordinates = new CompactGeometry.Coordinates();
+                content.depth = readCoordinates(reader, content.coordinates);
+                if (content.depth == 2) {
+                    content.coordinates.parts.add(0);
+                } else if (content.depth == 3) {
+                    content.coordinates.polygons.add(0);
+                }
+                break;
+            case GEOMETRIES:
+                content.geometries = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    CompactGeometry geometry = toGeometry(readObject(reader, features));
+                    if (geometry != null) {
+                        content.geometries.add(geometry);
+                    }
+                }
+                reader.endArray();
+                break;
+            case FEATURES:
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Content feature = readObject(reader, features);
+                    if (GeoJSONConstants.FEATURE.equals(feature.type)) {
+                        addFeature(feature, features);
+                    }
+                }
+                reader.endArray();
+                break;
+            default:
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return content;
+    }
+
+    /**
+     * Recursively read a (nested) coordinate array
+     *
+     * Starts of lines and rings are added to the parts of the coordinates, starts of polygons to the polygons.
+     *
+     * @param reader the JsonReader positioned at the start of the array
+     * @param coordinates the Coordinates to add to
+     * @return the nesting depth, 1 for a position, 0 for an empty array
+     * @throws IOException if reading fails
+     */
+    private static int readCoordinates(@NonNull JsonReader reader, @NonNull CompactGeometry.Coordinates coordinates) throws IOException {
+        reader.beginArray();
+        if (reader.peek() == JsonToken.NUMBER) {
+            double lon = reader.nextDouble();
+            double lat = reader.nextDouble();
+            while (reader.hasNext()) {
+                reader.skipValue(); // altitude
+            }
+            reader.endArray();
+            coordinates.add(lon, lat);
+            return 1;
+        }
+        int depth = 0;
+        while (reader.hasNext()) {
+            int positionStart = coordinates.lons.size();
+            int partStart = coordinates.parts.size();
+            int childDepth = readCoordinates(reader, coordinates);
+            if (childDepth == 0) {
+                continue;
+            }
+            if (depth != 0 && childDepth + 1 != depth) {
+                throw new JsonSyntaxException("Inconsistent coordinate nesting");
+            }
+            depth = childDepth + 1;
+            if (childDepth == 2) {
+                coordinates.parts.add(positionStart);
+            } else if (childDepth == 3) {
+                coordinates.polygons.add(partStart);
+            }
+        }
+        reader.endArray();
+        return depth;
+    }
+
+    /**
+     * Create a CompactGeometry from the content of a geometry object
+     *
+     * @param content the Content
+     * @return a CompactGeometry or null if the object doesn't contain any coordinates
+     */
+    @Nullable
+    private static CompactGeometry toGeometry(@NonNull Content content) {
+        if (content.type == null) {
+            return null;
+        }
+        if (GeoJSONConstants.GEOMETRYCOLLECTION.equals(content.type)) {
+            return content.geometries != null ? new CompactGeometry(content.geometries) : null;
+        }
+        if (content.coordinates == null || content.depth == 0) {
+            return null;
+        }
+        if (content.depth != expectedDepth(content.type)) {
+            throw new JsonSyntaxException("Invalid coordinates for " + content.type);
+        }
+        return new CompactGeometry(content.type, content.coordinates);
+    }
+
+    /**
+     * Get the coordinate nesting depth for a geometry type
+     *
+     * @param type the GeoJSON geometry type
+     * @return the depth
+     */
+    private static int expectedDepth(@NonNull String type) {
+        switch (type) {
+        case GeoJSONConstants.POINT:
+            return 1;
+        case GeoJSONConstants.MULTIPOINT:
+        case GeoJSONConstants.LINESTRING:
+            return 2;
+        case GeoJSONConstants.MULTILINESTRING:
+        case GeoJSONConstants.POLYGON:
+            return 3;
+        case GeoJSONConstants.MULTIPOLYGON:
+            return 4;
+        default:
+            throw new JsonSyntaxException("Unknown geometry type " + type);
+        }
+    }
+
+    /**
+     * Add a Feature if it has a non-empty geometry
+     *
+     * @param content the content of the Feature object
+     * @param features the List to add to
+     */
+    private static void addFeature(@NonNull Content content, @NonNull List<CompactFeature> features) {
+        if (content.geometry != null && !content.geometry.isEmpty()) {
+            features.add(new CompactFeature(content.id, content.properties, content.geometry));
+        }
+    }
+}
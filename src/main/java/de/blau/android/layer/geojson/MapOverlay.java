@@ -8,24 +8,15 @@ import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.mapbox.geojson.CoordinateContainer;
+import com.google.gson.JsonSyntaxException;
 import com.mapbox.geojson.Feature;
-import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.Geometry;
-import com.mapbox.geojson.GeometryCollection;
-import com.mapbox.geojson.MultiPolygon;
-import com.mapbox.geojson.Point;
-import com.mapbox.geojson.Polygon;
-import com.mapbox.turf.TurfException;
-import com.mapbox.turf.TurfJoins;
 
 import android.content.Context;
 import android.graphics.Canvas;
@@ -54,19 +45,17 @@ import de.blau.android.osm.ViewBox;
 import de.blau.android.resources.DataStyle;
 import de.blau.android.resources.DataStyle.FeatureStyle;
 import de.blau.android.util.GeoJSONConstants;
-import de.blau.android.util.GeoJson;
 import de.blau.android.util.GeoMath;
+import de.blau.android.util.ProjectedPath;
 import de.blau.android.util.SavingHelper;
 import de.blau.android.util.SelectFile;
 import de.blau.android.util.Snack;
-import de.blau.android.util.collections.FloatPrimitiveList;
-import de.blau.android.util.rtree.BoundedObject;
-import de.blau.android.util.rtree.RTree;
+import de.blau.android.util.rtree.PackedRTree;
 import de.blau.android.views.IMapView;
 
 public class MapOverlay extends StyleableLayer implements Serializable, ExtentInterface, DiscardInterface, ClickableInterface<Feature>, LayerInfoInterface {
 
-    private static final long serialVersionUID = 2L;
+    private static final long serialVersionUID = 3L;
 
     private static final String DEBUG_TAG = MapOverlay.class.getName();
 
@@ -75,77 +64,13 @@ public class MapOverlay extends StyleableLayer implements Serializable, ExtentIn
     private transient SavingHelper<MapOverlay> savingHelper = new SavingHelper<>();
 
     /**
-     * Wrapper around mapboxes Feature class makes the object serializable and usable in an RTree
-     * 
-     * @author Simon Poole
-     *
+     * Minimum distance in pixels between rendered vertices
      */
-    class BoundedFeature implements BoundedObject, Serializable {
-        private static final long serialVersionUID = 1;
-
-        Feature     feature = null;
-        BoundingBox box     = null;
-
-        /**
-         * Constructor
-         * 
-         * @param f the Feature to wrap
-         */
-        public BoundedFeature(@Nullable Feature f) {
-            this.feature = f;
-        }
+    private static final float SIMPLIFICATION_DISTANCE = 1f;
 
-        @Override
-        public BoundingBox getBounds() {
-            if (box == null) {
-                JsonArray bbox = (JsonArray) feature.properties().get(GeoJSONConstants.BBOX);
-                if (bbox == null || bbox.size() != 4) {
-                    box = GeoJson.getBounds(feature.geometry());
-                } else { // the geojson contains a bbox, use that
-                    box = new BoundingBox(bbox.get(0).getAsDouble(), bbox.get(1).getAsDouble(), bbox.get(2).getAsDouble(), bbox.get(3).getAsDouble());
-                }
-            }
-            return box;
-        }
-
-        /**
-         * Get the wrapped Feature object
-         * 
-         * @return the Feature
-         */
-        @Nullable
-        public Feature getFeature() {
-            return feature;
-        }
-
-        /**
-         * Serialize this object
-         * 
-         * @param out ObjectOutputStream to write to
-         * @throws IOException if writing failes
-         */
-        private void writeObject(java.io.ObjectOutputStream out) throws IOException {
-            out.writeUTF(feature.toJson());
-            out.writeObject(box);
-        }
-
-        /**
-         * Recreate the object for serialized state
-         * 
-         * @param in ObjectInputStream to write from
-         * @throws IOException if reading failes
-         * @throws ClassNotFoundException the target Class isn't defined
-         */
-        private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
-            String jsonString = in.readUTF();
-            feature = Feature.fromJson(jsonString);
-            box = (BoundingBox) in.readObject();
-        }
-    }
-
-    private RTree<BoundedFeature>        data;
-    private final transient Path         path   = new Path();
-    private transient FloatPrimitiveList points = new FloatPrimitiveList();
+    private PackedRTree<CompactFeature>    data;
+    private final transient Path           path        = new Path();
+    private transient List<CompactFeature> queryResult = new ArrayList<>();
 
     /** Map this is an overlay of. */
     private final transient Map map;
@@ -193,18 +118,33 @@ public class MapOverlay extends StyleableLayer implements Serializable, ExtentIn
         ViewBox bb = osmv.getViewBox();
         int width = map.getWidth();
         int height = map.getHeight();
-        int zoomLevel = map.getZoomLevel();
+        boolean showLabels = map.getZoomLevel() > Map.SHOW_LABEL_LIMIT;
         labelFs = DataStyle.getInternal(DataStyle.LABELTEXT_NORMAL);
         labelPaint = labelFs.getPaint();
         labelBackground = DataStyle.getInternal(DataStyle.LABELTEXT_BACKGROUND).getPaint();
         labelStrokeWidth = labelPaint.getStrokeWidth();
+        // size of a pixel in WGS84*1E7
+        final long pixelWidth = bb.getWidth() / width;
+        final long pixelHeight = bb.getHeight() / height;
 
-        Collection<BoundedFeature> queryResult = new ArrayList<>();
+        if (queryResult == null) { // after deserialization
+            queryResult = new ArrayList<>();
+        }
+        queryResult.clear();
         data.query(queryResult, bb);
-        Log.d(DEBUG_TAG, "features result count " + queryResult.size());
-        for (BoundedFeature bf : queryResult) {
-            drawGeometry(canvas, bb, width, height, zoomLevel, bf.getFeature());
+        for (CompactFeature cf : queryResult) {
+            CompactGeometry g = cf.getGeometry();
+            String type = g.getType();
+            if (!GeoJSONConstants.POINT.equals(type) && !GeoJSONConstants.MULTIPOINT.equals(type)) {
+                BoundingBox box = cf.getBounds();
+                if (box.getWidth() < pixelWidth && box.getHeight() < pixelHeight) {
+                    // wouldn't be visible
+                    continue;
+                }
+            }
+            drawGeometry(canvas, bb, width, height, g, showLabels ? cf.getLabel(labelKey) : null);
         }
+        queryResult.clear();
     }
 
     /**
@@ -214,72 +154,37 @@ public class MapOverlay extends StyleableLayer implements Serializable, ExtentIn
      * @param bb the current ViewBox
      * @param width screen width in screen coordinates
      * @param height screen height in screen coordinates
-     * @param zoomLevel current zoom level
-     * @param f the Feature object to draw
+     * @param g the CompactGeometry to draw
+     * @param label label to display on points, null if none
      */
-    public void drawGeometry(@NonNull Canvas canvas, @NonNull ViewBox bb, int width, int height, int zoomLevel, @NonNull Feature f) {
-        Geometry g = f.geometry();
-        if (g == null) {
-            return;
-        }
-        String label = null;
-        if (zoomLevel > Map.SHOW_LABEL_LIMIT) {
-            label = getLabel(f);
-        }
-        switch (g.type()) {
+    private void drawGeometry(@NonNull Canvas canvas, @NonNull ViewBox bb, int width, int height, @NonNull CompactGeometry g, @Nullable String label) {
+        switch (g.getType()) {
         case GeoJSONConstants.POINT:
-            paint.setStyle(Paint.Style.STROKE);
-            drawPoint(canvas, bb, width, height, (Point) g, paint, label);
-            break;
         case GeoJSONConstants.MULTIPOINT:
-            @SuppressWarnings("unchecked")
-            List<Point> pointList = ((CoordinateContainer<List<Point>>) g).coordinates();
             paint.setStyle(Paint.Style.STROKE);
-            for (Point q : pointList) {
-                drawPoint(canvas, bb, width, height, q, paint, label);
+            for (int i = 0; i < g.lons.length; i++) {
+                drawPoint(canvas, bb, width, height, g.lons[i], g.lats[i], paint, label);
             }
             break;
         case GeoJSONConstants.LINESTRING:
-            @SuppressWarnings("unchecked")
-            List<Point> line = ((CoordinateContainer<List<Point>>) g).coordinates();
-            paint.setAntiAlias(true);
-            paint.setStyle(Paint.Style.STROKE);
-            drawLine(canvas, bb, width, height, line, paint);
-            canvas.drawPath(path, paint);
-            break;
         case GeoJSONConstants.MULTILINESTRING:
-            @SuppressWarnings("unchecked")
-            List<List<Point>> lines = ((CoordinateContainer<List<List<Point>>>) g).coordinates();
             paint.setAntiAlias(true);
             paint.setStyle(Paint.Style.STROKE);
-            for (List<Point> l : lines) {
-                drawLine(canvas, bb, width, height, l, paint);
-            }
+            drawParts(canvas, bb, width, height, g, false, paint);
             break;
         case GeoJSONConstants.POLYGON:
-            @SuppressWarnings("unchecked")
-            List<List<Point>> rings = ((CoordinateContainer<List<List<Point>>>) g).coordinates();
-            paint.setAntiAlias(true);
-            paint.setStyle(Paint.Style.FILL_AND_STROKE);
-            drawPolygon(canvas, bb, width, height, rings, paint);
-            break;
         case GeoJSONConstants.MULTIPOLYGON:
-            @SuppressWarnings("unchecked")
-            List<List<List<Point>>> polygons = ((CoordinateContainer<List<List<List<Point>>>>) g).coordinates();
             paint.setAntiAlias(true);
             paint.setStyle(Paint.Style.FILL_AND_STROKE);
-            for (List<List<Point>> polygon : polygons) {
-                drawPolygon(canvas, bb, width, height, polygon, paint);
-            }
+            drawParts(canvas, bb, width, height, g, true, paint);
             break;
         case GeoJSONConstants.GEOMETRYCOLLECTION:
-            List<Geometry> geometries = ((GeometryCollection) g).geometries();
-            for (Geometry geometry : geometries) {
-                drawGeometry(canvas, bb, width, height, zoomLevel, Feature.fromGeometry(geometry));
+            for (CompactGeometry geometry : g.geometries) {
+                drawGeometry(canvas, bb, width, height, geometry, label);
             }
             break;
         default:
-            Log.e(DEBUG_TAG, "drawGeometry unknown GeoJSON geometry " + g.type());
+            Log.e(DEBUG_TAG, "drawGeometry unknown GeoJSON geometry " + g.getType());
         }
     }
 
@@ -290,16 +195,16 @@ public class MapOverlay extends StyleableLayer implements Serializable, ExtentIn
      * @param bb the current ViewBox
      * @param width screen width in screen coordinates
      * @param height screen height in screen coordinates
-     * @param p the Position of the marker
+     * @param lon WGS84*1E7 longitude of the marker
+     * @param lat WGS84*1E7 latitude of the marker
      * @param paint Paint object for drawing
      * @param label label to display, null if none
      */
-    public void drawPoint(@NonNull Canvas canvas, @NonNull ViewBox bb, int width, int height, @NonNull Point p, @NonNull Paint paint, @Nullable String label) {
-        double lon = p.longitude();
-        double lat = p.latitude();
+    private void drawPoint(@NonNull Canvas canvas, @NonNull ViewBox bb, int width, int height, int lon, int lat, @NonNull Paint paint,
+            @Nullable String label) {
         if (bb.contains(lon, lat)) {
-            float x = GeoMath.lonToX(width, bb, p.longitude());
-            float y = GeoMath.latToY(height, width, bb, p.latitude());
+            float x = GeoMath.lonE7ToX(width, bb, lon);
+            float y = GeoMath.latE7ToY(height, width, bb, lat);
             canvas.save();
             canvas.translate(x, y);
             canvas.drawPath(DataStyle.getCurrent().getWaypointPath(), paint);
@@ -316,54 +221,25 @@ public class MapOverlay extends StyleableLayer implements Serializable, ExtentIn
     }
 
     /**
-     * Draw a line
+     * Draw all lines or rings of a geometry as a single path
      * 
-     * @param canvas Canvas object we are drawing on
-     * @param bb the current ViewBox
-     * @param width screen width in screen coordinates
-     * @param height screen height in screen coordinates
-     * @param line List of Position objects defining the line to draw
-     * @param paint Paint object for drawing
-     */
-    public void drawLine(@NonNull Canvas canvas, @NonNull ViewBox bb, int width, int height, @NonNull List<Point> line, @NonNull Paint paint) {
-        GeoJson.pointListToLinePointsArray(bb, width, height, points, line);
-        float[] linePoints = points.getArray();
-        int pointsSize = points.size();
-        if (pointsSize > 2) {
-            path.reset();
-            path.moveTo(linePoints[0], linePoints[1]);
-            for (int i = 0; i < pointsSize; i = i + 4) {
-                path.lineTo(linePoints[i + 2], linePoints[i + 3]);
-            }
-            canvas.drawPath(path, paint);
-        }
-    }
-
-    /**
-     * Draw a polygon
+     * Vertices closer than SIMPLIFICATION_DISTANCE pixels are dropped.
      * 
      * @param canvas Canvas object we are drawing on
      * @param bb the current ViewBox
      * @param width screen width in screen coordinates
      * @param height screen height in screen coordinates
-     * @param polygon List of List of Position objects defining the polygon rings
+     * @param g the CompactGeometry
+     * @param rings if true close the parts and fill with the even-odd rule
      * @param paint Paint object for drawing
      */
-    public void drawPolygon(@NonNull Canvas canvas, @NonNull ViewBox bb, int width, int height, @NonNull List<List<Point>> polygon, @NonNull Paint paint) {
+    private void drawParts(@NonNull Canvas canvas, @NonNull ViewBox bb, int width, int height, @NonNull CompactGeometry g, boolean rings,
+            @NonNull Paint paint) {
         path.reset();
-        for (List<Point> ring : polygon) {
-            GeoJson.pointListToLinePointsArray(bb, width, height, points, ring);
-            float[] linePoints = points.getArray();
-            int pointsSize = points.size();
-            if (pointsSize > 2) {
-                path.moveTo(linePoints[0], linePoints[1]);
-                for (int i = 0; i < pointsSize; i = i + 4) {
-                    path.lineTo(linePoints[i + 2], linePoints[i + 3]);
-                }
-                path.close();
-            }
+        for (int p = 0; p < g.parts.length; p++) {
+            ProjectedPath.add(path, g.lons, g.mercatorLats, g.parts[p], g.partEnd(p), bb, width, height, SIMPLIFICATION_DISTANCE, rings);
         }
-        path.setFillType(Path.FillType.EVEN_ODD);
+        path.setFillType(rings ? Path.FillType.EVEN_ODD : Path.FillType.WINDING);
         canvas.drawPath(path, paint);
     }
 
@@ -438,71 +314,37 @@ public class MapOverlay extends StyleableLayer implements Serializable, ExtentIn
         // don't draw while we are loading
         setVisible(false);
         BufferedReader rd = new BufferedReader(new InputStreamReader(is, Charset.forName(OsmXml.UTF_8)));
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        try {
-            while ((cp = rd.read()) != -1) {
-                sb.append((char) cp);
-            }
-        } catch (OutOfMemoryError oom) {
-            Snack.toastTopError(map.getContext(), R.string.out_of_memory_title);
-            Log.e(DEBUG_TAG, "Out of memory error " + oom.getMessage());
-            return false;
-        }
         try {
-            data = new RTree<>(2, 12);
-            String json = sb.toString();
-            FeatureCollection fc = FeatureCollection.fromJson(json);
-            List<Feature> features = fc.features();
-            if (features != null) {
-                loadFeatures(features);
-            } else {
-                Log.d(DEBUG_TAG, "Retrying as Feature");
-                Feature f = Feature.fromJson(json);
-                Geometry g = f.geometry();
-                if (g != null) {
-                    data.insert(new BoundedFeature(f));
-                } else {
-                    g = GeoJson.geometryFromJson(json);
-                    Log.d(DEBUG_TAG, "Geometry " + g.type());
-                    if (g.type() != null) {
-                        data.insert(new BoundedFeature(Feature.fromGeometry(g)));
-                    }
-                }
-            }
-            setVisible(true); // enable too
+            List<CompactFeature> features = GeoJsonReader.read(rd);
+            Log.d(DEBUG_TAG, "Read " + features.size() + " features");
+            data = new PackedRTree<>(features);
             successful = true;
             if (!fromState) {
                 dirty();
             }
-        } catch (com.google.gson.JsonSyntaxException jsex) {
+        } catch (OutOfMemoryError oom) {
+            data = null;
+            Snack.toastTopError(map.getContext(), R.string.out_of_memory_title);
+            Log.e(DEBUG_TAG, "Out of memory error " + oom.getMessage());
+        } catch (JsonSyntaxException jsex) {
             data = null;
             Snack.toastTopError(ctx, jsex.getLocalizedMessage());
             Log.e(DEBUG_TAG, "Syntax error " + jsex.getMessage());
+        } catch (IOException ioex) {
+            data = null;
+            throw ioex;
         } catch (Exception e) {
             // never crash
             data = null;
             Snack.toastTopError(ctx, e.getLocalizedMessage());
             Log.e(DEBUG_TAG, "Exception " + e.getMessage());
+        } finally {
+            // re-enable drawing
+            setVisible(true);
         }
-        // re-enable drawing
-        setVisible(true);
         return successful;
     }
 
-    /**
-     * @param features a List of Feature
-     */
-    private void loadFeatures(List<Feature> features) {
-        for (Feature f : features) {
-            if (GeoJSONConstants.FEATURE.equals(f.type()) && f.geometry() != null) {
-                data.insert(new BoundedFeature(f));
-            } else {
-                Log.e(DEBUG_TAG, "Type of object " + f.type() + " geometry " + f.geometry());
-            }
-        }
-    }
-
     @Override
     protected synchronized boolean save(@NonNull Context context) throws IOException {
         Log.d(DEBUG_TAG, "Saving state to " + stateFileName);
@@ -522,7 +364,7 @@ public class MapOverlay extends StyleableLayer implements Serializable, ExtentIn
 
     /**
      * Given screen coordinates, find all nearby elements.
-     *
+     * 
      * @param x Screen X-coordinate.
      * @param y Screen Y-coordinate.
      * @param viewBox Map view box.
@@ -534,17 +376,12 @@ public class MapOverlay extends StyleableLayer implements Serializable, ExtentIn
         Log.d(DEBUG_TAG, "getClicked");
         if (data != null) {
             final float tolerance = DataStyle.getCurrent().getNodeToleranceValue();
-            Collection<BoundedFeature> queryResult = new ArrayList<>();
-            data.query(queryResult, viewBox);
-            Log.d(DEBUG_TAG, "features result count " + queryResult.size());
-            for (BoundedFeature bf : queryResult) {
-                Feature f = bf.getFeature();
-                Geometry g = f.geometry();
-                if (g == null) {
-                    continue;
-                }
-                if (geometryClicked(x, y, viewBox, tolerance, g)) {
-                    result.add(f);
+            List<CompactFeature> candidates = new ArrayList<>();
+            data.query(candidates, viewBox);
+            Log.d(DEBUG_TAG, "features result count " + candidates.size());
+            for (CompactFeature cf : candidates) {
+                if (geometryClicked(x, y, viewBox, tolerance, cf.getGeometry())) {
+                    result.add(cf.toFeature());
                 }
             }
         }
@@ -559,77 +396,63 @@ public class MapOverlay extends StyleableLayer implements Serializable, ExtentIn
      * @param y Screen Y-coordinate.
      * @param viewBox Map view box.
      * @param tolerance the tolerance value to use
-     * @param g the Geometry
+     * @param g the CompactGeometry
      * @return true if clicked
      */
-    @SuppressWarnings("unchecked")
-    boolean geometryClicked(final float x, final float y, @NonNull final ViewBox viewBox, final float tolerance, @NonNull Geometry g) {
-        switch (g.type()) {
+    boolean geometryClicked(final float x, final float y, @NonNull final ViewBox viewBox, final float tolerance, @NonNull CompactGeometry g) {
+        switch (g.getType()) {
         case GeoJSONConstants.POINT:
-            return inToleranceArea(viewBox, tolerance, (Point) g, x, y);
         case GeoJSONConstants.MULTIPOINT:
-            for (Point q : ((CoordinateContainer<List<Point>>) g).coordinates()) {
-                if (inToleranceArea(viewBox, tolerance, q, x, y)) {
+            for (int i = 0; i < g.lons.length; i++) {
+                if (inToleranceArea(viewBox, tolerance, g.lons[i], g.lats[i], x, y)) {
                     return true;
                 }
             }
             break;
         case GeoJSONConstants.LINESTRING:
-            return distanceToLineString(x, y, map, viewBox, ((CoordinateContainer<List<Point>>) g).coordinates()) >= 0;
         case GeoJSONConstants.MULTILINESTRING:
-            for (List<Point> l : ((CoordinateContainer<List<List<Point>>>) g).coordinates()) {
-                if (distanceToLineString(x, y, map, viewBox, l) >= 0) {
+            for (int p = 0; p < g.parts.length; p++) {
+                if (distanceToLineString(x, y, viewBox, g, g.parts[p], g.partEnd(p)) >= 0) {
                     return true;
                 }
             }
             break;
         case GeoJSONConstants.POLYGON:
         case GeoJSONConstants.MULTIPOLYGON:
-            try {
-                final Point point = pointFromScreenCoords(x, y, viewBox);
-                return GeoJSONConstants.POLYGON.equals(g.type()) ? TurfJoins.inside(point, (Polygon) g) : TurfJoins.inside(point, (MultiPolygon) g);
-            } catch (TurfException e) {
-                Log.e(DEBUG_TAG, "Exception in getClicked " + e);
-            }
-            break;
+            int width = map.getWidth();
+            return g.contains(GeoMath.xToLonE7(width, viewBox, x), GeoMath.yToLatE7(map.getHeight(), width, viewBox, y));
         case GeoJSONConstants.GEOMETRYCOLLECTION:
-            for (Geometry geometry : ((GeometryCollection) g).geometries()) {
+            for (CompactGeometry geometry : g.geometries) {
                 if (geometryClicked(x, y, viewBox, tolerance, geometry)) {
                     return true;
                 }
             }
             break;
         default:
-            Log.e(DEBUG_TAG, "Unsupported geometry " + g.type());
+            Log.e(DEBUG_TAG, "Unsupported geometry " + g.getType());
         }
         return false;
     }
 
     /**
-     * Determine if screen coords are within the tolerance for a geojson linestring
+     * Determine if screen coords are within the tolerance for a line
      * 
      * @param x x screen coord
      * @param y y screen coord
-     * @param map map object
      * @param viewBox the current ViewBox
-     * @param vertices the list of lineString vertices
+     * @param g the CompactGeometry containing the line
+     * @param start index of the first vertex of the line
+     * @param end index after the last vertex of the line
      * @return if the returned value is > 0 then the coords are in the tolerance
      */
-    private double distanceToLineString(final float x, final float y, final Map map, final ViewBox viewBox, List<Point> vertices) {
-        float p1X = Float.MAX_VALUE;
-        float p1Y = Float.MAX_VALUE;
+    private double distanceToLineString(final float x, final float y, @NonNull final ViewBox viewBox, @NonNull CompactGeometry g, int start, int end) {
         int width = map.getWidth();
         int height = map.getHeight();
-        // Iterate over all WayNodes, but not the last one.
-        for (int k = 0, verticesSize = vertices.size(); k < verticesSize - 1; ++k) {
-            Point p1 = vertices.get(k);
-            Point p2 = vertices.get(k + 1);
-            if (k==0) {
-                p1X = GeoMath.lonToX(width, viewBox, p1.longitude());
-                p1Y = GeoMath.latToY(height, width, viewBox, p1.latitude());
-            }
-            float p2X = GeoMath.lonToX(width, viewBox, p2.longitude());
-            float p2Y = GeoMath.latToY(height, width, viewBox, p2.latitude());
+        float p1X = GeoMath.lonE7ToX(width, viewBox, g.lons[start]);
+        float p1Y = GeoMath.latE7ToY(height, width, viewBox, g.lats[start]);
+        for (int k = start + 1; k < end; k++) {
+            float p2X = GeoMath.lonE7ToX(width, viewBox, g.lons[k]);
+            float p2Y = GeoMath.latE7ToY(height, width, viewBox, g.lats[k]);
             double distance = de.blau.android.util.Geometry.isPositionOnLine(x, y, p1X, p1Y, p2X, p2Y);
             if (distance >= 0) {
                 return distance;
@@ -641,44 +464,35 @@ public class MapOverlay extends StyleableLayer implements Serializable, ExtentIn
     }
 
     /**
-     * Check if the current touch position is in the tolerance area around a Position
+     * Check if the current touch position is in the tolerance area around a position
      * 
      * @param viewBox the current screen ViewBox
      * @param tolerance the tolerance value
-     * @param p the Position
+     * @param lon WGS84*1E7 longitude of the position
+     * @param lat WGS84*1E7 latitude of the position
      * @param x screen x coordinate of touch location
      * @param y screen y coordinate of touch location
      * @return true if touch position is in tolerance
      */
-    private boolean inToleranceArea(@NonNull ViewBox viewBox, float tolerance, @NonNull Point p, float x, float y) {
-        float differenceX = Math.abs(GeoMath.lonToX(map.getWidth(), viewBox, p.longitude()) - x);
-        float differenceY = Math.abs(GeoMath.latToY(map.getHeight(), map.getWidth(), viewBox, p.latitude()) - y);
+    private boolean inToleranceArea(@NonNull ViewBox viewBox, float tolerance, int lon, int lat, float x, float y) {
+        float differenceX = Math.abs(GeoMath.lonE7ToX(map.getWidth(), viewBox, lon) - x);
+        float differenceY = Math.abs(GeoMath.latE7ToY(map.getHeight(), map.getWidth(), viewBox, lat) - y);
         return differenceX <= tolerance && differenceY <= tolerance && Math.hypot(differenceX, differenceY) <= tolerance;
     }
 
-    /**
-     * Create a Point object from a screen coordinate tupel
-     * 
-     * @param x x screen coordinate
-     * @param y y screen coordinate
-     * @param viewBox the current ViewBox
-     * @return a Point object
-     */
-    private Point pointFromScreenCoords(final float x, final float y, @NonNull final ViewBox viewBox) {
-        return Point.fromLngLat(GeoMath.xToLonE7(map.getWidth(), viewBox, x) / 1E7D, GeoMath.yToLatE7(map.getHeight(), map.getWidth(), viewBox, y) / 1E7D);
-    }
-
     /**
      * Return a List of all loaded Features
      * 
      * @return a List of Feature objects
      */
     public List<Feature> getFeatures() {
-        Collection<BoundedFeature> queryResult = new ArrayList<>();
-        data.query(queryResult);
         List<Feature> result = new ArrayList<>();
-        for (BoundedFeature bf : queryResult) {
-            result.add(bf.getFeature());
+        if (data != null) {
+            List<CompactFeature> all = new ArrayList<>();
+            data.query(all);
+            for (CompactFeature cf : all) {
+                result.add(cf.toFeature());
+            }
         }
         return result;
     }
@@ -695,19 +509,16 @@ public class MapOverlay extends StyleableLayer implements Serializable, ExtentIn
     @Override
     public List<String> getLabelList() {
         if (data != null) {
-            Collection<BoundedFeature> queryResult = new ArrayList<>();
-            data.query(queryResult);
+            List<CompactFeature> all = new ArrayList<>();
+            data.query(all);
             Set<String> result = new TreeSet<>();
-            for (BoundedFeature bf : queryResult) {
-                Feature feature = bf.getFeature();
-                if (feature != null) {
-                    JsonObject properties = feature.properties();
-                    if (properties != null) {
-                        for (String key : properties.keySet()) {
-                            JsonElement e = properties.get(key);
-                            if (e != null && e.isJsonPrimitive()) {
-                                result.add(key);
-                            }
+            for (CompactFeature cf : all) {
+                JsonObject properties = cf.getProperties();
+                if (properties != null) {
+                    for (String key : properties.keySet()) {
+                        JsonElement e = properties.get(key);
+                        if (e != null && e.isJsonPrimitive()) {
+                            result.add(key);
                         }
                     }
                 }
@@ -762,17 +573,7 @@ public class MapOverlay extends StyleableLayer implements Serializable, ExtentIn
     @Override
     public BoundingBox getExtent() {
         if (data != null) {
-            Collection<BoundedFeature> queryResult = new ArrayList<>();
-            data.query(queryResult);
-            BoundingBox extent = null;
-            for (BoundedFeature bf : queryResult) {
-                if (extent == null) {
-                    extent = bf.getBounds();
-                } else {
-                    extent.union(bf.getBounds());
-                }
-            }
-            return extent;
+            return data.getBounds();
         }
         return null;
     }
@@ -841,10 +642,10 @@ public class MapOverlay extends StyleableLayer implements Serializable, ExtentIn
         Info info = new Info();
         info.name = getName();
         info.path = uri;
-        Collection<BoundedFeature> queryResult = new ArrayList<>();
-        data.query(queryResult);
-        for (BoundedFeature bf : queryResult) {
-            switch (bf.getFeature().geometry().type()) {
+        List<CompactFeature> all = new ArrayList<>();
+        data.query(all);
+        for (CompactFeature cf : all) {
+            switch (cf.getGeometry().getType()) {
             case GeoJSONConstants.POINT:
                 info.pointCount++;
                 break;
@@ -16,6 +16,8 @@ import de.blau.android.Map;
 import de.blau.android.R;
 import de.blau.android.dialogs.ViewWayPoint;
 import de.blau.android.gpx.TrackPoint;
+import de.blau.android.gpx.TrackPointStore;
+import de.blau.android.gpx.TrackPointStore.Chunk;
 import de.blau.android.gpx.WayPoint;
 import de.blau.android.layer.ClickableInterface;
 import de.blau.android.layer.ExtentInterface;
@@ -37,6 +39,8 @@ public class MapOverlay extends StyleableLayer implements Serializable, ExtentIn
 
     private static final String DEBUG_TAG = MapOverlay.class.getName();
 
+    private static final float LOD_TOLERANCE = 1.5f; // px
+
     private transient TrackerService tracker;
 
     /** Map this is an overlay of. */
@@ -73,9 +77,9 @@ public class MapOverlay extends StyleableLayer implements Serializable, ExtentIn
         if (!isVisible || tracker == null) {
             return;
         }
-        List<TrackPoint> trackPoints = tracker.getTrackPoints();
+        TrackPointStore trackPoints = tracker.getTrack().getTrack();
         if (!trackPoints.isEmpty()) {
-            map.pointListToLinePointsArray(linePoints, trackPoints);
+            trackToLinePointsArray(linePoints, trackPoints);
             canvas.drawLines(linePoints.getArray(), 0, linePoints.size(), paint);
         }
         WayPoint[] wayPoints = tracker.getTrack().getWayPoints();
@@ -116,6 +120,76 @@ public class MapOverlay extends StyleableLayer implements Serializable, ExtentIn
         }
     }
 
+    /**
+     * Convert the track to screen coordinates for drawing
+     * 
+     * Chunks that are not on screen are skipped and points that are closer than LOD_TOLERANCE px to the previous drawn
+     * point are dropped, which results in a simplification level appropriate for the current zoom.
+     * 
+     * @param points the FloatPrimitiveList to fill
+     * @param track the track
+     */
+    private void trackToLinePointsArray(@NonNull FloatPrimitiveList points, @NonNull TrackPointStore track) {
+        points.clear();
+        ViewBox box = map.getViewBox();
+        int w = map.getWidth();
+        int h = map.getHeight();
+        int lonTolerance = (int) (box.getWidth() * LOD_TOLERANCE / w);
+        int latTolerance = (int) (lonTolerance * Math.cos(Math.toRadians(box.getCenterLat())));
+        int size = track.size();
+        int chunkCount = track.getChunkCount();
+        boolean hasPrev = false;
+        int prevLat = 0;
+        int prevLon = 0;
+        float prevX = -Float.MAX_VALUE; // not projected
+        float prevY = 0;
+        for (int c = 0; c < chunkCount; c++) {
+            Chunk chunk = track.getChunk(c);
+            int chunkSize = Math.min(chunk.size(), size - c * TrackPointStore.CHUNK_SIZE);
+            if (chunkSize <= 0) {
+                break;
+            }
+            if (!box.isIntersectionPossible(chunk.getLeft(), chunk.getBottom(), chunk.getRight(), chunk.getTop())) {
+                hasPrev = true;
+                prevLat = chunk.getLat(chunkSize - 1);
+                prevLon = chunk.getLon(chunkSize - 1);
+                prevX = -Float.MAX_VALUE;
+                continue;
+            }
+            for (int i = 0; i < chunkSize; i++) {
+                int lat = chunk.getLat(i);
+                int lon = chunk.getLon(i);
+                if (hasPrev && !chunk.isNewSegment(i)) {
+                    boolean last = i == chunkSize - 1 && c == chunkCount - 1;
+                    if (!last && Math.abs(lat - prevLat) < latTolerance && Math.abs(lon - prevLon) < lonTolerance) {
+                        continue; // too close to be visible at this zoom
+                    }
+                    if (box.isIntersectionPossible(lon, lat, prevLon, prevLat)) {
+                        if (prevX == -Float.MAX_VALUE) {
+                            prevX = GeoMath.lonE7ToX(w, box, prevLon);
+                            prevY = GeoMath.latE7ToY(h, w, box, prevLat);
+                        }
+                        float x = GeoMath.lonE7ToX(w, box, lon);
+                        float y = GeoMath.latE7ToY(h, w, box, lat);
+                        points.add(prevX);
+                        points.add(prevY);
+                        points.add(x);
+                        points.add(y);
+                        prevX = x;
+                        prevY = y;
+                    } else {
+                        prevX = -Float.MAX_VALUE;
+                    }
+                } else {
+                    prevX = -Float.MAX_VALUE;
+                }
+                hasPrev = true;
+                prevLat = lat;
+                prevLon = lon;
+            }
+        }
+    }
+
     @Override
     protected void onDrawFinished(Canvas c, IMapView osmv) {
         // do nothing
@@ -164,10 +238,20 @@ public class MapOverlay extends StyleableLayer implements Serializable, ExtentIn
     @Override
     public BoundingBox getExtent() {
         if (tracker != null) {
-            List<TrackPoint> trackPoints = tracker.getTrackPoints();
-            trackPoints.addAll(tracker.getWayPoints());
+            TrackPointStore track = tracker.getTrack().getTrack();
             BoundingBox result = null;
-            for (TrackPoint tp : trackPoints) {
+            int chunkCount = track.getChunkCount();
+            for (int c = 0; c < chunkCount; c++) {
+                Chunk chunk = track.getChunk(c);
+                if (chunk.size() > 0) {
+                    if (result == null) {
+                        result = new BoundingBox(chunk.getLeft(), chunk.getBottom(), chunk.getRight(), chunk.getTop());
+                    } else {
+                        result.union(new BoundingBox(chunk.getLeft(), chunk.getBottom(), chunk.getRight(), chunk.getTop()));
+                    }
+                }
+            }
+            for (TrackPoint tp : tracker.getWayPoints()) {
                 if (result == null) {
                     result = new BoundingBox(tp.getLongitude(), tp.getLatitude());
                 } else {
@@ -17,6 +17,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.FragmentActivity;
+import de.blau.android.App;
 import de.blau.android.Map;
 import de.blau.android.PostAsyncActionHandler;
 import de.blau.android.R;
@@ -92,8 +93,10 @@ public class MapOverlay extends MapViewLayer implements DiscardInterface, Clicka
             if (!indexing) {
                 indexing = true;
                 publishProgress(0);
+                if (App.getPhotoIndex() == null) {
+                    pi.fill(null); // show what we already know while the update runs
+                }
                 pi.createOrUpdateIndex();
-                pi.fill(null);
                 publishProgress(1);
                 indexing = false;
                 indexed = true;
@@ -0,0 +1,861 @@
+package de.blau.android.names;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.google.gson.stream.JsonReader;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.blau.android.osm.Tags;
+import de.blau.android.util.SearchIndexUtils;
+
+/**
+ * Compact binary representation of the name suggestion index that is read via a memory mapped file
+ *
+ * The file is generated once from the JSON NSI and category files and consists of
+ * <ul>
+ * <li>a sorted string table, string ids are in sort order so that lookups can use binary search</li>
+ * <li>a region table and region set bitmasks</li>
+ * <li>a tag set dictionary, entries with the same tags share the same tag set</li>
+ * <li>the entries (name, tag set, count and region set) sorted by name</li>
+ * <li>normalized name to entry and tag to entry posting lists</li>
+ * <li>the categories</li>
+ * </ul>
+ * All values are stored as big endian ints and longs.
+ *
+ * @author simon
+ *
+ */
+public final class NameIndex {
+    private static final String DEBUG_TAG = "NameIndex";
+
+    public static final String INDEX_FILE = "name-suggestions.idx";
+
+    private static final int MAGIC   = 0x4e534931; // NSI1
+    private static final int VERSION = 1;
+
+    private static final int NO_REGIONS = -1;
+
+    private static final int ENTRY_NAME       = 0;
+    private static final int ENTRY_TAGSET     = 1;
+    private static final int ENTRY_COUNT      = 2;
+    private static final int ENTRY_REGIONSET  = 3;
+    private static final int ENTRY_SIZE       = 4;
+    private static final int INT_SIZE         = 4;
+    private static final int LONG_SIZE        = 8;
+    private static final int[] EMPTY_POSTINGS = new int[0];
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+    private final ByteBuffer reader;
+    private final long       stamp;
+
+    private final int stringCount;
+    private final int stringOffsetsPos;
+    private final int stringDataPos;
+
+    private final int regionCount;
+    private final int regionIdsPos;
+    private final int regionWords;
+    private final int regionSetsPos;
+
+    private final int tagSetOffsetsPos;
+    private final int tagSetPairsPos;
+
+    private final int entryCount;
+    private final int entriesPos;
+
+    private final PostingTable normalizedNames;
+    private final PostingTable tags;
+    private final PostingTable categories;
+
+    private final String[] strings;
+
+    /**
+     * A table of sorted string ids, each with a list of int values
+     *
+     * @author simon
+     *
+     */
+    private final class PostingTable {
+        final int count;
+        final int idsPos;
+        final int offsetsPos;
+        final int postingsPos;
+
+        /**
+         * Construct a new table starting at pos
+         *
+         * @param pos the position of the table in the buffer
+         */
+        PostingTable(int pos) {
+            count = buffer.getInt(pos);
+            idsPos = pos + INT_SIZE;
+            offsetsPos = idsPos + count * INT_SIZE;
+            postingsPos = offsetsPos + (count + 1) * INT_SIZE;
+        }
+
+        /**
+         * @return the position of the first byte after this table
+         */
+        int end() {
+            return postingsPos + buffer.getInt(offsetsPos + count * INT_SIZE) * INT_SIZE;
+        }
+
+        /**
+         * Get the string id for an row
+         *
+         * @param row the row
+         * @return the string id
+         */
+        int getId(int row) {
+            return buffer.getInt(idsPos + row * INT_SIZE);
+        }
+
+        /**
+         * Find the row for a string
+         *
+         * @param s the string
+         * @return the row or a negative value if not found
+         */
+        int find(@NonNull String s) {
+            int id = findString(s);
+            return id < 0 ? -1 : binarySearch(idsPos, count, id);
+        }
+
+        /**
+         * Get the values for a row
+         *
+         * @param row the row
+         * @return an array of int values
+         */
+        @NonNull
+        int[] get(int row) {
+            if (row < 0) {
+                return EMPTY_POSTINGS;
+            }
+            int start = buffer.getInt(offsetsPos + row * INT_SIZE);
+            int end = buffer.getInt(offsetsPos + (row + 1) * INT_SIZE);
+            int[] result = new int[end - start];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = buffer.getInt(postingsPos + (start + i) * INT_SIZE);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Map an existing index file
+     *
+     * @param file the index file
+     * @throws IOException if the file can't be read or is not a valid index
+     */
+    private NameIndex(@NonNull File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        reader = buffer.duplicate();
+        if (buffer.capacity() < 16 || buffer.getInt(0) != MAGIC || buffer.getInt(INT_SIZE) != VERSION) {
+            throw new IOException("Not a valid name index " + file.getAbsolutePath());
+        }
+        stamp = buffer.getLong(2 * INT_SIZE);
+        int pos = 2 * INT_SIZE + LONG_SIZE;
+
+        stringCount = buffer.getInt(pos);
+        stringOffsetsPos = pos + INT_SIZE;
+        stringDataPos = stringOffsetsPos + (stringCount + 1) * INT_SIZE;
+        pos = stringDataPos + buffer.getInt(stringOffsetsPos + stringCount * INT_SIZE);
+        strings = new String[stringCount];
+
+        regionCount = buffer.getInt(pos);
+        regionIdsPos = pos + INT_SIZE;
+        pos = regionIdsPos + regionCount * INT_SIZE;
+        regionWords = buffer.getInt(pos);
+        int regionSetCount = buffer.getInt(pos + INT_SIZE);
+        regionSetsPos = pos + 2 * INT_SIZE;
+        pos = regionSetsPos + regionSetCount * regionWords * LONG_SIZE;
+
+        int tagSetCount = buffer.getInt(pos);
+        tagSetOffsetsPos = pos + INT_SIZE;
+        tagSetPairsPos = tagSetOffsetsPos + (tagSetCount + 1) * INT_SIZE;
+        pos = tagSetPairsPos + buffer.getInt(tagSetOffsetsPos + tagSetCount * INT_SIZE) * 2 * INT_SIZE;
+
+        entryCount = buffer.getInt(pos);
+        entriesPos = pos + INT_SIZE;
+        pos = entriesPos + entryCount * ENTRY_SIZE * INT_SIZE;
+
+        normalizedNames = new PostingTable(pos);
+        tags = new PostingTable(normalizedNames.end());
+        categories = new PostingTable(tags.end());
+    }
+
+    /**
+     * Open an existing index
+     *
+     * @param file the index file
+     * @param expectedStamp the stamp the index should have, if it has a different one null is returned
+     * @return a NameIndex or null if the file doesn't exist, is invalid or stale
+     */
+    @Nullable
+    public static NameIndex open(@NonNull File file, long expectedStamp) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            NameIndex index = new NameIndex(file);
+            if (index.stamp == expectedStamp) {
+                return index;
+            }
+            Log.i(DEBUG_TAG, "Name index is stale");
+        } catch (IOException | IndexOutOfBoundsException e) {
+            Log.e(DEBUG_TAG, "Opening " + file.getAbsolutePath() + " failed " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Build an index from the NSI and categories json and open it
+     *
+     * If the categories can't be read the index is created without them.
+     *
+     * @param nsi InputStream for the NSI json
+     * @param categoriesJson InputStream for the categories json or null
+     * @param file the target file
+     * @param stamp a value identifying the source data
+     * @return a NameIndex
+     * @throws IOException if reading the NSI or writing fails
+     */
+    @NonNull
+    public static NameIndex create(@NonNull InputStream nsi, @Nullable InputStream categoriesJson, @NonNull File file, long stamp) throws IOException {
+        File temp = new File(file.getAbsolutePath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            new Builder().read(nsi, categoriesJson).write(out, stamp);
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Renaming " + temp.getAbsolutePath() + " failed");
+        }
+        return new NameIndex(file);
+    }
+
+    /**
+     * @return the stamp identifying the source data
+     */
+    public long getStamp() {
+        return stamp;
+    }
+
+    /**
+     * Get a string from the string table
+     *
+     * @param id the string id
+     * @return the string
+     */
+    @NonNull
+    synchronized String getString(int id) {
+        String s = strings[id];
+        if (s == null) {
+            int start = buffer.getInt(stringOffsetsPos + id * INT_SIZE);
+            byte[] bytes = new byte[buffer.getInt(stringOffsetsPos + (id + 1) * INT_SIZE) - start];
+            reader.position(stringDataPos + start);
+            reader.get(bytes);
+            s = new String(bytes, UTF_8);
+            strings[id] = s;
+        }
+        return s;
+    }
+
+    /**
+     * Find the id of a string by binary search
+     *
+     * @param s the string
+     * @return the id or a negative value if not found
+     */
+    int findString(@NonNull String s) {
+        int low = 0;
+        int high = stringCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = getString(mid).compareTo(s);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Binary search in a sorted int array stored in the buffer
+     *
+     * @param pos start of the array
+     * @param length number of elements
+     * @param value the value to search for
+     * @return the index of the value or -1 if not found
+     */
+    private int binarySearch(int pos, int length, int value) {
+        int low = 0;
+        int high = length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int v = buffer.getInt(pos + mid * INT_SIZE);
+            if (v < value) {
+                low = mid + 1;
+            } else if (v > value) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get an int field of an entry
+     *
+     * @param entry the entry
+     * @param field the field offset
+     * @return the value
+     */
+    private int getEntryField(int entry, int field) {
+        return buffer.getInt(entriesPos + (entry * ENTRY_SIZE + field) * INT_SIZE);
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Get the name of an entry
+     *
+     * @param entry the entry
+     * @return the name
+     */
+    @NonNull
+    public String getName(int entry) {
+        return getString(getEntryField(entry, ENTRY_NAME));
+    }
+
+    /**
+     * Get the count of an entry
+     *
+     * @param entry the entry
+     * @return the count
+     */
+    public int getCount(int entry) {
+        return getEntryField(entry, ENTRY_COUNT);
+    }
+
+    /**
+     * Get the tag set of an entry
+     *
+     * @param entry the entry
+     * @return the tag set id
+     */
+    public int getTagSet(int entry) {
+        return getEntryField(entry, ENTRY_TAGSET);
+    }
+
+    /**
+     * Add the tags of a tag set to a map
+     *
+     * @param tagSet the tag set id
+     * @param out the target map
+     */
+    public void getTags(int tagSet, @NonNull Map<String, String> out) {
+        int start = buffer.getInt(tagSetOffsetsPos + tagSet * INT_SIZE);
+        int end = buffer.getInt(tagSetOffsetsPos + (tagSet + 1) * INT_SIZE);
+        for (int i = start; i < end; i++) {
+            int pairPos = tagSetPairsPos + i * 2 * INT_SIZE;
+            out.put(getString(buffer.getInt(pairPos)), getString(buffer.getInt(pairPos + INT_SIZE)));
+        }
+    }
+
+    /**
+     * Get the regions an entry is restricted to
+     *
+     * @param entry the entry
+     * @return an array of region codes or null if the entry is not restricted
+     */
+    @Nullable
+    public String[] getRegions(int entry) {
+        int regionSet = getEntryField(entry, ENTRY_REGIONSET);
+        if (regionSet == NO_REGIONS) {
+            return null;
+        }
+        List<String> result = new ArrayList<>();
+        int pos = regionSetsPos + regionSet * regionWords * LONG_SIZE;
+        for (int word = 0; word < regionWords; word++) {
+            long bits = buffer.getLong(pos + word * LONG_SIZE);
+            while (bits != 0) {
+                int bit = Long.numberOfTrailingZeros(bits);
+                result.add(getString(buffer.getInt(regionIdsPos + (word * Long.SIZE + bit) * INT_SIZE)));
+                bits &= bits - 1;
+            }
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    /**
+     * Convert a list of region codes to a bitmask for use with inUseIn
+     *
+     * @param regions the region codes, null == any region
+     * @return a bitmask or null if regions was null
+     */
+    @Nullable
+    public long[] getRegionMask(@Nullable List<String> regions) {
+        if (regions == null) {
+            return null;
+        }
+        long[] mask = new long[regionWords];
+        for (String region : regions) {
+            int id = findString(region);
+            if (id >= 0) {
+                int bit = binarySearch(regionIdsPos, regionCount, id);
+                if (bit >= 0) {
+                    mask[bit / Long.SIZE] |= 1L << (bit % Long.SIZE);
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Check if an entry is in use in one of the regions in mask
+     *
+     * @param entry the entry
+     * @param mask a mask returned by getRegionMask, null == any region
+     * @return true if the entry is appropriate for the regions
+     */
+    public boolean inUseIn(int entry, @Nullable long[] mask) {
+        int regionSet = getEntryField(entry, ENTRY_REGIONSET);
+        if (mask == null || regionSet == NO_REGIONS) {
+            return true;
+        }
+        int pos = regionSetsPos + regionSet * regionWords * LONG_SIZE;
+        for (int word = 0; word < regionWords; word++) {
+            if ((buffer.getLong(pos + word * LONG_SIZE) & mask[word]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of distinct normalized names
+     */
+    public int getNormalizedNameCount() {
+        return normalizedNames.count;
+    }
+
+    /**
+     * Get a normalized name
+     *
+     * @param i the index of the name (0 to getNormalizedNameCount() - 1)
+     * @return the normalized name
+     */
+    @NonNull
+    public String getNormalizedName(int i) {
+        return getString(normalizedNames.getId(i));
+    }
+
+    /**
+     * Get the entries for a normalized name
+     *
+     * @param i the index of the name (0 to getNormalizedNameCount() - 1)
+     * @return an array of entries
+     */
+    @NonNull
+    public int[] getEntriesForNormalizedName(int i) {
+        return normalizedNames.get(i);
+    }
+
+    /**
+     * Get all entries that have a specific tag
+     *
+     * @param tag the tag in key=value format
+     * @return an array of entries
+     */
+    @NonNull
+    public int[] getEntriesForTag(@NonNull String tag) {
+        return tags.get(tags.find(tag));
+    }
+
+    /**
+     * @return the number of categories
+     */
+    public int getCategoryCount() {
+        return categories.count;
+    }
+
+    /**
+     * Get the tags for a category
+     *
+     * @param category the index of the category (0 to getCategoryCount() - 1)
+     * @return an array of tags in key=value format
+     */
+    @NonNull
+    public String[] getCategoryTags(int category) {
+        int[] ids = categories.get(category);
+        String[] result = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = getString(ids[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Create the canonical representation of a tag
+     *
+     * @param key the key
+     * @param value the value
+     * @return key=value
+     */
+    @NonNull
+    public static String tag(@NonNull String key, @NonNull String value) {
+        return key + "=" + value;
+    }
+
+    /**
+     * Intermediate in memory representation used when building the index
+     *
+     * @author simon
+     *
+     */
+    private static class Builder {
+
+        private static class RawEntry {
+            String name;
+            int    tagSet;
+            int    count;
+            int    regionSet = NO_REGIONS;
+        }
+
+        private final TreeSet<String>                  allStrings   = new TreeSet<>();
+        private final List<RawEntry>                   entries      = new ArrayList<>();
+        private final Map<String, Integer>             tagSetIds    = new HashMap<>();
+        private final List<TreeMap<String, String>>    tagSets      = new ArrayList<>();
+        private final Map<String, Integer>             regionSetIds = new HashMap<>();
+        private final List<List<String>>               regionSets   = new ArrayList<>();
+        private final TreeSet<String>                  regions      = new TreeSet<>();
+        private final Map<String, List<String>>        categoryMap  = new TreeMap<>();
+        private final Map<String, Integer>             stringIds    = new HashMap<>();
+
+        /**
+         * Read the NSI and category json files
+         *
+         * Categories are optional, if they can't be read the error is logged and the index will not contain any.
+         *
+         * @param nsi InputStream for the NSI json
+         * @param categoriesJson InputStream for the categories json or null
+         * @return this Builder
+         * @throws IOException if reading the NSI fails
+         */
+        @NonNull
+        Builder read(@NonNull InputStream nsi, @Nullable InputStream categoriesJson) throws IOException {
+            try (JsonReader reader = new JsonReader(new InputStreamReader(nsi, UTF_8))) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName(); // amenity, shop
+                    reader.beginObject();
+                    while (reader.hasNext()) { // restaurant, fast_food, ....
+                        String value = reader.nextName();
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            readEntry(reader, key, value);
+                        }
+                        reader.endObject(); // value
+                    }
+                    reader.endObject(); // key
+                }
+                reader.endObject();
+            } catch (IllegalStateException e) {
+                throw new IOException(e.getMessage());
+            }
+            if (categoriesJson != null) {
+                try {
+                    readCategories(categoriesJson);
+                } catch (IOException | IllegalStateException e) {
+                    Log.e(DEBUG_TAG, "Reading categories failed, continuing without " + e.getMessage());
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Read the category json file, nothing is added if reading fails
+         *
+         * @param categoriesJson InputStream for the categories json
+         * @throws IOException if reading fails
+         */
+        private void readCategories(@NonNull InputStream categoriesJson) throws IOException {
+            Map<String, List<String>> tempCategories = new TreeMap<>();
+            try (JsonReader reader = new JsonReader(new InputStreamReader(categoriesJson, UTF_8))) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String category = reader.nextName();
+                    List<String> categoryTags = new ArrayList<>();
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String poiType = reader.nextName();
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            categoryTags.add(tag(poiType, reader.nextString()));
+                        }
+                        reader.endArray();
+                    }
+                    reader.endObject();
+                    tempCategories.put(category, categoryTags);
+                }
+                reader.endObject();
+            }
+            for (Entry<String, List<String>> category : tempCategories.entrySet()) {
+                categoryMap.put(category.getKey(), category.getValue());
+                allStrings.add(category.getKey());
+                allStrings.addAll(category.getValue());
+            }
+        }
+
+        /**
+         * Read a single name entry
+         *
+         * @param reader the JsonReader
+         * @param key the top level key
+         * @param value the top level value
+         * @throws IOException if reading fails
+         */
+        private void readEntry(@NonNull JsonReader reader, @NonNull String key, @NonNull String value) throws IOException {
+            RawEntry entry = new RawEntry();
+            entry.name = reader.nextName(); // name of establishment
+            TreeMap<String, String> entryTags = new TreeMap<>();
+            entryTags.put(key, value);
+            List<String> entryRegions = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String jsonName = reader.nextName();
+                switch (jsonName) {
+                case "count":
+                    entry.count = reader.nextInt();
+                    break;
+                case "countryCodes":
+                    reader.beginArray();
+                    entryRegions = new ArrayList<>();
+                    while (reader.hasNext()) {
+                        entryRegions.add(reader.nextString().toUpperCase(Locale.US));
+                    }
+                    reader.endArray();
+                    break;
+                case "tags":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String k = reader.nextName();
+                        if (!Tags.KEY_BRAND_WIKIPEDIA.equals(k) && !Tags.KEY_BRAND_WIKIDATA.equals(k)) {
+                            entryTags.put(k, reader.nextString());
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject(); // tags
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+                }
+            }
+            reader.endObject(); // name
+            allStrings.add(entry.name);
+            allStrings.add(SearchIndexUtils.normalize(entry.name));
+
+            String tagSetKey = entryTags.toString();
+            Integer tagSet = tagSetIds.get(tagSetKey);
+            if (tagSet == null) {
+                tagSet = tagSets.size();
+                tagSetIds.put(tagSetKey, tagSet);
+                tagSets.add(entryTags);
+                for (Entry<String, String> e : entryTags.entrySet()) {
+                    allStrings.add(e.getKey());
+                    allStrings.add(e.getValue());
+                    allStrings.add(tag(e.getKey(), e.getValue()));
+                }
+            }
+            entry.tagSet = tagSet;
+
+            if (entryRegions != null) {
+                Collections.sort(entryRegions);
+                String regionSetKey = entryRegions.toString();
+                Integer regionSet = regionSetIds.get(regionSetKey);
+                if (regionSet == null) {
+                    regionSet = regionSets.size();
+                    regionSetIds.put(regionSetKey, regionSet);
+                    regionSets.add(entryRegions);
+                    regions.addAll(entryRegions);
+                    allStrings.addAll(entryRegions);
+                }
+                entry.regionSet = regionSet;
+            }
+            entries.add(entry);
+        }
+
+        /**
+         * Write the index
+         *
+         * @param out the output stream
+         * @param stamp a value identifying the source data
+         * @throws IOException if writing fails
+         */
+        void write(@NonNull DataOutputStream out, long stamp) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(stamp);
+
+            // string table
+            List<byte[]> encoded = new ArrayList<>(allStrings.size());
+            int id = 0;
+            for (String s : allStrings) {
+                stringIds.put(s, id++);
+                encoded.add(s.getBytes(UTF_8));
+            }
+            out.writeInt(encoded.size());
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] bytes : encoded) {
+                offset += bytes.length;
+                out.writeInt(offset);
+            }
+            for (byte[] bytes : encoded) {
+                out.write(bytes);
+            }
+
+            // regions, the bit position of a region is its position in the sorted list
+            List<String> regionList = new ArrayList<>(regions);
+            out.writeInt(regionList.size());
+            for (String region : regionList) {
+                out.writeInt(stringIds.get(region));
+            }
+            int regionWords = (regionList.size() + Long.SIZE - 1) / Long.SIZE;
+            out.writeInt(regionWords);
+            out.writeInt(regionSets.size());
+            for (List<String> regionSet : regionSets) {
+                long[] mask = new long[regionWords];
+                for (String region : regionSet) {
+                    int bit = Collections.binarySearch(regionList, region);
+                    mask[bit / Long.SIZE] |= 1L << (bit % Long.SIZE);
+                }
+                for (long word : mask) {
+                    out.writeLong(word);
+                }
+            }
+
+            // tag sets
+            out.writeInt(tagSets.size());
+            offset = 0;
+            out.writeInt(offset);
+            for (TreeMap<String, String> tagSet : tagSets) {
+                offset += tagSet.size();
+                out.writeInt(offset);
+            }
+            for (TreeMap<String, String> tagSet : tagSets) {
+                for (Entry<String, String> e : tagSet.entrySet()) {
+                    out.writeInt(stringIds.get(e.getKey()));
+                    out.writeInt(stringIds.get(e.getValue()));
+                }
+            }
+
+            // entries sorted by name
+            Collections.sort(entries, (e1, e2) -> e1.name.compareTo(e2.name));
+            out.writeInt(entries.size());
+            TreeMap<Integer, List<Integer>> normalizedPostings = new TreeMap<>();
+            TreeMap<Integer, List<Integer>> tagPostings = new TreeMap<>();
+            for (int i = 0; i < entries.size(); i++) {
+                RawEntry entry = entries.get(i);
+                out.writeInt(stringIds.get(entry.name));
+                out.writeInt(entry.tagSet);
+                out.writeInt(entry.count);
+                out.writeInt(entry.regionSet);
+                addPosting(normalizedPostings, stringIds.get(SearchIndexUtils.normalize(entry.name)), i);
+                for (Entry<String, String> e : tagSets.get(entry.tagSet).entrySet()) {
+                    addPosting(tagPostings, stringIds.get(tag(e.getKey(), e.getValue())), i);
+                }
+            }
+            writePostings(out, normalizedPostings);
+            writePostings(out, tagPostings);
+
+            // categories
+            TreeMap<Integer, List<Integer>> categoryPostings = new TreeMap<>();
+            for (Entry<String, List<String>> category : categoryMap.entrySet()) {
+                int categoryId = stringIds.get(category.getKey());
+                for (String t : category.getValue()) {
+                    addPosting(categoryPostings, categoryId, stringIds.get(t));
+                }
+            }
+            writePostings(out, categoryPostings);
+        }
+
+        /**
+         * Add a value to a posting list
+         *
+         * @param postings the map of posting lists
+         * @param id the string id
+         * @param value the value to add
+         */
+        private static void addPosting(@NonNull Map<Integer, List<Integer>> postings, int id, int value) {
+            List<Integer> list = postings.get(id);
+            if (list == null) {
+                list = new ArrayList<>();
+                postings.put(id, list);
+            }
+            list.add(value);
+        }
+
+        /**
+         * Write a posting table
+         *
+         * @param out the output stream
+         * @param postings map of string ids to values sorted by string id
+         * @throws IOException if writing fails
+         */
+        private static void writePostings(@NonNull DataOutputStream out, @NonNull TreeMap<Integer, List<Integer>> postings) throws IOException {
+            out.writeInt(postings.size());
+            for (Integer id : postings.keySet()) {
+                out.writeInt(id);
+            }
+            int offset = 0;
+            out.writeInt(offset);
+            for (List<Integer> list : postings.values()) {
+                offset += list.size();
+                out.writeInt(offset);
+            }
+            for (List<Integer> list : postings.values()) {
+                for (Integer value : list) {
+                    out.writeInt(value);
+                }
+            }
+        }
+    }
+}
@@ -1,28 +1,27 @@
 package de.blau.android.names;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.TreeSet;
-
-import com.google.gson.stream.JsonReader;
 
 import android.content.Context;
+import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.res.AssetManager;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import de.blau.android.osm.Tags;
-import de.blau.android.util.SearchIndexUtils;
-import de.blau.android.util.collections.MultiHashMap;
 
 /**
  * Support for the name suggestion index see https://github.com/simonpoole/name-suggestion-index
@@ -161,135 +160,92 @@ public class Names {
         }
     }
 
-    private static MultiHashMap<String, NameAndTags> nameList       = new MultiHashMap<>(false); // names -> multiple
-                                                                                                 // entries
-    private static MultiHashMap<String, NameAndTags> tags2namesList = new MultiHashMap<>(false); // tagmap -A multiple
-                                                                                                 // entries
-    private static MultiHashMap<String, String>      categories     = new MultiHashMap<>(false);
+    private static NameIndex index = null;
 
-    private static boolean ready = false;
+    private static final Object lock  = new Object();
+    private static boolean      ready = false;
 
     /**
      * Construct a new instance of the data structure holding names and tags
      * 
-     * The contents are currently read from a hardwired file
+     * The contents are read from a compact binary index that is generated from hardwired files on first use and after
+     * an app update
      * 
      * @param ctx an Android Context
      */
     public Names(@NonNull Context ctx) {
-        synchronized (nameList) {
-
+        synchronized (lock) {
             if (!ready) {
-                Log.d(DEBUG_TAG, "Parsing configuration files");
-
-                AssetManager assetManager = ctx.getAssets();
+                long stamp = 0;
                 try {
-                    try (InputStream is = assetManager.open(NSI_FILE); JsonReader reader = new JsonReader(new InputStreamReader(is));) {
-                        try {
-                            // key object
-                            String key = null;
-                            reader.beginObject();
-                            while (reader.hasNext()) {
-                                key = reader.nextName(); // amenity, shop
-                                // value object
-                                String value = null;
-                                reader.beginObject();
-                                while (reader.hasNext()) { // restaurant, fast_food, ....
-                                    value = reader.nextName();
-                                    // name object
-                                    String name = null;
-                                    reader.beginObject();
-                                    while (reader.hasNext()) {
-                                        name = reader.nextName(); // name of establishment
-                                        reader.beginObject();
-                                        int count = 0;
-                                        List<String> regions = null;
-                                        TagMap secondaryTags = null; // any extra tags store here
-                                        while (reader.hasNext()) {
-                                            String jsonName = reader.nextName();
-                                            switch (jsonName) {
-                                            case "count":
-                                                count = reader.nextInt();
-                                                break;
-                                            case "countryCodes":
-                                                reader.beginArray();
-                                                regions = new ArrayList<>();
-                                                while (reader.hasNext()) {
-                                                    regions.add(reader.nextString().toUpperCase(Locale.US));
-                                                }
-                                                reader.endArray();
-                                                break;
-                                            case "tags":
-                                                reader.beginObject();
-                                                secondaryTags = new TagMap();
-                                                while (reader.hasNext()) {
-                                                    String k = reader.nextName();
-                                                    if (!Tags.KEY_BRAND_WIKIPEDIA.equals(k) && !Tags.KEY_BRAND_WIKIDATA.equals(k)) {
-                                                        secondaryTags.put(k, reader.nextString());
-                                                    } else {
-                                                        reader.skipValue();
-                                                    }
-                                                }
-                                                reader.endObject(); // tags
-                                                break;
-                                            default:
-                                                reader.skipValue();
-                                                break;
-                                            }
-                                        }
-                                        reader.endObject(); // name
-
-                                        // add to lists here
-                                        TagMap tags = new TagMap();
-                                        tags.put(key, value);
-                                        if (secondaryTags != null) {
-                                            tags.putAll(secondaryTags);
-                                        }
-                                        NameAndTags entry = new NameAndTags(name, tags, count,
-                                                regions == null ? null : regions.toArray(new String[regions.size()]));
-                                        nameList.add(name, entry);
-                                        tags2namesList.add(tags.toString(), entry);
-                                    }
-                                    reader.endObject(); // value
-                                }
-                                reader.endObject(); // key
-                            }
-                            reader.endObject();
-                        } catch (IOException | IllegalStateException e) {
-                            Log.e(DEBUG_TAG, "Got exception reading " + NSI_FILE + " " + e.getMessage());
-                        }
-                    }
-
-                    try (InputStream is = assetManager.open(CATEGORIES_FILE); JsonReader reader = new JsonReader(new InputStreamReader(is));) {
-                        String category = null;
-                        reader.beginObject();
-                        while (reader.hasNext()) {
-                            category = reader.nextName();
-                            String poiType = null;
-                            reader.beginObject();
-                            while (reader.hasNext()) {
-                                poiType = reader.nextName();
-                                reader.beginArray();
-                                while (reader.hasNext()) {
-                                    categories.add(category, poiType + "=" + reader.nextString());
-                                }
-                                reader.endArray();
-                            }
-                            reader.endObject();
-                        }
-                        reader.endObject();
-
-                    } catch (IOException e) {
-                        Log.d(DEBUG_TAG, "Got exception reading " + CATEGORIES_FILE + " " + e.getMessage());
+                    stamp = ctx.getPackageManager().getPackageInfo(ctx.getPackageName(), 0).lastUpdateTime;
+                } catch (NameNotFoundException e) {
+                    Log.e(DEBUG_TAG, "Package not found " + e.getMessage());
+                }
+                File indexFile = new File(ctx.getFilesDir(), NameIndex.INDEX_FILE);
+                index = NameIndex.open(indexFile, stamp);
+                if (index == null) {
+                    Log.d(DEBUG_TAG, "Generating index from configuration files");
+                    AssetManager assetManager = ctx.getAssets();
+                    try (InputStream nsi = assetManager.open(NSI_FILE); InputStream categories = openCategories(assetManager)) {
+                        index = NameIndex.create(nsi, categories, indexFile, stamp);
+                    } catch (IOException | IndexOutOfBoundsException e) {
+                        Log.e(DEBUG_TAG, "Got exception generating " + NameIndex.INDEX_FILE + " " + e.getMessage());
                     }
-                } catch (IOException | IllegalStateException e) {
-                    Log.d(DEBUG_TAG, "Got exception " + e.getMessage());
                 }
                 ready = true;
             }
         }
     }
 
+    /**
+     * Open the categories file, the index is usable without it
+     * 
+     * @param assetManager the AssetManager
+     * @return an InputStream or null if the file couldn't be opened
+     */
+    @Nullable
+    private static InputStream openCategories(@NonNull AssetManager assetManager) {
+        try {
+            return assetManager.open(CATEGORIES_FILE);
+        } catch (IOException e) {
+            Log.e(DEBUG_TAG, "Opening " + CATEGORIES_FILE + " failed " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Create a NameAndTags object for an entry in the index
+     * 
+     * @param entry the entry
+     * @param tagMaps cache of already created TagMaps, entries with the same tag set will share the TagMap
+     * @return a NameAndTags instance
+     */
+    @NonNull
+    private NameAndTags getEntry(int entry, @Nullable Map<Integer, TagMap> tagMaps) {
+        int tagSet = index.getTagSet(entry);
+        TagMap tags = tagMaps != null ? tagMaps.get(tagSet) : null;
+        if (tags == null) {
+            tags = new TagMap();
+            index.getTags(tagSet, tags);
+            if (tagMaps != null) {
+                tagMaps.put(tagSet, tags);
+            }
+        }
+        return new NameAndTags(index.getName(entry), tags, index.getCount(entry), index.getRegions(entry));
+    }
+
+    /**
+     * Create a NameAndTags object for an entry in the index
+     * 
+     * @param entry the entry
+     * @return a NameAndTags instance
+     */
+    @NonNull
+    public NameAndTags getEntry(int entry) {
+        return getEntry(entry, null);
+    }
+
     /**
      * Given a set of tags determine the names and tags that could be appropriate
      * 
@@ -319,39 +275,27 @@ public class Names {
             }
         }
 
+        if (index == null) {
+            return new ArrayList<>();
+        }
         // filter on the tags
+        long[] mask = index.getRegionMask(regions);
+        Map<Integer, TagMap> tagMaps = new HashMap<>();
         List<NameAndTags> result = new ArrayList<>();
+        BitSet added = new BitSet(index.getEntryCount());
+        Entry<String, String> origTag = tm.entrySet().iterator().next();
+        String origTagKey = NameIndex.tag(origTag.getKey(), origTag.getValue());
+        addEntries(index.getEntriesForTag(origTagKey), mask, tagMaps, added, result);
 
-        String origTagKey = tm.toString();
-
-        for (String key : tags2namesList.getKeys()) {
-            if (key.contains(origTagKey)) {
-                for (NameAndTags nt : tags2namesList.get(key)) {
-                    if (nt.inUseIn(regions)) {
-                        result.add(nt);
-                    }
-                }
-            }
-        }
-
-        TreeSet<String> seen = new TreeSet<>();
+        Set<String> seen = new HashSet<>();
         // check categories for similar tags and add names from them too
         seen.add(origTagKey); // skip stuff we've already added
-        for (String category : categories.getKeys()) { // loop over categories
-            Set<String> set = categories.get(category);
-            if (set.contains(origTagKey)) {
-                for (String catTagKey : set) { // loop over categories content
-                    if (!seen.contains(catTagKey)) { // suppress dups
-                        for (String key : tags2namesList.getKeys()) {
-                            if (key.contains(catTagKey)) {
-                                for (NameAndTags nt : tags2namesList.get(key)) {
-                                    if (nt.inUseIn(regions)) {
-                                        result.add(nt);
-                                    }
-                                }
-                            }
-                        }
-                        seen.add(catTagKey);
+        for (int category = 0; category < index.getCategoryCount(); category++) { // loop over categories
+            String[] categoryTags = index.getCategoryTags(category);
+            if (Arrays.asList(categoryTags).contains(origTagKey)) {
+                for (String catTagKey : categoryTags) { // loop over categories content
+                    if (seen.add(catTagKey)) { // suppress dups
+                        addEntries(index.getEntriesForTag(catTagKey), mask, tagMaps, added, result);
                     }
                 }
             }
@@ -360,19 +304,22 @@ public class Names {
     }
 
     /**
-     * Get all entries
+     * Add entries that are in use in the regions to a result list
      * 
-     * @return a List containing all NameAndTags objects
+     * @param entries the candidate entries
+     * @param mask region mask
+     * @param tagMaps cache of already created TagMaps
+     * @param added entries that have already been added
+     * @param result the List to add to
      */
-    @NonNull
-    private List<NameAndTags> getNames() {
-        List<NameAndTags> result = new ArrayList<>();
-        for (String n : nameList.getKeys()) {
-            for (NameAndTags nt : nameList.get(n)) {
-                result.add(nt);
+    private void addEntries(@NonNull int[] entries, @Nullable long[] mask, @NonNull Map<Integer, TagMap> tagMaps, @NonNull BitSet added,
+            @NonNull List<NameAndTags> result) {
+        for (int entry : entries) {
+            if (!added.get(entry) && index.inUseIn(entry, mask)) {
+                result.add(getEntry(entry, tagMaps));
+                added.set(entry);
             }
         }
-        return result;
     }
 
     /**
@@ -384,10 +331,12 @@ public class Names {
     @NonNull
     private List<NameAndTags> getNames(@Nullable List<String> regions) {
         List<NameAndTags> result = new ArrayList<>();
-        for (String n : nameList.getKeys()) {
-            for (NameAndTags nt : nameList.get(n)) {
-                if (nt.inUseIn(regions)) {
-                    result.add(nt);
+        if (index != null) {
+            long[] mask = index.getRegionMask(regions);
+            Map<Integer, TagMap> tagMaps = new HashMap<>();
+            for (int entry = 0; entry < index.getEntryCount(); entry++) {
+                if (index.inUseIn(entry, mask)) {
+                    result.add(getEntry(entry, tagMaps));
                 }
             }
         }
@@ -395,16 +344,14 @@ public class Names {
     }
 
     /**
-     * Return a mapping from normalized name values to entries
+     * Return the index that maps normalized name values to entries
+     * 
+     * Entries can be retrieved with getEntry
      * 
-     * @return a map from normalized names to NameAndTags objects
+     * @return the NameIndex or null if it couldn't be created
      */
-    public MultiHashMap<String, NameAndTags> getSearchIndex() {
-        MultiHashMap<String, NameAndTags> result = new MultiHashMap<>();
-        List<NameAndTags> names = getNames();
-        for (NameAndTags nat : names) {
-            result.add(SearchIndexUtils.normalize(nat.getName()), nat);
-        }
-        return result;
+    @Nullable
+    public NameIndex getSearchIndex() {
+        return index;
     }
 }
@@ -0,0 +1,532 @@
+package de.blau.android.osm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.blau.android.Logic;
+import de.blau.android.util.collections.LongHashSet;
+
+/**
+ * Incremental removal of unchanged data that is far away from the current view
+ *
+ * Downloaded nodes and ways are bucketed in a coarse grid of cells when they are merged, so that pruning doesn't need
+ * to scan the whole Storage. Cells are evicted least recently viewed first, in batches of limited size each of which
+ * holds the StorageDelegator lock only briefly, until the number of nodes has dropped below a target. Nodes are only
+ * removed if no remaining way uses them, Relations that lose all their downloaded members are removed too and the
+ * references to removed elements in parent Relations are cleared.
+ *
+ * If the Storage has been replaced without going through a merge the index is rebuilt once from a snapshot, which
+ * doesn't require holding any locks.
+ *
+ * @author simon
+ *
+ */
+public class AutoPruner {
+
+    private static final String DEBUG_TAG = AutoPruner.class.getSimpleName();
+
+    static final int  CELL_SIZE  = 50000; // 0.005° in WGS84*1E7
+    static final int  MAX_CELLS  = 16;    // ways covering more cells are not bucketed
+    static final int  BATCH_SIZE = 500;   // maximum number of elements examined per batch
+    static final long PAUSE      = 5;     // ms to wait between batches
+
+    /**
+     * The ids of the elements in a grid cell
+     */
+    private static final class Cell {
+        final long        key;
+        long              lastViewed = 0;
+        final LongHashSet ways       = new LongHashSet();
+        final LongHashSet nodes      = new LongHashSet();
+
+        /**
+         * Construct a new cell
+         *
+         * @param key the key of the cell
+         */
+        Cell(long key) {
+            this.key = key;
+        }
+
+        /**
+         * Get the area covered by the cell
+         *
+         * @return a BoundingBox
+         */
+        @NonNull
+        BoundingBox getBox() {
+            int left = (int) ((key >> 32) * CELL_SIZE - Integer.MAX_VALUE - 1L);
+            int bottom = (int) ((key & 0xFFFFFFFFL) * CELL_SIZE - Integer.MAX_VALUE - 1L);
+            return new BoundingBox(left, bottom, (int) Math.min(Integer.MAX_VALUE, (long) left + CELL_SIZE),
+                    (int) Math.min(Integer.MAX_VALUE, (long) bottom + CELL_SIZE));
+        }
+    }
+
+    private final StorageDelegator delegator;
+    private Map<Long, Cell>        cells     = new HashMap<>();
+    private LongHashSet            largeWays = new LongHashSet();
+    private boolean                valid     = false;
+    private final AtomicBoolean    running   = new AtomicBoolean(false);
+
+    /**
+     * Construct a new pruner
+     *
+     * @param delegator the StorageDelegator holding the data
+     */
+    AutoPruner(@NonNull StorageDelegator delegator) {
+        this.delegator = delegator;
+    }
+
+    /**
+     * Get a grid coordinate
+     *
+     * @param coordinate a coordinate in WGS84*1E7
+     * @return the grid coordinate
+     */
+    private static long cell(int coordinate) {
+        return ((long) coordinate + Integer.MAX_VALUE + 1L) / CELL_SIZE;
+    }
+
+    /**
+     * Get the key of a grid cell
+     *
+     * @param x horizontal grid coordinate
+     * @param y vertical grid coordinate
+     * @return the key
+     */
+    private static long key(long x, long y) {
+        return (x << 32) | y;
+    }
+
+    /**
+     * Get the key of the cell a Node is in
+     *
+     * @param n the Node
+     * @return the key
+     */
+    private static long key(@NonNull Node n) {
+        return key(cell(n.getLon()), cell(n.getLat()));
+    }
+
+    /**
+     * Get the keys of all cells a BoundingBox touches
+     *
+     * @param box the BoundingBox
+     * @param max maximum number of cells
+     * @return an array of keys or null if box covers more than max cells
+     */
+    @Nullable
+    private static long[] keys(@NonNull BoundingBox box, int max) {
+        long left = cell(box.getLeft());
+        long right = cell(box.getRight());
+        long bottom = cell(box.getBottom());
+        long top = cell(box.getTop());
+        long count = (right - left + 1) * (top - bottom + 1);
+        if (count > max) {
+            return null;
+        }
+        long[] keys = new long[(int) count];
+        int i = 0;
+        for (long x = left; x <= right; x++) {
+            for (long y = bottom; y <= top; y++) {
+                keys[i++] = key(x, y);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Get a cell, creating it if necessary
+     *
+     * @param map the Map holding the cells
+     * @param key the key of the cell
+     * @return the Cell
+     */
+    @NonNull
+    private static Cell getCell(@NonNull Map<Long, Cell> map, long key) {
+        Cell cell = map.get(key);
+        if (cell == null) {
+            cell = new Cell(key);
+            map.put(key, cell);
+        }
+        return cell;
+    }
+
+    /**
+     * Add a Way to the cells it touches
+     *
+     * @param map the Map holding the cells
+     * @param large the set of ways that cover too many cells
+     * @param w the Way
+     */
+    private static void add(@NonNull Map<Long, Cell> map, @NonNull LongHashSet large, @NonNull Way w) {
+        long[] keys = w.nodeCount() > 0 ? keys(w.getBounds(), MAX_CELLS) : null;
+        if (keys == null) {
+            large.put(w.getOsmId());
+            return;
+        }
+        for (long key : keys) {
+            getCell(map, key).ways.put(w.getOsmId());
+        }
+    }
+
+    /**
+     * Add the nodes and ways of a Storage to the index, typically this is called with freshly downloaded data
+     *
+     * @param storage the Storage
+     */
+    synchronized void add(@NonNull Storage storage) {
+        if (!valid) {
+            return;
+        }
+        storage.visitNodes(n -> {
+            getCell(cells, key(n)).nodes.put(n.getOsmId());
+            return true;
+        });
+        storage.visitWays(w -> {
+            add(cells, largeWays, w);
+            return true;
+        });
+    }
+
+    /**
+     * Force a rebuild of the index before the next prune
+     */
+    synchronized void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Record that an area is being viewed
+     *
+     * @param box the BoundingBox of the area
+     */
+    public synchronized void viewed(@NonNull BoundingBox box) {
+        long[] keys = keys(box, MAX_CELLS * MAX_CELLS);
+        if (keys != null) {
+            long now = System.currentTimeMillis();
+            for (long key : keys) {
+                getCell(cells, key).lastViewed = now;
+            }
+        }
+    }
+
+    /**
+     * Rebuild the index from a snapshot of the current Storage
+     */
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        StorageSnapshot snapshot = delegator.getCurrentSnapshot();
+        final Map<Long, Cell> newCells = new HashMap<>();
+        final LongHashSet newLargeWays = new LongHashSet();
+        snapshot.visitNodes(n -> {
+            getCell(newCells, key(n)).nodes.put(n.getOsmId());
+            return true;
+        });
+        snapshot.visitWays(w -> {
+            add(newCells, newLargeWays, w);
+            return true;
+        });
+        synchronized (this) {
+            for (Cell cell : cells.values()) { // retain view history
+                if (cell.lastViewed != 0) {
+                    getCell(newCells, cell.key).lastViewed = cell.lastViewed;
+                }
+            }
+            cells = newCells;
+            largeWays = newLargeWays;
+            valid = true;
+        }
+        Log.d(DEBUG_TAG, "Indexed " + snapshot.getNodeCount() + " nodes in " + newCells.size() + " cells in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Remove unchanged data outside of a BoundingBox until the number of nodes is at most target
+     *
+     * This should be called off the UI thread, if a prune is already running this returns immediately.
+     *
+     * @param logic the current Logic instance, if null element selection will not be tested
+     * @param keep the BoundingBox of the area to keep
+     * @param target the number of nodes to reduce the Storage to
+     * @return the number of removed elements
+     */
+    public int prune(@Nullable Logic logic, @NonNull BoundingBox keep, int target) {
+        if (!running.compareAndSet(false, true)) {
+            Log.d(DEBUG_TAG, "prune already running");
+            return 0;
+        }
+        long start = System.currentTimeMillis();
+        int removed = 0;
+        List<BoundingBox> evicted = new ArrayList<>();
+        try {
+            boolean rebuild;
+            synchronized (this) {
+                rebuild = !valid;
+            }
+            if (rebuild) {
+                rebuild();
+            }
+            List<Cell> candidates = new ArrayList<>();
+            synchronized (this) {
+                for (Cell cell : cells.values()) {
+                    if (!cell.getBox().intersects(keep)) {
+                        candidates.add(cell);
+                    }
+                }
+            }
+            Collections.sort(candidates, (c1, c2) -> Long.compare(c1.lastViewed, c2.lastViewed));
+            Deque<Relation> parents = new ArrayDeque<>();
+            for (Cell cell : candidates) {
+                if (delegator.getCurrentStorage().getNodeCount() <= target) {
+                    break;
+                }
+                long[] wayIds;
+                long[] nodeIds;
+                synchronized (this) {
+                    wayIds = cell.ways.values();
+                    nodeIds = cell.nodes.values();
+                }
+                int[] positions = { 0, 0 };
+                while (positions[0] < wayIds.length || positions[1] < nodeIds.length) {
+                    synchronized (delegator) {
+                        synchronized (this) {
+                            removed += batch(logic, keep, cell.key, wayIds, nodeIds, positions, parents);
+                        }
+                    }
+                    Thread.sleep(PAUSE);
+                }
+                evicted.add(cell.getBox());
+            }
+        } catch (InterruptedException e) {
+            Log.w(DEBUG_TAG, "prune interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            if (!evicted.isEmpty()) {
+                pruneBoundingBoxes(keep, evicted);
+            }
+            if (removed > 0) {
+                delegator.dirty();
+            }
+            running.set(false);
+        }
+        Log.d(DEBUG_TAG, "Removed " + removed + " elements from " + evicted.size() + " cells in " + (System.currentTimeMillis() - start) + " ms");
+        return removed;
+    }
+
+    /**
+     * Process a batch of elements from a cell, needs to be called with the StorageDelegator locked
+     *
+     * @param logic the current Logic instance or null
+     * @param keep the BoundingBox of the area to keep
+     * @param cellKey the key of the cell being evicted
+     * @param wayIds the ids of the ways in the cell
+     * @param nodeIds the ids of the nodes in the cell
+     * @param positions the current position in wayIds and nodeIds, updated on return
+     * @param parents parent Relations of removed elements that need to be checked
+     * @return the number of removed elements
+     */
+    private int batch(@Nullable Logic logic, @NonNull BoundingBox keep, long cellKey, @NonNull long[] wayIds, @NonNull long[] nodeIds, @NonNull int[] positions,
+            @NonNull Deque<Relation> parents) {
+        Storage current = delegator.getCurrentStorage();
+        Storage api = delegator.getApiStorage();
+        boolean noLogic = logic == null;
+        int removed = 0;
+        int examined = 0;
+        List<Node> candidates = new ArrayList<>();
+        current.beginBatch();
+        try {
+            BoundingBox wayBox = new BoundingBox(); // avoid creating new instances
+            for (; positions[0] < wayIds.length && examined < BATCH_SIZE; positions[0]++, examined++) {
+                Way w = current.getWay(wayIds[positions[0]]);
+                if (w == null || api.getWay(w.getOsmId()) != null || keep.intersects(w.getBounds(wayBox)) || (!noLogic && logic.isSelected(w))) {
+                    continue;
+                }
+                current.removeWay(w);
+                remove(w);
+                delegator.removeReferenceFromParents(logic, w);
+                addParents(parents, w);
+                candidates.addAll(w.getNodes());
+                removed++;
+            }
+            for (; positions[1] < nodeIds.length && examined < BATCH_SIZE; positions[1]++, examined++) {
+                Node n = current.getNode(nodeIds[positions[1]]);
+                if (n != null) {
+                    candidates.add(n);
+                }
+            }
+            // the nodes of all remaining ways that could use a candidate
+            Map<Long, LongHashSet> wayNodes = new HashMap<>();
+            LongHashSet changedWayNodes = new LongHashSet();
+            for (Way w : api.getWays()) {
+                addNodeIds(changedWayNodes, w);
+            }
+            for (Node n : candidates) {
+                long id = n.getOsmId();
+                long key = key(n);
+                if (current.getNode(id) != n || api.getNode(id) != null || keep.contains(n.getLon(), n.getLat()) || changedWayNodes.contains(id)
+                        || (key != cellKey && n.hasTags()) // tagged nodes of removed ways are only removed with their own cell
+                        || getWayNodes(wayNodes, current, key).contains(id) || (!noLogic && logic.isSelected(n))) {
+                    continue;
+                }
+                current.removeNode(n);
+                remove(n);
+                delegator.removeReferenceFromParents(logic, n);
+                addParents(parents, n);
+                removed++;
+            }
+            removed += pruneRelations(logic, current, api, parents);
+        } finally {
+            current.endBatch();
+        }
+        return removed;
+    }
+
+    /**
+     * Get the ids of the nodes of all ways that touch a cell
+     *
+     * @param cache cache of already calculated results
+     * @param current the current Storage
+     * @param key the key of the cell
+     * @return a LongHashSet with the node ids
+     */
+    @NonNull
+    private LongHashSet getWayNodes(@NonNull Map<Long, LongHashSet> cache, @NonNull Storage current, long key) {
+        LongHashSet result = cache.get(key);
+        if (result == null) {
+            result = new LongHashSet();
+            Cell cell = cells.get(key);
+            if (cell != null) {
+                for (long id : cell.ways.values()) {
+                    addNodeIds(result, current.getWay(id));
+                }
+            }
+            for (long id : largeWays.values()) {
+                addNodeIds(result, current.getWay(id));
+            }
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Add the ids of the nodes of a way to a set
+     *
+     * @param set the LongHashSet
+     * @param w the Way or null
+     */
+    private static void addNodeIds(@NonNull LongHashSet set, @Nullable Way w) {
+        if (w != null) {
+            List<Node> nodes = w.getNodes();
+            for (int i = 0, size = nodes.size(); i < size; i++) {
+                set.put(nodes.get(i).getOsmId());
+            }
+        }
+    }
+
+    /**
+     * Queue the parent Relations of an element for checking
+     *
+     * @param parents the queue
+     * @param e the OsmElement
+     */
+    private static void addParents(@NonNull Deque<Relation> parents, @NonNull OsmElement e) {
+        List<Relation> list = e.getParentRelations();
+        if (list != null) {
+            parents.addAll(list);
+        }
+    }
+
+    /**
+     * Remove unchanged Relations that no longer have any downloaded members
+     *
+     * @param logic the current Logic instance or null
+     * @param current the current Storage
+     * @param api the Storage holding the changes
+     * @param parents the queue of Relations to check
+     * @return the number of removed Relations
+     */
+    private int pruneRelations(@Nullable Logic logic, @NonNull Storage current, @NonNull Storage api, @NonNull Deque<Relation> parents) {
+        int removed = 0;
+        while (!parents.isEmpty()) {
+            Relation r = parents.poll();
+            long id = r.getOsmId();
+            if (current.getRelation(id) == r && api.getRelation(id) == null && !r.hasDownloadedMembers() && (logic == null || !logic.isSelected(r))) {
+                current.removeRelation(r);
+                delegator.removeReferenceFromParents(logic, r);
+                addParents(parents, r);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Remove a way from the index
+     *
+     * @param w the Way
+     */
+    private void remove(@NonNull Way w) {
+        long id = w.getOsmId();
+        if (largeWays.remove(id)) {
+            return;
+        }
+        long[] keys = w.nodeCount() > 0 ? keys(w.getBounds(), MAX_CELLS) : null;
+        if (keys != null) {
+            for (long key : keys) {
+                Cell cell = cells.get(key);
+                if (cell != null) {
+                    cell.ways.remove(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove a node from the index
+     *
+     * @param n the Node
+     */
+    private void remove(@NonNull Node n) {
+        long key = key(n);
+        Cell cell = cells.get(key);
+        if (cell != null) {
+            cell.nodes.remove(n.getOsmId());
+            if (cell.nodes.isEmpty() && cell.ways.isEmpty() && cell.lastViewed == 0) {
+                cells.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Shrink or remove the downloaded BoundingBoxes that touch evicted cells so that the data will be downloaded again
+     * if needed
+     *
+     * @param keep the BoundingBox of the area to keep
+     * @param evicted the boxes of the evicted cells
+     */
+    private void pruneBoundingBoxes(@NonNull BoundingBox keep, @NonNull List<BoundingBox> evicted) {
+        synchronized (delegator) {
+            for (BoundingBox b : new ArrayList<>(delegator.getBoundingBoxes())) {
+                for (BoundingBox e : evicted) {
+                    if (b.intersects(e)) {
+                        if (b.intersects(keep)) {
+                            b.intersection(keep);
+                        } else {
+                            delegator.deleteBoundingBox(b);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
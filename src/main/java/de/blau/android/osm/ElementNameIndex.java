@@ -0,0 +1,465 @@
+package de.blau.android.osm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.blau.android.util.collections.MultiHashMap;
+
+/**
+ * Index of named streets, places and addresses in a Storage
+ *
+ * Named highways and places are indexed by their normalized names and in a coarse grid of cells so that candidates
+ * near a location can be found without iterating over all elements, elements with a house number are indexed by the
+ * normalized value of their addr:street tag.
+ *
+ * Changed elements are queued with {@link #touch(OsmElement)} and re-indexed before the next query, the index is
+ * rebuilt from scratch if it has been invalidated. Elements that are no longer in the Storage are never returned,
+ * callers still need to check tags and distances.
+ *
+ * @author simon
+ *
+ */
+public class ElementNameIndex {
+
+    private static final String DEBUG_TAG = ElementNameIndex.class.getSimpleName();
+
+    public static final String[] STREET_NAME_TAGS = { Tags.KEY_NAME, Tags.KEY_OFFICIAL_NAME, Tags.KEY_ALT_NAME, Tags.KEY_NAME_LEFT, Tags.KEY_NAME_RIGHT };
+    public static final String[] PLACE_NAME_TAGS  = { Tags.KEY_NAME, Tags.KEY_OFFICIAL_NAME, Tags.KEY_ALT_NAME };
+
+    static final int CELL_SIZE = 100000; // 0.01° in WGS84*1E7
+    static final int MAX_CELLS = 64;     // elements covering more cells are not bucketed
+
+    /**
+     * Elements bucketed by the grid cells their bounding box touches
+     */
+    private static final class Grid {
+        final Map<Long, Set<OsmElement>> cells      = new HashMap<>();
+        final Map<OsmElement, long[]>    registered = new LinkedHashMap<>();
+        final Set<OsmElement>            large      = new HashSet<>();
+
+        /**
+         * Add an element
+         *
+         * @param e the OsmElement
+         */
+        void add(@NonNull OsmElement e) {
+            long[] keys = cellKeys(e);
+            registered.put(e, keys);
+            if (keys == null) {
+                large.add(e);
+                return;
+            }
+            for (long key : keys) {
+                Set<OsmElement> cell = cells.get(key);
+                if (cell == null) {
+                    cell = new HashSet<>();
+                    cells.put(key, cell);
+                }
+                cell.add(e);
+            }
+        }
+
+        /**
+         * Remove an element using the cells it was registered with
+         *
+         * @param e the OsmElement
+         */
+        void remove(@NonNull OsmElement e) {
+            if (!registered.containsKey(e)) {
+                return;
+            }
+            long[] keys = registered.remove(e);
+            if (keys == null) {
+                large.remove(e);
+                return;
+            }
+            for (long key : keys) {
+                Set<OsmElement> cell = cells.get(key);
+                if (cell != null) {
+                    cell.remove(e);
+                    if (cell.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Get all elements in the cells touched by a BoundingBox and all large elements
+         *
+         * @param box the BoundingBox
+         * @param result a Set to add the elements to
+         */
+        void query(@NonNull BoundingBox box, @NonNull Set<OsmElement> result) {
+            result.addAll(large);
+            long left = cell(box.getLeft());
+            long right = cell(box.getRight());
+            long bottom = cell(box.getBottom());
+            long top = cell(box.getTop());
+            if ((right - left + 1) * (top - bottom + 1) > cells.size()) {
+                for (Set<OsmElement> cell : cells.values()) {
+                    result.addAll(cell);
+                }
+                return;
+            }
+            for (long x = left; x <= right; x++) {
+                for (long y = bottom; y <= top; y++) {
+                    Set<OsmElement> cell = cells.get(key(x, y));
+                    if (cell != null) {
+                        result.addAll(cell);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Clear the grid
+         */
+        void clear() {
+            cells.clear();
+            registered.clear();
+            large.clear();
+        }
+    }
+
+    private final Storage                          storage;
+    private final Grid                             streets     = new Grid();
+    private final Grid                             places      = new Grid();
+    private final MultiHashMap<String, Way>        streetNames = new MultiHashMap<>();
+    private final MultiHashMap<String, OsmElement> addresses   = new MultiHashMap<>();
+    private final Map<OsmElement, String[]>        streetKeys  = new HashMap<>();
+    private final Map<OsmElement, String>          addressKeys = new HashMap<>();
+    private final Set<OsmElement>                  pending     = new HashSet<>();
+    private boolean                                valid       = false;
+
+    /**
+     * Construct a new index for a Storage, the index is built lazily on first use
+     *
+     * @param storage the Storage to index
+     */
+    public ElementNameIndex(@NonNull Storage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Check if this index was built from a specific Storage
+     *
+     * @param s the Storage
+     * @return true if s is the indexed Storage
+     */
+    public boolean isFor(@Nullable Storage s) {
+        return storage == s;
+    }
+
+    /**
+     * Queue an element for re-indexing
+     *
+     * @param e the changed OsmElement
+     */
+    public synchronized void touch(@NonNull OsmElement e) {
+        if (valid) {
+            pending.add(e);
+        }
+    }
+
+    /**
+     * Force a complete rebuild on next use
+     */
+    public synchronized void invalidate() {
+        valid = false;
+        pending.clear();
+    }
+
+    /**
+     * Get the normalized form of a name used as key
+     *
+     * @param name the name
+     * @return the normalized name
+     */
+    @NonNull
+    static String normalize(@NonNull String name) {
+        return name.trim().toLowerCase(Locale.US);
+    }
+
+    /**
+     * Get a grid coordinate
+     *
+     * @param coordinate a coordinate in WGS84*1E7
+     * @return the grid coordinate
+     */
+    private static long cell(int coordinate) {
+        return ((long) coordinate + Integer.MAX_VALUE + 1L) / CELL_SIZE;
+    }
+
+    /**
+     * Get the key of a grid cell
+     *
+     * @param x horizontal grid coordinate
+     * @param y vertical grid coordinate
+     * @return the key
+     */
+    private static long key(long x, long y) {
+        return (x << 32) | y;
+    }
+
+    /**
+     * Get the keys of all cells an element touches
+     *
+     * @param e the OsmElement
+     * @return an array of keys or null if the element is a Relation, has no geometry or covers too many cells
+     */
+    @Nullable
+    private static long[] cellKeys(@NonNull OsmElement e) {
+        if (e instanceof Relation || (e instanceof Way && ((Way) e).nodeCount() == 0)) {
+            return null;
+        }
+        BoundingBox box = e.getBounds();
+        long left = cell(box.getLeft());
+        long right = cell(box.getRight());
+        long bottom = cell(box.getBottom());
+        long top = cell(box.getTop());
+        long count = (right - left + 1) * (top - bottom + 1);
+        if (count > MAX_CELLS) {
+            return null;
+        }
+        long[] keys = new long[(int) count];
+        int i = 0;
+        for (long x = left; x <= right; x++) {
+            for (long y = bottom; y <= top; y++) {
+                keys[i++] = key(x, y);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Rebuild the index if necessary and process queued changes
+     */
+    private void update() {
+        if (!valid) {
+            long start = System.currentTimeMillis();
+            streets.clear();
+            places.clear();
+            streetNames.clear();
+            addresses.clear();
+            streetKeys.clear();
+            addressKeys.clear();
+            pending.clear();
+            for (Node n : storage.getNodes()) {
+                add(n);
+            }
+            for (Way w : storage.getWays()) {
+                add(w);
+            }
+            for (Relation r : storage.getRelations()) {
+                add(r);
+            }
+            valid = true;
+            Log.d(DEBUG_TAG, "Indexed " + streets.registered.size() + " streets " + places.registered.size() + " places " + addressKeys.size()
+                    + " addresses in " + (System.currentTimeMillis() - start) + " ms");
+        } else if (!pending.isEmpty()) {
+            for (OsmElement e : pending) {
+                remove(e);
+                if (e.getState() != OsmElement.STATE_DELETED && storage.contains(e)) {
+                    add(e);
+                }
+            }
+            pending.clear();
+        }
+    }
+
+    /**
+     * Add an element to the index
+     *
+     * @param e the OsmElement
+     */
+    private void add(@NonNull OsmElement e) {
+        if (!e.hasTags()) {
+            return;
+        }
+        if (e instanceof Way && e.hasTagKey(Tags.KEY_HIGHWAY)) {
+            List<String> keys = new ArrayList<>();
+            for (String tag : STREET_NAME_TAGS) {
+                String name = e.getTagWithKey(tag);
+                if (name != null) {
+                    String key = normalize(name);
+                    keys.add(key);
+                    streetNames.add(key, (Way) e);
+                }
+            }
+            if (!keys.isEmpty()) {
+                streetKeys.put(e, keys.toArray(new String[0]));
+                streets.add(e);
+            }
+        }
+        if (e.hasTagKey(Tags.KEY_PLACE)) {
+            for (String tag : PLACE_NAME_TAGS) {
+                if (e.hasTagKey(tag)) {
+                    places.add(e);
+                    break;
+                }
+            }
+        }
+        String street = e.getTagWithKey(Tags.KEY_ADDR_STREET);
+        if (street != null && e.hasTagKey(Tags.KEY_ADDR_HOUSENUMBER)) {
+            String key = normalize(street);
+            addressKeys.put(e, key);
+            addresses.add(key, e);
+        }
+    }
+
+    /**
+     * Remove an element from the index using the keys it was added with
+     *
+     * @param e the OsmElement
+     */
+    private void remove(@NonNull OsmElement e) {
+        String[] keys = streetKeys.remove(e);
+        if (keys != null) {
+            for (String key : keys) {
+                streetNames.removeItem(key, (Way) e);
+            }
+            streets.remove(e);
+        }
+        places.remove(e);
+        String key = addressKeys.remove(e);
+        if (key != null) {
+            addresses.removeItem(key, e);
+        }
+    }
+
+    /**
+     * Get named highways
+     *
+     * @param box if not null only ways intersecting with this BoundingBox are returned
+     * @return a List of Ways
+     */
+    @NonNull
+    public synchronized List<Way> getStreets(@Nullable BoundingBox box) {
+        update();
+        List<Way> result = new ArrayList<>();
+        Collection<OsmElement> candidates = streets.registered.keySet();
+        if (box != null) {
+            Set<OsmElement> temp = new HashSet<>();
+            streets.query(box, temp);
+            candidates = temp;
+        }
+        for (OsmElement e : candidates) {
+            if (storage.contains(e) && (box == null || box.intersects(e.getBounds()))) {
+                result.add((Way) e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get named highways with a specific name
+     *
+     * @param name the name
+     * @return a List of Ways that have name as the value of one of the tags in STREET_NAME_TAGS
+     */
+    @NonNull
+    public synchronized List<Way> getStreets(@NonNull String name) {
+        update();
+        List<Way> result = new ArrayList<>();
+        for (Way w : streetNames.get(normalize(name))) {
+            if (!storage.contains(w)) {
+                continue;
+            }
+            for (String tag : STREET_NAME_TAGS) {
+                if (w.hasTag(tag, name)) {
+                    result.add(w);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the nearest highway with a specific name
+     *
+     * @param name the name
+     * @param location the location in WGS84*1E7
+     * @param box if not null only ways intersecting with this BoundingBox are considered
+     * @return the nearest Way or null if none found
+     */
+    @Nullable
+    public Way getNearestStreet(@NonNull String name, @NonNull int[] location, @Nullable BoundingBox box) {
+        Way nearest = null;
+        double min = Double.MAX_VALUE;
+        for (Way w : getStreets(name)) {
+            if (box == null || box.intersects(w.getBounds())) {
+                double distance = w.getMinDistance(location);
+                if (distance < min) {
+                    min = distance;
+                    nearest = w;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Get elements with a place tag and a name
+     *
+     * @param box if not null only Nodes in and Ways intersecting with this BoundingBox are returned, Relations are
+     *            always returned
+     * @return a List of OsmElement
+     */
+    @NonNull
+    public synchronized List<OsmElement> getPlaces(@Nullable BoundingBox box) {
+        update();
+        List<OsmElement> result = new ArrayList<>();
+        Collection<OsmElement> candidates = places.registered.keySet();
+        if (box != null) {
+            Set<OsmElement> temp = new HashSet<>();
+            places.query(box, temp);
+            candidates = temp;
+        }
+        for (OsmElement e : candidates) {
+            if (!storage.contains(e)) {
+                continue;
+            }
+            if (box == null || e instanceof Relation || (e instanceof Node && box.isIn(((Node) e).getLon(), ((Node) e).getLat()))
+                    || (e instanceof Way && box.intersects(e.getBounds()))) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get Nodes and Ways with a house number and a specific addr:street value
+     *
+     * @param street the street name
+     * @return a List of OsmElement, Nodes first
+     */
+    @NonNull
+    public synchronized List<OsmElement> getAddresses(@NonNull String street) {
+        update();
+        List<OsmElement> nodes = new ArrayList<>();
+        List<OsmElement> ways = new ArrayList<>();
+        for (OsmElement e : addresses.get(normalize(street))) {
+            if (storage.contains(e) && e.hasTag(Tags.KEY_ADDR_STREET, street)) {
+                if (e instanceof Node) {
+                    nodes.add(e);
+                } else if (e instanceof Way) {
+                    ways.add(e);
+                }
+            }
+        }
+        nodes.addAll(ways);
+        return nodes;
+    }
+}
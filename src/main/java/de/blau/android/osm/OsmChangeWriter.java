@@ -0,0 +1,346 @@
+package de.blau.android.osm;
+
+import static de.blau.android.osm.OsmXml.CREATE;
+import static de.blau.android.osm.OsmXml.DELETE;
+import static de.blau.android.osm.OsmXml.GENERATOR;
+import static de.blau.android.osm.OsmXml.MODIFY;
+import static de.blau.android.osm.OsmXml.OSM_CHANGE;
+import static de.blau.android.osm.OsmXml.UTF_8;
+import static de.blau.android.osm.OsmXml.VERSION;
+import static de.blau.android.osm.OsmXml.VERSION_0_6;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+import org.xmlpull.v1.XmlSerializer;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Write the changes in a Storage in OsmChange format in chunks of limited size
+ *
+ * The Storage is walked once on construction and references to the changed elements are retained in dependency
+ * order: created and modified nodes, ways and relations (child relations first) followed by deleted relations (parent
+ * relations first), ways and nodes. Any prefix of this order can be uploaded on its own, so the changes can be split in
+ * to consecutive chunks that each fit in to a changeset. Chunks are serialized directly to the output when written and
+ * use the ids current at that time, so that placeholder ids replaced by the upload of a previous chunk are taken in to
+ * account.
+ *
+ * Acknowledged chunks are recorded so that a failed upload can be resumed with the first chunk that hasn't been
+ * acknowledged.
+ *
+ * @author simon
+ *
+ */
+public class OsmChangeWriter {
+
+    private static final String DEBUG_TAG = OsmChangeWriter.class.getSimpleName();
+
+    private final List<OsmElement> elements;
+    private final int              chunkSize;
+    private int                    acknowledged = 0;
+
+    /**
+     * Construct a new writer for the changes in storage
+     *
+     * @param storage the Storage holding the changed elements
+     * @param chunkSize the maximum number of elements in a chunk
+     */
+    public OsmChangeWriter(@NonNull Storage storage, int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+        elements = new ArrayList<>(storage.getNodeCount() + storage.getWayCount() + storage.getRelationCount());
+        final List<OsmElement> deletedNodes = new ArrayList<>();
+        final List<OsmElement> deletedWays = new ArrayList<>();
+        final Map<Relation, Boolean> relations = new IdentityHashMap<>();
+        final Map<Relation, Boolean> deletedRelations = new IdentityHashMap<>();
+        storage.visitNodes(n -> sort(n, elements, deletedNodes));
+        storage.visitWays(w -> sort(w, elements, deletedWays));
+        storage.visitRelations(r -> {
+            switch (r.getState()) {
+            case OsmElement.STATE_CREATED:
+            case OsmElement.STATE_MODIFIED:
+                relations.put(r, Boolean.FALSE);
+                break;
+            case OsmElement.STATE_DELETED:
+                deletedRelations.put(r, Boolean.FALSE);
+                break;
+            default:
+                // unchanged
+            }
+            return true;
+        });
+        for (Relation r : relations.keySet()) {
+            addChildrenFirst(r, relations);
+        }
+        for (Relation r : deletedRelations.keySet()) {
+            addParentsFirst(r, deletedRelations);
+        }
+        elements.addAll(deletedWays);
+        elements.addAll(deletedNodes);
+        Log.d(DEBUG_TAG, elements.size() + " changes in " + getChunkCount() + " chunks");
+    }
+
+    /**
+     * Add created and modified elements to the result and collect deleted elements
+     *
+     * @param e the OsmElement
+     * @param result the List holding the changes in order
+     * @param deleted the List for deleted elements
+     * @return always true
+     */
+    private static boolean sort(@NonNull OsmElement e, @NonNull List<OsmElement> result, @NonNull List<OsmElement> deleted) {
+        switch (e.getState()) {
+        case OsmElement.STATE_CREATED:
+        case OsmElement.STATE_MODIFIED:
+            result.add(e);
+            break;
+        case OsmElement.STATE_DELETED:
+            deleted.add(e);
+            break;
+        default:
+            // unchanged
+        }
+        return true;
+    }
+
+    /**
+     * Add a created or modified relation after any member relations that are changed too
+     *
+     * Loops are broken arbitrarily
+     *
+     * @param r the Relation
+     * @param pending map of the changed relations, with true for relations that have already been added
+     */
+    private void addChildrenFirst(@NonNull Relation r, @NonNull Map<Relation, Boolean> pending) {
+        if (pending.get(r)) {
+            return;
+        }
+        pending.put(r, Boolean.TRUE);
+        for (RelationMember member : r.getMembers()) {
+            OsmElement child = member.getElement();
+            if (child instanceof Relation && pending.containsKey(child)) {
+                addChildrenFirst((Relation) child, pending);
+            }
+        }
+        elements.add(r);
+    }
+
+    /**
+     * Add a deleted relation after any parent relations that are deleted too
+     *
+     * Loops are broken arbitrarily
+     *
+     * @param r the Relation
+     * @param pending map of the deleted relations, with true for relations that have already been added
+     */
+    private void addParentsFirst(@NonNull Relation r, @NonNull Map<Relation, Boolean> pending) {
+        if (pending.get(r)) {
+            return;
+        }
+        pending.put(r, Boolean.TRUE);
+        List<Relation> parents = r.getParentRelations();
+        if (parents != null) {
+            for (Relation parent : parents) {
+                if (pending.containsKey(parent)) {
+                    addParentsFirst(parent, pending);
+                }
+            }
+        }
+        elements.add(r);
+    }
+
+    /**
+     * Get the total number of changes
+     *
+     * @return the number of changed elements
+     */
+    public int size() {
+        return elements.size();
+    }
+
+    /**
+     * Get the number of chunks
+     *
+     * @return the number of chunks
+     */
+    public int getChunkCount() {
+        return (elements.size() + chunkSize - 1) / chunkSize;
+    }
+
+    /**
+     * Get the number of chunks that have been acknowledged, this is the index of the next chunk to write
+     *
+     * @return the number of acknowledged chunks
+     */
+    public int getAcknowledged() {
+        return acknowledged;
+    }
+
+    /**
+     * Record that a chunk has been successfully uploaded
+     *
+     * @param chunk the index of the chunk
+     */
+    public void acknowledge(int chunk) {
+        if (chunk != acknowledged) {
+            throw new IllegalStateException("Chunk " + chunk + " acknowledged out of order, expected " + acknowledged);
+        }
+        acknowledged++;
+    }
+
+    /**
+     * Check if all chunks have been acknowledged
+     *
+     * @return true if nothing remains to be done
+     */
+    public boolean isComplete() {
+        return acknowledged >= getChunkCount();
+    }
+
+    /**
+     * Get the elements of a chunk
+     *
+     * @param chunk the index of the chunk
+     * @return an unmodifiable List of the elements
+     */
+    @NonNull
+    public List<OsmElement> getChunk(int chunk) {
+        int start = chunk * chunkSize;
+        return Collections.unmodifiableList(elements.subList(start, Math.min(elements.size(), start + chunkSize)));
+    }
+
+    /**
+     * Get the number of changed elements that have not been acknowledged yet
+     *
+     * @return the number of elements
+     */
+    public int getRemaining() {
+        return Math.max(0, elements.size() - acknowledged * chunkSize);
+    }
+
+    /**
+     * Check if the elements that have not been acknowledged yet are still exactly the changes in a Storage, that is
+     * if an interrupted upload can be resumed
+     *
+     * @param storage the Storage holding the changes
+     * @return true if the remaining chunks can be used
+     */
+    public boolean isValidFor(@NonNull Storage storage) {
+        int remaining = getRemaining();
+        if (remaining != storage.getNodeCount() + storage.getWayCount() + storage.getRelationCount()) {
+            return false;
+        }
+        for (int i = elements.size() - remaining; i < elements.size(); i++) {
+            OsmElement e = elements.get(i);
+            if (e.getState() == OsmElement.STATE_UNCHANGED || storage.getOsmElement(e.getName(), e.getOsmId()) != e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write a chunk in OsmChange format
+     *
+     * @param chunk the index of the chunk
+     * @param outputStream stream to write to
+     * @param changeSetId the allocated changeset id or null if non
+     * @param generator a String for the generator attribute
+     * @throws IllegalArgumentException if the serializer encountered an illegal argument
+     * @throws IllegalStateException if the serializer detects an illegal state
+     * @throws IOException if writing fails
+     * @throws XmlPullParserException if the serializer can't be created
+     */
+    public void write(int chunk, @NonNull OutputStream outputStream, @Nullable Long changeSetId, @NonNull String generator)
+            throws IllegalArgumentException, IllegalStateException, IOException, XmlPullParserException {
+        write(getChunk(chunk), outputStream, changeSetId, generator);
+    }
+
+    /**
+     * Write all changes in OsmChange format
+     *
+     * @param outputStream stream to write to
+     * @param changeSetId the allocated changeset id or null if non
+     * @param generator a String for the generator attribute
+     * @throws IllegalArgumentException if the serializer encountered an illegal argument
+     * @throws IllegalStateException if the serializer detects an illegal state
+     * @throws IOException if writing fails
+     * @throws XmlPullParserException if the serializer can't be created
+     */
+    public void writeAll(@NonNull OutputStream outputStream, @Nullable Long changeSetId, @NonNull String generator)
+            throws IllegalArgumentException, IllegalStateException, IOException, XmlPullParserException {
+        write(elements, outputStream, changeSetId, generator);
+    }
+
+    /**
+     * Write elements in OsmChange format, a new create, modify or delete block is started every time the state of the
+     * elements changes
+     *
+     * @param changes the elements in dependency order
+     * @param outputStream stream to write to
+     * @param changeSetId the allocated changeset id or null if non
+     * @param generator a String for the generator attribute
+     * @throws IllegalArgumentException if the serializer encountered an illegal argument
+     * @throws IllegalStateException if the serializer detects an illegal state
+     * @throws IOException if writing fails
+     * @throws XmlPullParserException if the serializer can't be created
+     */
+    private static void write(@NonNull List<OsmElement> changes, @NonNull OutputStream outputStream, @Nullable Long changeSetId, @NonNull String generator)
+            throws IllegalArgumentException, IllegalStateException, IOException, XmlPullParserException {
+        XmlSerializer serializer = XmlPullParserFactory.newInstance().newSerializer();
+        serializer.setOutput(outputStream, UTF_8);
+        serializer.startDocument(UTF_8, null);
+        serializer.startTag(null, OSM_CHANGE);
+        serializer.attribute(null, GENERATOR, generator);
+        serializer.attribute(null, VERSION, VERSION_0_6);
+        String block = null;
+        for (OsmElement e : changes) {
+            String current = blockFor(e);
+            if (current == null) { // no longer changed
+                continue;
+            }
+            if (!current.equals(block)) {
+                if (block != null) {
+                    serializer.endTag(null, block);
+                }
+                serializer.startTag(null, current);
+                block = current;
+            }
+            e.toXml(serializer, changeSetId);
+        }
+        if (block != null) {
+            serializer.endTag(null, block);
+        }
+        serializer.endTag(null, OSM_CHANGE);
+        serializer.endDocument();
+    }
+
+    /**
+     * Get the OsmChange block an element belongs in
+     *
+     * @param e the OsmElement
+     * @return the block name or null if the element is unchanged
+     */
+    @Nullable
+    private static String blockFor(@NonNull OsmElement e) {
+        switch (e.getState()) {
+        case OsmElement.STATE_CREATED:
+            return CREATE;
+        case OsmElement.STATE_MODIFIED:
+            return MODIFY;
+        case OsmElement.STATE_DELETED:
+            return DELETE;
+        default:
+            return null;
+        }
+    }
+}
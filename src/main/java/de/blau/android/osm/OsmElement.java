@@ -25,6 +25,7 @@ import de.blau.android.presets.Preset;
 import de.blau.android.presets.Preset.PresetItem;
 import de.blau.android.util.DateFormatter;
 import de.blau.android.util.IssueAlert;
+import de.blau.android.util.Metrics;
 import de.blau.android.validation.Validator;
 
 public abstract class OsmElement implements Serializable, XmlSerializable, JosmXmlSerializable {
@@ -33,6 +34,8 @@ public abstract class OsmElement implements Serializable, XmlSerializable, JosmX
      */
     private static final long serialVersionUID = 7711945069147743673L;
 
+    private static final Metrics.Timer VALIDATION_TIMER = Metrics.timer("validation");
+
     public static final long NEW_OSM_ID = -1;
 
     public static final byte STATE_UNCHANGED = 0;
@@ -56,6 +59,8 @@ public abstract class OsmElement implements Serializable, XmlSerializable, JosmX
 
     public static final long EPOCH = 1104537600L; // 2005-01-01 00:00:00
 
+    private static final SortedMap<String, String> EMPTY_TAGS = Collections.unmodifiableSortedMap(new TreeMap<String, String>());
+
     long osmId;
 
     long osmVersion;
@@ -121,14 +126,12 @@ public abstract class OsmElement implements Serializable, XmlSerializable, JosmX
      * @param osmId the id as a long
      */
     void setOsmId(final long osmId) {
-        this.osmId = osmId;
-        if (parentRelations != null) { // update all references
+        if (parentRelations != null) { // update all references, before the id changes as members are indexed by it
             for (Relation r : parentRelations) {
-                for (RelationMember member : r.getAllMembers(this)) {
-                    member.ref = osmId;
-                }
+                r.updateMemberRef(this, osmId);
             }
         }
+        this.osmId = osmId;
     }
 
     /**
@@ -139,7 +142,7 @@ public abstract class OsmElement implements Serializable, XmlSerializable, JosmX
     @NonNull
     public SortedMap<String, String> getTags() {
         if (tags == null) {
-            return Collections.unmodifiableSortedMap(new TreeMap<String, String>()); // for backwards compatibility
+            return EMPTY_TAGS; // for backwards compatibility
         }
         return Collections.unmodifiableSortedMap(tags);
     }
@@ -720,7 +723,9 @@ public abstract class OsmElement implements Serializable, XmlSerializable, JosmX
         // This implementation assumes that calcProblem() may be expensive, and
         // caches the calculation.
         if (cachedProblems == Validator.NOT_VALIDATED) {
+            long start = VALIDATION_TIMER.start();
             cachedProblems = validate(validator);
+            VALIDATION_TIMER.stop(start);
             if (cachedProblems != Validator.OK && context != null) {
                 IssueAlert.alert(context, this);
             }
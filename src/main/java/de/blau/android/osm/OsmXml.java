@@ -62,167 +62,8 @@ public final class OsmXml {
      */
     public static void writeOsmChange(@NonNull Storage storage, @NonNull OutputStream outputStream, @Nullable Long changeSetId, int maxChanges,
             @NonNull String generator) throws IllegalArgumentException, IllegalStateException, IOException, XmlPullParserException {
-        int count = 0;
         Log.d(DEBUG_TAG, "writing osm change with changesetid " + changeSetId);
-        XmlSerializer serializer = XmlPullParserFactory.newInstance().newSerializer();
-        serializer.setOutput(outputStream, UTF_8);
-        serializer.startDocument(UTF_8, null);
-        serializer.startTag(null, OSM_CHANGE);
-        serializer.attribute(null, GENERATOR, generator);
-        serializer.attribute(null, VERSION, VERSION_0_6);
-
-        List<OsmElement> createdNodes = new ArrayList<>();
-        List<OsmElement> modifiedNodes = new ArrayList<>();
-        List<OsmElement> deletedNodes = new ArrayList<>();
-        List<OsmElement> createdWays = new ArrayList<>();
-        List<OsmElement> modifiedWays = new ArrayList<>();
-        List<OsmElement> deletedWays = new ArrayList<>();
-        List<Relation> createdRelations = new ArrayList<>();
-        List<Relation> modifiedRelations = new ArrayList<>();
-        List<Relation> deletedRelations = new ArrayList<>();
-
-        for (Node elem : storage.getNodes()) {
-            Log.d(DEBUG_TAG, "node added to list for upload, id " + elem.osmId);
-            switch (elem.state) {
-            case OsmElement.STATE_CREATED:
-                createdNodes.add(elem);
-                break;
-            case OsmElement.STATE_MODIFIED:
-                modifiedNodes.add(elem);
-                break;
-            case OsmElement.STATE_DELETED:
-                deletedNodes.add(elem);
-                break;
-            default:
-                Log.d(DEBUG_TAG, "node id " + elem.osmId + " not modified");
-                continue;
-            }
-            count++;
-            if (count >= maxChanges) {
-                break;
-            }
-        }
-        if (count < maxChanges) {
-            for (Way elem : storage.getWays()) {
-                Log.d(DEBUG_TAG, "way added to list for upload, id " + elem.osmId);
-                switch (elem.state) {
-                case OsmElement.STATE_CREATED:
-                    createdWays.add(elem);
-                    break;
-                case OsmElement.STATE_MODIFIED:
-                    modifiedWays.add(elem);
-                    break;
-                case OsmElement.STATE_DELETED:
-                    deletedWays.add(elem);
-                    break;
-                default:
-                    Log.d(DEBUG_TAG, "way id " + elem.osmId + " not modified");
-                    continue;
-                }
-                count++;
-                if (count >= maxChanges) {
-                    break;
-                }
-            }
-        }
-        if (count < maxChanges) {
-            for (Relation elem : storage.getRelations()) {
-                Log.d(DEBUG_TAG, "relation added to list for upload, id " + elem.osmId);
-                switch (elem.state) {
-                case OsmElement.STATE_CREATED:
-                    createdRelations.add(elem);
-                    break;
-                case OsmElement.STATE_MODIFIED:
-                    modifiedRelations.add(elem);
-                    break;
-                case OsmElement.STATE_DELETED:
-                    deletedRelations.add(elem);
-                    break;
-                default:
-                    Log.d(DEBUG_TAG, "relation id " + elem.osmId + " not modified");
-                    continue;
-                }
-                count++;
-                if (count >= maxChanges) {
-                    break;
-                }
-            }
-        }
-        Comparator<Relation> relationOrder = (r1, r2) -> {
-            if (r1.hasParentRelation(r2)) {
-                return -1;
-            }
-            if (r2.hasParentRelation(r1)) {
-                return 1;
-            }
-            return 0;
-        };
-        if (!createdRelations.isEmpty()) {
-            // sort the relations so that childs come first, will not handle loops and similar brokenness
-            Collections.sort(createdRelations, relationOrder);
-        }
-        if (!modifiedRelations.isEmpty()) {
-            // sort the relations so that childs come first, will not handle loops and similar brokenness
-            Collections.sort(modifiedRelations, relationOrder);
-        }
-        if (!deletedRelations.isEmpty()) {
-            // sort the relations so that parents come first, will not handle loops and similar brokenness
-            Collections.sort(deletedRelations, (r1, r2) -> {
-                if (r1.hasParentRelation(r2)) {
-                    return 1;
-                }
-                if (r2.hasParentRelation(r1)) {
-                    return -1;
-                }
-                return 0;
-            });
-        }
-
-        if (!createdNodes.isEmpty() || !createdWays.isEmpty() || !createdRelations.isEmpty()) {
-            serializer.startTag(null, CREATE);
-            for (OsmElement elem : createdNodes) {
-                elem.toXml(serializer, changeSetId);
-            }
-            for (OsmElement elem : createdWays) {
-                elem.toXml(serializer, changeSetId);
-            }
-            for (OsmElement elem : createdRelations) {
-                elem.toXml(serializer, changeSetId);
-            }
-            serializer.endTag(null, CREATE);
-        }
-
-        if (!modifiedNodes.isEmpty() || !modifiedWays.isEmpty() || !modifiedRelations.isEmpty()) {
-            serializer.startTag(null, MODIFY);
-            for (OsmElement elem : modifiedNodes) {
-                elem.toXml(serializer, changeSetId);
-            }
-            for (OsmElement elem : modifiedWays) {
-                elem.toXml(serializer, changeSetId);
-            }
-            for (OsmElement elem : modifiedRelations) {
-                elem.toXml(serializer, changeSetId);
-            }
-            serializer.endTag(null, MODIFY);
-        }
-
-        // delete in opposite order
-        if (!deletedNodes.isEmpty() || !deletedWays.isEmpty() || !deletedRelations.isEmpty()) {
-            serializer.startTag(null, DELETE);
-            for (OsmElement elem : deletedRelations) {
-                elem.toXml(serializer, changeSetId);
-            }
-            for (OsmElement elem : deletedWays) {
-                elem.toXml(serializer, changeSetId);
-            }
-            for (OsmElement elem : deletedNodes) {
-                elem.toXml(serializer, changeSetId);
-            }
-            serializer.endTag(null, DELETE);
-        }
-
-        serializer.endTag(null, OSM_CHANGE);
-        serializer.endDocument();
+        new OsmChangeWriter(storage, maxChanges).write(0, outputStream, changeSetId, generator);
     }
 
     /**
@@ -241,6 +82,77 @@ public final class OsmXml {
      */
     public static void write(@NonNull Storage current, @Nullable Storage api, @NonNull OutputStream outputStream, @NonNull String generator)
             throws XmlPullParserException, IllegalArgumentException, IllegalStateException, IOException {
+        // iterate directly, getting a snapshot would turn on publishing for Storage instances that don't need it
+        List<Node> saveNodes = new ArrayList<>(current.getNodes());
+        List<Way> saveWays = new ArrayList<>(current.getWays());
+        List<Relation> saveRelations = new ArrayList<>(current.getRelations());
+        if (api != null) {
+            api.visitNodes(elem -> addIfDeleted(saveNodes, elem));
+            api.visitWays(elem -> addIfDeleted(saveWays, elem));
+            api.visitRelations(elem -> addIfDeleted(saveRelations, elem));
+        }
+        write(saveNodes, saveWays, saveRelations, current.getBoundingBoxes(), outputStream, generator);
+    }
+
+    /**
+     * Writes a snapshot of the current data + deleted objects to an OutputStream in JOSM format.
+     * 
+     * Output is sorted as suggested by Jochen Topf
+     * 
+     * @param current a StorageSnapshot with the undeleted elements
+     * @param api a StorageSnapshot with the changed and deleted elements, if null deleted objects will not be written
+     * @param outputStream the stream we are writing to
+     * @param generator a String for the generator attribute
+     * @throws XmlPullParserException on a parser error
+     * @throws IllegalArgumentException on a parser error
+     * @throws IllegalStateException on a parser error
+     * @throws IOException if writing to the OutputStream fails
+     */
+    public static void write(@NonNull StorageSnapshot current, @Nullable StorageSnapshot api, @NonNull OutputStream outputStream,
+            @NonNull String generator) throws XmlPullParserException, IllegalArgumentException, IllegalStateException, IOException {
+        List<Node> saveNodes = current.getNodes();
+        List<Way> saveWays = current.getWays();
+        List<Relation> saveRelations = current.getRelations();
+        if (api != null) {
+            api.visitNodes(elem -> addIfDeleted(saveNodes, elem));
+            api.visitWays(elem -> addIfDeleted(saveWays, elem));
+            api.visitRelations(elem -> addIfDeleted(saveRelations, elem));
+        }
+        write(saveNodes, saveWays, saveRelations, current.getBoundingBoxes(), outputStream, generator);
+    }
+
+    /**
+     * Add an element to a List if it is deleted
+     * 
+     * @param <T> the element type
+     * @param list the List
+     * @param elem the element
+     * @return always true so that visiting continues
+     */
+    private static <T extends OsmElement> boolean addIfDeleted(@NonNull List<T> list, @NonNull T elem) {
+        if (elem.state == OsmElement.STATE_DELETED) {
+            list.add(elem);
+        }
+        return true;
+    }
+
+    /**
+     * Writes elements to an OutputStream in JOSM format
+     * 
+     * @param saveNodes the Nodes to write, will be sorted
+     * @param saveWays the Ways to write, will be sorted
+     * @param saveRelations the Relations to write, will be sorted
+     * @param boxes the BoundingBoxes of the downloaded areas
+     * @param outputStream the stream we are writing to
+     * @param generator a String for the generator attribute
+     * @throws XmlPullParserException on a parser error
+     * @throws IllegalArgumentException on a parser error
+     * @throws IllegalStateException on a parser error
+     * @throws IOException if writing to the OutputStream fails
+     */
+    private static void write(@NonNull List<Node> saveNodes, @NonNull List<Way> saveWays, @NonNull List<Relation> saveRelations,
+            @NonNull List<BoundingBox> boxes, @NonNull OutputStream outputStream, @NonNull String generator)
+            throws XmlPullParserException, IllegalArgumentException, IllegalStateException, IOException {
         XmlSerializer serializer = XmlPullParserFactory.newInstance().newSerializer();
         serializer.setOutput(outputStream, UTF_8);
         serializer.startDocument(UTF_8, null);
@@ -261,30 +173,7 @@ public final class OsmXml {
             return Util.longCompare(Math.abs(id1), Math.abs(id2));
         };
 
-        List<Node> saveNodes = new ArrayList<>(current.getNodes());
-        List<Way> saveWays = new ArrayList<>(current.getWays());
-        List<Relation> saveRelations = new ArrayList<>(current.getRelations());
-
-        if (api != null) {
-            for (Node elem : api.getNodes()) {
-                if (elem.state == OsmElement.STATE_DELETED) {
-                    saveNodes.add(elem);
-                }
-            }
-            for (Way elem : api.getWays()) {
-                if (elem.state == OsmElement.STATE_DELETED) {
-                    saveWays.add(elem);
-                }
-            }
-            for (Relation elem : api.getRelations()) {
-                if (elem.state == OsmElement.STATE_DELETED) {
-                    saveRelations.add(elem);
-                }
-            }
-        }
-
-        //
-        for (BoundingBox b : current.getBoundingBoxes()) {
+        for (BoundingBox b : boxes) {
             b.toJosmXml(serializer);
         }
 
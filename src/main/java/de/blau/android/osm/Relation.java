@@ -3,11 +3,10 @@ package de.blau.android.osm;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 import org.xmlpull.v1.XmlSerializer;
 
@@ -20,12 +19,17 @@ import de.blau.android.R;
 import de.blau.android.presets.Preset;
 import de.blau.android.presets.Preset.PresetItem;
 import de.blau.android.resources.DataStyle.FeatureStyle;
+import de.blau.android.util.collections.IntPrimitiveList;
 import de.blau.android.util.rtree.BoundedObject;
 import de.blau.android.validation.Validator;
 
 /**
  * Relation represents an OSM relation element which essentially is a collection of other OSM elements.
  * 
+ * For relations with more than a handful of members lookups of members by element or type and id use an index from
+ * type and id to the positions of the members. The index is built lazily, maintained on appends and insertions and
+ * discarded on other changes to the member list, it is not serialized.
+ * 
  * @author simon
  *
  */
@@ -48,6 +52,49 @@ public class Relation extends OsmElement implements BoundedObject, StyleableFeat
 
     static final int MAX_DEPTH = 3;
 
+    /**
+     * Minimum number of members before we index them, below this a sequential scan is cheaper
+     */
+    static final int INDEX_THRESHOLD = 16;
+
+    /**
+     * Key for the member index
+     */
+    private static final class MemberKey {
+        private final String type;
+        private final long   ref;
+
+        /**
+         * Construct a new key
+         * 
+         * @param type the element type
+         * @param ref the OSM id
+         */
+        MemberKey(@NonNull String type, long ref) {
+            this.type = type;
+            this.ref = ref;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + (int) (ref ^ (ref >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof MemberKey)) {
+                return false;
+            }
+            MemberKey other = (MemberKey) obj;
+            return ref == other.ref && type.equals(other.type);
+        }
+    }
+
+    private transient Map<MemberKey, IntPrimitiveList> memberIndex = null;
+
     /**
      * Construct a new Relation
      * 
@@ -68,11 +115,16 @@ public class Relation extends OsmElement implements BoundedObject, StyleableFeat
      */
     void addMember(@NonNull final RelationMember member) {
         members.add(member);
+        if (memberIndex != null) {
+            indexMember(memberIndex, member, members.size() - 1);
+        }
     }
 
     /**
      * Return complete list of relation members
      * 
+     * The returned List should not be modified directly as that would bypass the member index
+     * 
      * @return list of members, or null if there are none
      */
     @Nullable
@@ -90,6 +142,17 @@ public class Relation extends OsmElement implements BoundedObject, StyleableFeat
      */
     @Nullable
     public RelationMember getMember(@NonNull OsmElement e) {
+        IntPrimitiveList positions = getPositions(e.getName(), e.getOsmId());
+        if (positions != null) {
+            int[] array = positions.getArray();
+            for (int i = 0; i < positions.size(); i++) {
+                RelationMember member = members.get(array[i]);
+                if (member.getElement() == e) {
+                    return member;
+                }
+            }
+            return null;
+        }
         for (int i = 0; i < members.size(); i++) {
             RelationMember member = members.get(i);
             if (member.getElement() == e) {
@@ -108,6 +171,17 @@ public class Relation extends OsmElement implements BoundedObject, StyleableFeat
     @NonNull
     public List<RelationMember> getAllMembers(@NonNull OsmElement e) {
         List<RelationMember> result = new ArrayList<>();
+        IntPrimitiveList positions = getPositions(e.getName(), e.getOsmId());
+        if (positions != null) {
+            int[] array = positions.getArray();
+            for (int i = 0; i < positions.size(); i++) {
+                RelationMember member = members.get(array[i]);
+                if (member.getElement() == e) {
+                    result.add(member);
+                }
+            }
+            return result;
+        }
         for (int i = 0; i < members.size(); i++) {
             RelationMember member = members.get(i);
             if (member.getElement() == e) {
@@ -127,6 +201,17 @@ public class Relation extends OsmElement implements BoundedObject, StyleableFeat
     @NonNull
     public List<RelationMemberPosition> getAllMembersWithPosition(@NonNull OsmElement e) {
         List<RelationMemberPosition> result = new ArrayList<>();
+        IntPrimitiveList positions = getPositions(e.getName(), e.getOsmId());
+        if (positions != null) {
+            int[] array = positions.getArray();
+            for (int i = 0; i < positions.size(); i++) {
+                RelationMember member = members.get(array[i]);
+                if (member.getElement() == e) {
+                    result.add(new RelationMemberPosition(member, array[i]));
+                }
+            }
+            return result;
+        }
         for (int i = 0; i < members.size(); i++) {
             RelationMember member = members.get(i);
             if (member.getElement() == e) {
@@ -148,6 +233,10 @@ public class Relation extends OsmElement implements BoundedObject, StyleableFeat
      */
     @Nullable
     public RelationMember getMember(@NonNull String type, long id) {
+        if (getMemberIndex() != null) {
+            IntPrimitiveList positions = memberIndex.get(new MemberKey(type, id));
+            return positions != null ? members.get(positions.get(0)) : null;
+        }
         for (int i = 0; i < members.size(); i++) {
             RelationMember member = members.get(i);
             if (member.getRef() == id && member.getType().equals(type)) {
@@ -178,6 +267,16 @@ public class Relation extends OsmElement implements BoundedObject, StyleableFeat
      * @return the position or -1 if not found
      */
     public int getPosition(@NonNull RelationMember rm) {
+        IntPrimitiveList positions = getPositions(rm.getType(), rm.getRef());
+        if (positions != null) {
+            int[] array = positions.getArray();
+            for (int i = 0; i < positions.size(); i++) {
+                if (members.get(array[i]) == rm) {
+                    return array[i];
+                }
+            }
+            return -1;
+        }
         return members.indexOf(rm);
     }
 
@@ -186,9 +285,112 @@ public class Relation extends OsmElement implements BoundedObject, StyleableFeat
      * @return list of members allowing {@link Iterator#remove()}.
      */
     Iterator<RelationMember> getRemovableMembers() {
+        invalidateMemberIndex();
         return members.iterator();
     }
 
+    /**
+     * Get the positions of the members with a specific type and id from the index
+     * 
+     * @param type the element type
+     * @param ref the OSM id
+     * @return the positions in ascending order, an empty list if there are none, or null if the members are not
+     *         indexed
+     */
+    @Nullable
+    private IntPrimitiveList getPositions(@NonNull String type, long ref) {
+        if (getMemberIndex() == null) {
+            return null;
+        }
+        IntPrimitiveList positions = memberIndex.get(new MemberKey(type, ref));
+        return positions != null ? positions : new IntPrimitiveList(0);
+    }
+
+    /**
+     * Get the member index, building it if necessary
+     * 
+     * @return the index or null if the Relation has too few members to make indexing worthwhile
+     */
+    @Nullable
+    private Map<MemberKey, IntPrimitiveList> getMemberIndex() {
+        final int size = members.size();
+        if (memberIndex == null && size >= INDEX_THRESHOLD) {
+            Map<MemberKey, IntPrimitiveList> index = new HashMap<>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                indexMember(index, members.get(i), i);
+            }
+            memberIndex = index;
+        }
+        return memberIndex;
+    }
+
+    /**
+     * Add a member to an index
+     * 
+     * Positions are kept in ascending order
+     * 
+     * @param index the index
+     * @param member the RelationMember
+     * @param pos the position of the member
+     */
+    private static void indexMember(@NonNull Map<MemberKey, IntPrimitiveList> index, @NonNull RelationMember member, int pos) {
+        MemberKey key = new MemberKey(member.getType(), member.getRef());
+        IntPrimitiveList positions = index.get(key);
+        if (positions == null) {
+            positions = new IntPrimitiveList(1);
+            index.put(key, positions);
+        }
+        positions.add(pos);
+        int[] array = positions.getArray();
+        for (int i = positions.size() - 1; i > 0 && array[i - 1] > array[i]; i--) {
+            int temp = array[i - 1];
+            array[i - 1] = array[i];
+            array[i] = temp;
+        }
+    }
+
+    /**
+     * Update the index for a member inserted at pos
+     * 
+     * @param member the inserted RelationMember
+     * @param pos the position it was inserted at
+     */
+    private void memberInserted(@NonNull RelationMember member, int pos) {
+        if (memberIndex != null) {
+            for (IntPrimitiveList positions : memberIndex.values()) {
+                int[] array = positions.getArray();
+                for (int i = positions.size() - 1; i >= 0 && array[i] >= pos; i--) {
+                    array[i]++;
+                }
+            }
+            indexMember(memberIndex, member, pos);
+        }
+    }
+
+    /**
+     * Discard the member index
+     * 
+     * This needs to be called if the member list is changed directly
+     */
+    void invalidateMemberIndex() {
+        memberIndex = null;
+    }
+
+    /**
+     * Change the id of all members referring to an element
+     * 
+     * This needs to be called before the id of the element is changed
+     * 
+     * @param e the member OsmElement
+     * @param newId the new OSM id
+     */
+    void updateMemberRef(@NonNull OsmElement e, long newId) {
+        for (RelationMember member : getAllMembers(e)) {
+            member.ref = newId;
+        }
+        invalidateMemberIndex();
+    }
+
     @Override
     public String getName() {
         return NAME;
@@ -265,6 +467,7 @@ public class Relation extends OsmElement implements BoundedObject, StyleableFeat
         while (members.remove(member)) {
             // LOOP
         }
+        invalidateMemberIndex();
     }
 
     /**
@@ -274,7 +477,9 @@ public class Relation extends OsmElement implements BoundedObject, StyleableFeat
      * @param newMember the new RelationMember
      */
     void addMemberAfter(@NonNull final RelationMember memberBefore, @NonNull final RelationMember newMember) {
-        members.add(members.indexOf(memberBefore) + 1, newMember);
+        int pos = getPosition(memberBefore) + 1;
+        members.add(pos, newMember);
+        memberInserted(newMember, pos);
     }
 
     /**
@@ -284,7 +489,9 @@ public class Relation extends OsmElement implements BoundedObject, StyleableFeat
      * @param newMember the new RelationMember
      */
     void addMemberBefore(@NonNull final RelationMember memberAfter, @NonNull final RelationMember newMember) {
-        members.add(members.indexOf(memberAfter), newMember);
+        int pos = getPosition(memberAfter);
+        members.add(pos, newMember);
+        memberInserted(newMember, pos);
     }
 
     /**
@@ -298,6 +505,7 @@ public class Relation extends OsmElement implements BoundedObject, StyleableFeat
             pos = members.size(); // append
         }
         members.add(pos, newMember);
+        memberInserted(newMember, pos);
     }
 
     /**
@@ -310,8 +518,15 @@ public class Relation extends OsmElement implements BoundedObject, StyleableFeat
     protected void addMembers(@NonNull List<RelationMember> newMembers, boolean atBeginning) {
         if (atBeginning) {
             members.addAll(0, newMembers);
+            invalidateMemberIndex();
         } else {
+            int pos = members.size();
             members.addAll(newMembers);
+            if (memberIndex != null) {
+                for (RelationMember member : newMembers) {
+                    indexMember(memberIndex, member, pos++);
+                }
+            }
         }
     }
 
@@ -339,6 +554,20 @@ public class Relation extends OsmElement implements BoundedObject, StyleableFeat
      * @param newMember The new member.
      */
     void replaceMember(@NonNull RelationMember existing, @NonNull RelationMember newMember) {
+        IntPrimitiveList positions = getPositions(existing.getType(), existing.getRef());
+        if (positions != null) {
+            int[] array = positions.values(); // copy as the index may be discarded
+            boolean sameKey = existing.getRef() == newMember.getRef() && existing.getType().equals(newMember.getType());
+            for (int pos : array) {
+                if (members.get(pos) == existing) {
+                    members.set(pos, newMember);
+                    if (!sameKey) {
+                        invalidateMemberIndex();
+                    }
+                }
+            }
+            return;
+        }
         int idx;
         while ((idx = members.indexOf(existing)) != -1) {
             members.set(idx, newMember);
@@ -353,6 +582,7 @@ public class Relation extends OsmElement implements BoundedObject, StyleableFeat
     void replaceMembers(@NonNull Collection<RelationMember> newMembers) {
         members.clear();
         members.addAll(newMembers);
+        invalidateMemberIndex();
     }
 
     /**
@@ -383,9 +613,8 @@ public class Relation extends OsmElement implements BoundedObject, StyleableFeat
                         }
                     }
                 } else {
-                    SortedMap<String, String> tagsCopy = new TreeMap<>(tags);
-                    if (tagsCopy.remove(Tags.KEY_TYPE) != null) {
-                        p = Preset.findBestMatch(App.getCurrentPresets(ctx), tagsCopy);
+                    if (tags.containsKey(Tags.KEY_TYPE)) {
+                        p = Preset.findBestMatch(App.getCurrentPresets(ctx), tags, Tags.KEY_TYPE, false);
                         if (p != null) {
                             description = description + " " + p.getTranslatedName();
                         }
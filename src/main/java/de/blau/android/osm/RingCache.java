@@ -0,0 +1,461 @@
+package de.blau.android.osm;
+
+import static de.blau.android.util.Winding.CLOCKWISE;
+import static de.blau.android.util.Winding.COUNTERCLOCKWISE;
+import static de.blau.android.util.Winding.winding;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.blau.android.util.GeoMath;
+import de.blau.android.util.Metrics;
+import de.blau.android.util.Util;
+
+/**
+ * Cache of the assembled rings of multipolygon and boundary Relations
+ *
+ * Assembling the rings requires sorting the members and matching way end points, which is expensive for large
+ * multipolygons. The result is cached per Relation as primitive coordinate arrays with bounding boxes, the cache is
+ * invalidated by StorageDelegator when a member Way or one of its Nodes changes.
+ *
+ * The number of cached coordinates is bounded, least recently used entries are removed first.
+ *
+ * @author simon
+ *
+ */
+public class RingCache {
+
+    static final int MAX_POINTS = 500000;
+
+    private static final Metrics.Timer   ASSEMBLE_TIMER = Metrics.timer("multipolygon.assemble");
+    private static final Metrics.Counter HITS           = Metrics.counter("multipolygon.cache.hits");
+
+    /**
+     * A single assembled ring
+     */
+    public static final class Ring {
+        private final String      role;
+        private final int[]       lons;
+        private final int[]       lats;
+        private final int[]       mercatorLats;
+        private final BoundingBox bounds;
+        private final boolean     closed;
+
+        /**
+         * Construct a new Ring from a List of Nodes
+         *
+         * @param role the role of the ring
+         * @param nodes the Nodes, must contain at least one
+         */
+        Ring(@NonNull String role, @NonNull List<Node> nodes) {
+            this.role = role;
+            int size = nodes.size();
+            lons = new int[size];
+            lats = new int[size];
+            mercatorLats = new int[size];
+            Node first = nodes.get(0);
+            bounds = new BoundingBox(first.getLon(), first.getLat());
+            for (int i = 0; i < size; i++) {
+                Node n = nodes.get(i);
+                lons[i] = n.getLon();
+                lats[i] = n.getLat();
+                mercatorLats[i] = GeoMath.latE7ToMercatorE7(lats[i]);
+                bounds.union(lons[i], lats[i]);
+            }
+            closed = size > 2 && first == nodes.get(size - 1);
+        }
+
+        /**
+         * Get the role of the ring
+         *
+         * @return the role, empty if unknown
+         */
+        @NonNull
+        public String getRole() {
+            return role;
+        }
+
+        /**
+         * Get the number of coordinates
+         *
+         * @return the number of coordinates
+         */
+        public int size() {
+            return lons.length;
+        }
+
+        /**
+         * Get the longitudes, the array must not be modified
+         *
+         * @return the longitudes in WGS84*1E7
+         */
+        @NonNull
+        public int[] getLons() {
+            return lons;
+        }
+
+        /**
+         * Get the latitudes, the array must not be modified
+         *
+         * @return the latitudes in WGS84*1E7
+         */
+        @NonNull
+        public int[] getLats() {
+            return lats;
+        }
+
+        /**
+         * Get the latitudes projected to (non-scaled) web mercator, the array must not be modified
+         *
+         * @return the latitudes in mercator*1E7
+         */
+        @NonNull
+        public int[] getMercatorLats() {
+            return mercatorLats;
+        }
+
+        /**
+         * Get the bounding box of the ring, this must not be modified
+         *
+         * @return the BoundingBox
+         */
+        @NonNull
+        public BoundingBox getBounds() {
+            return bounds;
+        }
+
+        /**
+         * Check if the ring is closed
+         *
+         * @return true if the first and last coordinates are from the same Node
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Get the approximate area of the ring
+         *
+         * This uses a local equirectangular projection which is good enough for anything that isn't huge or close to
+         * the poles.
+         *
+         * @return the area in square meters, 0 if the ring is not closed
+         */
+        public double getArea() {
+            if (!closed) {
+                return 0;
+            }
+            double scaleY = Math.toRadians(1E-7) * GeoMath.EARTH_RADIUS_EQUATOR;
+            double scaleX = scaleY * Math.cos(Math.toRadians((bounds.getBottom() + bounds.getTop()) / 2E7D));
+            long left = bounds.getLeft();
+            long bottom = bounds.getBottom();
+            double sum = 0;
+            for (int i = 0; i < lons.length - 1; i++) {
+                sum += (double) (lons[i] - left) * (lats[i + 1] - bottom) - (double) (lons[i + 1] - left) * (lats[i] - bottom);
+            }
+            return Math.abs(sum) / 2 * scaleX * scaleY;
+        }
+    }
+
+    /**
+     * All rings of a Relation
+     */
+    public static final class Rings {
+        private final List<Ring> outer   = new ArrayList<>();
+        private final List<Ring> inner   = new ArrayList<>();
+        private final List<Ring> unknown = new ArrayList<>();
+        private BoundingBox      bounds  = null;
+        private int              points  = 0;
+
+        /**
+         * Add a ring
+         *
+         * @param ring the Ring
+         */
+        private void add(@NonNull Ring ring) {
+            switch (ring.getRole()) {
+            case Tags.ROLE_OUTER:
+                outer.add(ring);
+                break;
+            case Tags.ROLE_INNER:
+                inner.add(ring);
+                break;
+            default:
+                unknown.add(ring);
+            }
+            if (bounds == null) {
+                bounds = new BoundingBox(ring.getBounds());
+            } else {
+                bounds.union(ring.getBounds());
+            }
+            points += ring.size();
+        }
+
+        /**
+         * Get the outer rings, wound clockwise
+         *
+         * @return a List of Ring
+         */
+        @NonNull
+        public List<Ring> getOuter() {
+            return outer;
+        }
+
+        /**
+         * Get the inner rings, wound counter-clockwise
+         *
+         * @return a List of Ring
+         */
+        @NonNull
+        public List<Ring> getInner() {
+            return inner;
+        }
+
+        /**
+         * Get the rings with neither outer nor inner role
+         *
+         * @return a List of Ring
+         */
+        @NonNull
+        public List<Ring> getUnknown() {
+            return unknown;
+        }
+
+        /**
+         * Get the bounding box of all rings, this must not be modified
+         *
+         * @return the BoundingBox or null if there are no rings
+         */
+        @Nullable
+        public BoundingBox getBounds() {
+            return bounds;
+        }
+
+        /**
+         * Get the total number of coordinates
+         *
+         * @return the number of coordinates
+         */
+        public int getPointCount() {
+            return points;
+        }
+
+        /**
+         * Check if all rings are closed and have a role
+         *
+         * @return true if the multipolygon is complete
+         */
+        public boolean isComplete() {
+            if (outer.isEmpty() || !unknown.isEmpty()) {
+                return false;
+            }
+            for (Ring r : outer) {
+                if (!r.isClosed()) {
+                    return false;
+                }
+            }
+            for (Ring r : inner) {
+                if (!r.isClosed()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Get the approximate area of the multipolygon, that is the area of the closed outer rings minus that of the
+         * closed inner rings
+         *
+         * @return the area in square meters
+         */
+        public double getArea() {
+            double area = 0;
+            for (Ring r : outer) {
+                area += r.getArea();
+            }
+            for (Ring r : inner) {
+                area -= r.getArea();
+            }
+            return Math.max(0, area);
+        }
+    }
+
+    private final LinkedHashMap<Relation, Rings> cache  = new LinkedHashMap<>(16, 0.75f, true);
+    private int                                  points = 0;
+
+    /**
+     * Get the rings for a Relation, assembling them if they are not cached
+     *
+     * @param relation the Relation
+     * @return the Rings
+     */
+    @NonNull
+    public synchronized Rings get(@NonNull Relation relation) {
+        Rings rings = cache.get(relation);
+        if (rings != null) {
+            HITS.inc();
+            return rings;
+        }
+        long start = ASSEMBLE_TIMER.start();
+        rings = assemble(relation);
+        ASSEMBLE_TIMER.stop(start);
+        cache.put(relation, rings);
+        points += rings.getPointCount();
+        Iterator<Entry<Relation, Rings>> it = cache.entrySet().iterator();
+        while (points > MAX_POINTS && cache.size() > 1) {
+            points -= it.next().getValue().getPointCount();
+            it.remove();
+        }
+        return rings;
+    }
+
+    /**
+     * Remove the cached rings of a Relation
+     *
+     * @param relation the Relation
+     */
+    public synchronized void invalidate(@NonNull Relation relation) {
+        Rings rings = cache.remove(relation);
+        if (rings != null) {
+            points -= rings.getPointCount();
+        }
+    }
+
+    /**
+     * Remove the cached rings of all Relations a Way is a member of
+     *
+     * @param way the Way
+     */
+    public synchronized void invalidate(@NonNull Way way) {
+        List<Relation> parents = way.getParentRelations();
+        if (parents != null && !cache.isEmpty()) {
+            for (Relation r : parents) {
+                invalidate(r);
+            }
+        }
+    }
+
+    /**
+     * Remove the cached rings of an element, or of the Relations it is a member of
+     *
+     * Node changes require the ways the Node is in to be invalidated
+     *
+     * @param e the OsmElement
+     */
+    public void invalidate(@NonNull OsmElement e) {
+        if (e instanceof Way) {
+            invalidate((Way) e);
+        } else if (e instanceof Relation) {
+            invalidate((Relation) e);
+        }
+    }
+
+    /**
+     * Remove everything from the cache
+     */
+    public synchronized void clear() {
+        cache.clear();
+        points = 0;
+    }
+
+    /**
+     * Get the number of cached Relations
+     *
+     * @return the number of cached Relations
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * Assemble the rings of a Relation from its downloaded Way members
+     *
+     * Outer rings are reversed if necessary so that they are wound clockwise, inner rings counter-clockwise.
+     *
+     * @param relation the Relation
+     * @return the Rings
+     */
+    @NonNull
+    public static Rings assemble(@NonNull Relation relation) {
+        List<RelationMember> waysOnly = new ArrayList<>();
+        for (RelationMember m : relation.getMembers()) {
+            if (m.downloaded() && Way.NAME.equals(m.getType())) {
+                waysOnly.add(m);
+            }
+        }
+        Rings rings = new Rings();
+        List<RelationMember> members = Util.sortRelationMembers(waysOnly);
+        List<Node> ring = new ArrayList<>();
+        List<Node> wayNodes = new ArrayList<>();
+
+        int ms = members.size();
+        String ringRole = "";
+        for (int i = 0; i < ms; i++) {
+            ringRole = "";
+            RelationMember current = members.get(i);
+            Way currentWay = (Way) current.getElement();
+            String currentRole = current.getRole();
+            if (currentRole != null) {
+                ringRole = currentRole;
+            }
+            if (currentWay != null) {
+                wayNodes.clear();
+                wayNodes.addAll(currentWay.getNodes());
+                int rs = ring.size();
+                int ns = wayNodes.size();
+                if (ring.isEmpty()) {
+                    ring.addAll(wayNodes);
+                } else if (ring.get(rs - 1).equals(wayNodes.get(0))) {
+                    ring.addAll(wayNodes.subList(1, ns));
+                } else if (ring.get(rs - 1).equals(wayNodes.get(ns - 1))) {
+                    Collections.reverse(wayNodes);
+                    ring.addAll(wayNodes.subList(1, ns));
+                }
+            }
+            if (ring.isEmpty()) {
+                continue;
+            }
+            RelationMember next = members.get((i + 1) % ms);
+            Way nextWay = (Way) next.getElement();
+            Node lastRingNode = ring.get(ring.size() - 1);
+            if (nextWay != null) {
+                List<Node> nextNodes = nextWay.getNodes();
+                int ns1 = nextNodes.size() - 1;
+                if (!nextNodes.get(0).equals(lastRingNode) && !nextNodes.get(ns1).equals(lastRingNode)) {
+                    Node firstRingNode = ring.get(0);
+                    if (nextNodes.get(0).equals(firstRingNode) || nextNodes.get(ns1).equals(firstRingNode)) {
+                        Collections.reverse(ring);
+                        continue;
+                    }
+                    addRing(rings, ringRole, ring);
+                    ring.clear();
+                }
+            }
+        }
+        if (!ring.isEmpty()) {
+            addRing(rings, ringRole, ring);
+        }
+        return rings;
+    }
+
+    /**
+     * Add a ring with the correct winding for its role
+     *
+     * @param rings the Rings to add to
+     * @param role the role of the ring
+     * @param ring the Nodes of the ring, this may be reversed
+     */
+    private static void addRing(@NonNull Rings rings, @NonNull String role, @NonNull List<Node> ring) {
+        final int winding = winding(ring);
+        if ((Tags.ROLE_OUTER.equals(role) && winding == COUNTERCLOCKWISE) || (Tags.ROLE_INNER.equals(role) && winding == CLOCKWISE)) {
+            Collections.reverse(ring);
+        }
+        rings.add(new Ring(role, ring));
+    }
+}
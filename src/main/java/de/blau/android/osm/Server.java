@@ -1020,8 +1020,22 @@ public class Server {
      * @throws IOException if writing the output doesn't work
      */
     public void diffUpload(@NonNull final StorageDelegator delegator, @NonNull final Storage storage) throws IOException {
+        diffUpload(delegator, new OsmChangeWriter(storage, getCachedCapabilities().getMaxElementsInChangeset()), 0);
+    }
+
+    /**
+     * Upload a chunk of edits in OCS format and process the server response
+     * 
+     * The chunk is acknowledged in writer if the upload was successful
+     * 
+     * @param delegator reference to the StorageDelegator
+     * @param writer the OsmChangeWriter holding the changes
+     * @param chunk the index of the chunk to upload
+     * @throws IOException if writing the output doesn't work
+     */
+    public void diffUpload(@NonNull final StorageDelegator delegator, @NonNull final OsmChangeWriter writer, final int chunk) throws IOException {
         try {
-            for (OsmElement elem : storage.getElements()) {
+            for (OsmElement elem : writer.getChunk(chunk)) {
                 if (elem.state != OsmElement.STATE_DELETED) {
                     discardedTags.remove(elem);
                 }
@@ -1030,8 +1044,7 @@ public class Server {
                 @Override
                 public void writeTo(BufferedSink sink) throws IOException {
                     try {
-                        OsmXml.writeOsmChange(storage, sink.outputStream(), changesetId, getCachedCapabilities().getMaxElementsInChangeset(),
-                                App.getUserAgent());
+                        writer.write(chunk, sink.outputStream(), changesetId, App.getUserAgent());
                     } catch (IllegalArgumentException | IllegalStateException | XmlPullParserException e) {
                         throw new IOException(e);
                     }
@@ -1039,6 +1052,9 @@ public class Server {
             };
             Response response = openConnectionForAuthenticatedAccess(getDiffUploadUrl(changesetId), HTTP_POST, body);
             processDiffUploadResult(delegator, response, xmlParserFactory.newPullParser());
+            if (response.code() == HttpURLConnection.HTTP_OK) {
+                writer.acknowledge(chunk);
+            }
         } catch (IllegalArgumentException | IllegalStateException | XmlPullParserException e1) {
             throw new OsmException(e1.getMessage());
         }
@@ -1109,6 +1125,7 @@ public class Server {
                                                 Log.e(DEBUG_TAG, "New " + e + " was already removed from api storage!");
                                             }
                                             Log.w(DEBUG_TAG, "New " + e + " added to API");
+                                            delegator.getUndo().renumber(e, newId);
                                             e.setOsmId(newId); // id change requires rehash, so that removing works,
                                                                // remove first then set id
                                             e.setOsmVersion(newVersion);
@@ -1153,6 +1170,7 @@ public class Server {
                         apiStorage.rehash();
                     }
                 }
+                delegator.publishChanges();
             } catch (XmlPullParserException | NumberFormatException | IOException e) {
                 throw new OsmException(e.toString());
             }
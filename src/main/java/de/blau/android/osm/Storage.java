@@ -14,10 +14,18 @@ import de.blau.android.exception.OsmException;
 import de.blau.android.exception.StorageException;
 import de.blau.android.util.collections.LongHashSet;
 import de.blau.android.util.collections.LongOsmElementMap;
+import de.blau.android.util.collections.LongOsmElementMap.Visitor;
+import de.blau.android.util.collections.LongOsmElementTrie;
 
 /**
  * Container for OSM data
  * 
+ * Once {@link #publish()} has been called, an immutable {@link StorageSnapshot} of the element indexes is published
+ * when the owner calls {@link #publishChanges()} at the end of an operation, or at the end of a batch of
+ * modifications, that can be read without locking from any thread. The snapshots are backed by persistent tries that
+ * are maintained alongside the hash maps and share their structure with each other, so publishing doesn't copy the
+ * indexes. The tries are only modified while holding the lock on the Storage, so that taking a snapshot never sees a
+ * partial update.
  *
  */
 public class Storage implements Serializable {
@@ -36,6 +44,15 @@ public class Storage implements Serializable {
 
     private transient LongHashSet nodeIsRef;
 
+    private transient LongOsmElementTrie<Node>     nodeTrie;
+    private transient LongOsmElementTrie<Way>      wayTrie;
+    private transient LongOsmElementTrie<Relation> relationTrie;
+
+    private transient volatile StorageSnapshot snapshot;
+    private transient long                     version;
+    private transient int                      batchDepth;
+    private transient boolean                  unpublished;
+
     /**
      * Default constructor
      * <p>
@@ -58,6 +75,14 @@ public class Storage implements Serializable {
         ways = new LongOsmElementMap<>(s.ways);
         relations = new LongOsmElementMap<>(s.relations);
         bboxes = new ArrayList<>(s.bboxes);
+        synchronized (s) {
+            if (s.nodeTrie != null) { // share the structure, this doesn't copy anything
+                nodeTrie = new LongOsmElementTrie<>(s.nodeTrie.snapshot());
+                wayTrie = new LongOsmElementTrie<>(s.wayTrie.snapshot());
+                relationTrie = new LongOsmElementTrie<>(s.relationTrie.snapshot());
+            }
+            version = s.version;
+        }
     }
 
     /**
@@ -148,15 +173,17 @@ public class Storage implements Serializable {
      */
     @NonNull
     public List<Node> getNodes(@NonNull BoundingBox box, @NonNull List<Node> result) {
-        List<Node> list = nodes.values();
-        int listSize = list.size();
-        for (int i = 0; i < listSize; i++) {
-            Node n = list.get(i);
-            if (box.isIn(n.getLon(), n.getLat())) {
-                result.add(n);
-            }
-        }
-        return result;
+        return nodes.collect(result, n -> box.isIn(n.getLon(), n.getLat()));
+    }
+
+    /**
+     * Call visitor for all nodes without creating a List of them
+     * 
+     * @param visitor the Visitor, return false from it to stop the iteration
+     * @return true if all nodes were visited
+     */
+    public boolean visitNodes(@NonNull Visitor<? super Node> visitor) {
+        return nodes.visit(visitor);
     }
 
     /**
@@ -202,16 +229,17 @@ public class Storage implements Serializable {
     @NonNull
     public List<Way> getWays(@NonNull BoundingBox box, @NonNull List<Way> result) {
         BoundingBox newBox = new BoundingBox(); // avoid creating new instances
-        List<Way> list = ways.values();
-        int listSize = list.size();
-        for (int i = 0; i < listSize; i++) {
-            Way w = list.get(i);
-            BoundingBox wayBox = w.getBounds(newBox);
-            if (wayBox.intersects(box)) {
-                result.add(w);
-            }
-        }
-        return result;
+        return ways.collect(result, w -> w.getBounds(newBox).intersects(box));
+    }
+
+    /**
+     * Call visitor for all ways without creating a List of them
+     * 
+     * @param visitor the Visitor, return false from it to stop the iteration
+     * @return true if all ways were visited
+     */
+    public boolean visitWays(@NonNull Visitor<? super Way> visitor) {
+        return ways.visit(visitor);
     }
 
     /**
@@ -232,6 +260,16 @@ public class Storage implements Serializable {
         return Collections.unmodifiableList(relations.values());
     }
 
+    /**
+     * Call visitor for all relations without creating a List of them
+     * 
+     * @param visitor the Visitor, return false from it to stop the iteration
+     * @return true if all relations were visited
+     */
+    public boolean visitRelations(@NonNull Visitor<? super Relation> visitor) {
+        return relations.visit(visitor);
+    }
+
     /**
      * Get how many relations there are in storage
      * 
@@ -280,10 +318,15 @@ public class Storage implements Serializable {
     void insertNodeUnsafe(@NonNull final Node node) {
         try {
             nodes.put(node.getOsmId(), node);
+            synchronized (this) {
+                if (nodeTrie != null) {
+                    nodeTrie.put(node.getOsmId(), node);
+                }
+                changed();
+            }
         } catch (OutOfMemoryError err) {
             throw new StorageException(StorageException.OOM);
         }
-
     }
 
     /**
@@ -294,6 +337,12 @@ public class Storage implements Serializable {
     void insertWayUnsafe(@NonNull final Way way) {
         try {
             ways.put(way.getOsmId(), way);
+            synchronized (this) {
+                if (wayTrie != null) {
+                    wayTrie.put(way.getOsmId(), way);
+                }
+                changed();
+            }
         } catch (OutOfMemoryError err) {
             throw new StorageException(StorageException.OOM);
         }
@@ -307,6 +356,12 @@ public class Storage implements Serializable {
     void insertRelationUnsafe(@NonNull final Relation relation) {
         try {
             relations.put(relation.getOsmId(), relation);
+            synchronized (this) {
+                if (relationTrie != null) {
+                    relationTrie.put(relation.getOsmId(), relation);
+                }
+                changed();
+            }
         } catch (OutOfMemoryError err) {
             throw new StorageException(StorageException.OOM);
         }
@@ -347,7 +402,16 @@ public class Storage implements Serializable {
      * @return true if the node was in storage
      */
     boolean removeNode(@NonNull final Node node) {
-        return nodes.remove(node.getOsmId()) != null;
+        if (nodes.remove(node.getOsmId()) == null) {
+            return false;
+        }
+        synchronized (this) {
+            if (nodeTrie != null) {
+                nodeTrie.remove(node.getOsmId());
+            }
+            changed();
+        }
+        return true;
     }
 
     /**
@@ -357,7 +421,16 @@ public class Storage implements Serializable {
      * @return true if the way was in storage
      */
     boolean removeWay(@NonNull final Way way) {
-        return ways.remove(way.getOsmId()) != null;
+        if (ways.remove(way.getOsmId()) == null) {
+            return false;
+        }
+        synchronized (this) {
+            if (wayTrie != null) {
+                wayTrie.remove(way.getOsmId());
+            }
+            changed();
+        }
+        return true;
     }
 
     /**
@@ -367,7 +440,16 @@ public class Storage implements Serializable {
      * @return true if the relation was in storage
      */
     boolean removeRelation(@NonNull final Relation relation) {
-        return relations.remove(relation.getOsmId()) != null;
+        if (relations.remove(relation.getOsmId()) == null) {
+            return false;
+        }
+        synchronized (this) {
+            if (relationTrie != null) {
+                relationTrie.remove(relation.getOsmId());
+            }
+            changed();
+        }
+        return true;
     }
 
     /**
@@ -378,11 +460,11 @@ public class Storage implements Serializable {
      */
     boolean removeElement(@Nullable final OsmElement element) {
         if (element instanceof Way) {
-            return ways.remove(element.getOsmId()) != null;
+            return removeWay((Way) element);
         } else if (element instanceof Node) {
-            return nodes.remove(element.getOsmId()) != null;
+            return removeNode((Node) element);
         } else if (element instanceof Relation) {
-            return relations.remove(element.getOsmId()) != null;
+            return removeRelation((Relation) element);
         }
         return false;
     }
@@ -405,6 +487,7 @@ public class Storage implements Serializable {
     synchronized void setBoundingBox(@NonNull final BoundingBox bbox) {
         bboxes.clear();
         bboxes.add(bbox);
+        changed();
     }
 
     /**
@@ -415,6 +498,7 @@ public class Storage implements Serializable {
     synchronized void addBoundingBox(@NonNull final BoundingBox bbox) {
         if (!bboxes.contains(bbox)) {
             bboxes.add(bbox);
+            changed();
         }
     }
 
@@ -424,7 +508,9 @@ public class Storage implements Serializable {
      * @param box bounding box to remove
      */
     public synchronized void deleteBoundingBox(@NonNull BoundingBox box) {
-        bboxes.remove(box);
+        if (bboxes.remove(box)) {
+            changed();
+        }
     }
 
     /**
@@ -436,6 +522,7 @@ public class Storage implements Serializable {
             count++;
         }
         Log.e(DEBUG_TAG, "Removed " + count + " null bounding boxes");
+        changed();
     }
 
     /**
@@ -458,6 +545,7 @@ public class Storage implements Serializable {
      */
     public synchronized void clearBoundingBoxList() {
         bboxes.clear();
+        changed();
     }
 
     /**
@@ -514,12 +602,7 @@ public class Storage implements Serializable {
      * @return true if node is the first or last node of at least one way
      */
     public boolean isEndNode(@Nullable final Node node) {
-        for (Way way : ways) {
-            if (way.isEndNode(node)) {
-                return true;
-            }
-        }
-        return false;
+        return !ways.visit(way -> !way.isEndNode(node));
     }
 
     /**
@@ -585,6 +668,102 @@ public class Storage implements Serializable {
         nodes.rehash();
         ways.rehash();
         relations.rehash();
+        synchronized (this) {
+            if (nodeTrie != null) {
+                buildTries();
+                changed();
+            }
+        }
+    }
+
+    /**
+     * Publish a snapshot of the current state and continue publishing changes from now on
+     * 
+     * The first call builds the tries backing the snapshots, Storage instances that are never published, for example
+     * the temporary ones used while parsing, don't incur that overhead
+     */
+    public synchronized void publish() {
+        if (nodeTrie == null) {
+            buildTries();
+        }
+        snapshot = new StorageSnapshot(++version, nodeTrie.snapshot(), wayTrie.snapshot(), relationTrie.snapshot(), bboxes);
+        unpublished = false;
+    }
+
+    /**
+     * Publish a new snapshot if we have been published before, have been modified since and are not in a batch
+     * 
+     * Modifications only mark the Storage as changed so that a complete operation is published once at its end
+     */
+    public synchronized void publishChanges() {
+        if (snapshot != null && unpublished && batchDepth == 0) {
+            publish();
+        }
+    }
+
+    /**
+     * Get the last published snapshot
+     * 
+     * This doesn't lock, {@link #publish()} needs to have been called by the thread modifying the Storage before
+     * 
+     * @return the StorageSnapshot
+     * @throws IllegalStateException if the Storage has never been published
+     */
+    @NonNull
+    public StorageSnapshot getSnapshot() {
+        StorageSnapshot s = snapshot;
+        if (s == null) {
+            throw new IllegalStateException("Storage has not been published");
+        }
+        return s;
+    }
+
+    /**
+     * Start a batch of modifications, no snapshots will be published until the outermost batch has ended
+     * 
+     * Calls need to be paired with {@link #endBatch()}
+     */
+    public synchronized void beginBatch() {
+        batchDepth++;
+    }
+
+    /**
+     * End a batch of modifications and publish a new snapshot if this is the outermost batch
+     */
+    public synchronized void endBatch() {
+        if (batchDepth > 0) {
+            batchDepth--;
+            publishChanges();
+        }
+    }
+
+    /**
+     * Note that the Storage has been modified, if we have been published before
+     * 
+     * Must be called while holding the lock on the Storage
+     */
+    private void changed() {
+        if (snapshot != null) {
+            unpublished = true;
+        }
+    }
+
+    /**
+     * (Re-)build the tries from the hash maps
+     */
+    private synchronized void buildTries() {
+        nodeTrie = new LongOsmElementTrie<>();
+        for (Node n : nodes) {
+            nodeTrie.put(n.getOsmId(), n);
+        }
+        wayTrie = new LongOsmElementTrie<>();
+        for (Way w : ways) {
+            wayTrie.put(w.getOsmId(), w);
+        }
+        relationTrie = new LongOsmElementTrie<>();
+        for (Relation r : relations) {
+            relationTrie.put(r.getOsmId(), r);
+        }
     }
 
     /**
@@ -640,10 +819,15 @@ public class Storage implements Serializable {
      */
     public synchronized void removeUnreferencedNodes(@NonNull BoundingBox box) {
         if (nodeIsRef != null) {
-            for (Node nd : getNodes()) {
-                if (!nodeIsRef.contains(nd.getOsmId()) && !box.contains(nd.getLon(), nd.getLat())) {
-                    removeNode(nd);
+            beginBatch();
+            try {
+                for (Node nd : getNodes()) {
+                    if (!nodeIsRef.contains(nd.getOsmId()) && !box.contains(nd.getLon(), nd.getLat())) {
+                        removeNode(nd);
+                    }
                 }
+            } finally {
+                endBatch();
             }
         }
         nodeIsRef = null;
@@ -655,10 +839,15 @@ public class Storage implements Serializable {
      * @param elements the List of OsmElements to add
      */
     public void addChangedElements(@NonNull List<OsmElement> elements) {
-        for (OsmElement e : elements) {
-            if (!e.isUnchanged()) {
-                insertElementUnsafe(e);
+        beginBatch();
+        try {
+            for (OsmElement e : elements) {
+                if (!e.isUnchanged()) {
+                    insertElementUnsafe(e);
+                }
             }
+        } finally {
+            endBatch();
         }
     }
 }
@@ -54,9 +54,9 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
 
     private static final long serialVersionUID = 10L;
 
-    private Storage currentStorage;
+    private volatile Storage currentStorage;
 
-    private Storage apiStorage;
+    private volatile Storage apiStorage;
 
     private UndoStorage undo;
 
@@ -85,6 +85,26 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
 
     private transient SavingHelper<StorageDelegator> savingHelper = new SavingHelper<>();
 
+    /**
+     * Changes of an interrupted upload that can be resumed
+     */
+    private transient OsmChangeWriter pendingUpload = null;
+
+    /**
+     * Index of street, place and address names, created lazily
+     */
+    private transient ElementNameIndex nameIndex = null;
+
+    /**
+     * Incremental pruning of data that is out of view, created lazily
+     */
+    private transient AutoPruner autoPruner = null;
+
+    /**
+     * Assembled multipolygon rings, created lazily
+     */
+    private transient RingCache ringCache = null;
+
     /**
      * A OsmElementFactory that is used to create new elements. Needs to be persisted together with
      * currentStorage/apiStorage to avoid duplicate IDs when the application is restarted after some elements have been
@@ -111,10 +131,14 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
     public void reset(boolean dirty) {
         this.dirty = dirty;
         apiStorage = new Storage();
+        apiStorage.publish();
         currentStorage = new Storage();
+        currentStorage.publish();
         undo = new UndoStorage(currentStorage, apiStorage);
         factory = new OsmElementFactory();
         imagery = new ArrayList<>();
+        invalidateAutoPruner();
+        invalidateRingCache();
     }
 
     /**
@@ -125,8 +149,12 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
     public synchronized void setCurrentStorage(@NonNull final Storage currentStorage) {
         dirty = true;
         apiStorage = new Storage();
+        apiStorage.publish();
+        currentStorage.publish();
         this.currentStorage = currentStorage;
         undo = new UndoStorage(currentStorage, apiStorage);
+        invalidateAutoPruner();
+        invalidateRingCache();
     }
 
     /**
@@ -143,9 +171,97 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
      */
     public void dirty() {
         dirty = true;
+        invalidateNameIndex();
+        invalidateRingCache();
         Log.d(DEBUG_TAG, "setting delegator to dirty");
     }
 
+    /**
+     * Publish new snapshots of the storages if they have been modified
+     * 
+     * This should be called once at the end of each operation that modifies the storages
+     */
+    public void publishChanges() {
+        currentStorage.publishChanges();
+        apiStorage.publishChanges();
+    }
+
+    /**
+     * Get the index of street, place and address names for the current Storage
+     * 
+     * The index is (re-)built on first use and after the current Storage has been replaced, individual changes are
+     * applied incrementally.
+     * 
+     * @return the ElementNameIndex
+     */
+    @NonNull
+    public synchronized ElementNameIndex getNameIndex() {
+        ElementNameIndex index = nameIndex;
+        if (index == null || !index.isFor(currentStorage)) {
+            index = new ElementNameIndex(currentStorage);
+            nameIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Force a rebuild of the ElementNameIndex on next use
+     */
+    private void invalidateNameIndex() {
+        ElementNameIndex index = nameIndex;
+        if (index != null) {
+            index.invalidate();
+        }
+    }
+
+    /**
+     * Get the pruner that removes unchanged data that hasn't been viewed recently
+     * 
+     * @return the AutoPruner
+     */
+    @NonNull
+    public synchronized AutoPruner getAutoPruner() {
+        if (autoPruner == null) {
+            autoPruner = new AutoPruner(this);
+        }
+        return autoPruner;
+    }
+
+    /**
+     * Force a rebuild of the AutoPruner index before the next prune
+     */
+    private void invalidateAutoPruner() {
+        AutoPruner pruner = autoPruner;
+        if (pruner != null) {
+            pruner.invalidate();
+        }
+    }
+
+    /**
+     * Get the cache of assembled multipolygon rings
+     * 
+     * Entries are invalidated when member Ways or their Nodes change
+     * 
+     * @return the RingCache
+     */
+    @NonNull
+    public synchronized RingCache getRingCache() {
+        if (ringCache == null) {
+            ringCache = new RingCache();
+        }
+        return ringCache;
+    }
+
+    /**
+     * Remove all assembled multipolygon rings
+     */
+    private void invalidateRingCache() {
+        RingCache cache = ringCache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
     /**
      * Get the current undo instance. For immediate use only - DO NOT CACHE THIS.
      * 
@@ -245,12 +361,20 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
      * @param post list of changed elements after the operation or null
      */
     void onElementChanged(@Nullable List<OsmElement> pre, @Nullable List<OsmElement> post) {
+        ElementNameIndex index = nameIndex;
+        RingCache rings = ringCache;
         if (post != null) {
             boolean nodeChanged = false;
             BoundingBox changed = null;
             for (OsmElement e : post) {
                 e.stamp();
                 e.resetHasProblem();
+                if (index != null) {
+                    index.touch(e);
+                }
+                if (rings != null) {
+                    rings.invalidate(e);
+                }
                 if (Way.NAME.equals(e.getName())) {
                     ((Way) e).invalidateBoundingBox();
                 } else if (Node.NAME.equals(e.getName())) {
@@ -266,8 +390,19 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
                 for (Way w : currentStorage.getWays(changed)) {
                     w.invalidateBoundingBox();
                     w.resetHasProblem();
+                    if (index != null) {
+                        index.touch(w);
+                    }
+                    if (rings != null) {
+                        rings.invalidate(w);
+                    }
                 }
             }
+        } else {
+            if (index != null) {
+                index.invalidate();
+            }
+            invalidateRingCache();
         }
         Logic logic = App.getLogic();
         if (logic != null) { // this might be null in testing
@@ -276,6 +411,7 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
                 filter.onElementChanged(pre, post);
             }
         }
+        publishChanges();
     }
 
     /**
@@ -345,6 +481,14 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
      */
     private void invalidateWay(@NonNull Way w) {
         w.invalidateBoundingBox();
+        ElementNameIndex index = nameIndex;
+        if (index != null) {
+            index.touch(w);
+        }
+        RingCache rings = ringCache;
+        if (rings != null) {
+            rings.invalidate(w);
+        }
         if (w.hasTagKey(Tags.KEY_HIGHWAY)) {
             // we only validate way connections for highways currently
             w.resetHasProblem();
@@ -458,6 +602,7 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
             // FIXME do something reasonable
             Log.e(DEBUG_TAG, "fixupApiStorage got " + e.getMessage());
         }
+        publishChanges();
     }
 
     /**
@@ -647,6 +792,10 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
         node.setLat(latE7);
         node.setLon(lonE7);
         node.updateState(OsmElement.STATE_MODIFIED);
+        ElementNameIndex index = nameIndex;
+        if (index != null) {
+            index.touch(node);
+        }
     }
 
     /**
@@ -2481,6 +2630,29 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
         return currentStorage;
     }
 
+    /**
+     * Get the last published snapshot of the current Storage
+     * 
+     * This doesn't lock and can be used by the renderer and background tasks that need a consistent view of the data
+     * while it is being modified
+     * 
+     * @return a StorageSnapshot
+     */
+    @NonNull
+    public StorageSnapshot getCurrentSnapshot() {
+        return currentStorage.getSnapshot();
+    }
+
+    /**
+     * Get the last published snapshot of the API Storage
+     * 
+     * @return a StorageSnapshot
+     */
+    @NonNull
+    public StorageSnapshot getApiSnapshot() {
+        return apiStorage.getSnapshot();
+    }
+
     @Override
     @NonNull
     public synchronized List<BoundingBox> getBoundingBoxes() {
@@ -2495,12 +2667,14 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
     public synchronized void setOriginalBox(@NonNull final BoundingBox box) {
         dirty = true;
         currentStorage.setBoundingBox(box);
+        publishChanges();
     }
 
     @Override
     public synchronized void addBoundingBox(@NonNull BoundingBox box) {
         dirty = true;
         currentStorage.addBoundingBox(box);
+        publishChanges();
     }
 
     /**
@@ -2511,6 +2685,7 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
     public synchronized void deleteBoundingBox(@NonNull BoundingBox box) {
         dirty = true;
         currentStorage.deleteBoundingBox(box);
+        publishChanges();
     }
 
     /**
@@ -2524,20 +2699,24 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
     public synchronized void mergeBoundingBox(@NonNull BoundingBox box) {
         // if we are simply expanding the area no need keep the old bounding boxes
         dirty = true;
-        List<BoundingBox> bbs = new ArrayList<>(currentStorage.getBoundingBoxes());
-        for (BoundingBox bb : bbs) {
-            if (bb != null) {
-                if (box.contains(bb)) {
-                    currentStorage.deleteBoundingBox(bb);
-                } else if (bb.contains(box)) {
-                    return; // existing area
+        try {
+            List<BoundingBox> bbs = new ArrayList<>(currentStorage.getBoundingBoxes());
+            for (BoundingBox bb : bbs) {
+                if (bb != null) {
+                    if (box.contains(bb)) {
+                        currentStorage.deleteBoundingBox(bb);
+                    } else if (bb.contains(box)) {
+                        return; // existing area
+                    }
+                } else {
+                    Log.e(DEBUG_TAG, "download null existing bounding box");
+                    currentStorage.removeNullBoundingboxes();
                 }
-            } else {
-                Log.e(DEBUG_TAG, "download null existing bounding box");
-                currentStorage.removeNullBoundingboxes();
             }
+            currentStorage.addBoundingBox(box);
+        } finally {
+            publishChanges();
         }
-        currentStorage.addBoundingBox(box);
     }
 
     /**
@@ -2634,6 +2813,8 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
             // TODO this doesn't really help with error conditions need to throw exception
             if (savingHelper.save(ctx, FILENAME, this, true)) {
                 dirty = false;
+                // spill files of checkpoints that are no longer referenced by the saved state can go
+                undo.removeUnusedSpillFiles();
             } else {
                 // this is essentially catastrophic and can only happen if something went really wrong
                 // running out of memory or disk, or HW failure
@@ -2681,18 +2862,23 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
 
             if (newDelegator != null) {
                 Log.d(DEBUG_TAG, "read saved state");
-                currentStorage = newDelegator.currentStorage;
-                if (currentStorage.getBoundingBoxes().isEmpty()) { // can happen if data was added before load
+                Storage newStorage = newDelegator.currentStorage;
+                if (newStorage.getBoundingBoxes().isEmpty()) { // can happen if data was added before load
                     try {
-                        currentStorage.setBoundingBox(currentStorage.calcBoundingBoxFromData());
+                        newStorage.setBoundingBox(newStorage.calcBoundingBoxFromData());
                     } catch (OsmException e) {
                         Log.e(DEBUG_TAG, "readFromFile got " + e.getMessage());
                     }
                 }
+                newStorage.publish();
+                newDelegator.apiStorage.publish();
+                currentStorage = newStorage;
                 apiStorage = newDelegator.apiStorage;
                 undo = newDelegator.undo;
                 clipboard = newDelegator.clipboard;
                 factory = newDelegator.factory;
+                invalidateAutoPruner();
+                invalidateRingCache();
                 dirty = false; // data was just read, i.e. memory and file are in sync
                 return true;
             } else {
@@ -2771,6 +2957,9 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
     /**
      * Upload created, modified and deleted data in diff format
      * 
+     * If the changes have to be split over multiple changesets and the upload fails, the next upload of all changes
+     * resumes with the first part that wasn't uploaded if nothing has been changed in the mean time.
+     * 
      * @param server Server to upload changes to.
      * @param comment Changeset comment tag
      * @param source Changeset source tag
@@ -2784,50 +2973,49 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
             boolean closeChangeset, @Nullable Map<String, String> extraTags, @Nullable List<OsmElement> elements) throws IOException {
 
         dirty = true; // storages will get modified as data is uploaded, these changes need to be saved to file
+        invalidateAutoPruner(); // uploaded elements are no longer protected by being in the API storage
         removeUnchanged();
         // upload methods set dirty flag too, in case the file is saved during an upload
         boolean fullUpload = elements == null;
-        int uploadElementCount = fullUpload ? getApiElementCount() : elements.size();
-        int notUploadedElementCount = getApiElementCount() - uploadElementCount; // will be zero for normal uploads
-        boolean split = uploadElementCount > server.getCapabilities().getMaxElementsInChangeset();
-        int part = 1;
-        int elementCount = uploadElementCount;
-        while (elementCount > 0) {
+        Storage storage = getApiStorage();
+        if (!fullUpload) {
+            storage = new Storage();
+            storage.addChangedElements(elements);
+        }
+        OsmChangeWriter writer = fullUpload ? pendingUpload : null;
+        if (writer != null && writer.isValidFor(storage)) {
+            Log.i(DEBUG_TAG, "Resuming upload with part " + (writer.getAcknowledged() + 1) + " of " + writer.getChunkCount());
+        } else {
+            writer = new OsmChangeWriter(storage, server.getCapabilities().getMaxElementsInChangeset());
+        }
+        if (fullUpload) {
+            pendingUpload = writer;
+        }
+        final int chunks = writer.getChunkCount();
+        boolean split = chunks > 1;
+        for (int chunk = writer.getAcknowledged(); chunk < chunks; chunk++) {
             String tmpSource = source;
             if (split) {
-                tmpSource = source + " [" + part + "]";
+                tmpSource = source + " [" + (chunk + 1) + "]";
             }
             server.openChangeset(closeOpenChangeset, comment, tmpSource, Util.listToOsmList(imagery), extraTags);
             try {
                 lock();
-                if (fullUpload) {
-                    server.diffUpload(this, getApiStorage());
-                } else {
-                    Storage storage = new Storage();
-                    // if we are uploading more than the limit elements
-                    // this will work as uploaded elements will have
-                    // unmodified status
-                    storage.addChangedElements(elements);
-                    server.diffUpload(this, storage);
-                }
+                server.diffUpload(this, writer, chunk);
             } finally {
                 unlock();
             }
-
+            if (writer.getAcknowledged() <= chunk) {
+                // that should cause an exception to be thrown in diffUpload, but it is conceivable that that doesn't
+                // happen
+                Log.e(DEBUG_TAG, "Upload of part " + (chunk + 1) + " had no effect");
+                throw new ProtocolException("Upload had no effect");
+            }
             if (closeChangeset || split) { // always close when splitting
                 server.closeChangeset();
             }
-            part++;
-            int currentElementCount = getApiElementCount();
-            if (currentElementCount < notUploadedElementCount + elementCount) {
-                elementCount = currentElementCount - notUploadedElementCount;
-            } else {
-                // element count didn't do anything, that should cause an exception to be
-                // thrown in diffUpload, but it is conceivable that that doesn't happen
-                Log.e(DEBUG_TAG, "Upload had no effect, API element count " + elementCount);
-                throw new ProtocolException("Upload had no effect");
-            }
         }
+        pendingUpload = null;
         // yes, again, just to be sure
         dirty = true;
 
@@ -3058,8 +3246,13 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
                 return false;
             }
 
+            temp.publish();
             currentStorage = temp;
             undo.setCurrentStorage(temp);
+            if (autoPruner != null) {
+                autoPruner.add(storage);
+            }
+            invalidateRingCache(); // members may have been downloaded
         }
         // no need to do this in the synchronized block
         if (postMerge != null) {
@@ -3240,38 +3433,49 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
      * @param box the BoundingBox
      */
     protected void prune(@Nullable Logic logic, @NonNull BoundingBox box) {
+        invalidateNameIndex();
         LongHashSet keepNodes = new LongHashSet();
         boolean noLogic = logic == null;
 
-        for (Way w : currentStorage.getWays()) {
-            if (apiStorage.getWay(w.getOsmId()) == null && !box.intersects(w.getBounds()) && (noLogic || !logic.isSelected(w))) {
-                currentStorage.removeWay(w);
-                removeReferenceFromParents(logic, w);
-            } else { // keeping so we need to keep the nodes
-                for (Node n : w.getNodes()) {
-                    keepNodes.put(n.getOsmId());
+        BoundingBox wayBox = new BoundingBox(); // avoid creating new instances
+        currentStorage.beginBatch();
+        try {
+            currentStorage.visitWays(w -> {
+                if (apiStorage.getWay(w.getOsmId()) == null && !box.intersects(w.getBounds(wayBox)) && (noLogic || !logic.isSelected(w))) {
+                    currentStorage.removeWay(w);
+                    removeReferenceFromParents(logic, w);
+                } else { // keeping so we need to keep the nodes
+                    List<Node> wayNodes = w.getNodes();
+                    for (int i = 0, size = wayNodes.size(); i < size; i++) {
+                        keepNodes.put(wayNodes.get(i).getOsmId());
+                    }
                 }
-            }
-        }
-        for (Node n : currentStorage.getNodes()) {
-            long nodeId = n.getOsmId();
-            if (apiStorage.getNode(nodeId) == null && !box.contains(n.getLon(), n.getLat()) && !keepNodes.contains(nodeId)
-                    && (noLogic || !logic.isSelected(n))) {
-                currentStorage.removeNode(n);
-                removeReferenceFromParents(logic, n);
-            }
-        }
-        for (Relation r : currentStorage.getRelations()) {
-            long relationId = r.getOsmId();
-            if (apiStorage.getRelation(relationId) == null && (noLogic || !logic.isSelected(r)) && !r.hasDownloadedMembers()) {
-                // Note: this will not remove already processed relations that had this as a member however further
-                // prune passes will eventually delete them, which is good enough and so we don't rerun this explicitly
-                // here
-                currentStorage.removeRelation(r);
-                removeReferenceFromParents(logic, r);
-            }
+                return true;
+            });
+            currentStorage.visitNodes(n -> {
+                long nodeId = n.getOsmId();
+                if (apiStorage.getNode(nodeId) == null && !box.contains(n.getLon(), n.getLat()) && !keepNodes.contains(nodeId)
+                        && (noLogic || !logic.isSelected(n))) {
+                    currentStorage.removeNode(n);
+                    removeReferenceFromParents(logic, n);
+                }
+                return true;
+            });
+            currentStorage.visitRelations(r -> {
+                long relationId = r.getOsmId();
+                if (apiStorage.getRelation(relationId) == null && (noLogic || !logic.isSelected(r)) && !r.hasDownloadedMembers()) {
+                    // Note: this will not remove already processed relations that had this as a member however further
+                    // prune passes will eventually delete them, which is good enough and so we don't rerun this explicitly
+                    // here
+                    currentStorage.removeRelation(r);
+                    removeReferenceFromParents(logic, r);
+                }
+                return true;
+            });
+            BoundingBox.prune(this, box);
+        } finally {
+            currentStorage.endBatch();
         }
-        BoundingBox.prune(this, box);
         dirty();
     }
 
@@ -3282,7 +3486,7 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
      *            relations
      * @param e the OsmElement we want to remove references for
      */
-    private void removeReferenceFromParents(@Nullable Logic logic, @NonNull OsmElement e) {
+    void removeReferenceFromParents(@Nullable Logic logic, @NonNull OsmElement e) {
         List<Relation> parents = e.getParentRelations();
         if (parents != null) {
             for (Relation parent : parents) { // remove link from parent relations
@@ -3303,39 +3507,50 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
      * Note this doesn't handle selected elements and should only be called when nothing is selected
      */
     public synchronized void pruneAll() {
+        invalidateNameIndex();
         LongHashSet keepNodes = new LongHashSet();
         LongHashSet keepRelations = new LongHashSet();
 
-        for (Way w : currentStorage.getWays()) {
-            if (apiStorage.getWay(w.getOsmId()) == null) {
-                currentStorage.removeWay(w);
-            } else { // keeping so we need to keep the nodes
-                for (Node n : w.getNodes()) {
-                    keepNodes.put(n.getOsmId());
+        currentStorage.beginBatch();
+        try {
+            currentStorage.visitWays(w -> {
+                if (apiStorage.getWay(w.getOsmId()) == null) {
+                    currentStorage.removeWay(w);
+                } else { // keeping so we need to keep the nodes
+                    List<Node> wayNodes = w.getNodes();
+                    for (int i = 0, size = wayNodes.size(); i < size; i++) {
+                        keepNodes.put(wayNodes.get(i).getOsmId());
+                    }
+                    keepParents(keepRelations, w);
                 }
-                keepParents(keepRelations, w);
-            }
-        }
-        for (Node n : currentStorage.getNodes()) {
-            long nodeId = n.getOsmId();
-            if (apiStorage.getNode(nodeId) == null && !keepNodes.contains(nodeId)) {
-                currentStorage.removeNode(n);
-            } else {
-                keepNodes.put(nodeId);
-                keepParents(keepRelations, n);
-            }
-        }
-        for (Relation r : currentStorage.getRelations()) {
-            long relationId = r.getOsmId();
-            if (apiStorage.getRelation(relationId) != null) {
-                keepRelations.put(relationId);
-                keepParents(keepRelations, r);
-            }
-        }
-        for (Relation r : currentStorage.getRelations()) {
-            if (!keepRelations.contains(r.getOsmId())) {
-                currentStorage.removeRelation(r);
-            }
+                return true;
+            });
+            currentStorage.visitNodes(n -> {
+                long nodeId = n.getOsmId();
+                if (apiStorage.getNode(nodeId) == null && !keepNodes.contains(nodeId)) {
+                    currentStorage.removeNode(n);
+                } else {
+                    keepNodes.put(nodeId);
+                    keepParents(keepRelations, n);
+                }
+                return true;
+            });
+            currentStorage.visitRelations(r -> {
+                long relationId = r.getOsmId();
+                if (apiStorage.getRelation(relationId) != null) {
+                    keepRelations.put(relationId);
+                    keepParents(keepRelations, r);
+                }
+                return true;
+            });
+            currentStorage.visitRelations(r -> {
+                if (!keepRelations.contains(r.getOsmId())) {
+                    currentStorage.removeRelation(r);
+                }
+                return true;
+            });
+        } finally {
+            currentStorage.endBatch();
         }
         fixupBacklinks();
         dirty();
@@ -3574,8 +3789,11 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
 
         Log.d(DEBUG_TAG, "applyOsc finshed");
         undo = tempUndo;
+        tempCurrent.publish();
+        tempApi.publish();
         currentStorage = tempCurrent;
         apiStorage = tempApi;
+        invalidateRingCache();
         return true; // Success
     }
 
@@ -3606,6 +3824,7 @@ public class StorageDelegator implements Serializable, Exportable, DataStorage {
     public void removeFromUpload(@NonNull OsmElement element) {
         apiStorage.removeElement(element);
         element.setState(OsmElement.STATE_UNCHANGED);
+        publishChanges();
     }
 
     /**
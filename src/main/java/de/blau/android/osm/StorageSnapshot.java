@@ -0,0 +1,220 @@
+package de.blau.android.osm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.blau.android.util.collections.LongOsmElementMap.Visitor;
+import de.blau.android.util.collections.LongOsmElementTrie;
+
+/**
+ * Immutable, versioned view of the element indexes of a Storage
+ *
+ * Snapshots are published by {@link Storage} after each modification (or batch of modifications), they can be read
+ * from any thread without locking and will never change. Note that this only covers which elements exist, the
+ * elements themselves are still the live, mutable objects.
+ *
+ * @author simon
+ *
+ */
+public final class StorageSnapshot {
+
+    private final long                         version;
+    private final LongOsmElementTrie<Node>     nodes;
+    private final LongOsmElementTrie<Way>      ways;
+    private final LongOsmElementTrie<Relation> relations;
+    private final List<BoundingBox>            bboxes;
+
+    /**
+     * Construct a new snapshot
+     *
+     * @param version the version of the Storage
+     * @param nodes frozen Node index
+     * @param ways frozen Way index
+     * @param relations frozen Relation index
+     * @param bboxes the bounding boxes of the Storage, will be copied
+     */
+    StorageSnapshot(long version, @NonNull LongOsmElementTrie<Node> nodes, @NonNull LongOsmElementTrie<Way> ways,
+            @NonNull LongOsmElementTrie<Relation> relations, @NonNull List<BoundingBox> bboxes) {
+        this.version = version;
+        this.nodes = nodes;
+        this.ways = ways;
+        this.relations = relations;
+        this.bboxes = Collections.unmodifiableList(new ArrayList<>(bboxes));
+    }
+
+    /**
+     * Get the version of the Storage this snapshot was taken of, versions increase monotonically
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get a specific node by id
+     *
+     * @param nodeOsmId id of the node
+     * @return the node or null if not found
+     */
+    @Nullable
+    public Node getNode(final long nodeOsmId) {
+        return nodes.get(nodeOsmId);
+    }
+
+    /**
+     * Get a specific way by id
+     *
+     * @param wayOsmId id of the way
+     * @return the way or null if not found
+     */
+    @Nullable
+    public Way getWay(final long wayOsmId) {
+        return ways.get(wayOsmId);
+    }
+
+    /**
+     * Get a specific relation by id
+     *
+     * @param relationOsmId id of the relation
+     * @return the relation or null if not found
+     */
+    @Nullable
+    public Relation getRelation(final long relationOsmId) {
+        return relations.get(relationOsmId);
+    }
+
+    /**
+     * Get a list of all nodes
+     *
+     * @return list containing all nodes
+     */
+    @NonNull
+    public List<Node> getNodes() {
+        return nodes.values();
+    }
+
+    /**
+     * Return all nodes in a bounding box
+     *
+     * @param box bounding box to search in
+     * @param result List of Node to hold the result
+     * @return a list of all nodes in box
+     */
+    @NonNull
+    public List<Node> getNodes(@NonNull BoundingBox box, @NonNull List<Node> result) {
+        return nodes.collect(result, n -> box.isIn(n.getLon(), n.getLat()));
+    }
+
+    /**
+     * Call visitor for all nodes without creating a List of them
+     *
+     * @param visitor the Visitor, return false from it to stop the iteration
+     * @return true if all nodes were visited
+     */
+    public boolean visitNodes(@NonNull Visitor<? super Node> visitor) {
+        return nodes.visit(visitor);
+    }
+
+    /**
+     * Get how many nodes there are in the snapshot
+     *
+     * @return the Node count
+     */
+    public int getNodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * Get a list of all ways
+     *
+     * @return list containing all ways
+     */
+    @NonNull
+    public List<Way> getWays() {
+        return ways.values();
+    }
+
+    /**
+     * Return all ways covered or possibly intersecting a bounding box
+     *
+     * @param box bounding box to search in
+     * @param result List of Way to hold the result
+     * @return a list of all ways in box
+     */
+    @NonNull
+    public List<Way> getWays(@NonNull BoundingBox box, @NonNull List<Way> result) {
+        BoundingBox newBox = new BoundingBox(); // avoid creating new instances
+        return ways.collect(result, w -> w.getBounds(newBox).intersects(box));
+    }
+
+    /**
+     * Call visitor for all ways without creating a List of them
+     *
+     * @param visitor the Visitor, return false from it to stop the iteration
+     * @return true if all ways were visited
+     */
+    public boolean visitWays(@NonNull Visitor<? super Way> visitor) {
+        return ways.visit(visitor);
+    }
+
+    /**
+     * Get how many ways there are in the snapshot
+     *
+     * @return the Way count
+     */
+    public int getWayCount() {
+        return ways.size();
+    }
+
+    /**
+     * Get a list of all relations
+     *
+     * @return list containing all relations
+     */
+    @NonNull
+    public List<Relation> getRelations() {
+        return relations.values();
+    }
+
+    /**
+     * Call visitor for all relations without creating a List of them
+     *
+     * @param visitor the Visitor, return false from it to stop the iteration
+     * @return true if all relations were visited
+     */
+    public boolean visitRelations(@NonNull Visitor<? super Relation> visitor) {
+        return relations.visit(visitor);
+    }
+
+    /**
+     * Get how many relations there are in the snapshot
+     *
+     * @return the Relation count
+     */
+    public int getRelationCount() {
+        return relations.size();
+    }
+
+    /**
+     * Get the bounding boxes of downloaded data at the time of the snapshot
+     *
+     * @return an unmodifiable List of BoundingBox
+     */
+    @NonNull
+    public List<BoundingBox> getBoundingBoxes() {
+        return bboxes;
+    }
+
+    /**
+     * Check if the snapshot is empty
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return nodes.isEmpty() && ways.isEmpty() && relations.isEmpty();
+    }
+}
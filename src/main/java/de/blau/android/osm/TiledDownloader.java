@@ -0,0 +1,301 @@
+package de.blau.android.osm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.blau.android.exception.OsmServerException;
+
+/**
+ * Download an area that is too large for a single API call as a set of tiles
+ *
+ * Tiles are fetched and parsed concurrently with bounded parallelism, failed requests are retried with exponential
+ * backoff if the failure is likely to be transient. The parsed tiles are handed to a TileMerger on the calling thread
+ * in the order they arrive, so that merging into the StorageDelegator never happens concurrently.
+ *
+ * @author simon
+ *
+ */
+public class TiledDownloader {
+
+    private static final String DEBUG_TAG = TiledDownloader.class.getSimpleName();
+
+    public static final int  DEFAULT_PARALLELISM = 3;
+    public static final int  DEFAULT_RETRIES     = 3;
+    public static final long DEFAULT_BACKOFF     = 1000; // ms, doubled on each retry
+    public static final int  MAX_TILES           = 16;
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Source of OSM data for a tile
+     */
+    public interface TileSource {
+        /**
+         * Get a stream of OSM XML for a tile
+         *
+         * @param tile the BoundingBox of the tile
+         * @return an InputStream
+         * @throws IOException on any error
+         */
+        @NonNull
+        InputStream getStream(@NonNull BoundingBox tile) throws IOException;
+    }
+
+    /**
+     * Merges a downloaded tile, always called on the thread that called download
+     */
+    public interface TileMerger {
+        /**
+         * Merge the data of a tile
+         *
+         * @param tile the BoundingBox of the tile
+         * @param storage a Storage holding the data for the tile
+         * @return false if the data could not be merged, this stops the download
+         */
+        boolean merge(@NonNull BoundingBox tile, @NonNull Storage storage);
+    }
+
+    /**
+     * Progress reporting
+     */
+    public interface TileListener {
+        /**
+         * Called after a tile has been merged
+         *
+         * @param tile the BoundingBox of the tile
+         * @param done the number of tiles merged so far
+         * @param total the total number of tiles
+         */
+        void onTile(@NonNull BoundingBox tile, int done, int total);
+    }
+
+    private final TileSource source;
+    private final int        parallelism;
+    private final int        retries;
+    private final long       backoff;
+
+    /**
+     * Construct a new downloader with default settings
+     *
+     * @param source the source of the data
+     */
+    public TiledDownloader(@NonNull TileSource source) {
+        this(source, DEFAULT_PARALLELISM, DEFAULT_RETRIES, DEFAULT_BACKOFF);
+    }
+
+    /**
+     * Construct a new downloader
+     *
+     * @param source the source of the data
+     * @param parallelism the maximum number of concurrent requests
+     * @param retries the number of times a failed request is retried
+     * @param backoff initial time to wait in ms before retrying
+     */
+    public TiledDownloader(@NonNull TileSource source, int parallelism, int retries, long backoff) {
+        this.source = source;
+        this.parallelism = Math.max(1, parallelism);
+        this.retries = Math.max(0, retries);
+        this.backoff = backoff;
+    }
+
+    /**
+     * Split a BoundingBox in to tiles that are valid for the API
+     *
+     * @param box the BoundingBox
+     * @return a List of tiles covering box
+     */
+    @NonNull
+    public static List<BoundingBox> split(@NonNull BoundingBox box) {
+        return split(box, BoundingBox.API_MAX_DEGREE_DIFFERENCE - 1);
+    }
+
+    /**
+     * Split a BoundingBox in to tiles of at most maxSize width and height
+     *
+     * The tiles are all of the same size and are ordered row by row
+     *
+     * @param box the BoundingBox
+     * @param maxSize the maximum width and height of a tile in WGS84*1E7 degrees
+     * @return a List of tiles covering box
+     */
+    @NonNull
+    public static List<BoundingBox> split(@NonNull BoundingBox box, int maxSize) {
+        long width = (long) box.getRight() - box.getLeft();
+        long height = (long) box.getTop() - box.getBottom();
+        int columns = (int) Math.max(1, (width + maxSize - 1) / maxSize);
+        int rows = (int) Math.max(1, (height + maxSize - 1) / maxSize);
+        List<BoundingBox> result = new ArrayList<>(columns * rows);
+        for (int r = 0; r < rows; r++) {
+            int bottom = (int) (box.getBottom() + height * r / rows);
+            int top = (int) (box.getBottom() + height * (r + 1) / rows);
+            for (int c = 0; c < columns; c++) {
+                int left = (int) (box.getLeft() + width * c / columns);
+                int right = (int) (box.getLeft() + width * (c + 1) / columns);
+                result.add(new BoundingBox(left, bottom, right, top));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of tiles split would create
+     *
+     * @param box the BoundingBox
+     * @return the number of tiles
+     */
+    public static int tileCount(@NonNull BoundingBox box) {
+        int maxSize = BoundingBox.API_MAX_DEGREE_DIFFERENCE - 1;
+        long columns = Math.max(1, ((long) box.getRight() - box.getLeft() + maxSize - 1) / maxSize);
+        long rows = Math.max(1, ((long) box.getTop() - box.getBottom() + maxSize - 1) / maxSize);
+        return (int) Math.min(Integer.MAX_VALUE, columns * rows);
+    }
+
+    /**
+     * Result of downloading and parsing a tile
+     */
+    private static final class Tile {
+        final BoundingBox box;
+        final Storage     storage;
+
+        /**
+         * Construct a new result
+         *
+         * @param box the BoundingBox of the tile
+         * @param storage the parsed data
+         */
+        Tile(@NonNull BoundingBox box, @NonNull Storage storage) {
+            this.box = box;
+            this.storage = storage;
+        }
+    }
+
+    /**
+     * Download, parse and merge tiles
+     *
+     * On failure outstanding requests are cancelled and the exception of the failed tile is thrown, tiles that have
+     * already been merged are not rolled back.
+     *
+     * @param tiles the tiles to download
+     * @param merger the TileMerger
+     * @param listener optional listener for progress reporting
+     * @return true if all tiles were merged, false if the merger refused a tile
+     * @throws IOException on network errors or if interrupted
+     * @throws SAXException on parse errors
+     * @throws ParserConfigurationException if the parser couldn't be configured
+     */
+    public boolean download(@NonNull List<BoundingBox> tiles, @NonNull TileMerger merger, @Nullable TileListener listener)
+            throws IOException, SAXException, ParserConfigurationException {
+        final int total = tiles.size();
+        if (total == 0) {
+            return true;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, total));
+        try {
+            CompletionService<Tile> completion = new ExecutorCompletionService<>(executor);
+            for (BoundingBox tile : tiles) {
+                completion.submit(new Callable<Tile>() {
+                    @Override
+                    public Tile call() throws Exception {
+                        return fetch(tile);
+                    }
+                });
+            }
+            for (int done = 1; done <= total; done++) {
+                Tile tile = completion.take().get();
+                if (!merger.merge(tile.box, tile.storage)) {
+                    Log.e(DEBUG_TAG, "Merging " + tile.box + " failed");
+                    return false;
+                }
+                if (listener != null) {
+                    listener.onTile(tile.box, done, total);
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Tiled download interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof SAXException) {
+                throw (SAXException) cause;
+            } else if (cause instanceof ParserConfigurationException) {
+                throw (ParserConfigurationException) cause;
+            } else if (cause instanceof RuntimeException) { // includes UnsupportedFormatException
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Download and parse a single tile, retrying if the error might be transient
+     *
+     * @param box the BoundingBox of the tile
+     * @return a Tile holding the parsed data
+     * @throws IOException on network errors or if interrupted
+     * @throws SAXException on parse errors
+     * @throws ParserConfigurationException if the parser couldn't be configured
+     */
+    @NonNull
+    private Tile fetch(@NonNull BoundingBox box) throws IOException, SAXException, ParserConfigurationException {
+        long wait = backoff;
+        for (int attempt = 0;; attempt++) {
+            try (InputStream in = source.getStream(box)) {
+                OsmParser osmParser = new OsmParser();
+                osmParser.start(in);
+                return new Tile(box, osmParser.getStorage());
+            } catch (IOException e) {
+                if (attempt >= retries || !isTransient(e)) {
+                    throw e;
+                }
+                Log.w(DEBUG_TAG, "Downloading " + box + " failed with " + e.getMessage() + " retrying in " + wait + " ms");
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException iex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Tiled download interrupted");
+                }
+                wait = wait * 2;
+            }
+        }
+    }
+
+    /**
+     * Check if retrying a request that failed with an exception makes sense
+     *
+     * @param e the IOException
+     * @return true if the error could go away
+     */
+    private static boolean isTransient(@NonNull IOException e) {
+        if (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)) {
+            return false;
+        }
+        if (e instanceof OsmServerException) {
+            int code = ((OsmServerException) e).getErrorCode();
+            return code >= HttpURLConnection.HTTP_INTERNAL_ERROR || code == HTTP_TOO_MANY_REQUESTS;
+        }
+        return true;
+    }
+}
@@ -1,14 +1,28 @@
 package de.blau.android.osm;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.UUID;
 
 import android.content.Context;
 import android.util.Log;
@@ -19,6 +33,7 @@ import de.blau.android.Logic;
 import de.blau.android.exception.StorageException;
 import de.blau.android.presets.Preset;
 import de.blau.android.util.ACRAHelper;
+import de.blau.android.util.collections.LongOsmElementMap;
 
 /**
  * This class provides undo support. It is absolutely critical that {@link StorageDelegator} calls
@@ -38,14 +53,56 @@ import de.blau.android.util.ACRAHelper;
  * Avoid calling functions that change the state from other threads except the main one. This may mess up your menu due
  * to calls to updateIcon. You have been warned.
  * 
+ * To keep memory use bounded unchanged tag maps are shared between saved states and, once the estimated size of all
+ * checkpoints exceeds the budget set with {@link #setMemoryBudget(long)}, the oldest checkpoints are written to files
+ * in the directory set with {@link #setSpillDirectory(File)} and only read back when they are needed.
+ * 
  * @author Jan Schejbal
  * @author Simon Poole
  */
 public class UndoStorage implements Serializable {
-    private static final long serialVersionUID = 2L;
+    private static final long serialVersionUID = 3L;
 
     private static final String DEBUG_TAG = "UndoStorage";
 
+    public static final String  SPILL_DIRECTORY       = "undo";
+    private static final String SPILL_FILE_EXTENSION  = ".undo";
+    private static final int    SPILL_FORMAT_VERSION  = 1;
+    public static final long    DEFAULT_MEMORY_BUDGET = 16L * 1024L * 1024L;
+
+    private static final byte NODE     = 0;
+    private static final byte WAY      = 1;
+    private static final byte RELATION = 2;
+
+    private static volatile File spillDirectory = null;
+    private static volatile long memoryBudget   = DEFAULT_MEMORY_BUDGET;
+
+    // shared by all saved states without tags, never modified
+    private static final TreeMap<String, String> EMPTY_TAGS = new TreeMap<>();
+
+    private static final int TAG_CACHE_SIZE = 256;
+
+    /**
+     * LRU cache of tag maps so that saved states with identical tags share one map
+     */
+    private static class TagCache extends LinkedHashMap<Map<String, String>, TreeMap<String, String>> {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Construct a new cache
+         */
+        TagCache() {
+            super(TAG_CACHE_SIZE, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Map<String, String>, TreeMap<String, String>> eldest) {
+            return size() > TAG_CACHE_SIZE;
+        }
+    }
+
+    private transient TagCache tagCache;
+
     // Original storages for "contains" checks and restoration
     private Storage currentStorage;
     private Storage apiStorage;
@@ -118,6 +175,37 @@ public class UndoStorage implements Serializable {
         }
     }
 
+    /**
+     * Configure spilling of old checkpoints to disk
+     * 
+     * @param directory the directory to write checkpoints to, if null checkpoints will not be spilled
+     * @param budget the estimated memory in bytes that checkpoints can use before the oldest are spilled
+     */
+    public static void configure(@Nullable File directory, long budget) {
+        setSpillDirectory(directory);
+        setMemoryBudget(budget);
+    }
+
+    /**
+     * Set the directory spilled checkpoints are written to
+     * 
+     * This needs to be set before any saved state is loaded, as spilled checkpoints can't be read back otherwise
+     * 
+     * @param directory the directory to write checkpoints to, if null checkpoints will not be spilled
+     */
+    public static void setSpillDirectory(@Nullable File directory) {
+        spillDirectory = directory;
+    }
+
+    /**
+     * Set the memory budget for checkpoints
+     * 
+     * @param budget the estimated memory in bytes that checkpoints can use before the oldest are spilled
+     */
+    public static void setMemoryBudget(long budget) {
+        memoryBudget = budget;
+    }
+
     /**
      * Set currentStorage without creating a new instance
      * 
@@ -147,12 +235,133 @@ public class UndoStorage implements Serializable {
     public void createCheckpoint(@NonNull String name) {
         if (undoCheckpoints.isEmpty() || !undoCheckpoints.getLast().isEmpty()) {
             undoCheckpoints.add(new Checkpoint(name));
+            trim();
         } else {
             // Empty checkpoint exists, just rename it
             undoCheckpoints.getLast().setName(name);
         }
     }
 
+    /**
+     * Get the estimated memory used by the checkpoints that are currently in memory
+     * 
+     * @return the estimated size in bytes
+     */
+    public long getEstimatedSize() {
+        long total = 0;
+        for (Checkpoint cp : undoCheckpoints) {
+            total += cp.size;
+        }
+        for (Checkpoint cp : redoCheckpoints) {
+            total += cp.size;
+        }
+        return total;
+    }
+
+    /**
+     * Spill the oldest undo checkpoints to disk until we are below the memory budget
+     * 
+     * The last checkpoint is the one currently being filled and is never spilled, redo checkpoints are not spilled
+     * either.
+     */
+    private void trim() {
+        File directory = spillDirectory;
+        if (directory == null) {
+            return;
+        }
+        long total = getEstimatedSize();
+        if (total <= memoryBudget) {
+            return;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(DEBUG_TAG, "Unable to create " + directory);
+            return;
+        }
+        int last = undoCheckpoints.size() - 1;
+        int i = 0;
+        for (Checkpoint cp : undoCheckpoints) {
+            if (i++ >= last || total <= memoryBudget) {
+                break;
+            }
+            if (!cp.isSpilled() && !cp.isEmpty()) {
+                long size = cp.size;
+                if (!cp.spill(directory)) {
+                    break;
+                }
+                total -= size;
+            }
+        }
+        Log.d(DEBUG_TAG, "Estimated undo size after trim " + total);
+    }
+
+    /**
+     * Delete all files in the spill directory that are not referenced by this instance
+     * 
+     * This should be called when this is the only UndoStorage in use, for example when the state is saved
+     */
+    public void removeUnusedSpillFiles() {
+        File directory = spillDirectory;
+        if (directory == null) {
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Set<String> inUse = new HashSet<>();
+        for (Checkpoint cp : undoCheckpoints) {
+            if (cp.spillFile != null) {
+                inUse.add(cp.spillFile);
+            }
+        }
+        for (File f : files) {
+            if (f.getName().endsWith(SPILL_FILE_EXTENSION) && !inUse.contains(f.getName()) && !f.delete()) {
+                Log.e(DEBUG_TAG, "Unable to delete " + f);
+            }
+        }
+    }
+
+    /**
+     * Record that an element is going to be assigned a new id, typically after it has been uploaded
+     * 
+     * Spilled checkpoints reference elements by the ids they had when they were written, without this restoring them
+     * would create duplicates of renumbered elements. Must be called before the id is changed.
+     * 
+     * @param element the element, still with its old id
+     * @param newId the new id
+     */
+    public void renumber(@NonNull OsmElement element, long newId) {
+        byte type = element instanceof Node ? NODE : (element instanceof Way ? WAY : RELATION);
+        long oldId = element.getOsmId();
+        for (Checkpoint cp : undoCheckpoints) {
+            cp.renumber(type, oldId, newId);
+        }
+    }
+
+    /**
+     * Get a copy of the tags that may be shared with other saved states
+     * 
+     * The returned map must never be modified
+     * 
+     * @param tags the tags of the element or null
+     * @return a TreeMap containing the tags
+     */
+    @NonNull
+    private TreeMap<String, String> sharedTags(@Nullable SortedMap<String, String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return EMPTY_TAGS;
+        }
+        if (tagCache == null) {
+            tagCache = new TagCache();
+        }
+        TreeMap<String, String> shared = tagCache.get(tags);
+        if (shared == null) {
+            shared = new TreeMap<>(tags);
+            tagCache.put(shared, shared);
+        }
+        return shared;
+    }
+
     /**
      * remove checkpoint from list. typically called when we otherwise would have an empty checkpoint at the top
      * 
@@ -171,6 +380,28 @@ public class UndoStorage implements Serializable {
     public void removeCheckpoint(@NonNull String name, boolean force) {
         if (!undoCheckpoints.isEmpty() && (undoCheckpoints.getLast().isEmpty() || force) && undoCheckpoints.getLast().getName().equals(name)) {
             undoCheckpoints.removeLast();
+            loadLast();
+        }
+    }
+
+    /**
+     * Throw an exception if a checkpoint couldn't be restored because its spilled saved states couldn't be read back
+     * 
+     * @param checkpoint the Checkpoint that was restored
+     * @throws StorageException if the saved states have been lost
+     */
+    private static void checkLost(@NonNull Checkpoint checkpoint) {
+        if (checkpoint.isLost()) {
+            throw new StorageException(StorageException.UNDO_LOST);
+        }
+    }
+
+    /**
+     * Make sure that the last undo checkpoint, the one that is modified and whose bounds are displayed, is in memory
+     */
+    private void loadLast() {
+        if (!undoCheckpoints.isEmpty()) {
+            undoCheckpoints.getLast().load();
         }
     }
 
@@ -304,6 +535,7 @@ public class UndoStorage implements Serializable {
      * 
      * @param createRedo if true create a redo checkpoint
      * @return the name of the undo checkpoint used, or null if no checkpoint was available
+     * @throws StorageException if the checkpoint had been spilled and couldn't be read back, the checkpoint is discarded
      */
     @Nullable
     public String undo(boolean createRedo) {
@@ -312,12 +544,13 @@ public class UndoStorage implements Serializable {
             return null;
         }
         String name = undoCheckpoints.getLast().getName();
-        if (createRedo) {
-            Checkpoint redoPoint = new Checkpoint(name);
-            undoCheckpoints.removeLast().restore(redoPoint);
+        Checkpoint checkpoint = undoCheckpoints.removeLast();
+        Checkpoint redoPoint = createRedo ? new Checkpoint(name) : null;
+        checkpoint.restore(redoPoint);
+        loadLast();
+        checkLost(checkpoint);
+        if (redoPoint != null) {
             redoCheckpoints.add(redoPoint);
-        } else {
-            undoCheckpoints.removeLast().restore(null);
         }
         return name;
     }
@@ -328,6 +561,7 @@ public class UndoStorage implements Serializable {
      * 
      * @param checkpoint index of the checkpoint to undo
      * @return the name of the undo checkpoint used, or null if no checkpoint was available
+     * @throws StorageException if the checkpoint had been spilled and couldn't be read back, the checkpoint is discarded
      */
     @Nullable
     public String undo(int checkpoint) {
@@ -335,11 +569,14 @@ public class UndoStorage implements Serializable {
             Log.w(DEBUG_TAG, "Attempted to undo, but no undo checkpoints available");
             return null;
         }
-        String name = undoCheckpoints.get(checkpoint).getName();
+        Checkpoint undoPoint = undoCheckpoints.get(checkpoint);
+        String name = undoPoint.getName();
         Checkpoint redoPoint = new Checkpoint(name);
-        if (undoCheckpoints.get(checkpoint).restore(redoPoint)) {
+        if (undoPoint.restore(redoPoint) || undoPoint.isLost()) {
             undoCheckpoints.remove(checkpoint);
+            loadLast();
         }
+        checkLost(undoPoint);
         redoCheckpoints.add(redoPoint);
         return name;
     }
@@ -349,6 +586,7 @@ public class UndoStorage implements Serializable {
      * automatically created. If no checkpoint is available, an error is logged and the function does nothing.
      * 
      * @return the name of the redo checkpoint used, or null if no checkpoint was available
+     * @throws StorageException if the checkpoint had been spilled and couldn't be read back, the checkpoint is discarded
      */
     @Nullable
     public String redo() {
@@ -358,8 +596,11 @@ public class UndoStorage implements Serializable {
         }
         String name = redoCheckpoints.getLast().getName();
         Checkpoint reundoPoint = new Checkpoint(name);
-        redoCheckpoints.removeLast().restore(reundoPoint);
+        Checkpoint redoPoint = redoCheckpoints.removeLast();
+        redoPoint.restore(reundoPoint);
+        checkLost(redoPoint);
         undoCheckpoints.add(reundoPoint);
+        trim();
         return name;
     }
 
@@ -369,6 +610,7 @@ public class UndoStorage implements Serializable {
      * 
      * @param checkpoint index of the checkpoint to redo
      * @return the name of the redo checkpoint used, or null if no checkpoint was available
+     * @throws StorageException if the checkpoint had been spilled and couldn't be read back, the checkpoint is discarded
      */
     @Nullable
     public String redo(int checkpoint) {
@@ -378,8 +620,11 @@ public class UndoStorage implements Serializable {
         }
         String name = redoCheckpoints.get(checkpoint).getName();
         Checkpoint reundoPoint = new Checkpoint(name);
-        redoCheckpoints.remove(checkpoint).restore(reundoPoint);
+        Checkpoint redoPoint = redoCheckpoints.remove(checkpoint);
+        redoPoint.restore(reundoPoint);
+        checkLost(redoPoint);
         undoCheckpoints.add(reundoPoint);
+        trim();
         return name;
     }
 
@@ -403,12 +648,25 @@ public class UndoStorage implements Serializable {
      * on each change - repeated changes are ignored.)
      * 
      * The checkpoint can later be restored using {@link #restore(Checkpoint)}.
+     * 
+     * If the checkpoint has been spilled to disk the saved states are only read back when needed, the element objects
+     * are then resolved by id, and if they don't exist any more, replaced by new objects with the same id.
      */
     private class Checkpoint implements Serializable {
-        private static final long serialVersionUID = 2L;
+        private static final long serialVersionUID = 3L;
 
         private final Map<OsmElement, UndoElement> elements = new HashMap<>();
         private String                             name;
+        private long                               size      = 0;
+        private String                             spillFile = null; // file with a copy of the saved states
+        private boolean                            spilled   = false;
+        private boolean                            lost      = false; // spilled saved states couldn't be read back
+        private long[]                             nodeIds;          // saved ids, only valid if spilled
+        private long[]                             wayIds;
+        private long[]                             relationIds;
+        private final Map<Long, Long>              renumberedNodes     = new HashMap<>(); // ids changed after spilling
+        private final Map<Long, Long>              renumberedWays      = new HashMap<>();
+        private final Map<Long, Long>              renumberedRelations = new HashMap<>();
 
         /**
          * Construct a new checkpoint
@@ -427,6 +685,17 @@ public class UndoStorage implements Serializable {
         public Checkpoint(@NonNull Checkpoint cp) {
             name = cp.name;
             elements.putAll(cp.elements);
+            size = cp.size;
+            // spill files are never modified so can be shared
+            spillFile = cp.spillFile;
+            spilled = cp.spilled;
+            lost = cp.lost;
+            nodeIds = cp.nodeIds;
+            wayIds = cp.wayIds;
+            relationIds = cp.relationIds;
+            renumberedNodes.putAll(cp.renumberedNodes);
+            renumberedWays.putAll(cp.renumberedWays);
+            renumberedRelations.putAll(cp.renumberedRelations);
         }
 
         /**
@@ -448,18 +717,23 @@ public class UndoStorage implements Serializable {
          * @param inApiStorage if true the elements should be restored to the api storage
          */
         public void add(@NonNull OsmElement element, boolean inCurrentStorage, boolean inApiStorage) {
+            load();
             if (elements.containsKey(element)) {
                 return;
             }
+            UndoElement ue;
             if (element instanceof Node) {
-                elements.put(element, new UndoNode((Node) element, inCurrentStorage, inApiStorage));
+                ue = new UndoNode((Node) element, inCurrentStorage, inApiStorage);
             } else if (element instanceof Way) {
-                elements.put(element, new UndoWay((Way) element, inCurrentStorage, inApiStorage));
+                ue = new UndoWay((Way) element, inCurrentStorage, inApiStorage);
             } else if (element instanceof Relation) {
-                elements.put(element, new UndoRelation((Relation) element, inCurrentStorage, inApiStorage));
+                ue = new UndoRelation((Relation) element, inCurrentStorage, inApiStorage);
             } else {
                 throw new IllegalArgumentException("Unsupported element type");
             }
+            elements.put(element, ue);
+            size += ue.estimateSize();
+            spillFile = null; // content has changed
         }
 
         /**
@@ -468,10 +742,12 @@ public class UndoStorage implements Serializable {
          * @param element the element for which remove the saved state
          */
         public void remove(@NonNull OsmElement element) {
-            if (!elements.containsKey(element)) {
-                return;
+            load();
+            UndoElement ue = elements.remove(element);
+            if (ue != null) {
+                size -= ue.estimateSize();
+                spillFile = null;
             }
-            elements.remove(element);
         }
 
         /**
@@ -479,9 +755,14 @@ public class UndoStorage implements Serializable {
          * 
          * @param redoCheckpoint optional - if given, the reverted elements are added to this checkpoint to make a
          *            "redo" feature possible
-         * @return true if the restore was successful
+         * @return true if the restore was successful, false if it failed or the saved states had been spilled and
+         *         couldn't be read back
          */
         public boolean restore(@Nullable Checkpoint redoCheckpoint) {
+            if (!load() || lost) {
+                Log.e(DEBUG_TAG, "Saved states of checkpoint " + name + " lost");
+                return false;
+            }
             boolean ok = true;
             List<UndoElement> list = new ArrayList<>(elements.values());
             if (redoCheckpoint != null) {
@@ -493,11 +774,19 @@ public class UndoStorage implements Serializable {
             // all member elements should be restored before their parents
             Collections.sort(list, elementOrder);
             boolean restoredNode = false;
-            for (UndoElement ue : list) {
-                if (ue instanceof UndoNode) {
-                    restoredNode = true;
+            // publish the restored state in one go
+            currentStorage.beginBatch();
+            apiStorage.beginBatch();
+            try {
+                for (UndoElement ue : list) {
+                    if (ue instanceof UndoNode) {
+                        restoredNode = true;
+                    }
+                    ok = (ue.restore() != null) && ok;
                 }
-                ok = (ue.restore() != null) && ok;
+            } finally {
+                apiStorage.endBatch();
+                currentStorage.endBatch();
             }
             if (restoredNode) {
                 // zap the bounding box of all ways as their geometry may have changed
@@ -515,7 +804,239 @@ public class UndoStorage implements Serializable {
          * @return true if no elements have yet been stored in this checkpoint
          */
         public boolean isEmpty() {
-            return elements.isEmpty();
+            return !spilled && elements.isEmpty();
+        }
+
+        /**
+         * @return true if the saved states had been spilled and couldn't be read back
+         */
+        public boolean isLost() {
+            return lost;
+        }
+
+        /**
+         * @return true if the saved states are currently only stored on disk
+         */
+        public boolean isSpilled() {
+            return spilled;
+        }
+
+        /**
+         * Check if a saved state for an element could be contained in this checkpoint without reading it from disk
+         * 
+         * @param type the element type
+         * @param osmId the saved id of the element
+         * @return true if a state for the element may be contained in the checkpoint
+         */
+        public boolean mayContain(@NonNull String type, long osmId) {
+            if (!spilled) {
+                return true;
+            }
+            long[] ids = Node.NAME.equals(type) ? nodeIds : (Way.NAME.equals(type) ? wayIds : relationIds);
+            return Arrays.binarySearch(ids, osmId) >= 0;
+        }
+
+        /**
+         * Get the saved states, if spilled they are read from disk without retaining them
+         * 
+         * @return a Map from the element to its saved state
+         */
+        @NonNull
+        public Map<OsmElement, UndoElement> getElements() {
+            if (!spilled) {
+                return elements;
+            }
+            Map<OsmElement, UndoElement> result = new HashMap<>();
+            if (!read(result)) {
+                result.clear();
+            }
+            return result;
+        }
+
+        /**
+         * Write the saved states to a file and release them
+         * 
+         * If an up to date copy has been written before it is simply reused
+         * 
+         * @param directory the directory to write the file to
+         * @return true if successful
+         */
+        public boolean spill(@NonNull File directory) {
+            if (spillFile == null) {
+                String fileName = UUID.randomUUID().toString() + SPILL_FILE_EXTENSION;
+                File file = new File(directory, fileName);
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                    write(out);
+                } catch (IOException e) {
+                    Log.e(DEBUG_TAG, "Spilling " + name + " failed " + e.getMessage());
+                    if (!file.delete()) {
+                        Log.e(DEBUG_TAG, "Unable to delete " + file);
+                    }
+                    return false;
+                }
+                spillFile = fileName;
+            }
+            List<Long> nodes = new ArrayList<>();
+            List<Long> ways = new ArrayList<>();
+            List<Long> relations = new ArrayList<>();
+            for (UndoElement ue : elements.values()) {
+                if (ue instanceof UndoNode) {
+                    nodes.add(ue.osmId);
+                } else if (ue instanceof UndoWay) {
+                    ways.add(ue.osmId);
+                } else {
+                    relations.add(ue.osmId);
+                }
+            }
+            nodeIds = toSortedArray(nodes);
+            wayIds = toSortedArray(ways);
+            relationIds = toSortedArray(relations);
+            elements.clear();
+            size = 0;
+            spilled = true;
+            return true;
+        }
+
+        /**
+         * Read spilled saved states back in to memory, does nothing if the checkpoint isn't spilled
+         * 
+         * The spill file is retained so that spilling again doesn't need to write it again. On failure the saved states
+         * are lost and the checkpoint will be empty.
+         * 
+         * @return true if the saved states are available
+         */
+        public boolean load() {
+            if (!spilled) {
+                return true;
+            }
+            spilled = false;
+            nodeIds = null;
+            wayIds = null;
+            relationIds = null;
+            boolean ok = read(elements);
+            if (ok) {
+                for (UndoElement ue : elements.values()) {
+                    size += ue.estimateSize();
+                }
+            } else {
+                elements.clear();
+                spillFile = null;
+                lost = true;
+            }
+            if (!renumberedNodes.isEmpty() || !renumberedWays.isEmpty() || !renumberedRelations.isEmpty()) {
+                // the file contains ids that are no longer valid
+                spillFile = null;
+                renumberedNodes.clear();
+                renumberedWays.clear();
+                renumberedRelations.clear();
+            }
+            return ok;
+        }
+
+        /**
+         * Record that an element has been assigned a new id
+         * 
+         * If the checkpoint is spilled, the id is translated when the file is read back, otherwise the file will be
+         * rewritten on the next spill as it may reference the old id.
+         * 
+         * @param type the element type (NODE, WAY or RELATION)
+         * @param oldId the previous id
+         * @param newId the new id
+         */
+        void renumber(byte type, long oldId, long newId) {
+            if (spilled) {
+                renumbered(type).put(oldId, newId);
+            } else {
+                spillFile = null;
+            }
+        }
+
+        /**
+         * Translate an id read from the spill file to the current id of the element
+         * 
+         * @param type the element type (NODE, WAY or RELATION)
+         * @param osmId the id read from the file
+         * @return the current id
+         */
+        long currentId(byte type, long osmId) {
+            Long newId = renumbered(type).get(osmId);
+            return newId != null ? newId : osmId;
+        }
+
+        /**
+         * Get the map of changed ids for an element type
+         * 
+         * @param type the element type (NODE, WAY or RELATION)
+         * @return a Map from old to new ids
+         */
+        @NonNull
+        private Map<Long, Long> renumbered(byte type) {
+            switch (type) {
+            case NODE:
+                return renumberedNodes;
+            case WAY:
+                return renumberedWays;
+            default:
+                return renumberedRelations;
+            }
+        }
+
+        /**
+         * Write the saved states to a stream
+         * 
+         * @param out the DataOutputStream
+         * @throws IOException if writing fails
+         */
+        private void write(@NonNull DataOutputStream out) throws IOException {
+            List<UndoElement> list = new ArrayList<>(elements.values());
+            Collections.sort(list, elementOrder);
+            out.writeInt(SPILL_FORMAT_VERSION);
+            out.writeInt(list.size());
+            for (UndoElement ue : list) {
+                out.writeByte(ue instanceof UndoNode ? NODE : (ue instanceof UndoWay ? WAY : RELATION));
+                out.writeLong(ue.element.getOsmId());
+                ue.write(out);
+            }
+        }
+
+        /**
+         * Read the spilled saved states
+         * 
+         * @param result the Map to add the saved states to
+         * @return true if successful
+         */
+        private boolean read(@NonNull Map<OsmElement, UndoElement> result) {
+            File directory = spillDirectory;
+            if (spillFile == null || directory == null) {
+                Log.e(DEBUG_TAG, "Checkpoint " + name + " spill file not available");
+                return false;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(directory, spillFile))))) {
+                int version = in.readInt();
+                if (version != SPILL_FORMAT_VERSION) {
+                    throw new IOException("Unsupported version " + version);
+                }
+                int count = in.readInt();
+                Resolver resolver = new Resolver(this);
+                for (int i = 0; i < count; i++) {
+                    byte type = in.readByte();
+                    OsmElement element = resolver.get(type, in.readLong());
+                    switch (type) {
+                    case NODE:
+                        result.put(element, new UndoNode((Node) element, in, resolver));
+                        break;
+                    case WAY:
+                        result.put(element, new UndoWay((Way) element, in, resolver));
+                        break;
+                    default:
+                        result.put(element, new UndoRelation((Relation) element, in, resolver));
+                    }
+                }
+                return true;
+            } catch (IOException | ClassCastException e) {
+                Log.e(DEBUG_TAG, "Reading checkpoint " + name + " failed " + e.getMessage());
+                return false;
+            }
         }
 
         /**
@@ -545,6 +1066,127 @@ public class UndoStorage implements Serializable {
         }
     }
 
+    /**
+     * Convert a List of ids to a sorted array
+     * 
+     * @param ids the List of ids
+     * @return a sorted array
+     */
+    @NonNull
+    private static long[] toSortedArray(@NonNull List<Long> ids) {
+        long[] result = new long[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Maps ids read from a spill file to element objects
+     * 
+     * Elements in the storages are used if available, otherwise an object with the id is created once per id. Ids of
+     * elements that have been renumbered since the file was written are translated first.
+     */
+    private class Resolver {
+        private final Checkpoint                  checkpoint;
+        private final LongOsmElementMap<Node>     nodes     = new LongOsmElementMap<>();
+        private final LongOsmElementMap<Way>      ways      = new LongOsmElementMap<>();
+        private final LongOsmElementMap<Relation> relations = new LongOsmElementMap<>();
+
+        /**
+         * Construct a new instance
+         * 
+         * @param checkpoint the Checkpoint that is being read
+         */
+        Resolver(@NonNull Checkpoint checkpoint) {
+            this.checkpoint = checkpoint;
+        }
+
+        /**
+         * Get the element for an id
+         * 
+         * @param type the element type (NODE, WAY or RELATION)
+         * @param id the id read from the file
+         * @return an OsmElement
+         */
+        @NonNull
+        OsmElement get(byte type, long id) {
+            long osmId = checkpoint.currentId(type, id);
+            switch (type) {
+            case NODE:
+                return node(id, 0, 0);
+            case WAY:
+                Way way = ways.get(osmId);
+                if (way == null) {
+                    way = (Way) getStoredElement(Way.NAME, osmId);
+                    if (way == null) {
+                        way = OsmElementFactory.createWay(osmId, 1, -1, OsmElement.STATE_UNCHANGED);
+                    }
+                    ways.put(osmId, way);
+                }
+                return way;
+            default:
+                Relation relation = relations.get(osmId);
+                if (relation == null) {
+                    relation = (Relation) getStoredElement(Relation.NAME, osmId);
+                    if (relation == null) {
+                        relation = OsmElementFactory.createRelation(osmId, 1, -1, OsmElement.STATE_UNCHANGED);
+                    }
+                    relations.put(osmId, relation);
+                }
+                return relation;
+            }
+        }
+
+        /**
+         * Get the Node for an id
+         * 
+         * @param id the id read from the file
+         * @param lat latitude to use if the Node has to be created
+         * @param lon longitude to use if the Node has to be created
+         * @return a Node
+         */
+        @NonNull
+        Node node(long id, int lat, int lon) {
+            long osmId = checkpoint.currentId(NODE, id);
+            Node node = nodes.get(osmId);
+            if (node == null) {
+                node = (Node) getStoredElement(Node.NAME, osmId);
+                if (node == null) {
+                    node = OsmElementFactory.createNode(osmId, 1, -1, OsmElement.STATE_UNCHANGED, lat, lon);
+                }
+                nodes.put(osmId, node);
+            }
+            return node;
+        }
+
+        /**
+         * Get the element for an element type name
+         * 
+         * @param type the element type name
+         * @param osmId the id
+         * @return an OsmElement
+         */
+        @NonNull
+        OsmElement get(@NonNull String type, long osmId) {
+            return get(Node.NAME.equals(type) ? NODE : (Way.NAME.equals(type) ? WAY : RELATION), osmId);
+        }
+
+        /**
+         * Get an element from the storages
+         * 
+         * @param type the element type name
+         * @param osmId the id
+         * @return the OsmElement or null if not found
+         */
+        @Nullable
+        private OsmElement getStoredElement(@NonNull String type, long osmId) {
+            OsmElement e = currentStorage.getOsmElement(type, osmId);
+            return e != null ? e : apiStorage.getOsmElement(type, osmId);
+        }
+    }
+
     /**
      * This class contains a past state of a {@link OsmElement}. It is stored in {@link Checkpoint}s and used to restore
      * the state of the element on undo. The constructor saves the state, {@link #restore()} restores it.
@@ -552,7 +1194,11 @@ public class UndoStorage implements Serializable {
      * @author Jan
      */
     public abstract class UndoElement implements Serializable {
-        private static final long serialVersionUID = 1L;
+        private static final long serialVersionUID = 2L;
+
+        // rough per object overhead used for size estimates
+        protected static final int OBJECT_SIZE = 16;
+        protected static final int ENTRY_SIZE  = 40;
 
         final OsmElement element;
 
@@ -564,7 +1210,7 @@ public class UndoStorage implements Serializable {
         private final boolean inCurrentStorage;
         private final boolean inApiStorage;
 
-        private final List<Relation> parentRelations;
+        private final Relation[] parentRelations;
 
         /**
          * Create a new undo object
@@ -582,9 +1228,86 @@ public class UndoStorage implements Serializable {
             osmId = originalElement.osmId;
             osmVersion = originalElement.osmVersion;
             state = originalElement.state;
-            tags = originalElement.tags == null ? new TreeMap<>() : new TreeMap<>(originalElement.tags);
+            tags = sharedTags(originalElement.tags);
+
+            List<Relation> parents = element.getParentRelations();
+            parentRelations = parents != null && !parents.isEmpty() ? parents.toArray(new Relation[parents.size()]) : null;
+        }
+
+        /**
+         * Create a new undo object from a spill file
+         * 
+         * @param element the OsmElement the state belongs to
+         * @param in the stream to read from
+         * @param resolver Resolver for ids
+         * @throws IOException if reading fails
+         */
+        protected UndoElement(@NonNull OsmElement element, @NonNull DataInputStream in, @NonNull Resolver resolver) throws IOException {
+            this.element = element;
+            osmId = in.readLong();
+            osmVersion = in.readLong();
+            state = in.readByte();
+            inCurrentStorage = in.readBoolean();
+            inApiStorage = in.readBoolean();
+            int tagCount = in.readInt();
+            TreeMap<String, String> temp = new TreeMap<>();
+            for (int i = 0; i < tagCount; i++) {
+                temp.put(in.readUTF(), in.readUTF());
+            }
+            tags = sharedTags(temp);
+            int parentCount = in.readInt();
+            parentRelations = parentCount > 0 ? new Relation[parentCount] : null;
+            for (int i = 0; i < parentCount; i++) {
+                parentRelations[i] = (Relation) resolver.get(RELATION, in.readLong());
+            }
+        }
+
+        /**
+         * Write this saved state to a spill file
+         * 
+         * @param out the stream to write to
+         * @throws IOException if writing fails
+         */
+        void write(@NonNull DataOutputStream out) throws IOException {
+            out.writeLong(osmId);
+            out.writeLong(osmVersion);
+            out.writeByte(state);
+            out.writeBoolean(inCurrentStorage);
+            out.writeBoolean(inApiStorage);
+            out.writeInt(tags.size());
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                out.writeUTF(tag.getKey());
+                out.writeUTF(tag.getValue());
+            }
+            if (parentRelations == null) {
+                out.writeInt(0);
+            } else {
+                out.writeInt(parentRelations.length);
+                for (Relation r : parentRelations) {
+                    out.writeLong(r.getOsmId());
+                }
+            }
+        }
 
-            parentRelations = element.getParentRelations() != null ? new ArrayList<>(element.getParentRelations()) : null;
+        /**
+         * Estimate the memory used by this saved state
+         * 
+         * Tag maps are counted fully even though they may be shared
+         * 
+         * @return the estimated size in bytes
+         */
+        long estimateSize() {
+            long result = OBJECT_SIZE + 3 * 8L + ENTRY_SIZE; // fields and the entry in the Checkpoint
+            if (tags != EMPTY_TAGS) {
+                result += OBJECT_SIZE;
+                for (Map.Entry<String, String> tag : tags.entrySet()) {
+                    result += ENTRY_SIZE + 2L * (tag.getKey().length() + tag.getValue().length());
+                }
+            }
+            if (parentRelations != null) {
+                result += OBJECT_SIZE + 4L * parentRelations.length;
+            }
+            return result;
         }
 
         /**
@@ -703,7 +1426,7 @@ public class UndoStorage implements Serializable {
          */
         @Nullable
         public List<Relation> getParentRelations() {
-            return parentRelations != null ? Collections.unmodifiableList(parentRelations) : null;
+            return parentRelations != null ? Collections.unmodifiableList(Arrays.asList(parentRelations)) : null;
         }
 
         /**
@@ -757,6 +1480,32 @@ public class UndoStorage implements Serializable {
             lon = originalNode.lon;
         }
 
+        /**
+         * Create a new undo object from a spill file
+         * 
+         * @param node the Node the state belongs to
+         * @param in the stream to read from
+         * @param resolver Resolver for ids
+         * @throws IOException if reading fails
+         */
+        UndoNode(@NonNull Node node, @NonNull DataInputStream in, @NonNull Resolver resolver) throws IOException {
+            super(node, in, resolver);
+            lat = in.readInt();
+            lon = in.readInt();
+        }
+
+        @Override
+        void write(@NonNull DataOutputStream out) throws IOException {
+            super.write(out);
+            out.writeInt(lat);
+            out.writeInt(lon);
+        }
+
+        @Override
+        long estimateSize() {
+            return super.estimateSize() + 8;
+        }
+
         @Override
         public OsmElement restore() {
             OsmElement restored = super.restore();
@@ -789,11 +1538,13 @@ public class UndoStorage implements Serializable {
     /**
      * Stores a past state of a way
      * 
+     * The way nodes are kept as references as restoring a deleted way may need nodes that are not in storage any more
+     * 
      * @see UndoElement
      */
     public class UndoWay extends UndoElement implements Serializable {
-        private static final long serialVersionUID = 2L;
-        private final List<Node>  nodes;
+        private static final long serialVersionUID = 3L;
+        private final Node[]      nodes;
 
         /**
          * Create a new undo object
@@ -804,7 +1555,42 @@ public class UndoStorage implements Serializable {
          */
         public UndoWay(@NonNull Way originalWay, boolean inCurrentStorage, boolean inApiStorage) {
             super(originalWay, inCurrentStorage, inApiStorage);
-            nodes = new ArrayList<>(originalWay.getNodes());
+            List<Node> wayNodes = originalWay.getNodes();
+            nodes = wayNodes.toArray(new Node[wayNodes.size()]);
+        }
+
+        /**
+         * Create a new undo object from a spill file
+         * 
+         * @param way the Way the state belongs to
+         * @param in the stream to read from
+         * @param resolver Resolver for ids
+         * @throws IOException if reading fails
+         */
+        UndoWay(@NonNull Way way, @NonNull DataInputStream in, @NonNull Resolver resolver) throws IOException {
+            super(way, in, resolver);
+            nodes = new Node[in.readInt()];
+            for (int i = 0; i < nodes.length; i++) {
+                long id = in.readLong();
+                int lat = in.readInt();
+                nodes[i] = resolver.node(id, lat, in.readInt());
+            }
+        }
+
+        @Override
+        void write(@NonNull DataOutputStream out) throws IOException {
+            super.write(out);
+            out.writeInt(nodes.length);
+            for (Node n : nodes) {
+                out.writeLong(n.getOsmId());
+                out.writeInt(n.getLat());
+                out.writeInt(n.getLon());
+            }
+        }
+
+        @Override
+        long estimateSize() {
+            return super.estimateSize() + OBJECT_SIZE + 4L * nodes.length;
         }
 
         @Override
@@ -818,7 +1604,7 @@ public class UndoStorage implements Serializable {
                 }
             }
             boolean deleted = super.state == OsmElement.STATE_DELETED;
-            if (inStorage == 0 && !nodes.isEmpty() && !deleted) {
+            if (inStorage == 0 && nodes.length > 0 && !deleted) {
                 // if no nodes we are restoring to pre-creation state without nodes which is ok
                 Log.e(DEBUG_TAG, "#" + element.getOsmId() + " " + element.getDescription() + " is missing all nodes");
                 // note this still allows ways with 1 node to be created which might be necessary
@@ -862,7 +1648,7 @@ public class UndoStorage implements Serializable {
          * @return true if closed
          */
         public boolean isClosed() {
-            return !nodes.isEmpty() && nodes.get(0).equals(nodes.get(nodes.size() - 1));
+            return nodes.length > 0 && nodes[0].equals(nodes[nodes.length - 1]);
         }
 
         /**
@@ -873,7 +1659,7 @@ public class UndoStorage implements Serializable {
          * @return the length in m
          */
         public double length() {
-            return Way.length(nodes);
+            return Way.length(Arrays.asList(nodes));
         }
 
         /**
@@ -882,7 +1668,7 @@ public class UndoStorage implements Serializable {
          * @return the number of nodes in this Way
          */
         public int nodeCount() {
-            return nodes == null ? 0 : nodes.size();
+            return nodes.length;
         }
 
         @Override
@@ -912,17 +1698,68 @@ public class UndoStorage implements Serializable {
         public UndoRelation(@NonNull Relation originalRelation, boolean inCurrentStorage, boolean inApiStorage) {
             super(originalRelation, inCurrentStorage, inApiStorage);
             // deep copy
-            members = new ArrayList<>();
+            members = new ArrayList<>(originalRelation.members.size());
             for (RelationMember member : originalRelation.members) {
                 members.add(new RelationMember(member));
             }
         }
 
+        /**
+         * Create a new undo object from a spill file
+         * 
+         * @param relation the Relation the state belongs to
+         * @param in the stream to read from
+         * @param resolver Resolver for ids
+         * @throws IOException if reading fails
+         */
+        UndoRelation(@NonNull Relation relation, @NonNull DataInputStream in, @NonNull Resolver resolver) throws IOException {
+            super(relation, in, resolver);
+            int count = in.readInt();
+            members = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String type = in.readUTF();
+                long ref = in.readLong();
+                String role = in.readBoolean() ? in.readUTF() : null;
+                RelationMember member = new RelationMember(type, ref, role);
+                if (in.readBoolean()) {
+                    member.setElement(resolver.get(type, ref));
+                }
+                members.add(member);
+            }
+        }
+
+        @Override
+        void write(@NonNull DataOutputStream out) throws IOException {
+            super.write(out);
+            out.writeInt(members.size());
+            for (RelationMember member : members) {
+                out.writeUTF(member.getType());
+                out.writeLong(member.getRef());
+                String role = member.getRole();
+                out.writeBoolean(role != null);
+                if (role != null) {
+                    out.writeUTF(role);
+                }
+                out.writeBoolean(member.downloaded());
+            }
+        }
+
+        @Override
+        long estimateSize() {
+            long result = super.estimateSize() + OBJECT_SIZE + 4L * members.size();
+            for (RelationMember member : members) {
+                String role = member.getRole();
+                result += OBJECT_SIZE + 3 * 8L + (role != null ? 2L * role.length() : 0);
+            }
+            return result;
+        }
+
         @Override
         public OsmElement restore() {
             OsmElement restored = super.restore();
             if (restored != null) {
                 ((Relation) restored).members.clear();
+                ((Relation) restored).invalidateMemberIndex();
                 for (RelationMember rm : members) {
                     OsmElement rmElement = rm.getElement();
                     OsmElement rmStorage = currentStorage.getOsmElement(rm.getType(), rm.getRef());
@@ -1014,7 +1851,7 @@ public class UndoStorage implements Serializable {
         int i = 0;
         for (Checkpoint checkpoint : checkpoints) {
             StringBuilder message = new StringBuilder(checkpoint.getName() + "<br>");
-            for (UndoElement u : checkpoint.elements.values()) {
+            for (UndoElement u : checkpoint.getElements().values()) {
                 message.append("<small>");
                 message.append(u.getDescription(ctx));
                 message.append("</small><br>");
@@ -1051,7 +1888,10 @@ public class UndoStorage implements Serializable {
         String name = element.getName();
         long osmId = element.getOsmId();
         for (Checkpoint checkpoint : undoCheckpoints) {
-            for (UndoElement undoElement : checkpoint.elements.values()) {
+            if (!checkpoint.mayContain(name, osmId)) {
+                continue;
+            }
+            for (UndoElement undoElement : checkpoint.getElements().values()) {
                 if (undoElement.element.getName().equals(name) && undoElement.osmId == osmId) {
                     result.add(undoElement);
                     break;
@@ -1123,11 +1963,11 @@ public class UndoStorage implements Serializable {
      * way contains nodes that were changed in later checkpoints the result will be incorrect.
      * 
      * @param checkpoint the current Checkpoint holding the way
-     * @param nodes the list of way nodes
+     * @param nodes the way nodes
      * @return the BoundingBox or null (for a degenerate Way with no nodes)
      */
     @Nullable
-    private static BoundingBox getBounds(@NonNull Checkpoint checkpoint, @NonNull List<Node> nodes) {
+    private static BoundingBox getBounds(@NonNull Checkpoint checkpoint, @NonNull Node[] nodes) {
         BoundingBox result = null;
         for (Node n : nodes) {
             UndoNode un = (UndoNode) checkpoint.elements.get(n);
@@ -4,8 +4,16 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.acra.ACRA;
 
@@ -34,7 +42,7 @@ import de.blau.android.util.rtree.RTree;
  */
 public class PhotoIndex extends SQLiteOpenHelper {
 
-    private static final int    DATA_VERSION = 5;
+    private static final int    DATA_VERSION = 6;
     private static final String DEBUG_TAG    = "PhotoIndex";
 
     private static final String DIRECTORIES_TABLE = "directories";
@@ -44,8 +52,13 @@ public class PhotoIndex extends SQLiteOpenHelper {
     private static final String LON_COLUMN        = "lon";
     private static final String DIRECTION_COLUMN  = "direction";
     private static final String DIR_COLUMN        = "dir";
+    private static final String SIZE_COLUMN       = "size";
+    private static final String MODIFIED_COLUMN   = "modified";
     private static final String DIR_WHERE         = "dir = ?";
 
+    private static final String NO_INDEX_MARKER = ".novespucci";
+    private static final int    BATCH_SIZE      = 500;
+
     private static final String INSERT_INTO = "INSERT INTO ";
 
     /**
@@ -60,9 +73,11 @@ public class PhotoIndex extends SQLiteOpenHelper {
     @Override
     public synchronized void onCreate(SQLiteDatabase db) {
         Log.d(DEBUG_TAG, "Creating photo index DB");
-        db.execSQL("CREATE TABLE IF NOT EXISTS " + PHOTOS_TABLE + " (lat int, lon int, direction int DEFAULT NULL, dir VARCHAR, name VARCHAR);");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + PHOTOS_TABLE
+                + " (lat int, lon int, direction int DEFAULT NULL, dir VARCHAR, name VARCHAR, size int8 DEFAULT 0, modified int8 DEFAULT 0);");
         db.execSQL("CREATE INDEX latidx ON " + PHOTOS_TABLE + " (lat)");
         db.execSQL("CREATE INDEX lonidx ON " + PHOTOS_TABLE + " (lon)");
+        db.execSQL("CREATE INDEX diridx ON " + PHOTOS_TABLE + " (dir)");
         db.execSQL("CREATE TABLE IF NOT EXISTS " + DIRECTORIES_TABLE + " (dir VARCHAR, last_scan int8);");
         db.execSQL(INSERT_INTO + DIRECTORIES_TABLE + " VALUES ('DCIM', 0);");
         db.execSQL(INSERT_INTO + DIRECTORIES_TABLE + " VALUES ('Vespucci', 0);");
@@ -78,6 +93,12 @@ public class PhotoIndex extends SQLiteOpenHelper {
         if (oldVersion <= 4) {
             db.execSQL("DELETE FROM " + PHOTOS_TABLE); // this should force a complete reindex
         }
+        if (oldVersion <= 5) {
+            // existing entries will be re-examined once as they don't have size and modification time
+            db.execSQL("ALTER TABLE " + PHOTOS_TABLE + " ADD size int8 DEFAULT 0");
+            db.execSQL("ALTER TABLE " + PHOTOS_TABLE + " ADD modified int8 DEFAULT 0");
+            db.execSQL("CREATE INDEX diridx ON " + PHOTOS_TABLE + " (dir)");
+        }
     }
 
     @Override
@@ -90,9 +111,31 @@ public class PhotoIndex extends SQLiteOpenHelper {
 
     /**
      * Create or update the index of images on the device
+     * 
+     * Only files that are new or have changed size or modification time since the last scan are examined, EXIF
+     * extraction runs in parallel and the results are written in batched transactions. The changes are applied
+     * incrementally to a private copy of the in memory index that replaces the current one when done, as the current
+     * one may be queried while indexing.
+     * 
+     * @return the number of files that had to be examined
      */
-    public synchronized void createOrUpdateIndex() {
+    public synchronized int createOrUpdateIndex() {
+        RTree<Photo> index = new RTree<>(20, 50);
+        fill(index);
+        int changed = createOrUpdateIndex(index);
+        App.setPhotoIndex(index);
+        return changed;
+    }
+
+    /**
+     * Create or update the index of images on the device
+     * 
+     * @param index the in memory index to update or null
+     * @return the number of files that had to be examined
+     */
+    synchronized int createOrUpdateIndex(@Nullable RTree<Photo> index) {
         Log.d(DEBUG_TAG, "starting scan");
+        long start = System.currentTimeMillis();
         // determine at least a few of the possible mount points
         File sdcard = Environment.getExternalStorageDirectory();
         ArrayList<String> mountPoints = new ArrayList<>();
@@ -111,97 +154,257 @@ public class PhotoIndex extends SQLiteOpenHelper {
 
         try {
             SQLiteDatabase db = getWritableDatabase();
+            Map<String, IndexedFile> indexed = getIndexedFiles(db);
+            Map<String, IndexedFile> removed = new HashMap<>();
+            List<File> changed = new ArrayList<>();
             Cursor dbresult = db.query(DIRECTORIES_TABLE, new String[] { DIR_COLUMN, "last_scan" }, null, null, null, null, null, null);
             int dirCount = dbresult.getCount();
             dbresult.moveToFirst();
             // loop over the directories configured
             for (int i = 0; i < dirCount; i++) {
                 String dir = dbresult.getString(0);
-                long lastScan = dbresult.getLong(1);
                 Log.d(DEBUG_TAG, dbresult.getString(0) + " " + dbresult.getLong(1));
                 // loop over all possible mount points
                 for (String m : mountPoints) {
                     File indir = new File(m, dir);
                     Log.d(DEBUG_TAG, "Scanning directory " + indir.getAbsolutePath());
                     if (indir.exists()) {
-                        Cursor dbresult2 = db.query(PHOTOS_TABLE, new String[] { "distinct dir" }, "dir LIKE '" + indir.getAbsolutePath() + "%'", null, null,
-                                null, null, null);
-                        int dirCount2 = dbresult2.getCount();
-                        dbresult2.moveToFirst();
-                        for (int j = 0; j < dirCount2; j++) {
-                            String dir2 = dbresult2.getString(0);
-                            Log.d(DEBUG_TAG, "Checking dir " + dir2);
-                            File pDir = new File(dir2);
-                            if (!pDir.exists()) {
-                                Log.d(DEBUG_TAG, "Deleting entries for gone dir " + dir2);
-                                db.delete(PHOTOS_TABLE, DIR_WHERE, new String[] { dir2 });
-                            }
-                            dbresult2.moveToNext();
-                        }
-                        dbresult2.close();
-                        scanDir(db, indir.getAbsolutePath(), lastScan);
+                        scanDir(indir, indexed, removed, changed);
                         ContentValues values = new ContentValues();
-                        Log.d(DEBUG_TAG, "updating last scan for " + indir.getName() + " to " + System.currentTimeMillis());
                         values.put("last_scan", System.currentTimeMillis());
                         db.update(DIRECTORIES_TABLE, values, DIR_WHERE, new String[] { indir.getName() });
                     } else {
                         Log.d(DEBUG_TAG, "Directory " + indir.getAbsolutePath() + " doesn't exist");
-                        // remove all entries for this directory
-                        db.delete(PHOTOS_TABLE, DIR_WHERE, new String[] { indir.getAbsolutePath() });
-                        db.delete(PHOTOS_TABLE, "dir LIKE ?", new String[] { indir.getAbsolutePath() + "/%" });
+                    }
+                    // everything under this directory that we haven't seen is gone
+                    String prefix = indir.getAbsolutePath() + "/";
+                    for (Iterator<Entry<String, IndexedFile>> it = indexed.entrySet().iterator(); it.hasNext();) {
+                        Entry<String, IndexedFile> entry = it.next();
+                        if (entry.getKey().startsWith(prefix) && !entry.getValue().seen) {
+                            removed.put(entry.getKey(), entry.getValue());
+                            it.remove();
+                        }
                     }
                 }
                 dbresult.moveToNext();
             }
             dbresult.close();
+            Log.d(DEBUG_TAG, "Scan found " + changed.size() + " new or changed and " + removed.size() + " removed files in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            updateIndex(db, index, removed, changed);
             db.close();
+            Log.d(DEBUG_TAG, "Indexing finished in " + (System.currentTimeMillis() - start) + " ms");
+            return changed.size();
         } catch (SQLiteException ex) {
             // Don't crash just report
             ACRAHelper.nocrashReport(ex, ex.getMessage());
         }
+        return 0;
     }
 
     /**
-     * Recursively scan directories and add images to index
+     * Entry for a file in the on device index
+     */
+    public static final class IndexedFile {
+        final long    size;
+        final long    modified;
+        final boolean hasLocation;
+        final int     lat;
+        final int     lon;
+        boolean       seen = false;
+
+        /**
+         * Construct a new entry
+         * 
+         * @param size the size of the file
+         * @param modified the last modification time of the file
+         * @param hasLocation true if the file is a geo-referenced photo
+         * @param lat latitude in WGS84*1E7 degrees
+         * @param lon longitude in WGS84*1E7 degrees
+         */
+        public IndexedFile(long size, long modified, boolean hasLocation, int lat, int lon) {
+            this.size = size;
+            this.modified = modified;
+            this.hasLocation = hasLocation;
+            this.lat = lat;
+            this.lon = lon;
+        }
+    }
+
+    /**
+     * Read the currently indexed files from the database
      * 
      * @param db database containing the index
-     * @param dir directory we are starting with
-     * @param lastScan date we last scanned this directory tree
+     * @return a Map from file path to IndexedFile
      */
-    private void scanDir(@NonNull SQLiteDatabase db, @NonNull String dir, long lastScan) {
-        File indir = new File(dir);
-        boolean needsReindex = false;
-        if (indir.lastModified() >= lastScan) { // directory was modified
-            // remove all entries
-            Log.d(DEBUG_TAG, "deleteing refs for reindex");
-            try {
-                db.delete(PHOTOS_TABLE, DIR_WHERE, new String[] { indir.getAbsolutePath() });
-            } catch (SQLiteException sqex) {
-                Log.d(DEBUG_TAG, sqex.toString());
-                ACRAHelper.nocrashReport(sqex, sqex.getMessage());
+    @NonNull
+    private Map<String, IndexedFile> getIndexedFiles(@NonNull SQLiteDatabase db) {
+        Map<String, IndexedFile> result = new HashMap<>();
+        try (Cursor dbresult = db.query(PHOTOS_TABLE, new String[] { DIR_COLUMN, SIZE_COLUMN, MODIFIED_COLUMN, LAT_COLUMN, LON_COLUMN }, null, null, null,
+                null, null, null)) {
+            while (dbresult.moveToNext()) {
+                boolean hasLocation = !dbresult.isNull(3);
+                result.put(dbresult.getString(0), new IndexedFile(dbresult.getLong(1), dbresult.getLong(2), hasLocation, hasLocation ? dbresult.getInt(3) : 0,
+                        hasLocation ? dbresult.getInt(4) : 0));
             }
-            needsReindex = true;
         }
+        return result;
+    }
+
+    /**
+     * Recursively scan directories and collect images that are not indexed or have changed
+     * 
+     * @param dir directory we are starting with
+     * @param indexed the files currently in the index
+     * @param removed map to add outdated index entries to
+     * @param changed list to add new and changed image files to
+     */
+    public static void scanDir(@NonNull File dir, @NonNull Map<String, IndexedFile> indexed, @NonNull Map<String, IndexedFile> removed,
+            @NonNull List<File> changed) {
         // now process
-        File[] list = indir.listFiles();
+        File[] list = dir.listFiles();
         if (list == null) {
             return;
         }
         // check if we shouldn't process this directory, not the most efficient way likely
         for (File f : list) {
-            if (".novespucci".equals(f.getName())) {
+            if (NO_INDEX_MARKER.equals(f.getName())) {
                 return;
             }
         }
         for (File f : list) {
             if (f.isDirectory()) {
                 // recursive decent
-                scanDir(db, f.getAbsolutePath(), lastScan);
+                scanDir(f, indexed, removed, changed);
+            } else if (f.getName().toLowerCase(Locale.US).endsWith(Paths.FILE_EXTENSION_IMAGE)) {
+                String path = f.getAbsolutePath();
+                IndexedFile entry = indexed.get(path);
+                if (entry != null && entry.size == f.length() && entry.modified == f.lastModified()) {
+                    entry.seen = true;
+                    continue;
+                }
+                if (entry != null) {
+                    removed.put(path, indexed.remove(path));
+                }
+                changed.add(f);
+            }
+        }
+    }
+
+    /**
+     * Remove outdated entries and add new ones to the on device and in memory indices
+     * 
+     * @param db database containing the index
+     * @param index the in memory index or null
+     * @param removed outdated entries
+     * @param changed new or changed image files
+     */
+    private void updateIndex(@NonNull SQLiteDatabase db, @Nullable RTree<Photo> index, @NonNull Map<String, IndexedFile> removed,
+            @NonNull List<File> changed) {
+        int ops = 0;
+        db.beginTransaction();
+        try {
+            for (Entry<String, IndexedFile> entry : removed.entrySet()) {
+                String path = entry.getKey();
+                IndexedFile file = entry.getValue();
+                db.delete(PHOTOS_TABLE, DIR_WHERE, new String[] { path });
+                if (index != null && file.hasLocation) {
+                    index.remove(new Photo(file.lat, file.lon, path, new File(path).getName()));
+                }
+                ops = nextBatch(db, ops);
             }
-            if (needsReindex && f.getName().toLowerCase(Locale.US).endsWith(Paths.FILE_EXTENSION_IMAGE)) {
-                addPhoto(db, indir, f);
+            List<Photo> photos = readPhotos(changed);
+            for (int i = 0; i < changed.size(); i++) {
+                Photo p = photos.get(i);
+                insertPhoto(db, p, changed.get(i));
+                if (index != null && p != null) {
+                    index.insert(p);
+                }
+                ops = nextBatch(db, ops);
             }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Commit the current transaction and start a new one if BATCH_SIZE operations have been executed
+     * 
+     * @param db database containing the index
+     * @param ops the number of operations in the current transaction
+     * @return the new number of operations in the current transaction
+     */
+    private int nextBatch(@NonNull SQLiteDatabase db, int ops) {
+        ops++;
+        if (ops >= BATCH_SIZE) {
+            db.setTransactionSuccessful();
+            db.endTransaction();
+            db.beginTransaction();
+            return 0;
         }
+        return ops;
+    }
+
+    /**
+     * Read the location information from image files in parallel
+     * 
+     * @param files the image files
+     * @return a List with a Photo, or null if the file isn't geo-referenced or reading failed, for each file
+     */
+    @NonNull
+    public static List<Photo> readPhotos(@NonNull List<File> files) {
+        List<Photo> result = new ArrayList<>(files.size());
+        if (files.isEmpty()) {
+            return result;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        try {
+            List<Future<Photo>> photos = new ArrayList<>(files.size());
+            for (final File f : files) {
+                photos.add(executor.submit(() -> readPhoto(f)));
+            }
+            for (Future<Photo> photo : photos) {
+                result.add(getResult(photo));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     * Read the location information from an image file
+     * 
+     * @param f the image file
+     * @return a Photo or null if the file isn't geo-referenced
+     */
+    @Nullable
+    private static Photo readPhoto(@NonNull File f) {
+        try {
+            return new Photo(f.getParentFile(), f);
+        } catch (NumberFormatException | IOException e) {
+            // ignore silently, broken pictures are not our business
+        }
+        return null;
+    }
+
+    /**
+     * Wait for the result of reading an image file
+     * 
+     * @param future the Future for the result
+     * @return a Photo or null if the file isn't geo-referenced or reading failed
+     */
+    @Nullable
+    private static Photo getResult(@NonNull Future<Photo> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Log.e(DEBUG_TAG, "Reading photo failed " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
     }
 
     /**
@@ -240,7 +443,7 @@ public class PhotoIndex extends SQLiteOpenHelper {
     private Photo addPhoto(@NonNull SQLiteDatabase db, @NonNull File dir, @NonNull File f) {
         try {
             Photo p = new Photo(dir, f);
-            insertPhoto(db, p, f.getName());
+            insertPhoto(db, p, f);
             return p;
         } catch (NumberFormatException | IOException e) {
             // ignore silently, broken pictures are not our business
@@ -269,15 +472,47 @@ public class PhotoIndex extends SQLiteOpenHelper {
      * @param name a short identifying name
      */
     private void insertPhoto(@NonNull SQLiteDatabase db, @NonNull Photo photo, @NonNull String name) {
+        insertPhoto(db, photo, photo.getRef(), name, 0, 0);
+    }
+
+    /**
+     * Insert an image file in to the on device index
+     * 
+     * Files without location information are recorded too so that they are not examined again as long as they don't
+     * change
+     * 
+     * @param db database containing the index
+     * @param photo the photo object or null if the file isn't geo-referenced
+     * @param f the image file
+     */
+    private void insertPhoto(@NonNull SQLiteDatabase db, @Nullable Photo photo, @NonNull File f) {
+        insertPhoto(db, photo, f.getAbsolutePath(), f.getName(), f.length(), f.lastModified());
+    }
+
+    /**
+     * Insert a row in to the on device index
+     * 
+     * @param db database containing the index
+     * @param photo the photo object or null if the file isn't geo-referenced
+     * @param ref the path of the file
+     * @param name a short identifying name
+     * @param size the size of the file or 0
+     * @param modified the last modification time of the file or 0
+     */
+    private void insertPhoto(@NonNull SQLiteDatabase db, @Nullable Photo photo, @NonNull String ref, @NonNull String name, long size, long modified) {
         try {
             ContentValues values = new ContentValues();
-            values.put(LAT_COLUMN, photo.getLat());
-            values.put(LON_COLUMN, photo.getLon());
-            if (photo.hasDirection()) {
-                values.put(DIRECTION_COLUMN, photo.getDirection());
+            if (photo != null) {
+                values.put(LAT_COLUMN, photo.getLat());
+                values.put(LON_COLUMN, photo.getLon());
+                if (photo.hasDirection()) {
+                    values.put(DIRECTION_COLUMN, photo.getDirection());
+                }
             }
-            values.put(DIR_COLUMN, photo.getRef());
+            values.put(DIR_COLUMN, ref);
             values.put(NAME_COLUMN, name);
+            values.put(SIZE_COLUMN, size);
+            values.put(MODIFIED_COLUMN, modified);
             db.insert(PHOTOS_TABLE, null, values);
         } catch (SQLiteException sqex) {
             Log.d(DEBUG_TAG, sqex.toString());
@@ -349,17 +584,21 @@ public class PhotoIndex extends SQLiteOpenHelper {
     /**
      * Create the in-memory index from the on device database
      * 
+     * If index is null a new index is filled and then replaces the current one
+     * 
      * @param index the current in memory index or null
      */
     public synchronized void fill(@Nullable RTree<Photo> index) {
         if (index == null) {
-            App.resetPhotoIndex(); // allocate r-tree
-            index = App.getPhotoIndex();
+            RTree<Photo> newIndex = new RTree<>(20, 50);
+            fill(newIndex);
+            App.setPhotoIndex(newIndex);
+            return;
         }
         try {
             SQLiteDatabase db = getReadableDatabase();
-            Cursor dbresult = db.query(PHOTOS_TABLE, new String[] { LAT_COLUMN, LON_COLUMN, DIRECTION_COLUMN, DIR_COLUMN, NAME_COLUMN }, null, null, null, null,
-                    null, null);
+            Cursor dbresult = db.query(PHOTOS_TABLE, new String[] { LAT_COLUMN, LON_COLUMN, DIRECTION_COLUMN, DIR_COLUMN, NAME_COLUMN }, "lat IS NOT NULL", null,
+                    null, null, null, null);
             int photoCount = dbresult.getCount();
             dbresult.moveToFirst();
             Log.i(DEBUG_TAG, "Query returned " + photoCount + " photos");
@@ -35,6 +35,7 @@ public class Preferences {
     private final AdvancedPrefDatabase advancedPrefs;
 
     private final boolean isStatsVisible;
+    private final boolean metricsEnabled;
     private final boolean isToleranceVisible;
     private final boolean isAntiAliasingEnabled;
     private final boolean isKeepScreenOnEnabled;
@@ -54,6 +55,7 @@ public class Preferences {
     private int           downloadRadius;                // in m
     private float         maxDownloadSpeed;              // in km/h
     private final int     autoPruneNodeLimit;
+    private final int     undoMemoryBudget;              // in MB
     private final int     panAndZoomLimit;
     private int           bugDownloadRadius;
     private float         maxBugDownloadSpeed;           // in km/h
@@ -144,6 +146,7 @@ public class Preferences {
         downloadRadius = getIntPref(R.string.config_extTriggeredDownloadRadius_key, 50);
         maxDownloadSpeed = getIntPref(R.string.config_maxDownloadSpeed_key, 10);
         autoPruneNodeLimit = getIntPref(R.string.config_autoPruneNodeLimit_key, 5000);
+        undoMemoryBudget = getIntPref(R.string.config_undoMemoryBudget_key, 16);
         panAndZoomLimit = getIntPref(R.string.config_panAndZoomLimit_key, 17);
 
         bugDownloadRadius = getIntPref(R.string.config_bugDownloadRadius_key, 200);
@@ -153,6 +156,7 @@ public class Preferences {
         taskFilter = prefs.getStringSet(r.getString(R.string.config_bugFilter_key), taskFilter);
 
         isStatsVisible = prefs.getBoolean(r.getString(R.string.config_showStats_key), false);
+        metricsEnabled = prefs.getBoolean(r.getString(R.string.config_metricsEnabled_key), false);
         isToleranceVisible = prefs.getBoolean(r.getString(R.string.config_showTolerance_key), true);
         isAntiAliasingEnabled = prefs.getBoolean(r.getString(R.string.config_enableAntiAliasing_key), true);
         tagFormEnabled = prefs.getBoolean(r.getString(R.string.config_tagFormEnabled_key), true);
@@ -313,6 +317,15 @@ public class Preferences {
         return isStatsVisible;
     }
 
+    /**
+     * Check if performance metrics should be recorded
+     * 
+     * @return true if turned on
+     */
+    public boolean areMetricsEnabled() {
+        return metricsEnabled;
+    }
+
     /**
      * Check if touch tolerance areas should be shown on screen
      * 
@@ -574,6 +587,15 @@ public class Preferences {
         return autoPruneNodeLimit;
     }
 
+    /**
+     * Get the memory the undo history may use before older checkpoints are written to disk
+     * 
+     * @return the limit in MB
+     */
+    public int getUndoMemoryBudget() {
+        return undoMemoryBudget;
+    }
+
     /**
      * Get the minimum zoom for pan and zoom auto-download
      * 
@@ -79,6 +79,7 @@ import de.blau.android.prefs.PresetEditorActivity;
 import de.blau.android.search.Wrapper;
 import de.blau.android.util.FileUtil;
 import de.blau.android.util.Hash;
+import de.blau.android.util.Metrics;
 import de.blau.android.util.SavingHelper;
 import de.blau.android.util.SearchIndexUtils;
 import de.blau.android.util.StringWithDescription;
@@ -213,6 +214,10 @@ public class Preset implements Serializable {
     private static final int    MAX_MRU_SIZE = 50;
     private static final String DEBUG_TAG    = Preset.class.getName();
 
+    private static final Metrics.Timer    MATCH_TIMER = Metrics.timer("preset.match");
+    private static final Metrics.Counter  MATCH_HITS  = Metrics.counter("preset.match.cache.hits");
+    private static final PresetMatchCache MATCH_CACHE = new PresetMatchCache();
+
     /** The directory containing all data (xml, MRU data, images) about this preset */
     private File directory;
 
@@ -1591,13 +1596,81 @@ public class Preset implements Serializable {
      */
     @Nullable
     public static PresetItem findBestMatch(@Nullable Preset[] presets, @Nullable Map<String, String> tags, boolean useAddressKeys) {
-        int bestMatchStrength = 0;
-        PresetItem bestMatch = null;
+        return findBestMatch(presets, tags, null, useAddressKeys);
+    }
 
+    /**
+     * Finds the preset item best matching a certain tag set ignoring a specific key
+     * 
+     * Results are cached for the same tags and presets, so repeated matching of identical tags is cheap.
+     * 
+     * @param presets presets presets to match against
+     * @param tags tags to check against (i.e. tags of a map element)
+     * @param ignoreKey a key that should not be taken in to account or null
+     * @param useAddressKeys use addr: keys if true
+     * @return a preset or null if none found
+     */
+    @Nullable
+    public static PresetItem findBestMatch(@Nullable Preset[] presets, @Nullable Map<String, String> tags, @Nullable String ignoreKey,
+            boolean useAddressKeys) {
         if (tags == null || presets == null) {
             Log.e(DEBUG_TAG, "findBestMatch " + (tags == null ? "tags null" : "presets null"));
             return null;
         }
+        final long start = MATCH_TIMER.start();
+        final long version = getMatchVersion(presets);
+        final PresetMatchCache.TagSet key = new PresetMatchCache.TagSet(tags, ignoreKey, useAddressKeys);
+        Object cached = MATCH_CACHE.get(presets, version, key);
+        if (cached != null) {
+            MATCH_HITS.inc();
+            MATCH_TIMER.stop(start);
+            return cached == PresetMatchCache.NO_MATCH ? null : (PresetItem) cached;
+        }
+        if (ignoreKey != null && tags.containsKey(ignoreKey)) {
+            tags = new HashMap<>(tags);
+            tags.remove(ignoreKey);
+        }
+        PresetItem bestMatch = matchBest(presets, tags, useAddressKeys);
+        MATCH_CACHE.put(presets, version, key, bestMatch);
+        MATCH_TIMER.stop(start);
+        return bestMatch;
+    }
+
+    /**
+     * Get a value that changes when any of the presets has been modified in a way that could change matching results
+     * 
+     * @param presets the presets
+     * @return the version
+     */
+    private static long getMatchVersion(@NonNull Preset[] presets) {
+        long version = 0;
+        for (Preset p : presets) {
+            if (p != null) {
+                version += p.tagItems.getModCount();
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Invalidate all cached preset matching results
+     */
+    public static void resetMatchCache() {
+        MATCH_CACHE.clear();
+    }
+
+    /**
+     * Finds the preset item best matching a certain tag set without caching
+     * 
+     * @param presets presets presets to match against
+     * @param tags tags to check against (i.e. tags of a map element)
+     * @param useAddressKeys use addr: keys if true
+     * @return a preset or null if none found
+     */
+    @Nullable
+    private static PresetItem matchBest(@NonNull Preset[] presets, @NonNull Map<String, String> tags, boolean useAddressKeys) {
+        int bestMatchStrength = 0;
+        PresetItem bestMatch = null;
 
         // Build candidate list
         Set<PresetItem> possibleMatches = buildPossibleMatches(presets, tags, false);
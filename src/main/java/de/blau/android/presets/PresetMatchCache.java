@@ -0,0 +1,172 @@
+package de.blau.android.presets;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.blau.android.presets.Preset.PresetItem;
+
+/**
+ * Bounded LRU cache of preset matching results
+ *
+ * Results are keyed by a canonical, sorted, copy of the tags so that the same tags in different Map implementations
+ * share an entry. The cache is only valid for one set of Presets in a specific state, if a lookup is made for
+ * different Presets or the Presets have been modified the cache is cleared.
+ *
+ * @author simon
+ *
+ */
+final class PresetMatchCache {
+
+    static final int MAX_SIZE = 2000;
+
+    /**
+     * Cached value for tags that don't match any PresetItem
+     */
+    static final Object NO_MATCH = new Object();
+
+    /**
+     * Canonical representation of a set of tags
+     */
+    static final class TagSet {
+        private final String[] keysAndValues;
+        private final boolean  useAddressKeys;
+        private final int      hash;
+
+        /**
+         * Construct a new instance
+         *
+         * @param tags the tags
+         * @param ignoreKey a key to leave out or null
+         * @param useAddressKeys the corresponding matching parameter
+         */
+        TagSet(@NonNull Map<String, String> tags, @Nullable String ignoreKey, boolean useAddressKeys) {
+            String[] temp = new String[tags.size() * 2];
+            int i = 0;
+            if (tags instanceof SortedMap && ((SortedMap<String, String>) tags).comparator() == null) {
+                for (Entry<String, String> tag : tags.entrySet()) {
+                    String key = tag.getKey();
+                    if (!key.equals(ignoreKey)) {
+                        temp[i++] = key;
+                        temp[i++] = tag.getValue();
+                    }
+                }
+            } else {
+                String[] keys = tags.keySet().toArray(new String[0]);
+                Arrays.sort(keys);
+                for (String key : keys) {
+                    if (!key.equals(ignoreKey)) {
+                        temp[i++] = key;
+                        temp[i++] = tags.get(key);
+                    }
+                }
+            }
+            keysAndValues = i < temp.length ? Arrays.copyOf(temp, i) : temp;
+            this.useAddressKeys = useAddressKeys;
+            hash = 31 * Arrays.hashCode(keysAndValues) + (useAddressKeys ? 1 : 0);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TagSet)) {
+                return false;
+            }
+            TagSet other = (TagSet) obj;
+            return hash == other.hash && useAddressKeys == other.useAddressKeys && Arrays.equals(keysAndValues, other.keysAndValues);
+        }
+    }
+
+    private final Map<TagSet, Object> cache = new LinkedHashMap<TagSet, Object>(MAX_SIZE, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TagSet, Object> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private Preset[] presets = null;
+    private long     version = 0;
+
+    /**
+     * Get a cached result
+     *
+     * @param currentPresets the Presets the match is for
+     * @param currentVersion the modification state of the Presets
+     * @param key the canonical tags
+     * @return null if nothing is cached, NO_MATCH if the tags don't match anything, otherwise the PresetItem
+     */
+    @Nullable
+    synchronized Object get(@NonNull Preset[] currentPresets, long currentVersion, @NonNull TagSet key) {
+        if (version != currentVersion || !isFor(currentPresets)) {
+            cache.clear();
+            presets = Arrays.copyOf(currentPresets, currentPresets.length);
+            version = currentVersion;
+            return null;
+        }
+        return cache.get(key);
+    }
+
+    /**
+     * Add a result to the cache
+     *
+     * Results for Presets the cache is not currently for are ignored
+     *
+     * @param currentPresets the Presets the match is for
+     * @param currentVersion the modification state of the Presets
+     * @param key the canonical tags
+     * @param match the result or null if there was no match
+     */
+    synchronized void put(@NonNull Preset[] currentPresets, long currentVersion, @NonNull TagSet key, @Nullable PresetItem match) {
+        if (version == currentVersion && isFor(currentPresets)) {
+            cache.put(key, match == null ? NO_MATCH : match);
+        }
+    }
+
+    /**
+     * Check if the cache holds results for a set of Presets
+     *
+     * @param currentPresets the Presets
+     * @return true if the presets are the same
+     */
+    private boolean isFor(@NonNull Preset[] currentPresets) {
+        if (presets == null || presets.length != currentPresets.length) {
+            return false;
+        }
+        for (int i = 0; i < presets.length; i++) {
+            if (presets[i] != currentPresets[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of cached results
+     *
+     * @return the number of entries
+     */
+    synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * Remove all cached results
+     */
+    synchronized void clear() {
+        cache.clear();
+        presets = null;
+    }
+}
@@ -0,0 +1,326 @@
+package de.blau.android.propertyeditor;
+
+import java.util.List;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.blau.android.osm.Node;
+import de.blau.android.osm.OsmElement;
+import de.blau.android.osm.RelationMemberDescription;
+import de.blau.android.osm.Way;
+
+/**
+ * The state of one member in the relation member editor
+ *
+ * This is held independently of any View so that only the rows actually on screen need to exist, the connection
+ * status is recomputed incrementally for the part of the list around a change.
+ *
+ * @author simon
+ *
+ */
+class MemberEntry {
+
+    private static final String DEBUG_TAG = MemberEntry.class.getSimpleName();
+
+    enum Connected {
+        NOT, UP, DOWN, BOTH, RING_TOP, RING, RING_BOTTOM, CLOSEDWAY, CLOSEDWAY_UP, CLOSEDWAY_DOWN, CLOSEDWAY_BOTH, CLOSEDWAY_RING
+    }
+
+    final RelationMemberDescription rmd;
+    boolean                         selected  = false;
+    Connected                       connected = Connected.NOT;
+
+    /**
+     * used for storing which end of a way was used for what
+     */
+    Node up   = null;
+    Node down = null;
+
+    /**
+     * true if the ring detection was restarted after this member in the last computation
+     */
+    private boolean ringBreak = false;
+
+    /**
+     * Construct a new entry
+     *
+     * @param rmd the RelationMemberDescription for the member
+     */
+    MemberEntry(@NonNull RelationMemberDescription rmd) {
+        this.rmd = rmd;
+    }
+
+    /**
+     * If the element is a Way return an unused end
+     *
+     * @return the Node at the unused end or null
+     */
+    @Nullable
+    Node getUnusedEnd() {
+        OsmElement e = rmd.getElement();
+        if (e instanceof Way) {
+            Node first = ((Way) e).getFirstNode();
+            Node last = ((Way) e).getLastNode();
+            if (up != null && down == null) {
+                return up.equals(first) ? last : first;
+            }
+            if (up == null && down != null) {
+                return down.equals(first) ? last : first;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Recompute the connection status of the entries after the members between from and to (inclusive) have changed
+     *
+     * The computation starts at the last point before the change at which ring detection was restarted and stops at
+     * the first such point after the change that is unchanged from the previous computation, as nothing beyond it can
+     * be affected. Structural changes (insertions, removals, moves) should be covered by the range in the new list, to
+     * recompute everything use 0 and size - 1.
+     *
+     * @param entries the List of MemberEntry
+     * @param from the first changed position
+     * @param to the last changed position
+     * @return an array containing the first and the last position whose status may have changed, empty if none
+     */
+    @NonNull
+    static int[] updateConnections(@NonNull List<MemberEntry> entries, int from, int to) {
+        final int size = entries.size();
+        if (size == 0) {
+            return new int[0];
+        }
+        from = Math.max(0, Math.min(from, size - 1));
+        to = Math.min(size - 1, Math.max(from, to));
+        // the status of the member before the change depends on the changed one
+        int start = Math.max(0, from - 1);
+        while (start > 0 && !entries.get(start - 1).ringBreak) {
+            start--;
+        }
+        int ringStart = start;
+        int end = size - 1;
+        for (int i = start; i < size; i++) {
+            MemberEntry current = entries.get(i);
+            boolean previousBreak = current.ringBreak;
+            if (!current.rmd.downloaded()) {
+                current.connected = Connected.NOT;
+                ringStart = i + 1; // next element
+            } else {
+                MemberEntry prev = i > 0 ? entries.get(i - 1) : null;
+                MemberEntry next = i + 1 < size ? entries.get(i + 1) : null;
+                current.connected = getConnection(prev, current, next);
+                // check for ring
+                if ((current.connected == Connected.UP || current.connected == Connected.CLOSEDWAY_UP) && i != ringStart) {
+                    MemberEntry ringStartMember = entries.get(ringStart);
+                    Node unusedEnd = current.getUnusedEnd();
+                    if (unusedEnd != null && unusedEnd.equals(ringStartMember.getUnusedEnd())) {
+                        ringStartMember.connected = Connected.RING_TOP;
+                        current.connected = Connected.RING_BOTTOM;
+                        for (int j = ringStart + 1; j < i; j++) {
+                            MemberEntry member = entries.get(j);
+                            member.connected = member.connected == Connected.CLOSEDWAY_BOTH ? Connected.CLOSEDWAY_RING : Connected.RING;
+                        }
+                    }
+                    ringStart = i + 1; // next element
+                } else if (current.connected == Connected.NOT || current.connected == Connected.CLOSEDWAY) {
+                    ringStart = i + 1; // next element
+                }
+            }
+            current.ringBreak = ringStart == i + 1;
+            if (i > to + 1 && previousBreak && current.ringBreak) {
+                // same state as in the last computation
+                end = i;
+                break;
+            }
+        }
+        return new int[] { start, end };
+    }
+
+    /**
+     * Determine how the current member is connected to the previous and following one
+     *
+     * @param previousEntry the previous entry
+     * @param currentEntry the current entry
+     * @param nextEntry the next entry
+     * @return a Connected value describing the connection
+     */
+    @NonNull
+    private static Connected getConnection(@Nullable MemberEntry previousEntry, @NonNull MemberEntry currentEntry, @Nullable MemberEntry nextEntry) {
+        Connected result = Connected.NOT;
+        RelationMemberDescription previous = previousEntry != null ? previousEntry.rmd : null;
+        RelationMemberDescription current = currentEntry.rmd;
+        RelationMemberDescription next = nextEntry != null ? nextEntry.rmd : null;
+        synchronized (current) {
+            String currentType = current.getType();
+            if (current.getElement() == null) {
+                // FIXME this seems to happen on restore in not quite clear circumstances
+                Log.e(DEBUG_TAG, "Element not downloaded for " + current.getDescription());
+                current.update();
+                return result;
+            }
+            if (Way.NAME.equals(currentType)) {
+                Way w = (Way) current.getElement();
+                currentEntry.up = null;
+                currentEntry.down = null;
+                if (w.isClosed()) {
+                    result = Connected.CLOSEDWAY;
+                    if (previous != null) {
+                        synchronized (previous) {
+                            if (previous.downloaded()) {
+                                if (Way.NAME.equals(previous.getType())) {
+                                    if (previousEntry.down != null) {
+                                        result = Connected.CLOSEDWAY_UP;
+                                        currentEntry.up = previousEntry.down;
+                                    }
+                                } else if (Node.NAME.equals(previous.getType())) {
+                                    Node prevNode = (Node) previous.getElement();
+                                    if (w.hasNode(prevNode)) {
+                                        result = Connected.CLOSEDWAY_UP;
+                                        currentEntry.up = prevNode;
+                                    }
+                                } else {
+                                    // FIXME previous is a relation and we could in principle check if we can connect to
+                                    // it
+                                }
+                            }
+                        }
+                    }
+                    if (next != null) {
+                        synchronized (next) {
+                            if (next.downloaded()) {
+                                OsmElement nextElement = next.getElement();
+                                if (Way.NAME.equals(next.getType())) {
+                                    Way nextWay = (Way) nextElement;
+                                    Node nextFirst = nextWay.getFirstNode();
+                                    Node nextLast = nextWay.getLastNode();
+                                    if (w.hasNode(nextLast) || w.hasNode(nextFirst)) {
+                                        if (result == Connected.CLOSEDWAY_UP) {
+                                            result = Connected.CLOSEDWAY_BOTH;
+                                        } else {
+                                            result = Connected.CLOSEDWAY_DOWN;
+                                        }
+                                        currentEntry.down = w.hasNode(nextLast) ? nextLast : nextFirst;
+                                    }
+                                } else if (Node.NAME.equals(next.getType())) {
+                                    Node nextNode = (Node) nextElement;
+                                    if (w.hasNode(nextNode)) {
+                                        if (result == Connected.CLOSEDWAY_UP) {
+                                            result = Connected.CLOSEDWAY_BOTH;
+                                        } else {
+                                            result = Connected.CLOSEDWAY_DOWN;
+                                        }
+                                        currentEntry.down = nextNode;
+                                    }
+                                } else {
+                                    // FIXME next is a relation and we could in principle check if we can connect to it
+                                }
+                            }
+                        }
+                    }
+                } else {
+                    Node notused = null;
+                    Node first = w.getFirstNode();
+                    Node last = w.getLastNode();
+                    if (previous != null) {
+                        synchronized (previous) {
+                            if (previous.downloaded()) {
+                                if (Way.NAME.equals(previous.getType())) {
+                                    if (previousEntry.down != null) {
+                                        currentEntry.up = previousEntry.down;
+                                        if (currentEntry.up.equals(first)) {
+                                            notused = last;
+                                        } else {
+                                            notused = first;
+                                        }
+                                        result = Connected.UP;
+                                    }
+                                } else if (Node.NAME.equals(previous.getType())) {
+                                    Node prevNode = (Node) previous.getElement();
+                                    if (prevNode.equals(first)) {
+                                        notused = last;
+                                        result = Connected.UP;
+                                        currentEntry.up = first;
+                                    } else if (prevNode.equals(last)) {
+                                        notused = first;
+                                        result = Connected.UP;
+                                        currentEntry.up = last;
+                                    }
+                                } else {
+                                    // FIXME previous is a relation and we could in principle check if we can connect to
+                                    // it
+                                }
+                            }
+                        }
+                    }
+                    if (next != null) {
+                        synchronized (next) {
+                            if (next.downloaded()) {
+                                OsmElement nextElement = next.getElement();
+                                if (Way.NAME.equals(next.getType())) {
+                                    Way nextWay = (Way) nextElement;
+                                    if (nextWay.isClosed()) {
+                                        if (notused == null && (nextWay.hasNode(first) || nextWay.hasNode(last))) {
+                                            result = Connected.DOWN;
+                                            currentEntry.down = nextWay.hasNode(first) ? first : last;
+                                        } else if (nextWay.hasNode(notused)) {
+                                            result = Connected.BOTH;
+                                            currentEntry.down = notused;
+                                        }
+                                    } else {
+                                        Node nextFirst = nextWay.getFirstNode();
+                                        Node nextLast = nextWay.getLastNode();
+                                        if (notused == null
+                                                && (nextLast.equals(first) || nextFirst.equals(first) || nextLast.equals(last) || nextFirst.equals(last))) {
+                                            result = Connected.DOWN;
+                                            currentEntry.down = nextLast.equals(first) || nextFirst.equals(first) ? first : last;
+                                        } else if (nextLast.equals(notused) || nextFirst.equals(notused)) {
+                                            result = Connected.BOTH;
+                                            currentEntry.down = notused;
+                                        }
+                                    }
+                                } else if (Node.NAME.equals(next.getType())) {
+                                    Node nextNode = (Node) nextElement;
+                                    if (notused == null && (nextNode.equals(first) || nextNode.equals(last))) {
+                                        result = Connected.DOWN;
+                                        currentEntry.down = nextNode.equals(first) ? first : last;
+                                    } else if (nextNode.equals(notused)) {
+                                        result = Connected.BOTH;
+                                        currentEntry.down = notused;
+                                    }
+                                } else {
+                                    // FIXME next is a relation and we could in principle check if we can connect to it
+                                }
+                            }
+                        }
+                    }
+                }
+            } else if (Node.NAME.equals(currentType)) {
+                Node n = (Node) current.getElement();
+                if (previous != null) {
+                    synchronized (previous) {
+                        if (Way.NAME.equals(previous.getType()) && previous.downloaded()) {
+                            if (((Way) previous.getElement()).getLastNode().equals(n) || ((Way) previous.getElement()).getFirstNode().equals(n)) {
+                                result = Connected.UP;
+                            }
+                        }
+                    }
+                }
+                if (next != null) {
+                    synchronized (next) {
+                        if (Way.NAME.equals(next.getType()) && next.downloaded()) {
+                            if (((Way) next.getElement()).getLastNode().equals(n) || ((Way) next.getElement()).getFirstNode().equals(n)) {
+                                if (result == Connected.UP) {
+                                    result = Connected.BOTH;
+                                } else {
+                                    result = Connected.DOWN;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
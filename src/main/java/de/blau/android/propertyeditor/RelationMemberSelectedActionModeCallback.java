@@ -1,7 +1,6 @@
 package de.blau.android.propertyeditor;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -9,12 +8,8 @@ import java.util.Map;
 import android.content.Context;
 import android.view.Menu;
 import android.view.MenuItem;
-import android.view.View;
-import android.widget.LinearLayout;
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 import androidx.appcompat.view.ActionMode;
-import androidx.fragment.app.Fragment;
 import de.blau.android.App;
 import de.blau.android.Logic;
 import de.blau.android.PostAsyncActionHandler;
@@ -24,8 +19,6 @@ import de.blau.android.osm.Node;
 import de.blau.android.osm.Relation;
 import de.blau.android.osm.RelationMemberDescription;
 import de.blau.android.osm.Way;
-import de.blau.android.propertyeditor.RelationMembersFragment.Connected;
-import de.blau.android.propertyeditor.RelationMembersFragment.RelationMemberRow;
 import de.blau.android.util.NetworkStatus;
 import de.blau.android.util.ThemeUtils;
 import de.blau.android.util.Util;
@@ -51,11 +44,10 @@ public class RelationMemberSelectedActionModeCallback extends SelectedRowsAction
     /**
      * Construct a new callback for selected RelationMembers
      * 
-     * @param caller the calling Fragment
-     * @param rows the Layout holding the selectable rows
+     * @param caller the calling RelationMembersFragment
      */
-    public RelationMemberSelectedActionModeCallback(@NonNull Fragment caller, @NonNull LinearLayout rows) {
-        super(caller, rows);
+    public RelationMemberSelectedActionModeCallback(@NonNull RelationMembersFragment caller) {
+        super(caller);
     }
 
     @Override
@@ -81,10 +73,8 @@ public class RelationMemberSelectedActionModeCallback extends SelectedRowsAction
 
         // we only display the download button if at least one of the selected elements isn't downloaded
         boolean nonDownloadedSelected = false;
-        final int size = rows.getChildCount();
-        for (int i = 0; i < size; i++) {
-            RelationMemberRow row = (RelationMemberRow) rows.getChildAt(i);
-            if (row.isSelected() && !row.getRelationMemberDescription().downloaded()) {
+        for (MemberEntry entry : ((RelationMembersFragment) caller).getEntries()) {
+            if (entry.selected && !entry.rmd.downloaded()) {
                 nonDownloadedSelected = true;
                 break;
             }
@@ -120,126 +110,145 @@ public class RelationMemberSelectedActionModeCallback extends SelectedRowsAction
      * @return true if the menu action was consumed
      */
     private boolean performAction(int action) {
-        final int size = rows.getChildCount();
-        final ArrayList<RelationMemberRow> selected = new ArrayList<>();
-        final ArrayList<Integer> selectedPos = new ArrayList<>();
+        final RelationMembersFragment fragment = (RelationMembersFragment) caller;
+        final List<MemberEntry> entries = fragment.getEntries();
+        final int size = entries.size();
+        final List<MemberEntry> selected = new ArrayList<>();
+        final List<Integer> selectedPos = new ArrayList<>();
         for (int i = 0; i < size; i++) {
-            View view = rows.getChildAt(i);
-            RelationMemberRow row = (RelationMemberRow) view;
-            if (row.isSelected()) {
-                selected.add(row);
+            MemberEntry entry = entries.get(i);
+            if (entry.selected) {
+                selected.add(entry);
                 selectedPos.add(i);
             }
         }
         final int selectedCount = selectedPos.size();
+        if (selectedCount == 0) {
+            return action == MENU_ITEM_DELETE;
+        }
+        final int top = selectedPos.get(0);
+        final int bottom = selectedPos.get(selectedCount - 1);
         int change = 1;
         switch (action) {
-        case MENU_ITEM_DELETE: // Note real work is done in super
-            ((RelationMembersFragment) caller).setIcons();
+        case MENU_ITEM_DELETE: // Note real work is done in deleteSelectedRows
             return true;
         case MENU_ITEM_MOVE_TOP:
-            change = selectedPos.get(0);
+            change = top;
         case MENU_ITEM_MOVE_UP:
+            int first = Math.max(0, top - change);
+            int last = bottom;
             for (int i = 0; i < selectedCount; i++) {
                 int p = selectedPos.get(i);
                 int newPos = p - change;
-                rows.removeViewAt(p);
+                entries.remove(p);
                 if (newPos < 0) {
                     // one row removed at top. fix up positions
                     selectedPos.set(i, size - 1);
                     for (int j = i + 1; j < selectedCount; j++) {
                         selectedPos.set(j, selectedPos.get(j) - 1);
                     }
-                    rows.addView(selected.get(i)); // add at end
+                    entries.add(selected.get(i)); // add at end
+                    first = 0;
+                    last = size - 1;
                     break;
                 } else {
                     selectedPos.set(i, newPos);
-                    rows.addView(selected.get(i), newPos);
+                    entries.add(newPos, selected.get(i));
                 }
             }
-            // this has some heuristics to avoid the selected row vanishing behind the top bars
-            ((RelationMembersFragment) caller).scrollToRow(selected.get(0), true, action == MENU_ITEM_MOVE_TOP || forceScroll(selectedPos.get(0), size));
-            ((RelationMembersFragment) caller).setIcons();
+            fragment.membersChanged(first, last);
+            fragment.scrollToPosition(selectedPos.get(0));
             return true;
         case MENU_ITEM_MOVE_BOTTOM:
-            change = size - selectedPos.get(selectedCount - 1) - 1;
+            change = size - bottom - 1;
         case MENU_ITEM_MOVE_DOWN:
+            first = top;
+            last = Math.min(size - 1, bottom + change);
             for (int i = selectedCount - 1; i >= 0; i--) {
                 int p = selectedPos.get(i);
                 int newPos = p + change;
-                rows.removeViewAt(p);
+                entries.remove(p);
                 if (newPos > size - 1) {
                     // one row removed at bottom. fix up positions
                     selectedPos.set(i, 0);
                     for (int j = i - 1; j >= 0; j--) {
                         selectedPos.set(j, selectedPos.get(j) + 1);
                     }
-                    rows.addView(selected.get(i), 0); // add at end
+                    entries.add(0, selected.get(i)); // add at start
+                    first = 0;
+                    last = size - 1;
                     break;
                 } else {
                     selectedPos.set(i, newPos);
-                    rows.addView(selected.get(i), newPos);
+                    entries.add(newPos, selected.get(i));
                 }
             }
-            // this has some heuristics to avoid the selected row vanishing behind the bottom actionbar
-            ((RelationMembersFragment) caller).scrollToRow(selected.get(selected.size() - 1), false,
-                    action == MENU_ITEM_MOVE_BOTTOM || forceScroll(selectedPos.get(selected.size() - 1), size));
-            ((RelationMembersFragment) caller).setIcons();
+            fragment.membersChanged(first, last);
+            fragment.scrollToPosition(selectedPos.get(selectedCount - 1));
             return true;
         case MENU_ITEM_SORT:
             List<RelationMemberDescription> rmds = new ArrayList<>();
-            Map<RelationMemberDescription, RelationMemberRow> relationMemberRows = new HashMap<>();
-            int top = selectedPos.get(0);
+            Map<RelationMemberDescription, MemberEntry> memberEntries = new HashMap<>();
             for (int i = 0; i < selectedCount; i++) {
-                RelationMemberRow row = selected.get(i);
-                RelationMemberDescription rmd = row.getRelationMemberDescription();
-                rmd.setPosition(i); // needed in case we have the same element twice
-                rmds.add(rmd);
-                relationMemberRows.put(rmd, row);
-                rows.removeView(row);
+                MemberEntry entry = selected.get(i);
+                entry.rmd.setPosition(i); // needed in case we have the same element twice
+                rmds.add(entry.rmd);
+                memberEntries.put(entry.rmd, entry);
             }
             rmds = Util.sortRelationMembers(rmds);
-            int pos = top;
+            // rebuild the list in one pass, the sorted members are inserted at the position of the first selected one
+            List<MemberEntry> sorted = new ArrayList<>(size);
+            sorted.addAll(entries.subList(0, top));
             for (RelationMemberDescription rmd : rmds) {
-                rows.addView(relationMemberRows.get(rmd), pos);
+                sorted.add(memberEntries.get(rmd));
                 rmd.setPosition(0); // zap position
-                pos++;
             }
-            ((RelationMembersFragment) caller).scrollToRow(rows.getChildAt(top), false, false);
-            ((RelationMembersFragment) caller).setIcons();
+            for (MemberEntry entry : entries.subList(top, size)) {
+                if (!entry.selected) {
+                    sorted.add(entry);
+                }
+            }
+            entries.clear();
+            entries.addAll(sorted);
+            fragment.membersChanged(top, bottom);
+            fragment.scrollToPosition(top);
             return true;
         case MENU_ITEM_REVERSE_ORDER:
-            top = selectedPos.get(0);
-            List<RelationMemberRow> temp = new ArrayList<>(selected);
-            Collections.reverse(temp);
-            for (RelationMemberRow row : selected) {
-                rows.removeView(row);
-            }
-            for (int i = 0; i < selectedPos.size(); i++) {
-                pos = selectedPos.get(i);
-                rows.addView(temp.get(i), pos);
+            for (int i = 0; i < selectedCount; i++) {
+                entries.set(selectedPos.get(i), selected.get(selectedCount - 1 - i));
             }
-            ((RelationMembersFragment) caller).scrollToRow(rows.getChildAt(top), false, false);
-            ((RelationMembersFragment) caller).setIcons();
+            fragment.membersChanged(top, bottom);
+            fragment.scrollToPosition(top);
             return true;
         case MENU_ITEM_TOP:
+            fragment.scrollToPosition(0);
+            return true;
         case MENU_ITEM_BOTTOM:
-            ((RelationMembersFragment) caller).scrollToRow(null, action == MENU_ITEM_TOP, false);
+            fragment.scrollToPosition(size - 1);
             return true;
         case MENU_ITEM_DOWNLOAD:
             Progress.showDialog(caller.getActivity(), Progress.PROGRESS_DOWNLOAD);
             PostAsyncActionHandler handler = () -> {
                 if (currentAction != null) {
-                    for (int i = 0; i < selectedCount; i++) {
-                        RelationMemberRow row = selected.get(i);
-                        if (!row.getRelationMemberDescription().downloaded()) {
-                            updateRow(row, selectedPos.get(i));
-                            selected.set(i, row);
+                    int updatedFirst = size;
+                    int updatedLast = -1;
+                    for (MemberEntry entry : selected) {
+                        RelationMemberDescription rmd = entry.rmd;
+                        if (!rmd.downloaded()) {
+                            rmd.setElement(rmd.getElement());
+                            rmd.update();
+                            int pos = entries.indexOf(entry);
+                            if (pos >= 0) {
+                                updatedFirst = Math.min(updatedFirst, pos);
+                                updatedLast = Math.max(updatedLast, pos);
+                            }
                         }
                     }
                     currentAction.finish();
                     Progress.dismissDialog(caller.getActivity(), Progress.PROGRESS_DOWNLOAD);
-                    ((RelationMembersFragment) caller).setIcons();
+                    if (updatedLast >= 0) {
+                        fragment.membersChanged(updatedFirst, updatedLast);
+                    }
                 }
             };
             final Logic logic = App.getLogic();
@@ -247,21 +256,21 @@ public class RelationMemberSelectedActionModeCallback extends SelectedRowsAction
                 List<Long> nodes = new ArrayList<>();
                 List<Long> ways = new ArrayList<>();
                 List<Long> relations = new ArrayList<>();
-                for (int i = 0; i < selectedCount; i++) {
-                    RelationMemberRow row = selected.get(i);
-                    if (!row.getRelationMemberDescription().downloaded()) {
-                        if (Node.NAME.equals(row.getType())) {
-                            nodes.add(row.getOsmId());
-                        } else if (Way.NAME.equals(row.getType())) {
-                            ways.add(row.getOsmId());
-                        } else if (Relation.NAME.equals(row.getType())) {
-                            relations.add(row.getOsmId());
+                for (MemberEntry entry : selected) {
+                    RelationMemberDescription rmd = entry.rmd;
+                    if (!rmd.downloaded()) {
+                        if (Node.NAME.equals(rmd.getType())) {
+                            nodes.add(rmd.getRef());
+                        } else if (Way.NAME.equals(rmd.getType())) {
+                            ways.add(rmd.getRef());
+                        } else if (Relation.NAME.equals(rmd.getType())) {
+                            relations.add(rmd.getRef());
                         }
                     }
                 }
                 logic.downloadElements(caller.getActivity(), nodes, ways, relations, handler);
             } else {
-                logic.downloadElement(caller.getActivity(), Relation.NAME, ((RelationMembersFragment) caller).getOsmId(), true, false, handler);
+                logic.downloadElement(caller.getActivity(), Relation.NAME, fragment.getOsmId(), true, false, handler);
             }
 
             invalidate();
@@ -271,28 +280,42 @@ public class RelationMemberSelectedActionModeCallback extends SelectedRowsAction
         }
     }
 
-    /**
-     * Update a row
-     * 
-     * @param row the row
-     * @param pos the position
-     */
-    private void updateRow(@NonNull RelationMemberRow row, int pos) {
-        RelationMemberDescription rmd = row.getRelationMemberDescription();
-        rmd.setElement(rmd.getElement());
-        rmd.update();
-        row.delete();
-        ((RelationMembersFragment) caller).insertNewMember(rows, Integer.toString(pos), rmd, pos, Connected.NOT, true); // NOSONAR
+    @Override
+    protected void deleteSelectedRows() {
+        RelationMembersFragment fragment = (RelationMembersFragment) caller;
+        List<MemberEntry> entries = fragment.getEntries();
+        int first = -1;
+        int last = -1;
+        int removed = 0;
+        // work backwards so that the positions stay valid
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            if (entries.get(i).selected) {
+                entries.remove(i);
+                fragment.memberRemoved(i);
+                if (last == -1) {
+                    last = i;
+                }
+                first = i;
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            fragment.membersChanged(first, Math.max(first, last - removed + 1));
+        }
     }
 
-    /**
-     * Check if we should force a scroll to the position
-     * 
-     * @param pos the position
-     * @param size the number of rows displayed
-     * @return true if we should scroll
-     */
-    private boolean forceScroll(@Nullable Integer pos, int size) {
-        return pos != null && (pos < 3 || pos > (size - 4));
+    @Override
+    protected void deselectRows() {
+        ((RelationMembersFragment) caller).clearSelection();
+    }
+
+    @Override
+    protected boolean hasSelectedRows(boolean skipHeaderRow) {
+        for (MemberEntry entry : ((RelationMembersFragment) caller).getEntries()) {
+            if (entry.selected) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -12,6 +12,8 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.res.Configuration;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -25,23 +27,24 @@ import android.widget.AutoCompleteTextView;
 import android.widget.CheckBox;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
-import android.widget.ScrollView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 import de.blau.android.App;
 import de.blau.android.HelpViewer;
 import de.blau.android.R;
 import de.blau.android.exception.UiStateException;
 import de.blau.android.osm.Node;
-import de.blau.android.osm.OsmElement;
 import de.blau.android.osm.Relation;
 import de.blau.android.osm.RelationMember;
 import de.blau.android.osm.RelationMemberDescription;
 import de.blau.android.osm.Server;
 import de.blau.android.osm.Way;
 import de.blau.android.prefs.Preferences;
+import de.blau.android.propertyeditor.MemberEntry.Connected;
 import de.blau.android.presets.Preset;
 import de.blau.android.presets.Preset.PresetItem;
 import de.blau.android.presets.PresetRole;
@@ -68,6 +71,9 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
 
     private LayoutInflater inflater = null;
 
+    private final List<MemberEntry> entries = new ArrayList<>();
+    private MemberAdapter           adapter = null;
+
     private ArrayList<RelationMemberDescription>                         savedMembers          = null;
     private long                                                         id                    = -1;
     private transient SavingHelper<ArrayList<RelationMemberDescription>> savingHelper          = new SavingHelper<>();
@@ -81,10 +87,6 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
     private static SelectedRowsActionModeCallback memberSelectedActionModeCallback = null;
     private static final Object                   actionModeCallbackLock           = new Object();
 
-    enum Connected {
-        NOT, UP, DOWN, BOTH, RING_TOP, RING, RING_BOTTOM, CLOSEDWAY, CLOSEDWAY_UP, CLOSEDWAY_DOWN, CLOSEDWAY_BOTH, CLOSEDWAY_RING
-    }
-
     /**
      * Create a new RelationMembersFragment instance
      * 
@@ -129,10 +131,12 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
 
         this.inflater = inflater;
-        ScrollView relationMembersLayout = (ScrollView) inflater.inflate(R.layout.members_view, null);
-        LinearLayout membersVerticalLayout = (LinearLayout) relationMembersLayout.findViewById(R.id.members_vertical_layout);
-        // membersVerticalLayout.setSaveFromParentEnabled(false);
-        membersVerticalLayout.setSaveEnabled(false);
+        LinearLayout relationMembersLayout = (LinearLayout) inflater.inflate(R.layout.members_view, null);
+        RecyclerView membersList = (RecyclerView) relationMembersLayout.findViewById(R.id.members_vertical_layout);
+        membersList.setSaveEnabled(false);
+        membersList.setLayoutManager(new LinearLayoutManager(getContext()));
+        // rows are rebound for every connection status change, animating that is just distracting
+        membersList.setItemAnimator(null);
 
         // if this is a relation get members
         ArrayList<RelationMemberDescription> members;
@@ -166,8 +170,9 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
         Server server = prefs.getServer();
         maxStringLength = server.getCachedCapabilities().getMaxStringLength();
 
-        loadMembers(membersVerticalLayout, members);
-        setIcons(membersVerticalLayout);
+        adapter = new MemberAdapter();
+        membersList.setAdapter(adapter);
+        loadMembers(members);
         CheckBox headerCheckBox = (CheckBox) relationMembersLayout.findViewById(R.id.header_member_selected);
         headerCheckBox.setOnCheckedChangeListener((buttonView, isChecked) -> {
             if (isChecked) {
@@ -181,274 +186,58 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
     }
 
     /**
-     * Creates rows from a List of RelationMemberDescriptions
+     * Creates entries from a List of RelationMemberDescriptions
      * 
      * @param members the list of members
      */
     private void loadMembers(@Nullable final ArrayList<RelationMemberDescription> members) {
-        LinearLayout membersVerticalLayout = (LinearLayout) getOurView();
-        loadMembers(membersVerticalLayout, members);
-    }
-
-    /**
-     * Creates rows from a List of RelationMemberDescriptions
-     * 
-     * @param membersVerticalLayout the layout holding the rows
-     * @param members the list of members
-     */
-    private void loadMembers(@NonNull LinearLayout membersVerticalLayout, @Nullable final ArrayList<RelationMemberDescription> members) {
-        membersVerticalLayout.removeAllViews();
-        if (members != null && !members.isEmpty()) {
-            for (int i = 0; i < members.size(); i++) {
-                RelationMemberDescription current = members.get(i);
-                insertNewMember(membersVerticalLayout, Integer.toString(i), current, -1, Connected.NOT, false);
+        entries.clear();
+        if (members != null) {
+            for (RelationMemberDescription rmd : members) {
+                entries.add(new MemberEntry(rmd));
             }
         }
+        MemberEntry.updateConnections(entries, 0, entries.size() - 1);
+        adapter.notifyDataSetChanged();
     }
 
     /**
-     * Loop over the the members and set the connection icon
+     * Get the current member entries
+     * 
+     * @return the List of MemberEntry backing the display
      */
-    void setIcons() {
-        setIcons((LinearLayout) getOurView());
+    @NonNull
+    List<MemberEntry> getEntries() {
+        return entries;
     }
 
     /**
-     * Loop over the the members and set the connection icon
-     *
-     * @param rowLayout the layout holding the rows
+     * Update the display after the members between from and to (inclusive) have changed
+     * 
+     * This recomputes the connection status incrementally and only rebinds the rows that are actually affected.
+     * Removals should already have been signalled to the adapter.
+     * 
+     * @param from the first changed position
+     * @param to the last changed position
      */
-    void setIcons(@NonNull LinearLayout rowLayout) {
-        int s = rowLayout.getChildCount();
-        Connected[] status = new Connected[s];
-        int ringStart = 0;
-        for (int i = 0; i < s; i++) {
-            RelationMemberRow row = (RelationMemberRow) rowLayout.getChildAt(i);
-            if (!row.getRelationMemberDescription().downloaded()) {
-                status[i] = Connected.NOT;
-                ringStart = i + 1; // next element
-                continue;
-            }
-            int pos = rowLayout.indexOfChild(row);
-            RelationMemberRow prev = null;
-            RelationMemberRow next = null;
-
-            prev = pos - 1 >= 0 ? ((RelationMemberRow) rowLayout.getChildAt(pos - 1)) : null;
-            next = pos + 1 < s ? ((RelationMemberRow) rowLayout.getChildAt(pos + 1)) : null;
-
-            RelationMemberRow current = row;
-            status[i] = getConnection(prev, current, next);
-
-            // check for ring
-            if ((status[i] == Connected.UP || status[i] == Connected.CLOSEDWAY_UP) && i != ringStart) {
-                RelationMemberRow ringStartMember = ((RelationMemberRow) rowLayout.getChildAt(ringStart));
-                if (current.getUnusedEnd() != null && ringStartMember.getUnusedEnd() != null && current.getUnusedEnd().equals(ringStartMember.getUnusedEnd())) {
-                    status[ringStart] = Connected.RING_TOP;
-                    status[i] = Connected.RING_BOTTOM;
-                    for (int j = ringStart + 1; j < i; j++) {
-                        if (status[j] == Connected.CLOSEDWAY_BOTH) {
-                            status[j] = Connected.CLOSEDWAY_RING;
-                        } else {
-                            status[j] = Connected.RING;
-                        }
-                    }
-                }
-                ringStart = i + 1; // next element
-            } else if (status[i] == Connected.NOT || status[i] == Connected.CLOSEDWAY) {
-                ringStart = i + 1; // next element
-            }
+    void membersChanged(int from, int to) {
+        final int size = entries.size();
+        if (from < size && from <= to) {
+            adapter.notifyItemRangeChanged(from, Math.min(to, size - 1) - from + 1);
         }
-        // actually set the icons
-        for (int i = 0; i < s; i++) {
-            RelationMemberRow row = (RelationMemberRow) rowLayout.getChildAt(i);
-            row.setIcon(getActivity(), row.getRelationMemberDescription(), status[i]);
+        int[] range = MemberEntry.updateConnections(entries, from, to);
+        if (range.length == 2) {
+            adapter.notifyItemRangeChanged(range[0], range[1] - range[0] + 1);
         }
     }
 
     /**
-     * Determine how the current member is connected to the previous and following one
+     * Signal that a member has been removed
      * 
-     * @param previousRow the previous row
-     * @param currentRow the current row
-     * @param nextRow the next row
-     * @return a Connected value describing the connection
+     * @param position the former position of the member
      */
-    private Connected getConnection(@Nullable RelationMemberRow previousRow, @NonNull RelationMemberRow currentRow, @Nullable RelationMemberRow nextRow) {
-        Connected result = Connected.NOT;
-        RelationMemberDescription previous = previousRow != null ? previousRow.getRelationMemberDescription() : null;
-        RelationMemberDescription current = currentRow.getRelationMemberDescription();
-        RelationMemberDescription next = nextRow != null ? nextRow.getRelationMemberDescription() : null;
-        synchronized (current) {
-            String currentType = current.getType();
-            if (current.getElement() == null) {
-                // FIXME this seems to happen on restore in not quite clear circumstances
-                Log.e(DEBUG_TAG, "Element not downloaded for " + current.getDescription());
-                current.update();
-                return result;
-            }
-            if (Way.NAME.equals(currentType)) {
-                Way w = (Way) current.getElement();
-                currentRow.up = null;
-                currentRow.down = null;
-                if (w.isClosed()) {
-                    result = Connected.CLOSEDWAY;
-                    if (previous != null) {
-                        synchronized (previous) {
-                            if (previous.downloaded()) {
-                                if (Way.NAME.equals(previous.getType())) {
-                                    if (previousRow.down != null) {
-                                        result = Connected.CLOSEDWAY_UP;
-                                        currentRow.up = previousRow.down;
-                                    }
-                                } else if (Node.NAME.equals(previous.getType())) {
-                                    Node prevNode = (Node) previous.getElement();
-                                    if (w.hasNode(prevNode)) {
-                                        result = Connected.CLOSEDWAY_UP;
-                                        currentRow.up = prevNode;
-                                    }
-                                } else {
-                                    // FIXME previous is a relation and we could in principle check if we can connect to
-                                    // it
-                                }
-                            }
-                        }
-                    }
-                    if (next != null) {
-                        synchronized (next) {
-                            if (next.downloaded()) {
-                                OsmElement nextElement = next.getElement();
-                                if (Way.NAME.equals(next.getType())) {
-                                    Way nextWay = (Way) nextElement;
-                                    Node nextFirst = nextWay.getFirstNode();
-                                    Node nextLast = nextWay.getLastNode();
-                                    if (w.hasNode(nextLast) || w.hasNode(nextFirst)) {
-                                        if (result == Connected.CLOSEDWAY_UP) {
-                                            result = Connected.CLOSEDWAY_BOTH;
-                                        } else {
-                                            result = Connected.CLOSEDWAY_DOWN;
-                                        }
-                                        currentRow.down = w.hasNode(nextLast) ? nextLast : nextFirst;
-                                    }
-                                } else if (Node.NAME.equals(next.getType())) {
-                                    Node nextNode = (Node) nextElement;
-                                    if (w.hasNode(nextNode)) {
-                                        if (result == Connected.CLOSEDWAY_UP) {
-                                            result = Connected.CLOSEDWAY_BOTH;
-                                        } else {
-                                            result = Connected.CLOSEDWAY_DOWN;
-                                        }
-                                        currentRow.down = nextNode;
-                                    }
-                                } else {
-                                    // FIXME next is a relation and we could in principle check if we can connect to it
-                                }
-                            }
-                        }
-                    }
-                } else {
-                    Node notused = null;
-                    Node first = w.getFirstNode();
-                    Node last = w.getLastNode();
-                    if (previous != null) {
-                        synchronized (previous) {
-                            if (previous.downloaded()) {
-                                if (Way.NAME.equals(previous.getType())) {
-                                    if (previousRow.down != null) {
-                                        currentRow.up = previousRow.down;
-                                        if (currentRow.up.equals(first)) {
-                                            notused = last;
-                                        } else {
-                                            notused = first;
-                                        }
-                                        result = Connected.UP;
-                                    }
-                                } else if (Node.NAME.equals(previous.getType())) {
-                                    Node prevNode = (Node) previous.getElement();
-                                    if (prevNode.equals(first)) {
-                                        notused = last;
-                                        result = Connected.UP;
-                                        currentRow.up = first;
-                                    } else if (prevNode.equals(last)) {
-                                        notused = first;
-                                        result = Connected.UP;
-                                        currentRow.up = last;
-                                    }
-                                } else {
-                                    // FIXME previous is a relation and we could in principle check if we can connect to
-                                    // it
-                                }
-                            }
-                        }
-                    }
-                    if (next != null) {
-                        synchronized (next) {
-                            if (next.downloaded()) {
-                                OsmElement nextElement = next.getElement();
-                                if (Way.NAME.equals(next.getType())) {
-                                    Way nextWay = (Way) nextElement;
-                                    if (nextWay.isClosed()) {
-                                        if (notused == null && (nextWay.hasNode(first) || nextWay.hasNode(last))) {
-                                            result = Connected.DOWN;
-                                            currentRow.down = nextWay.hasNode(first) ? first : last;
-                                        } else if (nextWay.hasNode(notused)) {
-                                            result = Connected.BOTH;
-                                            currentRow.down = notused;
-                                        }
-                                    } else {
-                                        Node nextFirst = nextWay.getFirstNode();
-                                        Node nextLast = nextWay.getLastNode();
-                                        if (notused == null
-                                                && (nextLast.equals(first) || nextFirst.equals(first) || nextLast.equals(last) || nextFirst.equals(last))) {
-                                            result = Connected.DOWN;
-                                            currentRow.down = nextLast.equals(first) || nextFirst.equals(first) ? first : last;
-                                        } else if (nextLast.equals(notused) || nextFirst.equals(notused)) {
-                                            result = Connected.BOTH;
-                                            currentRow.down = notused;
-                                        }
-                                    }
-                                } else if (Node.NAME.equals(next.getType())) {
-                                    Node nextNode = (Node) nextElement;
-                                    if (notused == null && (nextNode.equals(first) || nextNode.equals(last))) {
-                                        result = Connected.DOWN;
-                                        currentRow.down = nextNode.equals(first) ? first : last;
-                                    } else if (nextNode.equals(notused)) {
-                                        result = Connected.BOTH;
-                                        currentRow.down = notused;
-                                    }
-                                } else {
-                                    // FIXME next is a relation and we could in principle check if we can connect to it
-                                }
-                            }
-                        }
-                    }
-                }
-            } else if (Node.NAME.equals(currentType)) {
-                Node n = (Node) current.getElement();
-                if (previous != null) {
-                    synchronized (previous) {
-                        if (Way.NAME.equals(previous.getType()) && previous.downloaded()) {
-                            if (((Way) previous.getElement()).getLastNode().equals(n) || ((Way) previous.getElement()).getFirstNode().equals(n)) {
-                                result = Connected.UP;
-                            }
-                        }
-                    }
-                }
-                if (next != null) {
-                    synchronized (next) {
-                        if (Way.NAME.equals(next.getType()) && next.downloaded()) {
-                            if (((Way) next.getElement()).getLastNode().equals(n) || ((Way) next.getElement()).getFirstNode().equals(n)) {
-                                if (result == Connected.UP) {
-                                    result = Connected.BOTH;
-                                } else {
-                                    result = Connected.DOWN;
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return result;
+    void memberRemoved(int position) {
+        adapter.notifyItemRemoved(position);
     }
 
     @Override
@@ -474,54 +263,90 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
     }
 
     /**
-     * Insert a new row with a relation member
-     * 
-     * @param membersVerticalLayout the Layout holding the rowa
-     * @param pos (currently unused)
-     * @param rmd information on the relation member
-     * @param position the position where this should be inserted. set to -1 to insert at end, or 0 to insert at
-     *            beginning.
-     * @param c connection type
-     * @param select if true select this row
-     * @return The new RelationMemberRow.
+     * Adapter that binds the member entries to recycled rows
      */
-    RelationMemberRow insertNewMember(final LinearLayout membersVerticalLayout, final String pos, final RelationMemberDescription rmd, final int position,
-            final Connected c, boolean select) {
-        RelationMemberRow row = null;
+    private class MemberAdapter extends RecyclerView.Adapter<MemberAdapter.MemberViewHolder> {
 
-        if (rmd.downloaded()) {
-            row = (RelationMemberRow) inflater.inflate(R.layout.relation_member_downloaded_row, membersVerticalLayout, false);
-        } else {
-            row = (RelationMemberRow) inflater.inflate(R.layout.relation_member_row, membersVerticalLayout, false);
-        }
+        private static final int NOT_DOWNLOADED = 0;
+        private static final int DOWNLOADED     = 1;
 
-        row.setValues(getActivity(), pos, rmd, c);
+        class MemberViewHolder extends RecyclerView.ViewHolder {
+            final RelationMemberRow row;
 
-        // need to do this before the listener is set
-        if (select) {
-            row.select();
+            /**
+             * Create a new ViewHolder
+             * 
+             * @param row the RelationMemberRow
+             */
+            MemberViewHolder(@NonNull RelationMemberRow row) {
+                super(row);
+                this.row = row;
+            }
         }
 
-        row.roleEdit.addTextChangedListener(new SanitizeTextWatcher(getActivity(), maxStringLength));
+        @Override
+        public int getItemViewType(int position) {
+            return entries.get(position).rmd.downloaded() ? DOWNLOADED : NOT_DOWNLOADED;
+        }
 
-        membersVerticalLayout.addView(row, (position == -1) ? membersVerticalLayout.getChildCount() : position);
+        @Override
+        public MemberViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            final RelationMemberRow row = (RelationMemberRow) inflater
+                    .inflate(viewType == DOWNLOADED ? R.layout.relation_member_downloaded_row : R.layout.relation_member_row, parent, false);
+            row.roleEdit.addTextChangedListener(new SanitizeTextWatcher(getActivity(), maxStringLength));
+            row.roleEdit.addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                    // unused
+                }
 
-        row.selected.setOnCheckedChangeListener((buttonView, isChecked) -> {
-            if (isChecked) {
-                memberSelected(membersVerticalLayout);
-            } else {
-                deselectRow();
-            }
-        });
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                    // unused
+                }
+
+                @Override
+                public void afterTextChanged(Editable s) {
+                    if (row.entry != null) {
+                        row.entry.rmd.setRole(s.toString());
+                    }
+                }
+            });
+            row.selected.setOnCheckedChangeListener((buttonView, isChecked) -> {
+                MemberEntry entry = row.entry;
+                if (entry == null || entry.selected == isChecked) {
+                    return; // set while binding
+                }
+                entry.selected = isChecked;
+                if (isChecked) {
+                    memberSelected();
+                } else {
+                    deselectRow();
+                }
+            });
+            return new MemberViewHolder(row);
+        }
 
-        return row;
+        @Override
+        public void onBindViewHolder(MemberViewHolder holder, int position) {
+            MemberEntry entry = entries.get(position);
+            holder.row.setValues(entry);
+            holder.row.setIcon(getActivity(), entry.rmd, entry.connected);
+        }
+
+        @Override
+        public int getItemCount() {
+            return entries.size();
+        }
     }
 
     /**
      * A row representing an editable member of a relation, consisting of edits for role and display of other values and
      * a delete button.
+     * 
+     * Rows are recycled, the state of the member is held in the bound MemberEntry.
      */
-    public static class RelationMemberRow extends LinearLayout implements SelectedRowsActionModeCallback.Row {
+    public static class RelationMemberRow extends LinearLayout {
 
         private PropertyEditor       owner;
         private CheckBox             selected;
@@ -529,13 +354,7 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
         private ImageView            typeView;
         private TextView             elementView;
 
-        /**
-         * used for storing which end of a way was used for what
-         */
-        transient Node up   = null;
-        transient Node down = null;
-
-        private RelationMemberDescription rmd;
+        private MemberEntry entry;
 
         /**
          * Construct a new row
@@ -607,21 +426,16 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
         /**
          * Sets the per row values for a relation member
          * 
-         * @param ctx Android Context (not used)
-         * @param pos position (not used)
-         * @param rmd the information on the relation member
-         * @param c Connected status (not used)
+         * @param entry the MemberEntry for the relation member
          * @return RelationMemberRow object for convenience
          */
-        public RelationMemberRow setValues(Context ctx, String pos, RelationMemberDescription rmd, Connected c) {
-
-            String desc = rmd.getDescription();
-            this.rmd = rmd;
+        public RelationMemberRow setValues(@NonNull MemberEntry entry) {
+            this.entry = entry;
+            RelationMemberDescription rmd = entry.rmd;
             roleEdit.setText(rmd.getRole());
-
-            // setIcon(ctx, rmd, c);
             typeView.setTag(rmd.getType());
-            elementView.setText(desc);
+            elementView.setText(rmd.getDescription());
+            selected.setChecked(entry.selected);
             return this;
         }
 
@@ -640,7 +454,7 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
          * @return a RelationMemberDescription
          */
         public RelationMemberDescription getRelationMemberDescription() {
-            return rmd;
+            return entry.rmd;
         }
 
         /**
@@ -727,34 +541,13 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
             }
         }
 
-        /**
-         * If the row element is a Way return an unused end
-         * 
-         * @return the Ndoe at the unused end or null
-         */
-        @Nullable
-        public Node getUnusedEnd() {
-            OsmElement e = rmd.getElement();
-            if (e instanceof Way) {
-                Node first = ((Way) e).getFirstNode();
-                Node last = ((Way) e).getLastNode();
-                if (up != null && down == null) {
-                    return up.equals(first) ? last : first;
-                }
-                if (up == null && down != null) {
-                    return down.equals(first) ? last : first;
-                }
-            }
-            return null;
-        }
-
         /**
          * Get the id of the element this row is for
          * 
          * @return the OSM id
          */
         public long getOsmId() {
-            return rmd.getRef();
+            return entry.rmd.getRef();
         }
 
         /**
@@ -768,67 +561,14 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
         }
 
         /**
-         * Deletes this row
-         */
-        @Override
-        public void delete() {
-            if (owner != null) {
-                View cf = owner.getCurrentFocus();
-                if (cf == roleEdit) {
-                    // owner.focusRow(0); // FIXME focus is on this row
-                }
-                LinearLayout membersVerticalLayout = (LinearLayout) owner.relationMembersFragment.getOurView();
-                membersVerticalLayout.removeView(this);
-                membersVerticalLayout.invalidate();
-            } else {
-                Log.d("PropertyEditor", "deleteRow owner null");
-            }
-        }
-
-        /**
-         * Checks if the fields in this row are empty
+         * Check if the role field is empty
          * 
-         * @return true if both fields are empty, false if at least one is filled
+         * @return true if the role is empty
          */
         public boolean isEmpty() {
             return "".equals(roleEdit.getText().toString().trim());
         }
 
-        // return the status of the checkbox
-        @Override
-        public boolean isSelected() {
-            return selected.isChecked();
-        }
-
-        /**
-         * Select this row
-         */
-        public void select() {
-            selected.setChecked(true);
-        }
-
-        /**
-         * De-select this row
-         */
-        @Override
-        public void deselect() {
-            selected.setChecked(false);
-        }
-
-        /**
-         * Disable the checkbox for this row
-         */
-        public void disableCheckBox() {
-            selected.setEnabled(false);
-        }
-
-        /**
-         * Enable the checkbox for this row
-         */
-        protected void enableCheckBox() {
-            selected.setEnabled(true);
-        }
-
         /**
          * Create an ArrayAdapter containing role values for a certain member Note: this uses the tags of the first
          * element if multiple are selected to determine which preset to use
@@ -838,6 +578,7 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
         @NonNull
         ArrayAdapter<PresetRole> getMemberRoleAutocompleteAdapter() { // FIXME for multiselect
             List<PresetRole> roles = new ArrayList<>();
+            RelationMemberDescription rmd = entry.rmd;
             List<LinkedHashMap<String, String>> allTags = owner.getUpdatedTags();
             if (allTags != null && !allTags.isEmpty()) {
                 if (owner.presets != null) { //
@@ -874,13 +615,11 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
 
     /**
      * Start the ActionMode for when an element is selected
-     * 
-     * @param rowLayout the Layout holding the element rows
      */
-    private void memberSelected(@NonNull LinearLayout rowLayout) {
+    private void memberSelected() {
         synchronized (actionModeCallbackLock) {
             if (memberSelectedActionModeCallback == null) {
-                memberSelectedActionModeCallback = new RelationMemberSelectedActionModeCallback(this, rowLayout);
+                memberSelectedActionModeCallback = new RelationMemberSelectedActionModeCallback(this);
                 ((AppCompatActivity) getActivity()).startSupportActionMode(memberSelectedActionModeCallback);
             }
             memberSelectedActionModeCallback.invalidate();
@@ -902,58 +641,33 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
 
     @Override
     public void selectAllRows() { // selects all members
-        final LinearLayout rowLayout = (LinearLayout) getOurView();
-        rowLayout.post( // as there can be a very large number of rows don't do it here
-                () -> {
-                    int i = rowLayout.getChildCount();
-                    while (--i >= 0) {
-                        RelationMemberRow row = (RelationMemberRow) rowLayout.getChildAt(i);
-                        if (row.selected.isEnabled()) {
-                            row.selected.setChecked(true);
-                        }
-                    }
-                });
+        if (entries.isEmpty()) {
+            return;
+        }
+        for (MemberEntry entry : entries) {
+            entry.selected = true;
+        }
+        adapter.notifyDataSetChanged();
+        memberSelected();
     }
 
     @Override
     public void deselectAllRows() { // deselects all members
-        final LinearLayout rowLayout = (LinearLayout) getOurView();
-        rowLayout.post( // as there can be a very large number of rows don't do it here
-                () -> {
-                    int i = rowLayout.getChildCount();
-                    while (--i >= 0) {
-                        RelationMemberRow row = (RelationMemberRow) rowLayout.getChildAt(i);
-                        if (row.selected.isEnabled()) {
-                            row.selected.setChecked(false);
-                        }
-                    }
-                });
+        clearSelection();
+        deselectRow();
     }
 
     /**
+     * De-select all members without touching the ActionMode
      */
-    private interface RelationMemberHandler {
-        /**
-         * Process the contents of a RelationMemberRow
-         * 
-         * @param row the RelationMemberRow
-         */
-        void handleRelationMember(final RelationMemberRow row);
-    }
-
-    /**
-     * Perform some processing for each row in the relation members view.
-     * 
-     * @param handler The handler that will be called for each rowr.
-     */
-
-    private void processRelationMembers(final RelationMemberHandler handler) {
-        LinearLayout relationMembersLayout = (LinearLayout) getOurView();
-        final int size = relationMembersLayout.getChildCount();
-        for (int i = 0; i < size; ++i) { // -> avoid header
-            View view = relationMembersLayout.getChildAt(i);
-            RelationMemberRow row = (RelationMemberRow) view;
-            handler.handleRelationMember(row);
+    void clearSelection() {
+        boolean changed = false;
+        for (MemberEntry entry : entries) {
+            changed |= entry.selected;
+            entry.selected = false;
+        }
+        if (changed) {
+            adapter.notifyDataSetChanged();
         }
     }
 
@@ -986,13 +700,13 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
             }
         }
 
-        processRelationMembers(row -> {
-            String type = ((String) row.typeView.getTag()).trim();
-            String role = row.roleEdit.getText().toString().trim();
-            String desc = row.elementView.getText().toString().trim();
-            RelationMemberDescription rmd = new RelationMemberDescription(type, row.rmd.getRef(), role, desc);
+        for (MemberEntry entry : entries) {
+            String type = entry.rmd.getType().trim();
+            String role = entry.rmd.getRole().trim();
+            String desc = entry.rmd.getDescription().trim();
+            RelationMemberDescription rmd = new RelationMemberDescription(type, entry.rmd.getRef(), role, desc);
             members.add(rmd);
-            Set<String> originalRoles = originalMembesRoles.get(type + row.rmd.getRef());
+            Set<String> originalRoles = originalMembesRoles.get(type + entry.rmd.getRef());
             if (!"".equals(role) && !originalRoles.contains(role)) {
                 // only add if the role wasn't in use before
                 if (presetItem != null) {
@@ -1001,7 +715,7 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
                     App.getMruTags().putRole(role);
                 }
             }
-        });
+        }
         return members;
     }
 
@@ -1021,8 +735,10 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
             doRevert();
             return true;
         case R.id.tag_menu_top:
+            scrollToPosition(0);
+            return true;
         case R.id.tag_menu_bottom:
-            scrollToRow(null, item.getItemId() == R.id.tag_menu_top, false);
+            scrollToPosition(entries.size() - 1);
             return true;
         case R.id.tag_menu_select_all:
             selectAllRows();
@@ -1046,7 +762,6 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
             }
         }
         loadMembers(members);
-        setIcons();
     }
 
     @Override
@@ -1056,14 +771,14 @@ public class RelationMembersFragment extends BaseFragment implements PropertyRow
     }
 
     /**
-     * Scroll the current View so that a row is visible
+     * Scroll the member list so that a row is visible
      * 
-     * @param row the row to display, if null scroll to top or bottom of sv
-     * @param up if true scroll to top if row is null, otherwise scroll to bottom
-     * @param force if true always try to scroll even if row is already on screen
+     * @param position the position of the row to display
      */
-    public void scrollToRow(@Nullable final View row, final boolean up, boolean force) {
-        Util.scrollToRow(getView(), row, up, force);
+    public void scrollToPosition(int position) {
+        if (position >= 0 && position < entries.size()) {
+            ((RecyclerView) getOurView()).scrollToPosition(position);
+        }
     }
 
     /**
@@ -18,15 +18,12 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
-import android.view.ViewParent;
-import android.widget.AdapterView;
-import android.widget.AdapterView.OnItemSelectedListener;
 import android.widget.ArrayAdapter;
 import android.widget.AutoCompleteTextView;
 import android.widget.CheckBox;
 import android.widget.LinearLayout;
 import android.widget.ScrollView;
-import android.widget.Spinner;
+import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
@@ -54,7 +51,7 @@ import de.blau.android.util.collections.MultiHashMap;
  * @author Simon Poole
  *
  */
-public class RelationMembershipFragment extends BaseFragment implements PropertyRows, OnItemSelectedListener {
+public class RelationMembershipFragment extends BaseFragment implements PropertyRows {
     private static final String DEBUG_TAG = RelationMembershipFragment.class.getSimpleName();
 
     private static final String PARENTS_KEY      = "parents";
@@ -72,9 +69,6 @@ public class RelationMembershipFragment extends BaseFragment implements Property
     private static SelectedRowsActionModeCallback parentSelectedActionModeCallback = null;
     private static final Object                   actionModeCallbackLock           = new Object();
 
-    private ArrayAdapter<RelationHolder> relationAdapter;
-    private List<RelationHolder>         relationHolderList;
-
     /**
      * Create a new RelationMembershipFragment instance
      * 
@@ -143,19 +137,6 @@ public class RelationMembershipFragment extends BaseFragment implements Property
         Server server = prefs.getServer();
         maxStringLength = server.getCachedCapabilities().getMaxStringLength();
 
-        // generate a list and an ArrayAdapter of all Relations in Storage
-        // this can, naturally be fairly long and the question is if we could do
-        // something else
-        relationHolderList = new ArrayList<>();
-        final Context context = getContext();
-
-        relationHolderList.add(new RelationHolder(context, null));
-        for (Relation r : App.getDelegator().getCurrentStorage().getRelations()) {
-            relationHolderList.add(new RelationHolder(context, r));
-        }
-        // Adapter containing all Relations
-        relationAdapter = new ArrayAdapter<>(getActivity(), R.layout.autocomplete_row, relationHolderList);
-
         loadParents(membershipVerticalLayout, parents, elementType);
 
         CheckBox headerCheckBox = (CheckBox) parentRelationsLayout.findViewById(R.id.header_membership_selected);
@@ -233,20 +214,20 @@ public class RelationMembershipFragment extends BaseFragment implements Property
      * @param memberPos position of the member in the relation member list
      * @param position the position where this should be inserted. set to -1 to insert at end, or 0 to insert at
      *            beginning.
-     * @param showSpinner show the role spinner on insert
+     * @param showPicker show the relation picker on insert
      * @return the new RelationMembershipRow
      */
     private RelationMembershipRow insertNewMembership(@NonNull LinearLayout membershipVerticalLayout, final String role, @Nullable final Relation r,
-            @NonNull String elementType, int memberPos, final int position, boolean showSpinner) {
+            @NonNull String elementType, int memberPos, final int position, boolean showPicker) {
         RelationMembershipRow row = (RelationMembershipRow) inflater.inflate(R.layout.relation_membership_row, membershipVerticalLayout, false);
 
         if (r != null) {
-            row.setValues(role, r, elementType, memberPos, relationAdapter, relationHolderList);
+            row.setValues(role, r, elementType, memberPos);
         } else {
-            row.setRelationAdapter(relationAdapter);
+            row.elementType = elementType;
         }
         membershipVerticalLayout.addView(row, (position == -1) ? membershipVerticalLayout.getChildCount() : position);
-        row.setShowSpinner(showSpinner);
+        row.setShowPicker(showPicker);
 
         row.roleEdit.addTextChangedListener(new SanitizeTextWatcher(getActivity(), maxStringLength));
 
@@ -261,27 +242,6 @@ public class RelationMembershipFragment extends BaseFragment implements Property
         return row;
     }
 
-    static class RelationHolder {
-        final Relation relation;
-        final Context  ctx;
-
-        /**
-         * Wrapper around relations so that we can display a nice String
-         * 
-         * @param ctx an Android Context
-         * @param relation the Relation
-         */
-        RelationHolder(@NonNull Context ctx, @Nullable Relation relation) {
-            this.ctx = ctx;
-            this.relation = relation;
-        }
-
-        @Override
-        public String toString() {
-            return relation == null ? "" : relation.getDescription(ctx);
-        }
-    }
-
     /**
      * A row representing a parent relation with an edit for role and further values and a delete button.
      */
@@ -292,8 +252,8 @@ public class RelationMembershipFragment extends BaseFragment implements Property
         private long                 relationId     = UNSET; // flag value for new relation memberships
         private CheckBox             selected;
         private AutoCompleteTextView roleEdit;
-        private Spinner              parentEdit;
-        private boolean              showSpinner    = false;
+        private TextView             parentEdit;
+        private boolean              showPicker     = false;
         private String               elementType    = null;
         private PresetItem           relationPreset = null;
         private int                  position;
@@ -332,9 +292,8 @@ public class RelationMembershipFragment extends BaseFragment implements Property
             roleEdit = (AutoCompleteTextView) findViewById(R.id.editRole);
             roleEdit.setOnKeyListener(PropertyEditor.myKeyListener);
 
-            parentEdit = (Spinner) findViewById(R.id.editParent);
-
-            parentEdit.setOnItemSelectedListener(owner.relationMembershipFragment);
+            parentEdit = (TextView) findViewById(R.id.editParent);
+            parentEdit.setOnClickListener(v -> RelationPicker.buildDialog(owner, this::setRelation).show());
 
             roleEdit.setOnFocusChangeListener((v, hasFocus) -> {
                 if (hasFocus) {
@@ -430,59 +389,30 @@ public class RelationMembershipFragment extends BaseFragment implements Property
          * @param position the the selected elements position in the list of members
          * @return the RelationMembershipRow object for convenience
          */
-        public RelationMembershipRow setValues(@NonNull String role, @NonNull Relation r, @NonNull String elementType, int position,
-                @NonNull ArrayAdapter<RelationHolder> relationAdapter, @NonNull List<RelationHolder> relationHolderList) {
+        public RelationMembershipRow setValues(@NonNull String role, @NonNull Relation r, @NonNull String elementType, int position) {
             relationId = r.getOsmId();
             roleEdit.setText(role);
-            parentEdit.setAdapter(relationAdapter);
-            parentEdit.setSelection(getRelationIndex(relationHolderList, r));
+            parentEdit.setText(r.getDescription(getContext()));
             this.elementType = elementType;
             this.position = position;
             return this;
         }
 
-        /**
-         * Get the index of the specified Relation
-         * 
-         * @param relationHolderList the list of relations
-         * @param r the Relation
-         * @return the index
-         */
-        private int getRelationIndex(@NonNull List<RelationHolder> relationHolderList, @NonNull Relation r) {
-            int i = 0;
-            for (RelationHolder rh : relationHolderList) {
-                if (r.equals(rh.relation)) {
-                    return i;
-                }
-                i++;
-            }
-            return 0;
-        }
-
-        /**
-         * Set the adapter containing all Relations
-         * 
-         * @param relationAdapter the adapter
-         */
-        public void setRelationAdapter(@NonNull ArrayAdapter<RelationHolder> relationAdapter) {
-            parentEdit.setAdapter(relationAdapter);
-        }
-
         /**
          * Sets the Relation for this row
          * 
-         * @param relationPos the position in the adapter
          * @param r the Relation to set for this row
          * @return the RelationMembershipRow object for convenience
          */
-        public RelationMembershipRow setRelation(int relationPos, @Nullable Relation r) {
+        public RelationMembershipRow setRelation(@Nullable Relation r) {
             if (r != null) {
                 relationId = r.getOsmId();
-                parentEdit.setSelection(relationPos);
+                parentEdit.setText(r.getDescription(getContext()));
                 position = r.getMembers().size(); // last position
                 Log.d(DEBUG_TAG, "Set parent relation to " + relationId + " " + r.getDescription());
             } else {
                 relationId = UNSET;
+                parentEdit.setText("");
             }
             relationPreset = null; // zap to force it to be re-calculated
             roleEdit.setAdapter(getMembershipRoleAutocompleteAdapter()); // update
@@ -518,14 +448,14 @@ public class RelationMembershipFragment extends BaseFragment implements Property
         }
 
         /**
-         * awful hack to show spinner after insert
+         * awful hack to show the relation picker after insert
          */
         @Override
         public void onWindowFocusChanged(boolean hasFocus) {
             super.onWindowFocusChanged(hasFocus);
-            if (showSpinner) {
+            if (showPicker && hasFocus) {
+                showPicker = false;
                 parentEdit.performClick();
-                showSpinner = false;
             }
         }
 
@@ -555,12 +485,12 @@ public class RelationMembershipFragment extends BaseFragment implements Property
         }
 
         /**
-         * Set if the spinner should be shown
+         * Set if the relation picker should be shown
          * 
-         * @param showSpinner if true the spinner is shown
+         * @param showPicker if true the picker is shown
          */
-        public void setShowSpinner(boolean showSpinner) {
-            this.showSpinner = showSpinner;
+        public void setShowPicker(boolean showPicker) {
+            this.showPicker = showPicker;
         }
     } // RelationMembershipRow
 
@@ -674,28 +604,6 @@ public class RelationMembershipFragment extends BaseFragment implements Property
         return parents;
     }
 
-    @Override
-    public void onItemSelected(AdapterView<?> parent, View view, int pos, long id) {
-        // An item was selected. You can retrieve the selected item using
-        // parent.getItemAtPosition(pos)
-        Relation relation = ((RelationHolder) parent.getItemAtPosition(pos)).relation;
-        if (view != null) {
-            Log.d(DEBUG_TAG, relation != null ? relation.getDescription() : "no selection");
-            ViewParent pv = view.getParent();
-            while (!(pv instanceof RelationMembershipRow)) {
-                pv = pv.getParent();
-            }
-            ((RelationMembershipRow) pv).setRelation(pos, relation);
-        } else {
-            Log.d(DEBUG_TAG, "onItemselected view is null");
-        }
-    }
-
-    @Override
-    public void onNothingSelected(AdapterView<?> parent) {
-        // Another interface callback
-    }
-
     @Override
     public void onCreateOptionsMenu(final Menu menu, final MenuInflater inflater) {
         super.onCreateOptionsMenu(menu, inflater);
@@ -0,0 +1,268 @@
+package de.blau.android.propertyeditor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import android.content.Context;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AlertDialog.Builder;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import de.blau.android.App;
+import de.blau.android.R;
+import de.blau.android.osm.Relation;
+import de.blau.android.util.ThemeUtils;
+
+/**
+ * Searchable list of the relations in storage
+ *
+ * Relations are only matched and described when they are actually displayed, matches are collected a page at a time
+ * as the list is scrolled, so that opening the picker is cheap even with a very large number of relations loaded.
+ *
+ * @author simon
+ *
+ */
+final class RelationPicker {
+
+    static final int PAGE_SIZE = 50;
+
+    interface OnRelationPickedListener {
+        /**
+         * Call back for when a Relation has been picked
+         *
+         * @param relation the Relation
+         */
+        void picked(@NonNull Relation relation);
+    }
+
+    /**
+     * Private constructor to stop instantiation
+     */
+    private RelationPicker() {
+        // private
+    }
+
+    /**
+     * Create a dialog allowing a relation to be picked
+     *
+     * @param context an Android Context
+     * @param listener called when a relation has been picked
+     * @return a dialog
+     */
+    @NonNull
+    static AlertDialog buildDialog(@NonNull Context context, @NonNull final OnRelationPickedListener listener) {
+        Builder builder = new AlertDialog.Builder(context);
+        final LayoutInflater themedInflater = ThemeUtils.getLayoutInflater(context);
+        final View layout = themedInflater.inflate(R.layout.relation_picker_dialog, null);
+        builder.setView(layout);
+        builder.setTitle(R.string.select_relation_title);
+        builder.setNegativeButton(R.string.cancel, null);
+        final AlertDialog dialog = builder.create();
+
+        RecyclerView relationList = (RecyclerView) layout.findViewById(R.id.relationList);
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(context);
+        relationList.setLayoutManager(layoutManager);
+        final Adapter adapter = new Adapter(themedInflater, new Matcher(App.getDelegator().getCurrentStorage().getRelations()), relation -> {
+            dialog.dismiss();
+            listener.picked(relation);
+        });
+        relationList.setAdapter(adapter);
+        relationList.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PAGE_SIZE / 2) {
+                    recyclerView.post(adapter::nextPage);
+                }
+            }
+        });
+
+        EditText search = (EditText) layout.findViewById(R.id.relationSearch);
+        search.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                // unused
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                // unused
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                adapter.setFilter(s.toString());
+            }
+        });
+        return dialog;
+    }
+
+    /**
+     * Collects matching relations a page at a time
+     */
+    static class Matcher {
+        private final List<Relation> relations;
+        private final List<Relation> matches = new ArrayList<>();
+        private String               filter  = null;
+        private int                  next    = 0;
+
+        /**
+         * Construct a new Matcher
+         *
+         * @param relations the relations to pick from
+         */
+        Matcher(@NonNull List<Relation> relations) {
+            this.relations = relations;
+        }
+
+        /**
+         * Restart matching with a new filter
+         *
+         * @param filter the string the description or id must contain, null or empty for all relations
+         */
+        void setFilter(@Nullable String filter) {
+            this.filter = filter == null || "".equals(filter.trim()) ? null : filter.trim().toLowerCase(Locale.US);
+            matches.clear();
+            next = 0;
+        }
+
+        /**
+         * Add up to PAGE_SIZE further matches
+         *
+         * @return the number of added matches
+         */
+        int nextPage() {
+            int added = 0;
+            final int size = relations.size();
+            while (next < size && added < PAGE_SIZE) {
+                Relation r = relations.get(next++);
+                if (matches(r)) {
+                    matches.add(r);
+                    added++;
+                }
+            }
+            return added;
+        }
+
+        /**
+         * Check if a Relation matches the current filter
+         *
+         * @param r the Relation
+         * @return true if it matches
+         */
+        private boolean matches(@NonNull Relation r) {
+            if (filter == null) {
+                return true;
+            }
+            return Long.toString(r.getOsmId()).contains(filter) || r.getDescription().toLowerCase(Locale.US).contains(filter);
+        }
+
+        /**
+         * Get the matches found so far
+         *
+         * @return a List of Relation
+         */
+        @NonNull
+        List<Relation> getMatches() {
+            return matches;
+        }
+
+        /**
+         * Check if there could be further matches
+         *
+         * @return true if not all relations have been checked
+         */
+        boolean hasMore() {
+            return next < relations.size();
+        }
+    }
+
+    private static class Adapter extends RecyclerView.Adapter<Adapter.ViewHolder> {
+        private final LayoutInflater           inflater;
+        private final Matcher                  matcher;
+        private final OnRelationPickedListener listener;
+
+        static class ViewHolder extends RecyclerView.ViewHolder {
+            final TextView text;
+
+            /**
+             * Create a new ViewHolder
+             *
+             * @param text the TextView that will be displayed
+             */
+            ViewHolder(@NonNull TextView text) {
+                super(text);
+                this.text = text;
+            }
+        }
+
+        /**
+         * Create a new adapter
+         *
+         * @param inflater a themed LayoutInflater
+         * @param matcher the Matcher supplying the relations
+         * @param listener called when a relation has been clicked
+         */
+        Adapter(@NonNull LayoutInflater inflater, @NonNull Matcher matcher, @NonNull OnRelationPickedListener listener) {
+            this.inflater = inflater;
+            this.matcher = matcher;
+            this.listener = listener;
+            matcher.nextPage();
+        }
+
+        @Override
+        public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            final ViewHolder holder = new ViewHolder((TextView) inflater.inflate(R.layout.autocomplete_row, parent, false));
+            holder.text.setOnClickListener(v -> {
+                int position = holder.getAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) {
+                    listener.picked(matcher.getMatches().get(position));
+                }
+            });
+            return holder;
+        }
+
+        @Override
+        public void onBindViewHolder(ViewHolder holder, int position) {
+            holder.text.setText(matcher.getMatches().get(position).getDescription(holder.text.getContext()));
+        }
+
+        @Override
+        public int getItemCount() {
+            return matcher.getMatches().size();
+        }
+
+        /**
+         * Load the next page of matches if there is one
+         */
+        void nextPage() {
+            if (matcher.hasMore()) {
+                int start = getItemCount();
+                int added = matcher.nextPage();
+                if (added > 0) {
+                    notifyItemRangeInserted(start, added);
+                }
+            }
+        }
+
+        /**
+         * Set a new filter and restart matching
+         *
+         * @param filter the filter string
+         */
+        void setFilter(@Nullable String filter) {
+            matcher.setFilter(filter);
+            matcher.nextPage();
+            notifyDataSetChanged();
+        }
+    }
+}
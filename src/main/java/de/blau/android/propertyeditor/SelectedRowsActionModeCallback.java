@@ -8,6 +8,7 @@ import android.view.MenuItem;
 import android.view.View;
 import android.widget.LinearLayout;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.view.ActionMode;
 import androidx.appcompat.view.ActionMode.Callback;
@@ -48,6 +49,7 @@ class SelectedRowsActionModeCallback implements Callback {
 
     ActionMode currentAction;
 
+    @Nullable
     final LinearLayout rows;
     final Fragment     caller;
 
@@ -62,6 +64,18 @@ class SelectedRowsActionModeCallback implements Callback {
         this.caller = caller;
     }
 
+    /**
+     * Create a new callback for selected rows that are not held in a LinearLayout
+     * 
+     * Sub-classes using this need to override deleteSelectedRows, deselectRows and hasSelectedRows
+     * 
+     * @param caller the calling Fragment
+     */
+    protected SelectedRowsActionModeCallback(@NonNull Fragment caller) {
+        this.rows = null;
+        this.caller = caller;
+    }
+
     @Override
     public boolean onCreateActionMode(ActionMode mode, Menu menu) {
         currentAction = mode;
@@ -88,21 +102,7 @@ class SelectedRowsActionModeCallback implements Callback {
     public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
         switch (item.getItemId()) {
         case MENU_ITEM_DELETE:
-            final int size = rows.getChildCount();
-            ArrayList<Row> toDelete = new ArrayList<>();
-            for (int i = 0; i < size; ++i) {
-                View view = rows.getChildAt(i);
-                Row row = (Row) view;
-                if (row.isSelected()) {
-                    toDelete.add(row);
-                }
-            }
-            if (!toDelete.isEmpty()) {
-                for (Row r : toDelete) {
-                    r.deselect();
-                    r.delete();
-                }
-            }
+            deleteSelectedRows();
             if (currentAction != null) {
                 currentAction.finish();
             }
@@ -124,12 +124,7 @@ class SelectedRowsActionModeCallback implements Callback {
 
     @Override
     public void onDestroyActionMode(ActionMode mode) {
-        final int size = rows.getChildCount();
-        for (int i = 0; i < size; ++i) {
-            View view = rows.getChildAt(i);
-            Row row = (Row) view;
-            row.deselect();
-        }
+        deselectRows();
         ((PropertyEditor) caller.getActivity()).enablePaging();
         ((PropertyEditor) caller.getActivity()).enablePresets();
         PropertyRows rowContainer = (PropertyRows) caller;
@@ -146,21 +141,67 @@ class SelectedRowsActionModeCallback implements Callback {
      * @return true if no rows are selected
      */
     public boolean rowsDeselected(boolean skipHeaderRow) {
+        if (hasSelectedRows(skipHeaderRow)) {
+            // something is still selected
+            return false;
+        }
+        // nothing selected -> finish
+        if (currentAction != null) {
+            currentAction.finish();
+        }
+        return true;
+    }
+
+    /**
+     * Delete all selected rows
+     */
+    protected void deleteSelectedRows() {
+        final int size = rows.getChildCount();
+        ArrayList<Row> toDelete = new ArrayList<>();
+        for (int i = 0; i < size; ++i) {
+            View view = rows.getChildAt(i);
+            Row row = (Row) view;
+            if (row.isSelected()) {
+                toDelete.add(row);
+            }
+        }
+        if (!toDelete.isEmpty()) {
+            for (Row r : toDelete) {
+                r.deselect();
+                r.delete();
+            }
+        }
+    }
+
+    /**
+     * De-select all rows
+     */
+    protected void deselectRows() {
+        final int size = rows.getChildCount();
+        for (int i = 0; i < size; ++i) {
+            View view = rows.getChildAt(i);
+            Row row = (Row) view;
+            row.deselect();
+        }
+    }
+
+    /**
+     * Check if any row is selected
+     * 
+     * @param skipHeaderRow if true skip the header row
+     * @return true if at least one row is selected
+     */
+    protected boolean hasSelectedRows(boolean skipHeaderRow) {
         final int size = rows.getChildCount();
         int initialRowIndex = skipHeaderRow ? 1 : 0;
         for (int i = initialRowIndex; i < size; ++i) {
             View view = rows.getChildAt(i);
             Row row = (Row) view;
             if (row.isSelected()) {
-                // something is still selected
-                return false;
+                return true;
             }
         }
-        // nothing selected -> finish
-        if (currentAction != null) {
-            currentAction.finish();
-        }
-        return true;
+        return false;
     }
 
     /**
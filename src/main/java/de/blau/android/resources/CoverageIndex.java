@@ -0,0 +1,115 @@
+package de.blau.android.resources;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import de.blau.android.osm.BoundingBox;
+import de.blau.android.resources.TileLayerSource.Provider;
+import de.blau.android.resources.TileLayerSource.Provider.CoverageArea;
+import de.blau.android.util.rtree.BoundedObject;
+import de.blau.android.util.rtree.RTree;
+
+/**
+ * Spatial index of the coverage areas of a set of layers
+ *
+ * Layers without any coverage restriction are kept in a separate list and are returned for every query, all other
+ * layers are indexed with one entry per CoverageArea.
+ *
+ * @author simon
+ *
+ */
+final class CoverageIndex {
+
+    /**
+     * RTree entry for a single CoverageArea
+     */
+    private static final class Entry implements BoundedObject {
+        final TileLayerSource layer;
+        final BoundingBox     box;
+
+        /**
+         * Construct a new entry
+         *
+         * @param layer the layer the CoverageArea belongs to
+         * @param box the BoundingBox of the CoverageArea
+         */
+        Entry(@NonNull TileLayerSource layer, @NonNull BoundingBox box) {
+            this.layer = layer;
+            this.box = box;
+        }
+
+        @Override
+        public BoundingBox getBounds() {
+            return box;
+        }
+    }
+
+    private final RTree<Entry>          tree   = new RTree<>(2, 20);
+    private final List<TileLayerSource> global = new ArrayList<>();
+
+    /**
+     * Construct a new index
+     *
+     * @param layers the layers to index
+     */
+    CoverageIndex(@NonNull Collection<TileLayerSource> layers) {
+        for (TileLayerSource layer : layers) {
+            add(layer);
+        }
+    }
+
+    /**
+     * Add a layer to the index
+     *
+     * @param layer the layer
+     */
+    private void add(@NonNull TileLayerSource layer) {
+        List<Entry> entries = new ArrayList<>();
+        for (Provider p : layer.getProviders()) {
+            if (p.getCoverageAreas().isEmpty()) {
+                global.add(layer);
+                return;
+            }
+            for (CoverageArea area : p.getCoverageAreas()) {
+                BoundingBox box = area.getBoundingBox();
+                if (box == null) {
+                    global.add(layer);
+                    return;
+                }
+                entries.add(new Entry(layer, box));
+            }
+        }
+        if (entries.isEmpty()) { // no providers
+            global.add(layer);
+            return;
+        }
+        for (Entry e : entries) {
+            tree.insert(e);
+        }
+    }
+
+    /**
+     * Get all layers that cover a BoundingBox, same as calling {@link TileLayerSource#covers(BoundingBox)} for each
+     * layer
+     *
+     * @param box the BoundingBox
+     * @return a Collection of layers without duplicates
+     */
+    @NonNull
+    Collection<TileLayerSource> query(@NonNull BoundingBox box) {
+        List<Entry> entries = new ArrayList<>();
+        tree.query(entries, box);
+        Map<String, TileLayerSource> result = new LinkedHashMap<>();
+        for (TileLayerSource layer : global) {
+            result.put(layer.getId(), layer);
+        }
+        for (Entry e : entries) {
+            result.put(e.layer.getId(), e.layer);
+        }
+        return result.values();
+    }
+}
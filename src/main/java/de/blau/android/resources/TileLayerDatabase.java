@@ -1,6 +1,7 @@
 package de.blau.android.resources;
 
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -12,6 +13,7 @@ import android.database.SQLException;
 import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.graphics.Bitmap;
 import android.util.Log;
 import androidx.annotation.NonNull;
@@ -71,6 +73,10 @@ public class TileLayerDatabase extends SQLiteOpenHelper {
 
     static final String QUERY_LAYER_BY_ROWID = "SELECT * FROM layers WHERE rowid=?";
 
+    private static final String INSERT_COVERAGE = "INSERT INTO coverages (id, zoom_min, zoom_max, left, bottom, right, top) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    static final int BATCH_SIZE = 100;
+
     /**
      * Create a new instance of TileLayerDatabase creating the underlying DB is necessary
      * 
@@ -213,6 +219,83 @@ public class TileLayerDatabase extends SQLiteOpenHelper {
         }
     }
 
+    /**
+     * Add many layers from the same source
+     * 
+     * Coverage areas are inserted with a single pre-compiled statement. If the database is not already in a
+     * transaction, the layers are committed in batches of BATCH_SIZE, otherwise everything is added in the callers
+     * transaction.
+     * 
+     * @author simon
+     *
+     */
+    static final class BatchInserter implements Closeable {
+        private final SQLiteDatabase  db;
+        private final String          source;
+        private final SQLiteStatement coverageInsert;
+        private final boolean         ownTransaction;
+        private int                   count = 0;
+
+        /**
+         * Construct a new inserter
+         * 
+         * @param db writable database
+         * @param source name of the source of the layers
+         */
+        BatchInserter(@NonNull SQLiteDatabase db, @NonNull String source) {
+            this.db = db;
+            this.source = source;
+            coverageInsert = db.compileStatement(INSERT_COVERAGE);
+            ownTransaction = !db.inTransaction();
+            if (ownTransaction) {
+                db.beginTransaction();
+            }
+        }
+
+        /**
+         * Add a layer and its coverage areas
+         * 
+         * @param layer a TileLayerSource instance
+         */
+        void add(@NonNull TileLayerSource layer) {
+            try {
+                db.insertOrThrow(LAYERS_TABLE, null, getContentValuesForLayer(source, layer));
+                List<CoverageArea> coverages = layer.getCoverage();
+                if (coverages != null) {
+                    for (CoverageArea ca : coverages) {
+                        addCoverage(coverageInsert, layer.getId(), ca);
+                    }
+                }
+            } catch (SQLiteConstraintException e) {
+                Log.e(DEBUG_TAG, "Constraint exception " + layer.getId() + " " + e.getMessage());
+            }
+            count++;
+            if (ownTransaction && count % BATCH_SIZE == 0) {
+                db.setTransactionSuccessful();
+                db.endTransaction();
+                db.beginTransaction();
+            }
+        }
+
+        /**
+         * Get the number of layers added so far
+         * 
+         * @return the layer count
+         */
+        int getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() {
+            if (ownTransaction) {
+                db.setTransactionSuccessful();
+                db.endTransaction();
+            }
+            coverageInsert.close();
+        }
+    }
+
     /**
      * Add coverage entries
      * 
@@ -683,6 +766,28 @@ public class TileLayerDatabase extends SQLiteOpenHelper {
         }
     }
 
+    /**
+     * Add a CoverageArea to the database with a pre-compiled insert statement
+     * 
+     * @param insert the compiled INSERT_COVERAGE statement
+     * @param layerId the id of the layer we are associated with
+     * @param coverage the CoverageArea object
+     */
+    private static void addCoverage(@NonNull SQLiteStatement insert, @NonNull String layerId, @NonNull CoverageArea coverage) {
+        BoundingBox box = coverage.getBoundingBox();
+        if (box != null) {
+            insert.clearBindings();
+            insert.bindString(1, layerId);
+            insert.bindLong(2, coverage.getMinZoomLevel());
+            insert.bindLong(3, coverage.getMaxZoomLevel());
+            insert.bindLong(4, box.getLeft());
+            insert.bindLong(5, box.getBottom());
+            insert.bindLong(6, box.getRight());
+            insert.bindLong(7, box.getTop());
+            insert.executeInsert();
+        }
+    }
+
     /**
      * Delete all coverage areas for a specific layer id
      * 
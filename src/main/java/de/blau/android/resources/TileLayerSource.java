@@ -415,6 +415,8 @@ public class TileLayerSource implements Serializable {
     private static Map<String, TileLayerSource> backgroundServerList = null;
     private static Map<String, TileLayerSource> overlayServerList    = null;
     private static Object                       serverListLock       = new Object();
+    private static CoverageIndex                backgroundIndex      = null;
+    private static CoverageIndex                overlayIndex         = null;
     private static boolean                      ready                = false;
     private static List<String>                 imageryBlacklist     = null;
 
@@ -706,31 +708,49 @@ public class TileLayerSource implements Serializable {
      */
     public static void parseImageryFile(@NonNull Context ctx, @NonNull SQLiteDatabase writeableDb, @NonNull String source, @NonNull InputStream is,
             final boolean async) throws IOException {
-        BufferedReader rd = new BufferedReader(new InputStreamReader(is, Charset.forName(OsmXml.UTF_8)));
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) {
-            sb.append((char) cp);
-        }
-        try {
-            EliFeatureCollection fc = EliFeatureCollection.fromJson(sb.toString());
-            Version formatVersion = fc.formatVersion();
-            Log.i(DEBUG_TAG, "Reading imagery configuration version " + (formatVersion == null ? "unknown" : formatVersion.toString()));
-            boolean fakeMultiPolygons = formatVersion == null || !formatVersion.largerThanOrEqual(Eli.VERSION_1_1);
-            for (Feature f : fc.features()) {
-                TileLayerSource osmts = Eli.geojsonToServer(ctx, f, async, fakeMultiPolygons);
-                if (osmts != null) {
-                    TileLayerDatabase.addLayer(writeableDb, source, osmts);
+        long start = System.currentTimeMillis();
+        try (TileLayerDatabase.BatchInserter inserter = new TileLayerDatabase.BatchInserter(writeableDb, source)) {
+            BufferedReader rd = new BufferedReader(new InputStreamReader(is, Charset.forName(OsmXml.UTF_8)));
+            // the meta data is typically at the end, only features that can't be interpreted without it are retained
+            final List<Feature> deferred = new ArrayList<>();
+            Version formatVersion = EliFeatureCollection.parse(rd, (f, version) -> {
+                if (version == null && Eli.dependsOnFormatVersion(f)) {
+                    deferred.add(f);
                 } else {
-                    Log.w(DEBUG_TAG, "Imagery layer config couldn't be parsed/unsupported");
+                    addLayer(ctx, inserter, f, async, Eli.fakeMultiPolygons(version));
                 }
+            });
+            boolean fakeMultiPolygons = Eli.fakeMultiPolygons(formatVersion);
+            for (Feature f : deferred) {
+                addLayer(ctx, inserter, f, async, fakeMultiPolygons);
             }
             TileLayerDatabase.updateSource(writeableDb, source, System.currentTimeMillis());
+            Log.i(DEBUG_TAG, "Read " + inserter.getCount() + " layers from imagery configuration version "
+                    + (formatVersion == null ? "unknown" : formatVersion.toString()) + " in " + (System.currentTimeMillis() - start) + " ms");
         } catch (Exception e) {
             Log.e(DEBUG_TAG, "Fatal error parsing " + source + " " + e.getMessage());
         }
     }
 
+    /**
+     * Convert a Feature to a layer and add it to the database
+     * 
+     * @param ctx android context
+     * @param inserter the BatchInserter for the database
+     * @param f the GeoJson Feature
+     * @param async obtain meta data async (bing only)
+     * @param fakeMultiPolygons if true assume the polygon geometry is all outer rings
+     */
+    private static void addLayer(@NonNull Context ctx, @NonNull TileLayerDatabase.BatchInserter inserter, @NonNull Feature f, boolean async,
+            boolean fakeMultiPolygons) {
+        TileLayerSource osmts = Eli.geojsonToServer(ctx, f, async, fakeMultiPolygons);
+        if (osmts != null) {
+            inserter.add(osmts);
+        } else {
+            Log.w(DEBUG_TAG, "Imagery layer config couldn't be parsed/unsupported");
+        }
+    }
+
     /**
      * Get the tile server information for a specified tile server id. If the given id cannot be found, a default
      * renderer is selected.
@@ -778,8 +798,10 @@ public class TileLayerSource implements Serializable {
             if (layer != null && layer.replaceApiKey(ctx)) {
                 if (layer.isOverlay()) {
                     overlayServerList.put(id, layer);
+                    overlayIndex = null;
                 } else {
                     backgroundServerList.put(id, layer);
+                    backgroundIndex = null;
                 }
                 return layer;
             }
@@ -939,6 +961,8 @@ public class TileLayerSource implements Serializable {
      */
     private static void getLists(@NonNull final Context ctx, @NonNull SQLiteDatabase db, boolean populate) {
         long start = System.currentTimeMillis();
+        backgroundIndex = null;
+        overlayIndex = null;
         if (populate) {
             overlayServerList = TileLayerDatabase.getAllLayers(ctx, db, true);
             backgroundServerList = TileLayerDatabase.getAllLayers(ctx, db, false);
@@ -1317,14 +1341,10 @@ public class TileLayerSource implements Serializable {
             @Nullable BoundingBox box) {
         TileLayerSource noneLayer = null;
         List<TileLayerSource> list = new ArrayList<>();
-        for (TileLayerSource osmts : servers.values()) {
-            if (filtered) {
-                if (category != null && !category.equals(osmts.getCategory())) {
-                    continue;
-                }
-                if (box != null && !osmts.covers(box)) {
-                    continue;
-                }
+        Collection<TileLayerSource> candidates = filtered && box != null ? getCoverageIndex(servers).query(box) : servers.values();
+        for (TileLayerSource osmts : candidates) {
+            if (filtered && category != null && !category.equals(osmts.getCategory())) {
+                continue;
             }
             // add this after sorting
             if (LAYER_NONE.equals(osmts.id) || LAYER_NOOVERLAY.equals(osmts.id)) {
@@ -1364,6 +1384,29 @@ public class TileLayerSource implements Serializable {
         return list;
     }
 
+    /**
+     * Get the spatial index for one of the layer lists, creating it if necessary
+     * 
+     * @param servers the layer Map
+     * @return a CoverageIndex
+     */
+    @NonNull
+    private static CoverageIndex getCoverageIndex(@NonNull Map<String, TileLayerSource> servers) {
+        if (servers == backgroundServerList) {
+            if (backgroundIndex == null) {
+                backgroundIndex = new CoverageIndex(servers.values());
+            }
+            return backgroundIndex;
+        }
+        if (servers == overlayServerList) {
+            if (overlayIndex == null) {
+                overlayIndex = new CoverageIndex(servers.values());
+            }
+            return overlayIndex;
+        }
+        return new CoverageIndex(servers.values());
+    }
+
     /**
      * Calculate the coverage size in WGS84 degrees^2
      * 
@@ -1444,6 +1487,7 @@ public class TileLayerSource implements Serializable {
      * @return available tile layer IDs.
      */
     private static String[] getIds(@NonNull Map<String, TileLayerSource> serverList, @Nullable BoundingBox box, boolean filtered, @Nullable Category category) {
+        long start = System.currentTimeMillis();
         List<String> ids = new ArrayList<>();
         synchronized (serverListLock) {
             if (backgroundServerList != null) {
@@ -1453,6 +1497,7 @@ public class TileLayerSource implements Serializable {
                 }
             }
         }
+        Log.d(DEBUG_TAG, "Getting " + ids.size() + " layer ids took " + (System.currentTimeMillis() - start) + " ms");
         String[] idArray = new String[ids.size()];
         ids.toArray(idArray);
         return idArray;
@@ -1907,6 +1952,8 @@ public class TileLayerSource implements Serializable {
                     }
                 }
             }
+            backgroundIndex = null;
+            overlayIndex = null;
         }
     }
 
@@ -10,6 +10,8 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.Geometry;
+import com.mapbox.geojson.Polygon;
 
 import android.content.Context;
 import android.util.Log;
@@ -21,6 +23,7 @@ import de.blau.android.resources.TileLayerSource.Category;
 import de.blau.android.resources.TileLayerSource.Provider;
 import de.blau.android.util.DateFormatter;
 import de.blau.android.util.GeoJson;
+import de.blau.android.util.Version;
 
 public final class Eli {
     private static final String DEBUG_TAG = "Eli";
@@ -119,6 +122,28 @@ public final class Eli {
         return defaultValue;
     }
 
+    /**
+     * Check if Polygon geometries with more than one ring should be treated as multiple outer rings
+     * 
+     * @param formatVersion the format version of the configuration or null if unknown
+     * @return true if the rings are all outer rings
+     */
+    public static boolean fakeMultiPolygons(@Nullable Version formatVersion) {
+        return formatVersion == null || !formatVersion.largerThanOrEqual(VERSION_1_1);
+    }
+
+    /**
+     * Check if the coverage of a Feature depends on the format version, that is if it is a Polygon with more than one
+     * ring
+     * 
+     * @param f the GeoJson Feature
+     * @return true if the format version is needed to interpret the geometry
+     */
+    public static boolean dependsOnFormatVersion(@NonNull Feature f) {
+        Geometry g = f.geometry();
+        return g instanceof Polygon && ((Polygon) g).coordinates().size() > 1;
+    }
+
     /**
      * Create a TileLayerServer instance from a GeoJson Feature
      * 
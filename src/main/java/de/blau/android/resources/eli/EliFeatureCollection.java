@@ -21,6 +21,7 @@
 package de.blau.android.resources.eli;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.util.List;
 
 import com.google.gson.Gson;
@@ -71,6 +72,69 @@ public final class EliFeatureCollection implements GeoJson {
         return gson.create().fromJson(json, EliFeatureCollection.class);
     }
 
+    /**
+     * Callback for streaming parsing
+     */
+    public interface FeatureHandler {
+        /**
+         * Process a single Feature
+         * 
+         * @param feature the Feature
+         * @param formatVersion the format version if the meta data was read before the Feature, otherwise null
+         */
+        void handle(@NonNull Feature feature, @Nullable Version formatVersion);
+    }
+
+    /**
+     * Parse a FeatureCollection from a Reader passing each Feature to a handler as soon as it has been read
+     * 
+     * Contrary to {@link #fromJson(String)} neither the input nor the complete List of Features is held in memory.
+     * The meta data is normally located before the Features, if it isn't the Features will be handled without a format
+     * version.
+     * 
+     * @param reader the Reader
+     * @param handler the FeatureHandler
+     * @return the format version or null if none could be found
+     * @throws IOException if reading or parsing fails
+     */
+    @Nullable
+    public static Version parse(@NonNull Reader reader, @NonNull FeatureHandler handler) throws IOException {
+        GsonBuilder builder = new GsonBuilder();
+        builder.registerTypeAdapterFactory(EliGeoJsonAdapterFactory.create());
+        builder.registerTypeAdapterFactory(GeometryAdapterFactory.create());
+        Gson gson = builder.create();
+        TypeAdapter<Feature> featureAdapter = gson.getAdapter(Feature.class);
+        Meta meta = null;
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            String name = jsonReader.nextName();
+            if (jsonReader.peek() == JsonToken.NULL) {
+                jsonReader.nextNull();
+                continue;
+            }
+            switch (name) {
+            case GsonTypeAdapter.NAME_META:
+                meta = gson.getAdapter(Meta.class).read(jsonReader);
+                break;
+            case GsonTypeAdapter.NAME_FEATURES:
+                jsonReader.beginArray();
+                while (jsonReader.hasNext()) {
+                    Feature feature = featureAdapter.read(jsonReader);
+                    if (feature != null) {
+                        handler.handle(feature, meta != null ? meta.formatVersion : null);
+                    }
+                }
+                jsonReader.endArray();
+                break;
+            default:
+                jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+        return meta != null ? meta.formatVersion : null;
+    }
+
     /**
      * Create a new FestureCollection
      * 
@@ -515,7 +515,7 @@ public class TrackerService extends Service implements Exportable {
      * @return true is TrackPoints are stored
      */
     public boolean hasTrackPoints() {
-        return track != null && track.getTrackPoints() != null && !track.getTrackPoints().isEmpty();
+        return track != null && !track.getTrack().isEmpty();
     }
 
     /**
@@ -857,6 +857,7 @@ public class TrackerService extends Service implements Exportable {
             if (newBox != null) {
                 if (radius != 0) { // download
                     List<BoundingBox> bboxes = BoundingBox.newBoxes(bbList, newBox);
+                    List<BoundingBox> toLoad = new ArrayList<>();
                     for (BoundingBox b : bboxes) {
                         if (b.getWidth() <= 1 || b.getHeight() <= 1) {
                             // ignore super small bb likely due to rounding
@@ -868,8 +869,11 @@ public class TrackerService extends Service implements Exportable {
                                                             // once download is
                                                             // complete
                         Log.d(DEBUG_TAG, "getNextCenter loading " + b.toString());
+                        toLoad.add(b);
+                    }
+                    if (!toLoad.isEmpty()) {
                         final Logic logic = App.getLogic();
-                        logic.autoDownloadBox(this, prefs.getServer(), validator, b, logic::reselectRelationMembers);
+                        logic.autoDownloadBoxes(this, prefs.getServer(), validator, toLoad, logic::reselectRelationMembers);
                     }
                 }
                 previousLocation = location;
@@ -0,0 +1,500 @@
+package de.blau.android.taginfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import android.content.Context;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.blau.android.util.Hash;
+import de.blau.android.util.Metrics;
+
+/**
+ * Cache for taginfo responses
+ *
+ * Responses are cached as the raw JSON keyed by the request URL, first in a small in memory LRU cache and then in
+ * files in the application cache directory. Entries expire after a fixed time, the memory cache is bounded by the
+ * number of characters held and the disk cache by the total file size, least recently used files are removed first.
+ *
+ * Concurrent requests for the same URL are coalesced, only the first one goes to the network and the others wait for
+ * its result. Failed requests are not cached.
+ *
+ * @author simon
+ *
+ */
+public final class TaginfoCache {
+
+    private static final String DEBUG_TAG = TaginfoCache.class.getSimpleName();
+
+    static final String DIRECTORY         = "taginfo";
+    static final long   DEFAULT_TTL       = TimeUnit.DAYS.toMillis(7);
+    static final long   DEFAULT_MAX_DISK  = 4L * 1024L * 1024L;
+    static final int    DEFAULT_MAX_CHARS = 512 * 1024;
+
+    private static final Charset UTF8           = Charset.forName("UTF-8");
+    private static final String  TEMP_EXTENSION = ".tmp";
+    private static final int     FORMAT_VERSION = 1;
+    private static final float   TRIM_FRACTION  = 0.75f;
+
+    private static final Metrics.Counter HITS      = Metrics.counter("taginfo.cache.hits");
+    private static final Metrics.Counter MISSES    = Metrics.counter("taginfo.cache.misses");
+    private static final Metrics.Counter COALESCED = Metrics.counter("taginfo.cache.coalesced");
+
+    private static TaginfoCache instance;
+
+    /**
+     * Load a response from the network
+     */
+    public interface Loader {
+        /**
+         * Load the response
+         *
+         * @return the response body or null if there was none
+         * @throws IOException if loading failed
+         */
+        @Nullable
+        String load() throws IOException;
+    }
+
+    /**
+     * A response held in memory
+     */
+    private static final class CachedResponse {
+        final String body;
+        final long   time;
+
+        /**
+         * Construct a new entry
+         *
+         * @param body the response body
+         * @param time the time the response was received
+         */
+        CachedResponse(@NonNull String body, long time) {
+            this.body = body;
+            this.time = time;
+        }
+    }
+
+    private final File directory;
+    private final long ttl;
+    private final long maxDiskBytes;
+    private final int  maxChars;
+
+    private final LinkedHashMap<String, CachedResponse>         memory    = new LinkedHashMap<>(16, 0.75f, true);
+    private int                                                 chars     = 0;
+    private final ConcurrentHashMap<String, FutureTask<String>> inFlight  = new ConcurrentHashMap<>();
+    private final Object                                        diskLock  = new Object();
+    private LinkedHashMap<String, Long>                         files     = null;
+    private long                                                diskBytes = 0;
+
+    /**
+     * Get the shared instance
+     *
+     * @param context an Android Context
+     * @return the TaginfoCache
+     */
+    @NonNull
+    public static synchronized TaginfoCache getInstance(@NonNull Context context) {
+        if (instance == null) {
+            File cacheDir = context.getApplicationContext().getCacheDir();
+            instance = new TaginfoCache(cacheDir != null ? new File(cacheDir, DIRECTORY) : null, DEFAULT_TTL, DEFAULT_MAX_DISK, DEFAULT_MAX_CHARS);
+        }
+        return instance;
+    }
+
+    /**
+     * Construct a new cache
+     *
+     * @param directory the directory to store the responses in, if null only the memory cache is used
+     * @param ttl time in ms after which an entry expires
+     * @param maxDiskBytes maximum size of the stored responses in bytes
+     * @param maxChars maximum number of characters held in memory
+     */
+    TaginfoCache(@Nullable File directory, long ttl, long maxDiskBytes, int maxChars) {
+        this.directory = directory;
+        this.ttl = ttl;
+        this.maxDiskBytes = maxDiskBytes;
+        this.maxChars = maxChars;
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            Log.e(DEBUG_TAG, "Unable to create " + directory);
+        }
+    }
+
+    /**
+     * Get a response, from the cache if possible, otherwise with the Loader
+     *
+     * If a request for the same URL is already running, its result is used.
+     *
+     * @param url the request URL
+     * @param loader the Loader to use if the response is not cached
+     * @return the response body or null if there was none
+     * @throws IOException if loading failed
+     */
+    @Nullable
+    public String get(@NonNull final String url, @NonNull final Loader loader) throws IOException {
+        String body = getCached(url);
+        if (body != null) {
+            HITS.inc();
+            return body;
+        }
+        FutureTask<String> task = new FutureTask<>(() -> {
+            // a request for the same URL may have finished between the lookup and registering this one
+            String loaded = getFromMemory(url);
+            if (loaded == null) {
+                MISSES.inc();
+                loaded = loader.load();
+                if (loaded != null) {
+                    put(url, loaded);
+                }
+            }
+            return loaded;
+        });
+        FutureTask<String> running = inFlight.putIfAbsent(url, task);
+        if (running != null) {
+            COALESCED.inc();
+            return await(running);
+        }
+        try {
+            task.run();
+            return await(task);
+        } finally {
+            inFlight.remove(url, task);
+        }
+    }
+
+    /**
+     * Get a response from the cache without loading it
+     *
+     * @param url the request URL
+     * @return the response body or null if it isn't cached or has expired
+     */
+    @Nullable
+    public String getCached(@NonNull String url) {
+        String body = getFromMemory(url);
+        if (body == null) {
+            body = getFromDisk(url);
+        }
+        return body;
+    }
+
+    /**
+     * Add a response to the cache
+     *
+     * @param url the request URL
+     * @param body the response body
+     */
+    void put(@NonNull String url, @NonNull String body) {
+        long now = System.currentTimeMillis();
+        putInMemory(url, new CachedResponse(body, now));
+        putOnDisk(url, body, now);
+    }
+
+    /**
+     * Remove a cached response
+     *
+     * @param url the request URL
+     */
+    public void remove(@NonNull String url) {
+        synchronized (memory) {
+            CachedResponse entry = memory.remove(url);
+            if (entry != null) {
+                chars -= entry.body.length();
+            }
+        }
+        if (directory != null) {
+            synchronized (diskLock) {
+                removeFile(fileName(url));
+            }
+        }
+    }
+
+    /**
+     * Remove all cached responses
+     */
+    public void clear() {
+        synchronized (memory) {
+            memory.clear();
+            chars = 0;
+        }
+        if (directory != null) {
+            synchronized (diskLock) {
+                File[] list = directory.listFiles();
+                if (list != null) {
+                    for (File f : list) {
+                        delete(f);
+                    }
+                }
+                files = null;
+            }
+        }
+    }
+
+    /**
+     * Wait for the result of a FutureTask
+     *
+     * @param task the task
+     * @return the result
+     * @throws IOException if the task failed or waiting was interrupted
+     */
+    @Nullable
+    private static String await(@NonNull FutureTask<String> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause != null ? cause.getMessage() : e.getMessage());
+        }
+    }
+
+    /**
+     * Get a response from the memory cache
+     *
+     * @param url the request URL
+     * @return the response body or null
+     */
+    @Nullable
+    private String getFromMemory(@NonNull String url) {
+        synchronized (memory) {
+            CachedResponse entry = memory.get(url);
+            if (entry == null) {
+                return null;
+            }
+            if (expired(entry.time)) {
+                memory.remove(url);
+                chars -= entry.body.length();
+                return null;
+            }
+            return entry.body;
+        }
+    }
+
+    /**
+     * Add a response to the memory cache, removing the least recently used entries if the cache is full
+     *
+     * @param url the request URL
+     * @param entry the entry
+     */
+    private void putInMemory(@NonNull String url, @NonNull CachedResponse entry) {
+        if (entry.body.length() > maxChars) {
+            return;
+        }
+        synchronized (memory) {
+            CachedResponse old = memory.put(url, entry);
+            if (old != null) {
+                chars -= old.body.length();
+            }
+            chars += entry.body.length();
+            Iterator<CachedResponse> it = memory.values().iterator();
+            while (chars > maxChars && it.hasNext()) {
+                chars -= it.next().body.length();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Get a response from the disk cache and add it to the memory cache
+     *
+     * @param url the request URL
+     * @return the response body or null
+     */
+    @Nullable
+    private String getFromDisk(@NonNull String url) {
+        if (directory == null) {
+            return null;
+        }
+        synchronized (diskLock) {
+            String name = fileName(url);
+            if (getFiles().get(name) == null) { // this moves the file to the end of the access order
+                return null;
+            }
+            File file = new File(directory, name);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != FORMAT_VERSION || !url.equals(in.readUTF())) {
+                    return null;
+                }
+                long time = in.readLong();
+                if (expired(time)) {
+                    removeFile(name);
+                    return null;
+                }
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                String body = new String(bytes, UTF8);
+                // keep the access order for the next start
+                if (!file.setLastModified(System.currentTimeMillis())) { // NOSONAR
+                    Log.w(DEBUG_TAG, "Unable to touch " + file);
+                }
+                putInMemory(url, new CachedResponse(body, time));
+                return body;
+            } catch (IOException | RuntimeException e) {
+                Log.e(DEBUG_TAG, "Reading " + file + " failed " + e.getMessage());
+                removeFile(name);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Write a response to the disk cache, removing the least recently used files if the cache is full
+     *
+     * @param url the request URL
+     * @param body the response body
+     * @param time the time the response was received
+     */
+    private void putOnDisk(@NonNull String url, @NonNull String body, long time) {
+        if (directory == null) {
+            return;
+        }
+        byte[] bytes = body.getBytes(UTF8);
+        if (bytes.length > maxDiskBytes * TRIM_FRACTION) {
+            return;
+        }
+        synchronized (diskLock) {
+            String name = fileName(url);
+            File temp = new File(directory, name + TEMP_EXTENSION);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(url);
+                out.writeLong(time);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            } catch (IOException e) {
+                Log.e(DEBUG_TAG, "Writing " + temp + " failed " + e.getMessage());
+                delete(temp);
+                return;
+            }
+            removeFile(name);
+            File file = new File(directory, name);
+            if (!temp.renameTo(file)) {
+                Log.e(DEBUG_TAG, "Renaming " + temp + " failed");
+                delete(temp);
+                return;
+            }
+            long length = file.length();
+            getFiles().put(name, length);
+            diskBytes += length;
+            if (diskBytes > maxDiskBytes) {
+                trim();
+            }
+        }
+    }
+
+    /**
+     * Remove the least recently used files until the cache is reduced to TRIM_FRACTION of the maximum size
+     */
+    private void trim() {
+        long target = (long) (maxDiskBytes * TRIM_FRACTION);
+        Iterator<Entry<String, Long>> it = getFiles().entrySet().iterator();
+        while (diskBytes > target && it.hasNext()) {
+            Entry<String, Long> entry = it.next();
+            if (delete(new File(directory, entry.getKey()))) {
+                diskBytes -= entry.getValue();
+                it.remove();
+            }
+        }
+        Log.d(DEBUG_TAG, "Trimmed disk cache to " + diskBytes + " bytes");
+    }
+
+    /**
+     * Get the index of the files in the disk cache, reading the directory if necessary
+     *
+     * The index is in access order, initially the modification time of the files is used.
+     *
+     * @return a Map from file name to file size
+     */
+    @NonNull
+    private LinkedHashMap<String, Long> getFiles() {
+        if (files == null) {
+            files = new LinkedHashMap<>(16, 0.75f, true);
+            diskBytes = 0;
+            File[] list = directory.listFiles();
+            if (list != null) {
+                List<File> sorted = new ArrayList<>(Arrays.asList(list));
+                Collections.sort(sorted, (f1, f2) -> Long.compare(f1.lastModified(), f2.lastModified()));
+                for (File f : sorted) {
+                    if (f.getName().endsWith(TEMP_EXTENSION)) { // left over from a crash
+                        delete(f);
+                        continue;
+                    }
+                    long length = f.length();
+                    files.put(f.getName(), length);
+                    diskBytes += length;
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Remove a file and update the index
+     *
+     * @param name the file name
+     */
+    private void removeFile(@NonNull String name) {
+        Long length = getFiles().remove(name);
+        if (length != null && delete(new File(directory, name))) {
+            diskBytes -= length;
+        }
+    }
+
+    /**
+     * Delete a file
+     *
+     * @param file the File
+     * @return true if the file was deleted
+     */
+    private static boolean delete(@NonNull File file) {
+        if (!file.delete()) {
+            Log.e(DEBUG_TAG, "Unable to delete " + file);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Check if an entry has expired
+     *
+     * @param time the time the response was received
+     * @return true if expired
+     */
+    private boolean expired(long time) {
+        return System.currentTimeMillis() - time > ttl;
+    }
+
+    /**
+     * Get the file name for an URL
+     *
+     * @param url the request URL
+     * @return the file name
+     */
+    @NonNull
+    private static String fileName(@NonNull String url) {
+        return Hash.sha256(url);
+    }
+}
@@ -3,7 +3,10 @@ package de.blau.android.taginfo;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
@@ -20,7 +23,6 @@ import androidx.annotation.Nullable;
 import de.blau.android.PostAsyncActionHandler;
 import de.blau.android.osm.Server;
 import de.blau.android.prefs.Preferences;
-import de.blau.android.util.SavingHelper;
 import de.blau.android.util.StringWithDescription;
 
 /**
@@ -41,6 +43,37 @@ public final class TaginfoServer {
     private static final String COUNT_NAME       = "count";
     private static final String DESCRIPTION_NAME = "description";
 
+    /**
+     * Reads the results of the search calls
+     */
+    private static final ResultReader SEARCH_READER = new ResultReader() {
+
+        @Override
+        Object read(JsonReader reader) throws IOException {
+
+            List<SearchResult> result = new ArrayList<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (DATA_NAME.equals(reader.nextName())) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        try {
+                            SearchResult searchResult = new SearchResult(reader, null);
+                            result.add(searchResult);
+                        } catch (IOException e) {
+                            Log.e(DEBUG_TAG, e.getMessage());
+                        }
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return result;
+        }
+    };
+
     /**
      * Private construtor
      */
@@ -380,10 +413,11 @@ public final class TaginfoServer {
     @Nullable
     public static List<SearchResult> searchByKeyAndValue(@NonNull final Context context, @NonNull String key, @NonNull String value, int maxResults) {
         // https://taginfo.openstreetmap.org/api/4/search/by_key_and_value?query=%3Dresidential&page=1&rp=10&sortname=count_all&sortorder=desc
-        Preferences prefs = new Preferences(context);
-        String url = prefs.getTaginfoServer() + "api/4/search/by_key_and_value?query=" + key + "%3D" + value + "&page=1"
+        final String server = new Preferences(context).getTaginfoServer();
+        SearchUrl searchUrl = v -> server + "api/4/search/by_key_and_value?query=" + key + "%3D" + v + "&page=1"
                 + (maxResults != -1 ? "&rp=" + maxResults : "") + "&sortname=count_all&sortorder=desc";
-        return search(context, url);
+        List<SearchResult> result = searchCachedPrefix(context, searchUrl, value, maxResults);
+        return result != null ? result : search(context, searchUrl.get(value));
     }
 
     /**
@@ -397,10 +431,103 @@ public final class TaginfoServer {
     @Nullable
     public static List<SearchResult> searchByValue(@NonNull final Context context, @NonNull String value, int maxResults) {
         // https://taginfo.openstreetmap.org/api/4/search/by_value?query=residential&page=1&rp=10&sortname=count_all&sortorder=desc
-        Preferences prefs = new Preferences(context);
-        String url = prefs.getTaginfoServer() + "api/4/search/by_value?query=" + value + "&page=1" + (maxResults != -1 ? "&rp=" + maxResults : "")
+        final String server = new Preferences(context).getTaginfoServer();
+        SearchUrl searchUrl = v -> server + "api/4/search/by_value?query=" + v + "&page=1" + (maxResults != -1 ? "&rp=" + maxResults : "")
                 + "&sortname=count_all&sortorder=desc";
-        return search(context, url);
+        List<SearchResult> result = searchCachedPrefix(context, searchUrl, value, maxResults);
+        return result != null ? result : search(context, searchUrl.get(value));
+    }
+
+    /**
+     * Builds the URL for a value search
+     */
+    private interface SearchUrl {
+        /**
+         * Get the URL
+         * 
+         * @param value the value to search for
+         * @return the URL
+         */
+        @NonNull
+        String get(@NonNull String value);
+    }
+
+    /**
+     * Try to answer a value search from the cached result of a shorter query
+     * 
+     * Taginfo matches values as substrings, so the results for a query are a subset of the results for any prefix of it
+     * as long as that result wasn't truncated by maxResults. This avoids most requests while the user is typing.
+     * 
+     * @param context Android Context
+     * @param searchUrl builds the URL for a value
+     * @param value the value
+     * @param maxResults maximum number of results
+     * @return a List of SearchResults, or null if no suitable result was cached
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private static List<SearchResult> searchCachedPrefix(@NonNull final Context context, @NonNull SearchUrl searchUrl, @NonNull String value,
+            int maxResults) {
+        TaginfoCache cache = TaginfoCache.getInstance(context);
+        for (int length = value.length() - 1; length > 0; length--) {
+            String body = cache.getCached(searchUrl.get(value.substring(0, length)));
+            if (body == null) {
+                continue;
+            }
+            try {
+                List<SearchResult> cached = (List<SearchResult>) read(body, SEARCH_READER);
+                if (cached == null || (maxResults != -1 && cached.size() >= maxResults)) {
+                    continue; // possibly truncated
+                }
+                List<SearchResult> result = new ArrayList<>();
+                for (SearchResult r : cached) {
+                    if (containsIgnoreAsciiCase(r.getValue(), value)) {
+                        result.add(r);
+                    }
+                }
+                Log.d(DEBUG_TAG, "returning " + result.size() + " results for " + value + " from cached results for " + value.substring(0, length));
+                return result;
+            } catch (IOException e) {
+                Log.e(DEBUG_TAG, "cached result got exception " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check if a String contains another one ignoring the case of ASCII characters, like the SQLite LIKE operator used
+     * by taginfo
+     * 
+     * @param s the String to search in
+     * @param part the String to search for
+     * @return true if s contains part
+     */
+    static boolean containsIgnoreAsciiCase(@Nullable String s, @NonNull String part) {
+        if (s == null) {
+            return false;
+        }
+        final int partLength = part.length();
+        final int last = s.length() - partLength;
+        for (int start = 0; start <= last; start++) {
+            int i = 0;
+            while (i < partLength && toLowerAscii(s.charAt(start + i)) == toLowerAscii(part.charAt(i))) {
+                i++;
+            }
+            if (i == partLength) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Convert an ASCII upper case character to lower case
+     * 
+     * @param c the character
+     * @return the lower case character or c if it wasn't ASCII upper case
+     */
+    private static char toLowerAscii(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
     }
 
     /**
@@ -428,34 +555,7 @@ public final class TaginfoServer {
     @SuppressWarnings("unchecked")
     @Nullable
     private static List<SearchResult> search(final Context context, String url) {
-        ResultReader resultReader = new ResultReader() {
-
-            @Override
-            Object read(JsonReader reader) throws IOException {
-
-                List<SearchResult> result = new ArrayList<>();
-                reader.beginObject();
-                while (reader.hasNext()) {
-                    if (DATA_NAME.equals(reader.nextName())) {
-                        reader.beginArray();
-                        while (reader.hasNext()) {
-                            try {
-                                SearchResult searchResult = new SearchResult(reader, null);
-                                result.add(searchResult);
-                            } catch (IOException e) {
-                                Log.e(DEBUG_TAG, e.getMessage());
-                            }
-                        }
-                        reader.endArray();
-                    } else {
-                        reader.skipValue();
-                    }
-                }
-                reader.endObject();
-                return result;
-            }
-        };
-        return (List<SearchResult>) querySync(context, url, resultReader, null);
+        return (List<SearchResult>) querySync(context, url, SEARCH_READER, null);
     }
 
     /**
@@ -711,16 +811,8 @@ public final class TaginfoServer {
     public static Object querySync(@NonNull final Context context, @NonNull final String url, @NonNull final ResultReader resultReader,
             @Nullable final PostAsyncActionHandler handler) {
 
-        Log.d(DEBUG_TAG, "querying server for " + url);
-        InputStream is = null;
-        JsonReader reader = null;
-        Object result = null;
         try {
-            is = Server.openConnection(context, new URL(url), 1000, 1000);
-            if (is != null) {
-                reader = new JsonReader(new InputStreamReader(is));
-                result = resultReader.read(reader);
-            }
+            Object result = query(context, url, resultReader);
             if (result != null && handler != null) {
                 handler.onSuccess();
             }
@@ -728,9 +820,6 @@ public final class TaginfoServer {
             return result;
         } catch (IOException e) {
             Log.e(DEBUG_TAG, "find got exception " + e.getMessage());
-        } finally {
-            SavingHelper.close(reader);
-            SavingHelper.close(is);
         }
         return null;
     }
@@ -750,9 +839,8 @@ public final class TaginfoServer {
         AsyncTask<Void, Void, Object> list = new AsyncTask<Void, Void, Object>() {
             @Override
             protected Object doInBackground(Void... params) {
-                Log.d(DEBUG_TAG, "querying server for " + url);
-                try (InputStream is = Server.openConnection(context, new URL(url), 1000, 1000); JsonReader reader = new JsonReader(new InputStreamReader(is))) {
-                    return resultReader.read(reader);
+                try {
+                    return query(context, url, resultReader);
                 } catch (IOException e) {
                     Log.e(DEBUG_TAG, "find got exception " + e.getMessage());
                 }
@@ -780,4 +868,67 @@ public final class TaginfoServer {
         }
         return null;
     }
+
+    /**
+     * Get a response from the cache or the server and process it
+     * 
+     * @param context Android Context
+     * @param url the url to query
+     * @param resultReader the ResultReader instance to use
+     * @return an Object that has to be cast to the correct type, or null if there was no response
+     * @throws IOException if the download failed or the response couldn't be processed
+     */
+    @Nullable
+    private static Object query(@NonNull final Context context, @NonNull final String url, @NonNull final ResultReader resultReader) throws IOException {
+        TaginfoCache cache = TaginfoCache.getInstance(context);
+        try {
+            return read(cache.get(url, () -> download(context, url)), resultReader);
+        } catch (IOException e) {
+            cache.remove(url); // don't keep responses we can't use
+            throw e;
+        }
+    }
+
+    /**
+     * Download a response
+     * 
+     * @param context Android Context
+     * @param url the url to query
+     * @return the response body
+     * @throws IOException if the download failed
+     */
+    @NonNull
+    private static String download(@NonNull final Context context, @NonNull final String url) throws IOException {
+        Log.d(DEBUG_TAG, "querying server for " + url);
+        try (InputStream is = Server.openConnection(context, new URL(url), 1000, 1000);
+                Reader reader = new InputStreamReader(is, Charset.forName("UTF-8"))) {
+            StringBuilder body = new StringBuilder();
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                body.append(buffer, 0, read);
+            }
+            return body.toString();
+        }
+    }
+
+    /**
+     * Process a response with a ResultReader
+     * 
+     * @param body the response body or null
+     * @param resultReader the ResultReader instance to use
+     * @return an Object that has to be cast to the correct type, or null if body was null
+     * @throws IOException if the response couldn't be processed
+     */
+    @Nullable
+    private static Object read(@Nullable String body, @NonNull ResultReader resultReader) throws IOException {
+        if (body == null) {
+            return null;
+        }
+        try (JsonReader reader = new JsonReader(new StringReader(body))) {
+            return resultReader.read(reader);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
 }
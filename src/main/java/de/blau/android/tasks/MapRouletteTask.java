@@ -82,9 +82,7 @@ public class MapRouletteTask extends Task {
                     case "parentId":
                         task.parentId = reader.nextLong();
                         Log.d(DEBUG_TAG, "got maproulette task parent " + task.parentId);
-                        if (!App.getTaskStorage().getChallenges().containsKey(task.parentId)) {
-                            App.getTaskStorage().getChallenges().put(task.parentId, null);
-                        }
+                        App.getTaskStorage().addChallenge(task.parentId);
                         break;
                     case "point":
                         reader.beginObject();
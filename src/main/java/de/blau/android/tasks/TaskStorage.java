@@ -4,9 +4,11 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.locks.ReentrantLock;
 
 import android.app.Activity;
@@ -29,14 +31,14 @@ import de.blau.android.util.rtree.RTree;
  *
  */
 public class TaskStorage implements Serializable, DataStorage {
-    private static final long               serialVersionUID = 7L;
-    private static final String             DEBUG_TAG        = TaskStorage.class.getSimpleName();
-    private int                             newId            = -1;
-    private RTree<Task>                     tasks;
-    private RTree<BoundingBox>              boxes;
-    private Map<Long, MapRouletteChallenge> challenges;
-    private OsmoseMeta                      osmoseMeta;
-    private transient boolean               dirty            = true;
+    private static final long                     serialVersionUID = 7L;
+    private static final String                   DEBUG_TAG        = TaskStorage.class.getSimpleName();
+    private int                                   newId            = -1;
+    private RTree<Task>                           tasks;
+    private RTree<BoundingBox>                    boxes;
+    private Map<Long, MapRouletteChallenge>       challenges       = Collections.synchronizedMap(new HashMap<>());
+    private OsmoseMeta                            osmoseMeta;
+    private transient boolean                     dirty            = true;
 
     /**
      * when reading state lockout writing/reading
@@ -52,7 +54,6 @@ public class TaskStorage implements Serializable, DataStorage {
      */
     public TaskStorage() {
         reset();
-        challenges = new HashMap<>();
         dirty = false;
     }
 
@@ -307,15 +308,47 @@ public class TaskStorage implements Serializable, DataStorage {
     /**
      * Get the currently referenced MapRoulette Challenges
      * 
-     * Note: if the value for a key is null that Challenge needs to be downloaded
+     * Note: if the value for a key is null that Challenge needs to be downloaded. The Map is accessed from multiple
+     * threads, iterating over it requires synchronizing on it.
      * 
-     * @return a Map containing the challenges
+     * @return a synchronized Map containing the challenges
      */
     @NonNull
     public Map<Long, MapRouletteChallenge> getChallenges() {
         return challenges;
     }
 
+    /**
+     * Add a reference to a MapRoulette Challenge if we don't know it yet
+     * 
+     * @param id the id of the Challenge
+     */
+    public void addChallenge(long id) {
+        synchronized (challenges) {
+            if (!challenges.containsKey(id)) {
+                challenges.put(id, null);
+            }
+        }
+    }
+
+    /**
+     * Get the ids of all referenced MapRoulette Challenges that haven't been downloaded yet
+     * 
+     * @return a List of ids
+     */
+    @NonNull
+    public List<Long> getMissingChallenges() {
+        List<Long> result = new ArrayList<>();
+        synchronized (challenges) {
+            for (Entry<Long, MapRouletteChallenge> entry : challenges.entrySet()) {
+                if (entry.getValue() == null) {
+                    result.add(entry.getKey());
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Move a tasks position
      * 
@@ -347,6 +380,22 @@ public class TaskStorage implements Serializable, DataStorage {
         }
         return osmoseMeta;
     }
+
+    /**
+     * De-serialize this
+     * 
+     * @param in the ObjectInputStream
+     * @throws IOException if something goes wrong while reading
+     * @throws ClassNotFoundException if a Class couldn't be found
+     */
+    private void readObject(@NonNull java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // state saved by older versions contains a plain HashMap, copying also avoids wrapping the map twice
+        challenges = Collections.synchronizedMap(challenges != null ? new HashMap<>(challenges) : new HashMap<>());
+        // Normal deserialization will not initialize transient objects, need to do it here
+        readingLock = new ReentrantLock();
+        savingHelper = new SavingHelper<>();
+    }
     
     @Override
     public String toString() {
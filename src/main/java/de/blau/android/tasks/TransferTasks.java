@@ -9,11 +9,20 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -63,6 +72,27 @@ public final class TransferTasks {
     /** maximum of tasks per request */
     private static final int MAX_PER_REQUEST = 1000;
 
+    /** maximum number of concurrent requests per download */
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+
+    /** maximum time in ms to wait for a single source */
+    static final long SOURCE_TIMEOUT = 60 * 1000L;
+
+    /** ids of MapRoulette Challenges that are currently being retrieved */
+    private static final Set<Long> pendingChallenges = new HashSet<>();
+
+    /**
+     * Receives the results of the individual task sources
+     */
+    interface ResultListener {
+        /**
+         * Called with the tasks from a single source as soon as they are available
+         * 
+         * @param tasks the downloaded tasks
+         */
+        void onResult(@NonNull Collection<? extends Task> tasks);
+    }
+
     /**
      * Private constructor to stop instantiation
      */
@@ -104,63 +134,150 @@ public final class TransferTasks {
 
         box.makeValidForApi();
 
-        new AsyncTask<Void, Void, Collection<Task>>() {
+        new AsyncTask<Void, Collection<? extends Task>, Void>() {
+            private boolean first = true;
+
             @Override
-            protected Collection<Task> doInBackground(Void... params) {
+            protected Void doInBackground(Void... params) {
                 Log.d(DEBUG_TAG, "querying server for " + box);
-                Set<String> bugFilter = prefs.taskFilter();
-                Collection<Task> result = new ArrayList<>();
-                Collection<Note> noteResult = null;
-                Resources r = context.getResources();
-                if (bugFilter.contains(r.getString(R.string.bugfilter_notes))) {
-                    noteResult = server.getNotesForBox(box, MAX_PER_REQUEST);
-                }
-                if (noteResult != null) {
-                    result.addAll(noteResult);
-                }
-                Collection<OsmoseBug> osmoseResult = null;
-                if (bugFilter.contains(r.getString(R.string.bugfilter_osmose_error)) || bugFilter.contains(r.getString(R.string.bugfilter_osmose_warning))
-                        || bugFilter.contains(r.getString(R.string.bugfilter_osmose_minor_issue))) {
-                    osmoseResult = OsmoseServer.getBugsForBox(context, box, MAX_PER_REQUEST);
-                }
-                if (osmoseResult != null) {
-                    result.addAll(osmoseResult);
-                }
-                Collection<MapRouletteTask> mapRouletteResult = null;
-                if (bugFilter.contains(r.getString(R.string.bugfilter_maproulette))) {
-                    mapRouletteResult = MapRouletteServer.getTasksForBox(context, box, MAX_PER_REQUEST);
-                }
-                if (mapRouletteResult != null) {
-                    result.addAll(mapRouletteResult);
-                    Map<Long, MapRouletteChallenge> challenges = bugs.getChallenges();
-                    for (Entry<Long, MapRouletteChallenge> entry : challenges.entrySet()) {
-                        if (entry.getValue() == null) {
-                            challenges.put(entry.getKey(), MapRouletteServer.getChallenge(context, entry.getKey()));
-                        }
-                    }
-                }
-                return result;
+                query(context, server, box, prefs.taskFilter(), SOURCE_TIMEOUT, this::publishProgress);
+                return null;
             }
 
             @Override
-            protected void onPostExecute(Collection<Task> result) {
-                if (result == null) {
-                    Log.d(DEBUG_TAG, "no bugs found");
-                    return;
+            protected void onProgressUpdate(Collection<? extends Task>... results) {
+                resetIfFirst();
+                for (Collection<? extends Task> result : results) {
+                    merge(context, bugs, result);
                 }
-                if (!add) {
-                    Log.d(DEBUG_TAG, "resetting bug storage");
-                    bugs.reset();
+                if (context instanceof Main) {
+                    ((Main) context).getMap().invalidate();
                 }
+            }
+
+            @Override
+            protected void onPostExecute(Void param) {
+                resetIfFirst();
                 bugs.addBoundingBox(box);
-                merge(context, bugs, result);
                 if (handler != null) {
                     handler.onSuccess();
                 }
             }
+
+            /**
+             * Reset the storage before the first results are merged if we are not adding to it
+             */
+            private void resetIfFirst() {
+                if (first && !add) {
+                    Log.d(DEBUG_TAG, "resetting bug storage");
+                    bugs.reset();
+                }
+                first = false;
+            }
         }.execute();
     }
 
+    /**
+     * Query the task sources selected by filter concurrently
+     * 
+     * The results of each source are passed to listener on the calling thread as soon as they are available, sources
+     * that have not responded after timeout ms are abandoned. Missing MapRoulette Challenges are requested in one batch
+     * as soon as the MapRoulette tasks have arrived, while the other sources may still be running.
+     * 
+     * @param context Android context
+     * @param server current server configuration
+     * @param box the bounding box
+     * @param filter the current task filter
+     * @param timeout maximum time in ms to wait for a source
+     * @param listener receives the results
+     */
+    static void query(@NonNull final Context context, @NonNull final Server server, @NonNull final BoundingBox box, @NonNull Set<String> filter,
+            long timeout, @NonNull ResultListener listener) {
+        Resources r = context.getResources();
+        ExecutorService executor = Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS);
+        Map<Long, Future<MapRouletteChallenge>> challengeRequests = new HashMap<>();
+        try {
+            CompletionService<Collection<? extends Task>> completion = new ExecutorCompletionService<>(executor);
+            int pending = 0;
+            if (filter.contains(r.getString(R.string.bugfilter_notes))) {
+                completion.submit(() -> server.getNotesForBox(box, MAX_PER_REQUEST));
+                pending++;
+            }
+            if (filter.contains(r.getString(R.string.bugfilter_osmose_error)) || filter.contains(r.getString(R.string.bugfilter_osmose_warning))
+                    || filter.contains(r.getString(R.string.bugfilter_osmose_minor_issue))) {
+                completion.submit(() -> OsmoseServer.getBugsForBox(context, box, MAX_PER_REQUEST));
+                pending++;
+            }
+            Future<Collection<? extends Task>> mapRoulette = null;
+            if (filter.contains(r.getString(R.string.bugfilter_maproulette))) {
+                mapRoulette = completion.submit(() -> MapRouletteServer.getTasksForBox(context, box, MAX_PER_REQUEST));
+                pending++;
+            }
+            long deadline = System.currentTimeMillis() + timeout;
+            long challengeDeadline = deadline;
+            for (; pending > 0; pending--) {
+                Future<Collection<? extends Task>> future = completion.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    Log.w(DEBUG_TAG, pending + " task source(s) timed out for " + box);
+                    break;
+                }
+                Collection<? extends Task> result = null;
+                try {
+                    result = future.get();
+                } catch (ExecutionException e) {
+                    Log.e(DEBUG_TAG, "task source failed " + e.getCause());
+                }
+                if (result != null) {
+                    listener.onResult(result);
+                    if (future == mapRoulette) {
+                        requestChallenges(context, executor, challengeRequests);
+                        challengeDeadline = System.currentTimeMillis() + timeout;
+                    }
+                }
+            }
+            Map<Long, MapRouletteChallenge> challenges = App.getTaskStorage().getChallenges();
+            for (Entry<Long, Future<MapRouletteChallenge>> entry : challengeRequests.entrySet()) {
+                try {
+                    MapRouletteChallenge challenge = entry.getValue().get(Math.max(0, challengeDeadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                    if (challenge != null) {
+                        challenges.put(entry.getKey(), challenge);
+                    }
+                } catch (ExecutionException e) {
+                    Log.e(DEBUG_TAG, "retrieving challenge " + entry.getKey() + " failed " + e.getCause());
+                } catch (TimeoutException e) {
+                    Log.w(DEBUG_TAG, "retrieving challenge " + entry.getKey() + " timed out");
+                }
+            }
+        } catch (InterruptedException e) {
+            Log.w(DEBUG_TAG, "query interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+            synchronized (pendingChallenges) {
+                pendingChallenges.removeAll(challengeRequests.keySet());
+            }
+        }
+    }
+
+    /**
+     * Request all MapRoulette Challenges that we have seen in tasks but don't have yet and that are not being
+     * retrieved by a different download
+     * 
+     * @param context Android context
+     * @param executor the ExecutorService to run the requests on
+     * @param requests Map to add the pending requests to
+     */
+    private static void requestChallenges(@NonNull final Context context, @NonNull ExecutorService executor,
+            @NonNull Map<Long, Future<MapRouletteChallenge>> requests) {
+        synchronized (pendingChallenges) {
+            for (final Long id : App.getTaskStorage().getMissingChallenges()) {
+                if (pendingChallenges.add(id)) {
+                    requests.put(id, executor.submit(() -> MapRouletteServer.getChallenge(context, id)));
+                }
+            }
+        }
+    }
+
     /**
      * Upload Notes or bugs to server, needs to be called from main for now (mainly for OAuth dependency)
      * 
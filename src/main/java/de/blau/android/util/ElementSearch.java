@@ -10,10 +10,8 @@ import androidx.annotation.NonNull;
 import de.blau.android.App;
 import de.blau.android.exception.OsmException;
 import de.blau.android.osm.BoundingBox;
-import de.blau.android.osm.Node;
+import de.blau.android.osm.ElementNameIndex;
 import de.blau.android.osm.OsmElement;
-import de.blau.android.osm.Storage;
-import de.blau.android.osm.StorageDelegator;
 import de.blau.android.osm.Tags;
 import de.blau.android.osm.Way;
 import de.blau.android.util.collections.MultiHashMap;
@@ -23,9 +21,7 @@ public class ElementSearch {
     private static final String DEBUG_PLACE_TAG  = "PlaceTagValues...";
     private static final String DEBUG_STREET_TAG = "StreetTagValues...";
     // this is just a very rough number to stop including stuff that is very far away
-    private static final double   MAX_DISTANCE     = 200D;
-    private static final String[] STREET_NAME_TAGS = { Tags.KEY_NAME, Tags.KEY_OFFICIAL_NAME, Tags.KEY_ALT_NAME, Tags.KEY_NAME_LEFT, Tags.KEY_NAME_RIGHT };
-    private static final String[] PLACE_NAME_TAGS  = { Tags.KEY_NAME, Tags.KEY_OFFICIAL_NAME, Tags.KEY_ALT_NAME };
+    public static final double MAX_DISTANCE = 200D;
 
     private String[]          streetNames      = null;
     private Map<String, Long> idsByStreetNames = new HashMap<>();
@@ -54,34 +50,34 @@ public class ElementSearch {
      */
     private String[] getStreetArray(@NonNull final IntCoordinates location) {
         // build list of names with their closest distance to location
-        final StorageDelegator delegator = App.getDelegator();
+        final ElementNameIndex index = App.getDelegator().getNameIndex();
         Map<String, Double> distancesByNames = new HashMap<>();
         List<Way> ways;
         try {
-            ways = distanceFilter ? delegator.getCurrentStorage().getWays(GeoMath.createBoundingBoxForCoordinates(location, MAX_DISTANCE))
-                    : delegator.getCurrentStorage().getWays();
+            ways = index.getStreets(distanceFilter ? GeoMath.createBoundingBoxForCoordinates(location, MAX_DISTANCE) : null);
         } catch (OsmException e) {
             Log.e(DEBUG_STREET_TAG, "BoundingBox caclulation failed with " + e.getMessage());
-            ways = delegator.getCurrentStorage().getWays();
+            ways = index.getStreets((BoundingBox) null);
         }
+        int[] l = new int[] { location.lon, location.lat };
         for (Way way : ways) {
-            if (way.getTagWithKey(Tags.KEY_HIGHWAY) != null) {
-                long iD = way.getOsmId();
-                for (String tag : STREET_NAME_TAGS) {
-                    String name = way.getTagWithKey(tag);
-                    if (name != null) {
-                        int[] l = new int[] { location.lon, location.lat };
-                        double distance = way.getMinDistance(l);
-                        if (distancesByNames.containsKey(name)) {
-                            // way already in list - keep shortest distance
-                            if (distance < distancesByNames.get(name)) {
-                                distancesByNames.put(name, distance);
-                                idsByStreetNames.put(name, iD);
-                            }
-                        } else {
+            long iD = way.getOsmId();
+            double distance = -1D;
+            for (String tag : ElementNameIndex.STREET_NAME_TAGS) {
+                String name = way.getTagWithKey(tag);
+                if (name != null) {
+                    if (distance == -1D) { // only calc once
+                        distance = way.getMinDistance(l);
+                    }
+                    if (distancesByNames.containsKey(name)) {
+                        // way already in list - keep shortest distance
+                        if (distance < distancesByNames.get(name)) {
                             distancesByNames.put(name, distance);
                             idsByStreetNames.put(name, iD);
                         }
+                    } else {
+                        distancesByNames.put(name, distance);
+                        idsByStreetNames.put(name, iD);
                     }
                 }
             }
@@ -137,15 +133,8 @@ public class ElementSearch {
         Map<String, Double> distancesByName = new HashMap<>();
         try {
             final BoundingBox box = GeoMath.createBoundingBoxForCoordinates(location, MAX_DISTANCE);
-            Log.d(DEBUG_PLACE_TAG, "searching for place ways...");
-            final Storage currentStorage = App.getDelegator().getCurrentStorage();
-            List<Way> ways = distanceFilter ? currentStorage.getWays(box) : currentStorage.getWays();
-            List<Node> nodes = distanceFilter ? currentStorage.getNodes(box) : currentStorage.getNodes();
-            processElementsForPlace(location, ways, distancesByName);
-            Log.d(DEBUG_PLACE_TAG, "searching for place nodes...");
-            processElementsForPlace(location, nodes, distancesByName);
-            Log.d(DEBUG_PLACE_TAG, "searching for place relations...");
-            processElementsForPlace(location, currentStorage.getRelations(), distancesByName);
+            Log.d(DEBUG_PLACE_TAG, "searching for places...");
+            processElementsForPlace(location, App.getDelegator().getNameIndex().getPlaces(distanceFilter ? box : null), distancesByName);
         } catch (OsmException oex) {
             Log.e(DEBUG_PLACE_TAG, "BoundingBox caclulation failed with " + oex.getMessage());
         }
@@ -169,7 +158,7 @@ public class ElementSearch {
         for (T e : elements) {
             if (e.getTagWithKey(Tags.KEY_PLACE) != null) {
                 double distance = -1D;
-                for (String tag : PLACE_NAME_TAGS) {
+                for (String tag : ElementNameIndex.PLACE_NAME_TAGS) {
                     String name = e.getTagWithKey(tag);
                     if (name != null) {
                         Log.d(DEBUG_PLACE_TAG, "adding " + name);
@@ -0,0 +1,475 @@
+package de.blau.android.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.gson.stream.JsonWriter;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+
+/**
+ * Registry of counters, histograms and timers for performance instrumentation
+ *
+ * Metrics are created once, typically held in static fields at the point of use, and recording is lock free. When
+ * recording is disabled, which is the default, recording a value costs a single volatile read.
+ *
+ * Histograms use power of two buckets, so percentiles are reported as the upper bound of the bucket they fall in.
+ *
+ * @author simon
+ *
+ */
+public final class Metrics {
+
+    private static final String DEBUG_TAG = Metrics.class.getSimpleName();
+
+    private static final int  BUCKETS = 64;
+    private static final long OFF     = Long.MIN_VALUE;
+
+    private static volatile boolean enabled = false;
+
+    private static final ConcurrentHashMap<String, Metric> registry = new ConcurrentHashMap<>();
+
+    /**
+     * Private constructor to stop instantiation
+     */
+    private Metrics() {
+        // private
+    }
+
+    /**
+     * Base class for all metrics
+     */
+    public abstract static class Metric {
+        final String name;
+
+        /**
+         * Construct a new metric
+         *
+         * @param name the name of the metric
+         */
+        Metric(@NonNull String name) {
+            this.name = name;
+        }
+
+        /**
+         * Get the name of the metric
+         *
+         * @return the name
+         */
+        @NonNull
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Write the current values as a JSON object
+         *
+         * @param writer the JsonWriter
+         * @throws IOException if writing fails
+         */
+        abstract void write(@NonNull JsonWriter writer) throws IOException;
+
+        /**
+         * Get a one line human readable summary of the current values
+         *
+         * @return a String
+         */
+        @NonNull
+        abstract String summary();
+
+        /**
+         * Reset all values
+         */
+        abstract void reset();
+    }
+
+    /**
+     * A monotonic counter
+     */
+    public static final class Counter extends Metric {
+        private final AtomicLong count = new AtomicLong();
+
+        /**
+         * Construct a new counter
+         *
+         * @param name the name of the counter
+         */
+        Counter(@NonNull String name) {
+            super(name);
+        }
+
+        /**
+         * Increment the counter by one
+         */
+        public void inc() {
+            if (enabled) {
+                count.incrementAndGet();
+            }
+        }
+
+        /**
+         * Increment the counter
+         *
+         * @param delta the value to add
+         */
+        public void add(long delta) {
+            if (enabled) {
+                count.addAndGet(delta);
+            }
+        }
+
+        /**
+         * Get the current count
+         *
+         * @return the count
+         */
+        public long get() {
+            return count.get();
+        }
+
+        @Override
+        void write(@NonNull JsonWriter writer) throws IOException {
+            writer.beginObject();
+            writer.name("type").value("counter");
+            writer.name("count").value(count.get());
+            writer.endObject();
+        }
+
+        @Override
+        String summary() {
+            return Long.toString(count.get());
+        }
+
+        @Override
+        void reset() {
+            count.set(0);
+        }
+    }
+
+    /**
+     * A distribution of non-negative values
+     */
+    public static class Histogram extends Metric {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong      count   = new AtomicLong();
+        private final AtomicLong      sum     = new AtomicLong();
+        private final AtomicLong      max     = new AtomicLong();
+
+        /**
+         * Construct a new histogram
+         *
+         * @param name the name of the histogram
+         */
+        Histogram(@NonNull String name) {
+            super(name);
+        }
+
+        /**
+         * Record a value
+         *
+         * @param value the value, negative values are recorded as 0
+         */
+        public void record(long value) {
+            if (enabled) {
+                long v = Math.max(0, value);
+                buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(v) - 1 + (v == 0 ? 1 : 0));
+                count.incrementAndGet();
+                sum.addAndGet(v);
+                long current = max.get();
+                while (v > current && !max.compareAndSet(current, v)) {
+                    current = max.get();
+                }
+            }
+        }
+
+        /**
+         * Get the number of recorded values
+         *
+         * @return the count
+         */
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * Get the mean of the recorded values
+         *
+         * @return the mean or 0 if nothing has been recorded
+         */
+        public double getMean() {
+            long c = count.get();
+            return c == 0 ? 0 : (double) sum.get() / c;
+        }
+
+        /**
+         * Get the maximum recorded value
+         *
+         * @return the maximum
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * Get an approximate percentile
+         *
+         * @param percentile the percentile (0-100)
+         * @return the upper bound of the bucket the percentile falls in, capped at the maximum recorded value
+         */
+        public long getPercentile(double percentile) {
+            long c = count.get();
+            if (c == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(c * percentile / 100D);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(i >= Long.SIZE - 2 ? Long.MAX_VALUE : (1L << (i + 1)) - 1, max.get());
+                }
+            }
+            return max.get();
+        }
+
+        /**
+         * Get the unit the values are recorded in
+         *
+         * @return a String for the unit or null
+         */
+        String getUnit() {
+            return null;
+        }
+
+        /**
+         * Scale a recorded value for display
+         *
+         * @param value the recorded value
+         * @return the scaled value
+         */
+        double scale(double value) {
+            return value;
+        }
+
+        @Override
+        void write(@NonNull JsonWriter writer) throws IOException {
+            writer.beginObject();
+            writer.name("type").value(this instanceof Timer ? "timer" : "histogram");
+            String unit = getUnit();
+            if (unit != null) {
+                writer.name("unit").value(unit);
+            }
+            writer.name("count").value(getCount());
+            writer.name("mean").value(scale(getMean()));
+            writer.name("p50").value(scale(getPercentile(50)));
+            writer.name("p95").value(scale(getPercentile(95)));
+            writer.name("p99").value(scale(getPercentile(99)));
+            writer.name("max").value(scale(getMax()));
+            writer.endObject();
+        }
+
+        @Override
+        String summary() {
+            String unit = getUnit();
+            unit = unit == null ? "" : " " + unit;
+            return String.format(Locale.US, "n=%d mean=%.2f p95=%.2f max=%.2f%s", getCount(), scale(getMean()), scale(getPercentile(95)), scale(getMax()),
+                    unit);
+        }
+
+        @Override
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+    }
+
+    /**
+     * A histogram of durations, recorded in nanoseconds and reported in milliseconds
+     */
+    public static final class Timer extends Histogram {
+
+        /**
+         * Construct a new timer
+         *
+         * @param name the name of the timer
+         */
+        Timer(@NonNull String name) {
+            super(name);
+        }
+
+        /**
+         * Start timing
+         *
+         * @return a value to pass to stop
+         */
+        public long start() {
+            return enabled ? System.nanoTime() : OFF;
+        }
+
+        /**
+         * Stop timing and record the duration
+         *
+         * @param start the value returned by start
+         */
+        public void stop(long start) {
+            if (start != OFF) {
+                record(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        String getUnit() {
+            return "ms";
+        }
+
+        @Override
+        double scale(double value) {
+            return value / 1000000D;
+        }
+    }
+
+    /**
+     * Check if recording is enabled
+     *
+     * @return true if metrics are being recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enable or disable recording, existing values are retained
+     *
+     * @param enable if true record metrics
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * Get a metric from the registry, creating it if necessary
+     *
+     * @param <T> the type of the metric
+     * @param name the name of the metric
+     * @param metric a new instance to use if the metric doesn't exist
+     * @param type the class of the metric
+     * @return the registered metric
+     */
+    @NonNull
+    private static <T extends Metric> T register(@NonNull String name, @NonNull T metric, @NonNull Class<T> type) {
+        Metric existing = registry.putIfAbsent(name, metric);
+        if (existing == null) {
+            return metric;
+        }
+        if (!type.isInstance(existing)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as " + existing.getClass().getSimpleName());
+        }
+        return type.cast(existing);
+    }
+
+    /**
+     * Get a counter
+     *
+     * @param name the name of the counter
+     * @return the Counter
+     */
+    @NonNull
+    public static Counter counter(@NonNull String name) {
+        Metric existing = registry.get(name);
+        return existing instanceof Counter ? (Counter) existing : register(name, new Counter(name), Counter.class);
+    }
+
+    /**
+     * Get a histogram
+     *
+     * @param name the name of the histogram
+     * @return the Histogram
+     */
+    @NonNull
+    public static Histogram histogram(@NonNull String name) {
+        Metric existing = registry.get(name);
+        return existing instanceof Histogram ? (Histogram) existing : register(name, new Histogram(name), Histogram.class);
+    }
+
+    /**
+     * Get a timer
+     *
+     * @param name the name of the timer
+     * @return the Timer
+     */
+    @NonNull
+    public static Timer timer(@NonNull String name) {
+        Metric existing = registry.get(name);
+        return existing instanceof Timer ? (Timer) existing : register(name, new Timer(name), Timer.class);
+    }
+
+    /**
+     * Reset all registered metrics
+     */
+    public static void reset() {
+        for (Metric metric : registry.values()) {
+            metric.reset();
+        }
+    }
+
+    /**
+     * Get the registered metrics sorted by name
+     *
+     * @return a SortedMap of the metrics
+     */
+    @NonNull
+    private static SortedMap<String, Metric> sorted() {
+        return new TreeMap<>(registry);
+    }
+
+    /**
+     * Append a human readable summary of all metrics to a StringBuilder
+     *
+     * @param builder the StringBuilder
+     * @param eol what to use as end of line
+     */
+    public static void appendTo(@NonNull StringBuilder builder, @NonNull String eol) {
+        builder.append("Metrics ").append(enabled ? "enabled" : "disabled").append(eol);
+        for (Entry<String, Metric> entry : sorted().entrySet()) {
+            builder.append(entry.getKey()).append(' ').append(entry.getValue().summary()).append(eol);
+        }
+    }
+
+    /**
+     * Get all metrics as a JSON object keyed by metric name
+     *
+     * @return a String containing the JSON
+     */
+    @NonNull
+    public static String toJson() {
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.setIndent("  ");
+            writer.beginObject();
+            writer.name("timestamp").value(System.currentTimeMillis());
+            writer.name("metrics");
+            writer.beginObject();
+            for (Entry<String, Metric> entry : sorted().entrySet()) {
+                writer.name(entry.getKey());
+                entry.getValue().write(writer);
+            }
+            writer.endObject();
+            writer.endObject();
+        } catch (IOException e) {
+            Log.e(DEBUG_TAG, "toJson " + e.getMessage());
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,106 @@
+package de.blau.android.util;
+
+import android.graphics.Path;
+import androidx.annotation.NonNull;
+import de.blau.android.osm.ViewBox;
+
+/**
+ * Add pre-projected coordinates to a Path
+ *
+ * Coordinates are expected as WGS84*1E7 longitudes and (non-scaled) web mercator*1E7 latitudes, so projecting them to
+ * screen coordinates is a linear transformation.
+ *
+ * @author simon
+ *
+ */
+public final class ProjectedPath {
+
+    private static final int OUT_LEFT   = 1;
+    private static final int OUT_RIGHT  = 2;
+    private static final int OUT_BOTTOM = 4;
+    private static final int OUT_TOP    = 8;
+
+    /**
+     * Private constructor to stop instantiation
+     */
+    private ProjectedPath() {
+        // private
+    }
+
+    /**
+     * Project a run of coordinates and add them to a Path
+     *
+     * Runs of coordinates that are all on the same side outside of the (slightly enlarged) screen are replaced by the
+     * first and last coordinate of the run, coordinates that are closer than minDistance to the previous one are
+     * skipped. Neither changes the visible part of the rendering noticeably.
+     *
+     * @param path the Path to add to
+     * @param lons the longitudes in WGS84*1E7
+     * @param mercatorLats the latitudes in mercator*1E7
+     * @param start the index of the first coordinate
+     * @param end the index after the last coordinate
+     * @param viewBox the current ViewBox
+     * @param width screen width in pixels
+     * @param height screen height in pixels
+     * @param minDistance minimum (manhattan) distance in pixels between coordinates
+     * @param close if true close the sub-path
+     */
+    public static void add(@NonNull Path path, @NonNull int[] lons, @NonNull int[] mercatorLats, int start, int end, @NonNull ViewBox viewBox, int width,
+            int height, float minDistance, boolean close) {
+        if (end <= start) {
+            return;
+        }
+        // equivalent to GeoMath.lonE7ToX and GeoMath.latMercatorE7ToY
+        final int left = viewBox.getLeft();
+        final double scaleX = width / (double) viewBox.getWidth();
+        final double bottom = viewBox.getBottomMercator();
+        final double scaleY = viewBox.getPixelRadius(width);
+        final float margin = Math.max(width, height) / 20f;
+        final float minX = -margin;
+        final float maxX = width + margin;
+        final float minY = -margin;
+        final float maxY = height + margin;
+
+        int runMask = 0;
+        boolean pending = false;
+        float pendingX = 0;
+        float pendingY = 0;
+        float lastX = 0;
+        float lastY = 0;
+        for (int i = start; i < end; i++) {
+            float x = (float) ((lons[i] - left) * scaleX);
+            float y = (float) (height - (mercatorLats[i] / 1E7D - bottom) * scaleY);
+            int code = (x < minX ? OUT_LEFT : 0) | (x > maxX ? OUT_RIGHT : 0) | (y > maxY ? OUT_BOTTOM : 0) | (y < minY ? OUT_TOP : 0);
+            if ((runMask & code) != 0) {
+                // still on the same side outside of the screen
+                runMask &= code;
+                pending = true;
+                pendingX = x;
+                pendingY = y;
+                continue;
+            }
+            if (pending) {
+                path.lineTo(pendingX, pendingY);
+                lastX = pendingX;
+                lastY = pendingY;
+                pending = false;
+            }
+            if (i == start) {
+                path.moveTo(x, y);
+            } else if (i == end - 1 || Math.abs(x - lastX) + Math.abs(y - lastY) >= minDistance) {
+                path.lineTo(x, y);
+            } else {
+                continue;
+            }
+            lastX = x;
+            lastY = y;
+            runMask = code;
+        }
+        if (pending) {
+            path.lineTo(pendingX, pendingY);
+        }
+        if (close) {
+            path.close();
+        }
+    }
+}
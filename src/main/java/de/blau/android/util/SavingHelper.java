@@ -37,6 +37,9 @@ public class SavingHelper<T extends Serializable> {
 
     private static final String DEBUG_TAG = SavingHelper.class.getSimpleName();
 
+    private static final Metrics.Timer SAVE_TIMER = Metrics.timer("state.save");
+    private static final Metrics.Timer LOAD_TIMER = Metrics.timer("state.load");
+
     private static final long DEFAULT_STACK_SIZE = 200000L;
     private static final int  ADD_STACK          = 2000000;
     private static final int  LOTS_OF_MEMORY     = 10000000;
@@ -86,6 +89,7 @@ public class SavingHelper<T extends Serializable> {
     public synchronized boolean save(@NonNull Context context, @NonNull String filename, @NonNull T object, boolean compress, boolean jdk) {
         try {
             Log.d(DEBUG_TAG, "preparing to save " + filename);
+            final long start = SAVE_TIMER.start();
             SaveThread r = new SaveThread(context, filename, object, compress, jdk);
 
             Thread t = new Thread(null, r, SaveThread.DEBUG_TAG, stackSize);
@@ -93,6 +97,7 @@ public class SavingHelper<T extends Serializable> {
             t.join(60000); // wait max 60 s for thread to finish TODO this needs to be done differently given this
                            // limits the size of the file that can be saved
             Log.d(DEBUG_TAG, "save thread finished");
+            SAVE_TIMER.stop(start);
             return r.getResult();
         } catch (Exception e) {
             ACRAHelper.nocrashReport(e, e.getMessage());
@@ -202,12 +207,14 @@ public class SavingHelper<T extends Serializable> {
     public synchronized T load(@NonNull Context context, @NonNull String filename, boolean compressed, boolean deleteOnFail, boolean jdk) {
         try {
             Log.d(DEBUG_TAG, "preparing to load " + filename);
+            final long start = LOAD_TIMER.start();
             LoadThread r = new LoadThread(context, filename, compressed, deleteOnFail, jdk);
             Thread t = new Thread(null, r, LoadThread.DEBUG_TAG, stackSize);
             t.start();
             t.join(60000); // wait max 60 s for thread to finish TODO this needs to be done differently given this
                            // limits the size of the file that can be loaded
             Log.d(DEBUG_TAG, "load thread finished");
+            LOAD_TIMER.stop(start);
             return r.getResult();
         } catch (Exception e) {
             ACRAHelper.nocrashReport(e, e.getMessage());
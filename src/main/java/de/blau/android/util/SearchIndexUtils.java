@@ -19,6 +19,8 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import de.blau.android.App;
+import de.blau.android.names.NameIndex;
+import de.blau.android.names.Names;
 import de.blau.android.names.Names.NameAndTags;
 import de.blau.android.names.Names.TagMap;
 import de.blau.android.osm.OsmElement.ElementType;
@@ -163,38 +165,42 @@ public final class SearchIndexUtils {
         // search in NSI
         Preferences prefs = new Preferences(ctx);
         if (prefs.nameSuggestionPresetsEnabled()) {
-            MultiHashMap<String, NameAndTags> nsi = App.getNameSearchIndex(ctx);
-            Set<String> names = nsi.getKeys();
-            Preset[] presets = App.getCurrentPresets(ctx);
-            Preset preset = Preset.dummyInstance();
-            for (String name : names) {
-                int distance = name.indexOf(term);
-                if (distance == -1) {
-                    distance = OptimalStringAlignment.editDistance(name, term, maxDistance);
-                } else {
-                    distance = 0;
-                }
-                if ((distance >= 0 && distance <= maxDistance)) {
-                    Set<NameAndTags> nats = nsi.get(name);
-                    for (NameAndTags nat : nats) {
-                        if (nat.inUseIn(regions)) {
-                            TagMap tags = nat.getTags();
-                            PresetItem pi = Preset.findBestMatch(presets, tags, false);
-                            PresetItem namePi = preset.new PresetItem(null, nat.getName(), pi == null ? null : pi.getIconpath(), null);
-                            for (Entry<String, String> entry : tags.entrySet()) {
-                                namePi.addTag(entry.getKey(), PresetKeyType.TEXT, entry.getValue(), null);
-                            }
-                            if (pi != null) {
-                                Map<String, PresetField> fields = pi.getFields();
-                                for (Entry<String, PresetField> entry : fields.entrySet()) {
-                                    String key = entry.getKey();
-                                    if (!tags.containsKey(key)) {
-                                        namePi.addField(entry.getValue());
+            Names names = App.getNames(ctx);
+            NameIndex nsi = names.getSearchIndex();
+            if (nsi != null) {
+                long[] mask = nsi.getRegionMask(regions);
+                Preset[] presets = App.getCurrentPresets(ctx);
+                Preset preset = Preset.dummyInstance();
+                for (int i = 0; i < nsi.getNormalizedNameCount(); i++) {
+                    String name = nsi.getNormalizedName(i);
+                    int distance = name.indexOf(term);
+                    if (distance == -1) {
+                        distance = OptimalStringAlignment.editDistance(name, term, maxDistance);
+                    } else {
+                        distance = 0;
+                    }
+                    if ((distance >= 0 && distance <= maxDistance)) {
+                        for (int entry : nsi.getEntriesForNormalizedName(i)) {
+                            if (nsi.inUseIn(entry, mask)) {
+                                NameAndTags nat = names.getEntry(entry);
+                                TagMap tags = nat.getTags();
+                                PresetItem pi = Preset.findBestMatch(presets, tags, false);
+                                PresetItem namePi = preset.new PresetItem(null, nat.getName(), pi == null ? null : pi.getIconpath(), null);
+                                for (Entry<String, String> e : tags.entrySet()) {
+                                    namePi.addTag(e.getKey(), PresetKeyType.TEXT, e.getValue(), null);
+                                }
+                                if (pi != null) {
+                                    Map<String, PresetField> fields = pi.getFields();
+                                    for (Entry<String, PresetField> e : fields.entrySet()) {
+                                        String key = e.getKey();
+                                        if (!tags.containsKey(key)) {
+                                            namePi.addField(e.getValue());
+                                        }
                                     }
                                 }
+                                IndexSearchResult isr = new IndexSearchResult(rescale(term, distance, namePi), namePi);
+                                addToResult(rawResult, isr.weight, isr);
                             }
-                            IndexSearchResult isr = new IndexSearchResult(rescale(term, distance, namePi), namePi);
-                            addToResult(rawResult, isr.weight, isr);
                         }
                     }
                 }
@@ -287,27 +293,30 @@ public final class SearchIndexUtils {
      */
     @Nullable
     public static NameAndTags searchInNames(Context ctx, String name, int maxDistance) {
-        MultiHashMap<String, NameAndTags> namesSearchIndex = App.getNameSearchIndex(ctx);
-        NameAndTags result = null;
+        Names names = App.getNames(ctx);
+        NameIndex namesSearchIndex = names.getSearchIndex();
+        if (namesSearchIndex == null) {
+            return null;
+        }
+        int resultEntry = -1;
         int lastDistance = Integer.MAX_VALUE;
         name = SearchIndexUtils.normalize(name);
-        for (String key : namesSearchIndex.getKeys()) {
-            int distance = OptimalStringAlignment.editDistance(key, name, maxDistance);
+        for (int i = 0; i < namesSearchIndex.getNormalizedNameCount(); i++) {
+            int distance = OptimalStringAlignment.editDistance(namesSearchIndex.getNormalizedName(i), name, maxDistance);
             if (distance >= 0 && distance <= maxDistance) {
                 if (distance < lastDistance) {
-                    Set<NameAndTags> list = namesSearchIndex.get(key);
-                    for (NameAndTags nt : list) {
-                        if (result == null || nt.getCount() > result.getCount()) {
-                            result = nt;
+                    for (int entry : namesSearchIndex.getEntriesForNormalizedName(i)) {
+                        if (resultEntry == -1 || namesSearchIndex.getCount(entry) > namesSearchIndex.getCount(resultEntry)) {
+                            resultEntry = entry;
                         }
                     }
                     lastDistance = distance;
                     if (distance == 0) { // no point in searching for better results
-                        return result;
+                        break;
                     }
                 }
             }
         }
-        return result;
+        return resultEntry != -1 ? names.getEntry(resultEntry) : null;
     }
 }
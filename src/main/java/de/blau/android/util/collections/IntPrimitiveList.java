@@ -0,0 +1,104 @@
+package de.blau.android.util.collections;
+
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Simple list like collection for primitive int values
+ * 
+ * @author simon
+ *
+ */
+public class IntPrimitiveList {
+    private int[] array;
+    private int     size     = 0;
+    private int     capacity = 0;
+
+    /**
+     * Construct a new instance with capacity initial capacity
+     * 
+     * @param capacity initial capacity
+     */
+    public IntPrimitiveList(int capacity) {
+        array = new int[capacity];
+        this.capacity = capacity;
+    }
+
+    /**
+     * Construct a new instance with the default initial capacity
+     */
+    public IntPrimitiveList() {
+        this(12);
+    }
+
+    /**
+     * Count of actual ints in the object
+     * 
+     * @return count of ints stored in the object
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add an int at the end of the list
+     * 
+     * This will increase the size of the backing array if necessary
+     * 
+     * @param v int to add
+     */
+    public void add(int v) {
+        if (size == capacity) {
+            capacity = capacity * 2;
+            array = Arrays.copyOf(array, capacity);
+        }
+        array[size] = v;
+        size++;
+    }
+
+    /**
+     * Get the int at position i
+     * 
+     * @param i position we want the value for
+     * @return the requested int
+     */
+    public int get(int i) {
+        if (i > size - 1) {
+            throw new IndexOutOfBoundsException(Integer.toString(i) + " is larger than " + Integer.toString(size));
+        }
+        return array[i];
+    }
+
+    /**
+     * Reset the contents
+     * 
+     * Note this doesn't shrink the backing array
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Get an int array containing all values
+     * 
+     * @return the int values in an array
+     */
+    @NonNull
+    public int[] values() {
+        return Arrays.copyOf(array, size);
+    }
+
+    /**
+     * Get the array backing this object
+     * 
+     * This is useful if you want to avoid allocating a new array and copying the contents, only useful together with
+     * the value of size()
+     * 
+     * @return the backing int array
+     */
+    @NonNull
+    public int[] getArray() {
+        return array;
+    }
+}
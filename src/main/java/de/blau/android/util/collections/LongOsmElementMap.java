@@ -315,6 +315,87 @@ public class LongOsmElementMap<V extends OsmElement> implements Iterable<V>, Ser
         return result;
     }
 
+    /**
+     * Callback for {@link #visit(Visitor)}
+     * 
+     * @param <V> the element type
+     */
+    public interface Visitor<V> {
+        /**
+         * Called for each element
+         * 
+         * @param element the current element
+         * @return false if the iteration should stop
+         */
+        boolean visit(@NonNull V element);
+    }
+
+    /**
+     * Predicate for {@link #collect(Collection, Filter)}
+     * 
+     * @param <V> the element type
+     */
+    public interface Filter<V> {
+        /**
+         * Test if an element should be included
+         * 
+         * @param element the element
+         * @return true if the element should be included
+         */
+        boolean include(@NonNull V element);
+    }
+
+    /**
+     * Call visitor for all values in the map without allocating a List or Iterator. Note: they are visited unordered
+     * 
+     * The visitor may remove elements from the map, elements added during the iteration may or may not be visited.
+     * 
+     * @param visitor the Visitor
+     * @return true if all elements were visited, false if the visitor stopped the iteration
+     */
+    @SuppressWarnings("unchecked")
+    public boolean visit(@NonNull Visitor<? super V> visitor) {
+        final OsmElement[] data = m_data;
+        final int size = m_size;
+        int found = 0;
+        for (int i = 0; i < data.length && found < size; i++) {
+            OsmElement v = data[i];
+            if (v != FREE_KEY && v != removedKey) {
+                found++;
+                if (!visitor.visit((V) v)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add all values in the map that are accepted by filter to a Collection. Note: they are added unordered
+     * 
+     * @param <C> the Collection type
+     * @param result the Collection to add the values to
+     * @param filter the Filter
+     * @return result
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    public <C extends Collection<? super V>> C collect(@NonNull C result, @NonNull Filter<? super V> filter) {
+        final OsmElement[] data = m_data;
+        final int size = m_size;
+        int found = 0;
+        for (int i = 0; i < data.length && found < size; i++) {
+            OsmElement v = data[i];
+            if (v != FREE_KEY && v != removedKey) {
+                found++;
+                if (filter.include((V) v)) {
+                    result.add((V) v);
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Return the number of elements in the map
      * 
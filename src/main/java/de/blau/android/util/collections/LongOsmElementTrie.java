@@ -0,0 +1,467 @@
+package de.blau.android.util.collections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.blau.android.osm.OsmElement;
+import de.blau.android.util.collections.LongOsmElementMap.Filter;
+import de.blau.android.util.collections.LongOsmElementMap.Visitor;
+
+/**
+ * Persistent long to OsmElement map
+ *
+ * This is a hash array mapped trie on the mixed 64 bit key, as the mixing function is a bijection there are no hash
+ * collisions and no collision nodes are needed. The trie can be frozen with {@link #snapshot()} in constant time, the
+ * returned snapshot is immutable and shares its structure with the map. The map itself stays modifiable, trie nodes that
+ * are not part of a snapshot are changed in place, shared ones are copied on write, so that a sequence of modifications
+ * between two snapshots only copies the affected paths once.
+ *
+ * Modifications are not thread safe and require external synchronization, a snapshot however can be read from any
+ * number of threads without locking once it has been safely published.
+ *
+ * @author simon
+ */
+public class LongOsmElementTrie<V extends OsmElement> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    /**
+     * A node in the trie, slots contain either further TrieNodes or elements
+     */
+    private static final class TrieNode {
+        final Object edit;   // owner, null if immutable
+        int          bitmap;
+        long[]       keys;
+        Object[]     slots;
+
+        /**
+         * Construct a new node
+         *
+         * @param edit the owner token or null
+         * @param bitmap the bitmap of occupied slots
+         * @param keys the keys of the element slots
+         * @param slots the slots
+         */
+        TrieNode(@Nullable Object edit, int bitmap, @NonNull long[] keys, @NonNull Object[] slots) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.keys = keys;
+            this.slots = slots;
+        }
+
+        /**
+         * @return the number of used slots
+         */
+        int count() {
+            return Integer.bitCount(bitmap);
+        }
+    }
+
+    private static final TrieNode EMPTY = new TrieNode(null, 0, new long[0], new Object[0]);
+
+    private TrieNode root;
+    private int      size;
+    private Object   edit;    // null for snapshots
+    private V        removed; // result of the last remove
+
+    /**
+     * Construct a new empty map
+     */
+    public LongOsmElementTrie() {
+        this(EMPTY, 0, new Object());
+    }
+
+    /**
+     * Construct a new modifiable map with the contents of a snapshot
+     *
+     * This takes constant time as the structure is shared
+     *
+     * @param snapshot the snapshot
+     */
+    public LongOsmElementTrie(@NonNull LongOsmElementTrie<V> snapshot) {
+        this(snapshot.root, snapshot.size, new Object());
+        if (snapshot.edit != null) {
+            throw new IllegalArgumentException("Not a snapshot");
+        }
+    }
+
+    /**
+     * Private constructor
+     *
+     * @param root the root node
+     * @param size the number of elements
+     * @param edit the owner token, null for a snapshot
+     */
+    private LongOsmElementTrie(@NonNull TrieNode root, int size, @Nullable Object edit) {
+        this.root = root;
+        this.size = size;
+        this.edit = edit;
+    }
+
+    /**
+     * Get an immutable snapshot of the current contents
+     *
+     * @return a LongOsmElementTrie that cannot be modified
+     */
+    @NonNull
+    public LongOsmElementTrie<V> snapshot() {
+        if (edit == null) {
+            return this;
+        }
+        edit = new Object(); // nodes owned by the old token are now shared with the snapshot
+        return new LongOsmElementTrie<>(root, size, null);
+    }
+
+    /**
+     * Check if this is a snapshot
+     *
+     * @return true if this can't be modified
+     */
+    public boolean isSnapshot() {
+        return edit == null;
+    }
+
+    /**
+     * Get an element
+     *
+     * @param key the key
+     * @return the element or null if not present
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public V get(long key) {
+        long hash = Tools.phiMix(key);
+        TrieNode node = root;
+        for (int shift = 0;; shift += BITS) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            int index = Integer.bitCount(node.bitmap & (bit - 1));
+            Object o = node.slots[index];
+            if (!(o instanceof TrieNode)) {
+                return node.keys[index] == key ? (V) o : null;
+            }
+            node = (TrieNode) o;
+        }
+    }
+
+    /**
+     * Check if an element with key is present
+     *
+     * @param key the key
+     * @return true if present
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Add or replace an element
+     *
+     * @param key the key
+     * @param value the element
+     */
+    public void put(long key, @NonNull V value) {
+        checkModifiable();
+        root = put(root, 0, Tools.phiMix(key), key, value);
+    }
+
+    /**
+     * Add or replace an element in the sub-trie starting at node
+     *
+     * @param node the TrieNode
+     * @param shift the shift for this level
+     * @param hash the mixed key
+     * @param key the key
+     * @param value the element
+     * @return the, potentially new, TrieNode
+     */
+    @NonNull
+    private TrieNode put(@NonNull TrieNode node, int shift, long hash, long key, @NonNull V value) {
+        int bit = 1 << ((hash >>> shift) & MASK);
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            size++;
+            return insertSlot(node, bit, index, key, value);
+        }
+        Object o = node.slots[index];
+        if (o instanceof TrieNode) {
+            TrieNode child = put((TrieNode) o, shift + BITS, hash, key, value);
+            if (child == o) {
+                return node;
+            }
+            return setSlot(node, index, 0L, child);
+        }
+        long existingKey = node.keys[index];
+        if (existingKey == key) {
+            return o == value ? node : setSlot(node, index, key, value);
+        }
+        size++;
+        TrieNode child = pair(shift + BITS, Tools.phiMix(existingKey), existingKey, o, hash, key, value);
+        return setSlot(node, index, 0L, child);
+    }
+
+    /**
+     * Create a sub-trie containing two elements
+     *
+     * @param shift the shift for the level of the new node
+     * @param hash1 the mixed key of the first element
+     * @param key1 the key of the first element
+     * @param value1 the first element
+     * @param hash2 the mixed key of the second element
+     * @param key2 the key of the second element
+     * @param value2 the second element
+     * @return a new TrieNode
+     */
+    @NonNull
+    private TrieNode pair(int shift, long hash1, long key1, @NonNull Object value1, long hash2, long key2, @NonNull Object value2) {
+        int index1 = (int) ((hash1 >>> shift) & MASK);
+        int index2 = (int) ((hash2 >>> shift) & MASK);
+        if (index1 == index2) {
+            TrieNode child = pair(shift + BITS, hash1, key1, value1, hash2, key2, value2);
+            return new TrieNode(edit, 1 << index1, new long[1], new Object[] { child });
+        }
+        if (index1 < index2) {
+            return new TrieNode(edit, (1 << index1) | (1 << index2), new long[] { key1, key2 }, new Object[] { value1, value2 });
+        }
+        return new TrieNode(edit, (1 << index1) | (1 << index2), new long[] { key2, key1 }, new Object[] { value2, value1 });
+    }
+
+    /**
+     * Remove an element
+     *
+     * @param key the key
+     * @return the removed element or null if it wasn't present
+     */
+    @Nullable
+    public V remove(long key) {
+        checkModifiable();
+        removed = null;
+        TrieNode newRoot = remove(root, 0, Tools.phiMix(key), key);
+        root = newRoot != null ? newRoot : EMPTY;
+        V result = removed;
+        removed = null;
+        return result;
+    }
+
+    /**
+     * Remove an element from the sub-trie starting at node
+     *
+     * @param node the TrieNode
+     * @param shift the shift for this level
+     * @param hash the mixed key
+     * @param key the key
+     * @return the, potentially new, TrieNode or null if it is now empty
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private TrieNode remove(@NonNull TrieNode node, int shift, long hash, long key) {
+        int bit = 1 << ((hash >>> shift) & MASK);
+        if ((node.bitmap & bit) == 0) {
+            return node;
+        }
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        Object o = node.slots[index];
+        if (o instanceof TrieNode) {
+            TrieNode child = remove((TrieNode) o, shift + BITS, hash, key);
+            if (child == o) {
+                return node;
+            }
+            if (child == null) {
+                return removeSlot(node, bit, index);
+            }
+            if (child.count() == 1 && !(child.slots[0] instanceof TrieNode)) {
+                // pull single elements up so that the trie stays minimal
+                return setSlot(node, index, child.keys[0], child.slots[0]);
+            }
+            return setSlot(node, index, 0L, child);
+        }
+        if (node.keys[index] != key) {
+            return node;
+        }
+        removed = (V) o;
+        size--;
+        return removeSlot(node, bit, index);
+    }
+
+    /**
+     * Get a node that can be modified with the current token
+     *
+     * @param node the TrieNode
+     * @param capacity the minimum capacity required
+     * @return node or a copy of it
+     */
+    @NonNull
+    private TrieNode editable(@NonNull TrieNode node, int capacity) {
+        if (node.edit == edit && node.slots.length >= capacity) {
+            return node;
+        }
+        int count = node.count();
+        int length = Math.max(capacity, count);
+        if (capacity > node.slots.length) {
+            length = Math.min(1 << BITS, length + (length >> 1));
+        }
+        long[] keys = new long[length];
+        Object[] slots = new Object[length];
+        System.arraycopy(node.keys, 0, keys, 0, count);
+        System.arraycopy(node.slots, 0, slots, 0, count);
+        return new TrieNode(edit, node.bitmap, keys, slots);
+    }
+
+    /**
+     * Set a slot
+     *
+     * @param node the TrieNode
+     * @param index the index of the slot
+     * @param key the key for elements
+     * @param value the element or TrieNode
+     * @return node or a modified copy
+     */
+    @NonNull
+    private TrieNode setSlot(@NonNull TrieNode node, int index, long key, @NonNull Object value) {
+        TrieNode result = editable(node, 0);
+        result.keys[index] = key;
+        result.slots[index] = value;
+        return result;
+    }
+
+    /**
+     * Insert a new slot
+     *
+     * @param node the TrieNode
+     * @param bit the bit for the slot
+     * @param index the index of the slot
+     * @param key the key
+     * @param value the element
+     * @return node or a modified copy
+     */
+    @NonNull
+    private TrieNode insertSlot(@NonNull TrieNode node, int bit, int index, long key, @NonNull Object value) {
+        int count = node.count();
+        TrieNode result = editable(node, count + 1);
+        System.arraycopy(result.keys, index, result.keys, index + 1, count - index);
+        System.arraycopy(result.slots, index, result.slots, index + 1, count - index);
+        result.keys[index] = key;
+        result.slots[index] = value;
+        result.bitmap |= bit;
+        return result;
+    }
+
+    /**
+     * Remove a slot
+     *
+     * @param node the TrieNode
+     * @param bit the bit for the slot
+     * @param index the index of the slot
+     * @return node, a modified copy or null if the node is now empty
+     */
+    @Nullable
+    private TrieNode removeSlot(@NonNull TrieNode node, int bit, int index) {
+        int count = node.count();
+        if (count == 1) {
+            return null;
+        }
+        TrieNode result = editable(node, 0);
+        System.arraycopy(result.keys, index + 1, result.keys, index, count - index - 1);
+        System.arraycopy(result.slots, index + 1, result.slots, index, count - index - 1);
+        result.slots[count - 1] = null;
+        result.bitmap &= ~bit;
+        return result;
+    }
+
+    /**
+     * Throw an exception if this is a snapshot
+     */
+    private void checkModifiable() {
+        if (edit == null) {
+            throw new UnsupportedOperationException("Snapshot can't be modified");
+        }
+    }
+
+    /**
+     * Get the number of elements
+     *
+     * @return the number of elements
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if the map is empty
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get all elements
+     *
+     * @return a List of the elements
+     */
+    @NonNull
+    public List<V> values() {
+        List<V> result = new ArrayList<>(size);
+        LongOsmElementTrie.<V> visit(root, result::add);
+        return result;
+    }
+
+    /**
+     * Call visitor for all elements, they are visited unordered
+     *
+     * @param visitor the Visitor
+     * @return true if all elements were visited, false if the visitor stopped the iteration
+     */
+    public boolean visit(@NonNull Visitor<? super V> visitor) {
+        return visit(root, visitor);
+    }
+
+    /**
+     * Call visitor for all elements in the sub-trie starting at node
+     *
+     * @param node the TrieNode
+     * @param visitor the Visitor
+     * @return true if all elements were visited, false if the visitor stopped the iteration
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> boolean visit(@NonNull TrieNode node, @NonNull Visitor<? super V> visitor) {
+        Object[] slots = node.slots;
+        for (int i = 0, count = node.count(); i < count; i++) {
+            Object o = slots[i];
+            if (o instanceof TrieNode) {
+                if (!visit((TrieNode) o, visitor)) {
+                    return false;
+                }
+            } else if (!visitor.visit((V) o)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add all elements accepted by filter to a Collection, they are added unordered
+     *
+     * @param <C> the Collection type
+     * @param result the Collection to add the elements to
+     * @param filter the Filter
+     * @return result
+     */
+    @NonNull
+    public <C extends Collection<? super V>> C collect(@NonNull C result, @NonNull Filter<? super V> filter) {
+        visit(root, (V v) -> {
+            if (filter.include(v)) {
+                result.add(v);
+            }
+            return true;
+        });
+        return result;
+    }
+}
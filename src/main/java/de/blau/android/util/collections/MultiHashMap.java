@@ -31,6 +31,7 @@ public class MultiHashMap<K, V> implements Serializable {
     private static final long serialVersionUID = 1L;
     private Map<K, Set<V>>    map;
     private boolean           sorted;
+    private transient int     modCount;
 
     /** Creates a regular, unsorted MultiHashMap */
     public MultiHashMap() {
@@ -86,6 +87,7 @@ public class MultiHashMap<K, V> implements Serializable {
             values = (sorted ? new TreeSet<>() : new HashSet<>());
             map.put(key, values);
         }
+        modCount++;
         return item != null && values.add(item);
     }
 
@@ -101,6 +103,7 @@ public class MultiHashMap<K, V> implements Serializable {
             values = (sorted ? new TreeSet<>() : new HashSet<>());
             map.put(key, values);
         }
+        modCount++;
         values.addAll(Arrays.asList(items));
     }
 
@@ -116,6 +119,7 @@ public class MultiHashMap<K, V> implements Serializable {
             values = (sorted ? new TreeSet<>() : new HashSet<>());
             map.put(key, values);
         }
+        modCount++;
         values.addAll(items);
     }
 
@@ -129,6 +133,7 @@ public class MultiHashMap<K, V> implements Serializable {
     public boolean removeItem(@NonNull K key, @NonNull V item) {
         Set<V> values = map.get(key);
         if (values != null) {
+            modCount++;
             return values.remove(item);
         }
         return false;
@@ -140,6 +145,7 @@ public class MultiHashMap<K, V> implements Serializable {
      * @param key key of the values we want to remove
      */
     public void removeKey(@NonNull K key) {
+        modCount++;
         map.remove(key);
     }
 
@@ -162,6 +168,7 @@ public class MultiHashMap<K, V> implements Serializable {
      * Guess what.
      */
     public void clear() {
+        modCount++;
         map.clear();
     }
 
@@ -218,6 +225,17 @@ public class MultiHashMap<K, V> implements Serializable {
         return true;
     }
 
+    /**
+     * Get a counter that changes every time the contents are modified
+     * 
+     * This can be used to detect if data derived from the MultiHashMap needs to be recalculated
+     * 
+     * @return the modification count
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
     /**
      * Get the number of entries in the MultiHashMap
      * 
@@ -0,0 +1,246 @@
+package de.blau.android.util.rtree;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.blau.android.osm.BoundingBox;
+
+/**
+ * Static R-Tree that is bulk loaded once and can't be modified afterwards
+ *
+ * The objects are sorted along a Hilbert curve through the centers of their bounding boxes and then packed in to
+ * completely filled nodes. All node bounding boxes are stored in a single int array, so apart from the objects
+ * themselves the index consists of a small number of allocations independent of its size.
+ *
+ * @author simon
+ *
+ * @param <T> the type of the indexed objects
+ */
+public class PackedRTree<T extends BoundedObject> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int DEFAULT_NODE_SIZE = 16;
+
+    private static final int HILBERT_BITS = 15;
+    private static final int HILBERT_MAX  = (1 << HILBERT_BITS) - 1;
+
+    private final int      nodeSize;
+    private final Object[] items;
+    private final int[]    boxes;       // left, bottom, right, top of the items followed by the nodes, level by level
+    private final int[]    levelStarts; // first entry of each level plus the total number of entries
+
+    /**
+     * Construct a new index with the default node size
+     *
+     * @param objects the objects to index
+     */
+    public PackedRTree(@NonNull List<T> objects) {
+        this(objects, DEFAULT_NODE_SIZE);
+    }
+
+    /**
+     * Construct a new index
+     *
+     * @param objects the objects to index
+     * @param nodeSize the maximum number of children per node
+     */
+    public PackedRTree(@NonNull List<T> objects, int nodeSize) {
+        if (nodeSize < 2) {
+            throw new IllegalArgumentException("Node size must be at least 2");
+        }
+        this.nodeSize = nodeSize;
+        int count = objects.size();
+        // determine the size of the index
+        int levels = 1;
+        int total = count;
+        for (int n = count; n > 1;) {
+            n = (n + nodeSize - 1) / nodeSize;
+            total += n;
+            levels++;
+        }
+        levelStarts = new int[levels + 1];
+        boxes = new int[total * 4];
+        items = new Object[count];
+        if (count == 0) {
+            return;
+        }
+
+        // sort the objects along a Hilbert curve
+        int[] itemBoxes = new int[count * 4];
+        long minX = Long.MAX_VALUE;
+        long minY = Long.MAX_VALUE;
+        long maxX = Long.MIN_VALUE;
+        long maxY = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            BoundingBox box = objects.get(i).getBounds();
+            int o = i * 4;
+            itemBoxes[o] = box.getLeft();
+            itemBoxes[o + 1] = box.getBottom();
+            itemBoxes[o + 2] = box.getRight();
+            itemBoxes[o + 3] = box.getTop();
+            long x = ((long) itemBoxes[o] + itemBoxes[o + 2]) / 2;
+            long y = ((long) itemBoxes[o + 1] + itemBoxes[o + 3]) / 2;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        double scaleX = maxX > minX ? HILBERT_MAX / (double) (maxX - minX) : 0;
+        double scaleY = maxY > minY ? HILBERT_MAX / (double) (maxY - minY) : 0;
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            int o = i * 4;
+            long x = ((long) itemBoxes[o] + itemBoxes[o + 2]) / 2;
+            long y = ((long) itemBoxes[o + 1] + itemBoxes[o + 3]) / 2;
+            long h = hilbert((int) ((x - minX) * scaleX), (int) ((y - minY) * scaleY));
+            keys[i] = (h << 32) | i;
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < count; i++) {
+            int index = (int) keys[i];
+            items[i] = objects.get(index);
+            System.arraycopy(itemBoxes, index * 4, boxes, i * 4, 4);
+        }
+
+        // build the node levels bottom up
+        int level = 0;
+        levelStarts[0] = 0;
+        int start = 0;
+        int end = count;
+        while (true) {
+            levelStarts[++level] = end;
+            if (end - start <= 1) {
+                break;
+            }
+            int parent = end;
+            for (int i = start; i < end; i += nodeSize) {
+                int last = Math.min(i + nodeSize, end);
+                int p = parent * 4;
+                boxes[p] = Integer.MAX_VALUE;
+                boxes[p + 1] = Integer.MAX_VALUE;
+                boxes[p + 2] = Integer.MIN_VALUE;
+                boxes[p + 3] = Integer.MIN_VALUE;
+                for (int c = i; c < last; c++) {
+                    int o = c * 4;
+                    boxes[p] = Math.min(boxes[p], boxes[o]);
+                    boxes[p + 1] = Math.min(boxes[p + 1], boxes[o + 1]);
+                    boxes[p + 2] = Math.max(boxes[p + 2], boxes[o + 2]);
+                    boxes[p + 3] = Math.max(boxes[p + 3], boxes[o + 3]);
+                }
+                parent++;
+            }
+            start = end;
+            end = parent;
+        }
+    }
+
+    /**
+     * Calculate the distance along a Hilbert curve
+     *
+     * @param x x coordinate (0 to HILBERT_MAX)
+     * @param y y coordinate (0 to HILBERT_MAX)
+     * @return the distance
+     */
+    static long hilbert(int x, int y) {
+        final int n = 1 << HILBERT_BITS;
+        long d = 0;
+        for (int s = n / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Get the number of indexed objects
+     *
+     * @return the number of objects
+     */
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * Get the bounding box of all objects
+     *
+     * @return a new BoundingBox or null if the index is empty
+     */
+    @Nullable
+    public BoundingBox getBounds() {
+        if (items.length == 0) {
+            return null;
+        }
+        int o = (levelStarts[levelStarts.length - 1] - 1) * 4;
+        return new BoundingBox(boxes[o], boxes[o + 1], boxes[o + 2], boxes[o + 3]);
+    }
+
+    /**
+     * Add all objects to results
+     *
+     * @param results a Collection holding the results
+     */
+    @SuppressWarnings("unchecked")
+    public void query(@NonNull Collection<T> results) {
+        for (Object o : items) {
+            results.add((T) o);
+        }
+    }
+
+    /**
+     * Add all objects that intersect with a BoundingBox to results
+     *
+     * @param results a Collection holding the results
+     * @param box the BoundingBox
+     */
+    public void query(@NonNull Collection<T> results, @NonNull BoundingBox box) {
+        if (items.length == 0) {
+            return;
+        }
+        int top = levelStarts.length - 2;
+        query(results, top, levelStarts[top + 1] - 1, box.getLeft(), box.getBottom(), box.getRight(), box.getTop());
+    }
+
+    /**
+     * Recursively query a node
+     *
+     * @param results a Collection holding the results
+     * @param level the level the node is on
+     * @param node the index of the node
+     * @param left left side of the query box
+     * @param bottom bottom of the query box
+     * @param right right side of the query box
+     * @param top top of the query box
+     */
+    @SuppressWarnings("unchecked")
+    private void query(@NonNull Collection<T> results, int level, int node, int left, int bottom, int right, int top) {
+        int o = node * 4;
+        if (boxes[o] > right || boxes[o + 2] < left || boxes[o + 1] > top || boxes[o + 3] < bottom) {
+            return;
+        }
+        if (level == 0) {
+            results.add((T) items[node]);
+            return;
+        }
+        int childLevelStart = levelStarts[level - 1];
+        int first = childLevelStart + (node - levelStarts[level]) * nodeSize;
+        int last = Math.min(first + nodeSize, levelStarts[level]);
+        for (int c = first; c < last; c++) {
+            query(results, level - 1, c, left, bottom, right, top);
+        }
+    }
+}
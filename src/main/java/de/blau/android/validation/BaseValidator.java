@@ -14,6 +14,7 @@ import java.util.regex.Pattern;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import de.blau.android.App;
 import de.blau.android.Logic;
 import de.blau.android.R;
@@ -70,6 +71,19 @@ public class BaseValidator implements Validator {
         init(ctx);
     }
 
+    /**
+     * Construct a new instance with explicit rules, for use without an Android Context
+     * 
+     * @param presets the presets to use for matching
+     * @param resurveyTags tags for objects that should be re-surveyed regularly or null
+     * @param checkTags tags that should be present on objects or null
+     */
+    public BaseValidator(@NonNull Preset[] presets, @Nullable MultiHashMap<String, PatternAndAge> resurveyTags, @Nullable Map<String, Boolean> checkTags) {
+        this.presets = presets;
+        this.resurveyTags = resurveyTags;
+        this.checkTags = checkTags;
+    }
+
     @Override
     public void reset(Context context) {
         init(context);
@@ -237,7 +251,7 @@ public class BaseValidator implements Validator {
         final int lon = n.getLon();
         if (App.getDelegator().isInDownload(lon, lat)) { // only check for nodes in download
             BoundingBox box = GeoMath.createBoundingBoxForCoordinates(lat / 1E7D, lon / 1E7D, tolerance, false);
-            List<Way> nearbyWays = App.getDelegator().getCurrentStorage().getWays(box);
+            List<Way> nearbyWays = App.getDelegator().getCurrentSnapshot().getWays(box, new ArrayList<>());
             List<Way> connectedWays = new ArrayList<>();
             BoundingBox bb = w.getBounds();
             for (Way maybeConnected : new ArrayList<>(nearbyWays)) {
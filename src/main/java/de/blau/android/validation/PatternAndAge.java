@@ -17,6 +17,26 @@ public class PatternAndAge {
 
     private Pattern patternCache = null;
 
+    /**
+     * Construct an empty instance
+     */
+    public PatternAndAge() {
+        // empty
+    }
+
+    /**
+     * Construct a new instance
+     * 
+     * @param value the value to match or null (matches everything)
+     * @param isRegexp true if value is a regexp
+     * @param s time between re-surveys in seconds
+     */
+    public PatternAndAge(@Nullable String value, boolean isRegexp, long s) {
+        this.value = value;
+        this.isRegexp = isRegexp;
+        this.s = s;
+    }
+
     /**
      * Test if this matches the supplied value
      * 
@@ -23,6 +23,7 @@ import de.blau.android.services.IMapTileProviderCallback;
 import de.blau.android.services.IMapTileProviderService;
 import de.blau.android.services.util.MapAsyncTileProvider;
 import de.blau.android.services.util.MapTile;
+import de.blau.android.util.Metrics;
 import de.blau.android.util.Util;
 
 /**
@@ -46,6 +47,9 @@ public class MapTileProvider implements ServiceConnection {
      */
     private static final String DEBUG_TAG = MapTileProvider.class.getSimpleName();
 
+    private static final Metrics.Counter CACHE_HITS   = Metrics.counter("tiles.cache.hits");
+    private static final Metrics.Counter CACHE_MISSES = Metrics.counter("tiles.cache.misses");
+
     // ===========================================================
     // Fields
     // ===========================================================
@@ -150,8 +154,10 @@ public class MapTileProvider implements ServiceConnection {
     public Bitmap getMapTile(@NonNull final MapTile aTile, long owner) {
         Bitmap tile = mTileCache.getMapTile(aTile);
         if (tile != null) {
+            CACHE_HITS.inc();
             return tile;
         } else {
+            CACHE_MISSES.inc();
             // from service
             if (MapViewConstants.DEBUGMODE) {
                 Log.i(DEBUG_TAG, "Memory MapTileCache failed for: " + aTile.toString());
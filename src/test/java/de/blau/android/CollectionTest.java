@@ -4,10 +4,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Test;
@@ -19,6 +23,7 @@ import de.blau.android.osm.OsmElementFactory;
 import de.blau.android.util.GeoMath;
 import de.blau.android.util.collections.LongHashSet;
 import de.blau.android.util.collections.LongOsmElementMap;
+import de.blau.android.util.collections.LongOsmElementTrie;
 import de.blau.android.util.collections.MultiHashMap;
 import de.blau.android.util.rtree.RTree;
 
@@ -63,6 +68,87 @@ public class CollectionTest {
         }
     }
 
+    /**
+     * Test the visitor and collect methods
+     */
+    @Test
+    public void hashmapVisitor() {
+        final int count = 10000;
+        LongOsmElementMap<Node> map = new LongOsmElementMap<>(count);
+        for (int i = 0; i < count; i++) {
+            map.put(i, OsmElementFactory.createNode(i, 1L, System.currentTimeMillis() / 1000, OsmElement.STATE_CREATED, i % 1000, i % 1000));
+        }
+        LongOsmElementMap.Filter<Node> filter = n -> n.getLat() < 10;
+
+        List<Node> expected = new ArrayList<>();
+        for (Node n : map.values()) {
+            if (filter.include(n)) {
+                expected.add(n);
+            }
+        }
+        assertEquals(10 * count / 1000, expected.size());
+        assertEquals(expected, map.collect(new ArrayList<>(), filter));
+
+        final int[] visited = new int[1];
+        assertFalse(map.visit(n -> ++visited[0] < 10));
+        assertEquals(10, visited[0]);
+        visited[0] = 0;
+        assertTrue(map.visit(n -> ++visited[0] > 0));
+        assertEquals(count, visited[0]);
+    }
+
+    /**
+     * Test our persistent Long to OsmElement map against a HashMap and check that snapshots don't change
+     */
+    @Test
+    public void trie() {
+        LongOsmElementTrie<Node> trie = new LongOsmElementTrie<>();
+        Map<Long, Node> reference = new HashMap<>();
+        Random random = new Random(4711);
+        LongOsmElementTrie<Node> snapshot = null;
+        Map<Long, Node> snapshotReference = null;
+        for (int i = 0; i < 200000; i++) {
+            long id = random.nextInt(50000) - 10000L;
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(id), trie.remove(id));
+            } else {
+                Node n = OsmElementFactory.createNode(id, 1L, System.currentTimeMillis() / 1000, OsmElement.STATE_CREATED, 0, 0);
+                reference.put(id, n);
+                trie.put(id, n);
+            }
+            assertEquals(reference.size(), trie.size());
+            if (i % 50000 == 0) {
+                snapshot = trie.snapshot();
+                snapshotReference = new HashMap<>(reference);
+            }
+        }
+        for (Map.Entry<Long, Node> e : reference.entrySet()) {
+            assertTrue(e.getValue() == trie.get(e.getKey()));
+        }
+        assertEquals(reference.size(), trie.values().size());
+        // the last snapshot must still have the contents from when it was taken
+        assertNotNull(snapshot);
+        assertTrue(snapshot.isSnapshot());
+        assertEquals(snapshotReference.size(), snapshot.size());
+        assertEquals(snapshotReference.size(), snapshot.values().size());
+        for (Map.Entry<Long, Node> e : snapshotReference.entrySet()) {
+            assertTrue(e.getValue() == snapshot.get(e.getKey()));
+        }
+        try {
+            snapshot.remove(1L);
+            fail("snapshot should be immutable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        // a copy of a snapshot is independent of it
+        LongOsmElementTrie<Node> copy = new LongOsmElementTrie<>(snapshot);
+        for (Long id : snapshotReference.keySet()) {
+            copy.remove(id);
+        }
+        assertTrue(copy.isEmpty());
+        assertEquals(snapshotReference.size(), snapshot.size());
+    }
+
     /**
      * Test our OsmElement hash set implementation
      */
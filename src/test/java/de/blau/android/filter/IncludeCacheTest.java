@@ -0,0 +1,73 @@
+package de.blau.android.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.blau.android.filter.Filter.Include;
+import de.blau.android.osm.Node;
+import de.blau.android.osm.OsmElement;
+import de.blau.android.osm.OsmElementFactory;
+
+public class IncludeCacheTest {
+
+    /**
+     * Create a Node
+     * 
+     * @param id the id
+     * @return a new Node
+     */
+    private Node createNode(long id) {
+        return OsmElementFactory.createNode(id, 1L, System.currentTimeMillis() / 1000, OsmElement.STATE_CREATED, 0, 0);
+    }
+
+    /**
+     * Fill the cache, check results and the list of included elements
+     */
+    @Test
+    public void putGet() {
+        IncludeCache<Node> cache = new IncludeCache<>();
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            Node n = createNode(i % 2 == 0 ? i : -i);
+            nodes.add(n);
+            cache.put(n, Include.values()[i % 3]);
+        }
+        assertEquals(10000, cache.size());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(Include.values()[i % 3], cache.get(nodes.get(i)));
+        }
+        assertEquals(10000 - 3334, cache.getIncluded().size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(nodes.get(0)));
+        assertTrue(cache.getIncluded().isEmpty());
+    }
+
+    /**
+     * Check that pending entries and entries for a different object with the same id are handled correctly
+     */
+    @Test
+    public void pendingAndStale() {
+        IncludeCache<Node> cache = new IncludeCache<>();
+        Node n = createNode(1);
+        cache.put(n, null);
+        assertTrue(cache.containsKey(n));
+        assertNull(cache.get(n));
+        cache.put(n, Include.INCLUDE);
+        assertEquals(Include.INCLUDE, cache.get(n));
+        Node other = createNode(1);
+        assertFalse(cache.containsKey(other));
+        assertNull(cache.get(other));
+        cache.put(other, Include.DONT);
+        assertEquals(1, cache.size());
+        assertEquals(Include.DONT, cache.get(other));
+        assertNull(cache.get(n));
+    }
+}
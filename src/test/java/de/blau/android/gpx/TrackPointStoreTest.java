@@ -0,0 +1,117 @@
+package de.blau.android.gpx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import de.blau.android.gpx.TrackPointStore.Chunk;
+
+public class TrackPointStoreTest {
+
+    private static final int POINTS = 3000;
+
+    /**
+     * Create a store with a diagonal track
+     * 
+     * @return a TrackPointStore
+     */
+    private TrackPointStore createTrack() {
+        TrackPointStore store = new TrackPointStore();
+        for (int i = 0; i < POINTS; i++) {
+            store.add(i == 1500 ? TrackPoint.FLAG_NEWSEGMENT : 0, 47.0 + i / 10000d, 8.0 + i / 10000d, i % 2 == 0 ? Double.NaN : i, 1000L * i);
+        }
+        return store;
+    }
+
+    /**
+     * Check that points are stored and retrieved correctly
+     */
+    @Test
+    public void addGet() {
+        TrackPointStore store = createTrack();
+        assertEquals(POINTS, store.size());
+        assertEquals(3, store.getChunkCount());
+        TrackPoint tp = store.get(1500);
+        assertTrue(tp.isNewSegment());
+        assertEquals(47.15, tp.getLatitude(), 0.0000001);
+        assertEquals(8.15, tp.getLongitude(), 0.0000001);
+        assertFalse(tp.hasAltitude());
+        assertEquals(1500000L, tp.getTime());
+        tp = store.get(1501);
+        assertFalse(tp.isNewSegment());
+        assertEquals(1501d, tp.getAltitude(), 0.0000001);
+    }
+
+    /**
+     * Check that the chunk bounding boxes include the last point of the previous chunk
+     */
+    @Test
+    public void chunkBounds() {
+        TrackPointStore store = createTrack();
+        Chunk first = store.getChunk(0);
+        Chunk second = store.getChunk(1);
+        assertEquals(TrackPointStore.CHUNK_SIZE, first.size());
+        assertEquals(first.getLat(TrackPointStore.CHUNK_SIZE - 1), second.getBottom());
+        assertEquals(first.getLon(TrackPointStore.CHUNK_SIZE - 1), second.getLeft());
+        assertEquals(second.getLat(TrackPointStore.CHUNK_SIZE - 1), second.getTop());
+        assertEquals(POINTS - 2 * TrackPointStore.CHUNK_SIZE, store.getChunk(2).size());
+    }
+
+    /**
+     * Write to and read back from a stream
+     * 
+     * @throws IOException if reading or writing fails
+     */
+    @Test
+    public void writeRead() throws IOException {
+        TrackPointStore store = createTrack();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        store.write(out, 0, 1000);
+        store.write(out, 1000, POINTS);
+        assertEquals(POINTS * TrackPoint.RECORD_SIZE, bytes.size());
+        TrackPointStore loaded = new TrackPointStore();
+        loaded.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), POINTS);
+        assertEquals(POINTS, loaded.size());
+        for (int i = 0; i < POINTS; i++) {
+            TrackPoint expected = store.get(i);
+            TrackPoint actual = loaded.get(i);
+            assertEquals(expected.getLat(), actual.getLat());
+            assertEquals(expected.getLon(), actual.getLon());
+            assertEquals(expected.isNewSegment(), actual.isNewSegment());
+            assertEquals(expected.hasAltitude(), actual.hasAltitude());
+            assertEquals(expected.getTime(), actual.getTime());
+        }
+    }
+
+    /**
+     * Check that prepending keeps the points of both stores in order
+     */
+    @Test
+    public void prepend() {
+        TrackPointStore loaded = createTrack();
+        TrackPointStore recorded = new TrackPointStore();
+        for (int i = 0; i < 10; i++) {
+            recorded.add((byte) 0, 48.0 + i / 10000d, 9.0 + i / 10000d, Double.NaN, 1000L * (POINTS + i));
+        }
+        recorded.prepend(loaded);
+        assertEquals(POINTS + 10, recorded.size());
+        assertEquals(47.0, recorded.get(0).getLatitude(), 1E-7);
+        assertEquals(1000L * (POINTS - 1), recorded.get(POINTS - 1).getTime());
+        assertEquals(48.0, recorded.get(POINTS).getLatitude(), 1E-7);
+        assertEquals(1000L * (POINTS + 9), recorded.get(POINTS + 9).getTime());
+
+        TrackPointStore empty = new TrackPointStore();
+        empty.prepend(createTrack());
+        assertEquals(POINTS, empty.size());
+        assertEquals(1000L * (POINTS - 1), empty.get(POINTS - 1).getTime());
+    }
+}
@@ -0,0 +1 @@
+package de.blau.android.gpx;
@@ -0,0 +1,150 @@
+package de.blau.android.javascript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+public class ScriptCacheTest {
+
+    private static final String SCRIPT = "var result = value; var names = tags.get('name'); if (names != null) { result = names.get(0) + ' ' + value; } result";
+
+    Context    rhinoContext;
+    Scriptable sealed;
+
+    /**
+     * Pre-test setup, a sealed scope similar to the restricted scope used in the app
+     */
+    @Before
+    public void setup() {
+        rhinoContext = Context.enter();
+        rhinoContext.setOptimizationLevel(-1); // interpreted as on Android
+        sealed = rhinoContext.initSafeStandardObjects(null, true);
+    }
+
+    /**
+     * Post-test teardown
+     */
+    @After
+    public void teardown() {
+        Context.exit();
+    }
+
+    /**
+     * Cached scripts give the same results as evaluating the source and aren't recompiled
+     */
+    @Test
+    public void cache() {
+        ScriptCache cache = new ScriptCache(2);
+        Map<String, List<String>> tags = tags("Test");
+        for (int i = 0; i < 10; i++) {
+            Scriptable scope = ScriptCache.newScope(sealed);
+            ScriptCache.bind(scope, "tags", tags);
+            ScriptCache.bind(scope, "value", "v" + i);
+            assertEquals("Test v" + i, Context.toString(cache.exec(rhinoContext, scope, "test", SCRIPT)));
+        }
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getMisses());
+        assertEquals(9, cache.getHits());
+        assertSame(cache.get(rhinoContext, "test", SCRIPT), cache.get(rhinoContext, "test", SCRIPT));
+
+        // same source with a different name is a different entry, least recently used entry is evicted
+        cache.get(rhinoContext, "other", SCRIPT);
+        cache.get(rhinoContext, "third", "1+1");
+        assertEquals(2, cache.size());
+        int misses = cache.getMisses();
+        cache.get(rhinoContext, "test", SCRIPT);
+        assertEquals(misses + 1, cache.getMisses());
+    }
+
+    /**
+     * Globals defined by a script don't leak in to the shared scopes
+     */
+    @Test
+    public void scopes() {
+        ScriptCache cache = new ScriptCache(ScriptCache.DEFAULT_SIZE);
+        Map<String, Object> bindings = new HashMap<>();
+        bindings.put("versionCode", 42);
+        Scriptable versionScope = ScriptCache.newSealedScope(sealed, bindings);
+
+        Scriptable scope = ScriptCache.newScope(versionScope);
+        assertEquals("43", Context.toString(cache.exec(rhinoContext, scope, "define", "var leaked = versionCode + 1; leaked")));
+        assertTrue(ScriptableObject.hasProperty(scope, "leaked"));
+        assertTrue(!ScriptableObject.hasProperty(versionScope, "leaked"));
+
+        scope = ScriptCache.newScope(versionScope);
+        assertEquals("undefined", Context.toString(cache.exec(rhinoContext, scope, "check", "typeof leaked")));
+    }
+
+    /**
+     * Repeated evaluation with the cache gives the same results as evaluating the source and only compiles once
+     */
+    @Test
+    public void repeated() {
+        final int iterations = 100;
+        Map<String, List<String>> tags = tags("Test");
+        ScriptCache cache = new ScriptCache(ScriptCache.DEFAULT_SIZE);
+        evalUncached(tags, iterations);
+        evalCached(cache, tags, iterations);
+        assertEquals(1, cache.getMisses());
+        assertEquals(iterations - 1, cache.getHits());
+    }
+
+    /**
+     * Evaluate the script the way it was done before caching
+     *
+     * @param tags the tags to bind
+     * @param iterations the number of evaluations
+     */
+    private void evalUncached(Map<String, List<String>> tags, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            Scriptable scope = rhinoContext.newObject(sealed);
+            scope.setPrototype(sealed);
+            scope.setParentScope(null);
+            ScriptableObject.putProperty(scope, "tags", Context.javaToJS(tags, scope));
+            ScriptableObject.putProperty(scope, "value", Context.javaToJS("value", scope));
+            assertEquals("Test value", Context.toString(rhinoContext.evaluateString(scope, SCRIPT, "test", 1, null)));
+        }
+    }
+
+    /**
+     * Evaluate the script with the cache
+     *
+     * @param cache the ScriptCache
+     * @param tags the tags to bind
+     * @param iterations the number of evaluations
+     */
+    private void evalCached(ScriptCache cache, Map<String, List<String>> tags, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            Scriptable scope = ScriptCache.newScope(sealed);
+            ScriptCache.bind(scope, "tags", tags);
+            ScriptCache.bind(scope, "value", "value");
+            assertEquals("Test value", Context.toString(cache.exec(rhinoContext, scope, "test", SCRIPT)));
+        }
+    }
+
+    /**
+     * Create a tag map in the format used by the property editor
+     *
+     * @param name the value for the name key
+     * @return a Map of keys to value lists
+     */
+    private Map<String, List<String>> tags(String name) {
+        Map<String, List<String>> tags = new HashMap<>();
+        List<String> values = new ArrayList<>();
+        values.add(name);
+        tags.put("name", values);
+        return tags;
+    }
+}
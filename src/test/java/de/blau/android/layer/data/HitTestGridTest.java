@@ -0,0 +1,66 @@
+package de.blau.android.layer.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.blau.android.App;
+import de.blau.android.osm.Node;
+import de.blau.android.osm.OsmElementFactory;
+import de.blau.android.osm.ViewBox;
+import de.blau.android.osm.Way;
+
+public class HitTestGridTest {
+
+    /**
+     * Check that queries only return elements in nearby cells
+     */
+    @Test
+    public void query() {
+        OsmElementFactory factory = App.getDelegator().getFactory();
+        ViewBox box = new ViewBox(0D, 51.476D, 0.003D, 51.478D);
+        HitTestGrid grid = new HitTestGrid();
+        grid.reset(box, 1000, 2000, 50);
+        assertTrue(grid.isValid(box, 1000, 2000));
+        assertFalse(grid.isValid(box, 1000, 1999));
+
+        Node n1 = factory.createNodeWithNewId(0, 0);
+        Node n2 = factory.createNodeWithNewId(0, 0);
+        grid.addNode(n1, 10, 10);
+        grid.addNode(n2, 500, 500);
+        Way w1 = factory.createWayWithNewId();
+        grid.addWay(w1, new float[] { 0, 1000, 999, 1000 }, 4); // horizontal across the screen
+        Way w2 = factory.createWayWithNewId();
+        grid.addWay(w2, new float[] { 100, 100, 100, 400, 100, 400, 300, 400 }, 8);
+        grid.addWayPoint(w2, 200, 250); // icon
+
+        List<Node> nodes = grid.getNodes(12, 12, 10, new ArrayList<>());
+        assertEquals(1, nodes.size());
+        assertEquals(n1, nodes.get(0));
+        assertTrue(grid.getNodes(700, 700, 10, new ArrayList<>()).isEmpty());
+        // outside of the screen is clamped
+        assertEquals(n1, grid.getNodes(-20, -20, 10, new ArrayList<>()).get(0));
+
+        List<Way> ways = grid.getWays(750, 1010, 20, new ArrayList<>());
+        assertEquals(1, ways.size());
+        assertEquals(w1, ways.get(0));
+        ways = grid.getWays(100, 390, 20, new ArrayList<>()); // touches both segments of w2
+        assertEquals(1, ways.size());
+        assertEquals(w2, ways.get(0));
+        ways = grid.getWays(200, 250, 5, new ArrayList<>());
+        assertEquals(1, ways.size());
+        assertEquals(w2, ways.get(0));
+        assertTrue(grid.getWays(900, 1900, 20, new ArrayList<>()).isEmpty());
+        assertEquals(2, grid.getWays().size());
+
+        grid.invalidate();
+        assertFalse(grid.isValid(box, 1000, 2000));
+        grid.reset(box, 1000, 2000, 50);
+        assertTrue(grid.getNodes(12, 12, 10, new ArrayList<>()).isEmpty());
+    }
+}
@@ -0,0 +1,78 @@
+package de.blau.android.layer.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import androidx.test.filters.LargeTest;
+
+@RunWith(RobolectricTestRunner.class)
+@LargeTest
+public class IconAtlasTest {
+
+    /**
+     * Icons are shared and the least recently used one is evicted when the atlas is full
+     */
+    @Test
+    public void lru() {
+        // one page with room for 4 icons
+        IconAtlas atlas = new IconAtlas(256, IconAtlas.PAGE_SIZE * IconAtlas.PAGE_SIZE * 4);
+        ColorDrawable drawable = new ColorDrawable(Color.RED);
+        drawable.setBounds(0, 0, 256, 256);
+        IconAtlas.Icon first = atlas.add("0", drawable);
+        assertSame(first, atlas.add("0", drawable));
+        for (int i = 1; i < 4; i++) {
+            atlas.add(Integer.toString(i), drawable);
+        }
+        assertEquals(4, atlas.size());
+        assertEquals(1, atlas.getPageCount());
+
+        IconAtlas.Icon second = atlas.get("1");
+        assertNotNull(atlas.get("0")); // now most recently used
+        IconAtlas.Icon added = atlas.add("4", drawable);
+        assertEquals(4, atlas.size());
+        assertEquals(1, atlas.getPageCount());
+        assertFalse(second.isValid());
+        assertNull(atlas.get("1"));
+        assertTrue(first.isValid());
+        assertSame(second.page, added.page);
+        assertEquals(second.src, added.src);
+
+        atlas.clear();
+        assertEquals(0, atlas.size());
+        assertEquals(0, atlas.getPageCount());
+        assertFalse(first.isValid());
+    }
+
+    /**
+     * Drawing an icon keeps it in the atlas, evicted icons are not drawn
+     */
+    @Test
+    public void draw() {
+        IconAtlas atlas = new IconAtlas(256, IconAtlas.PAGE_SIZE * IconAtlas.PAGE_SIZE * 4);
+        ColorDrawable drawable = new ColorDrawable(Color.RED);
+        drawable.setBounds(0, 0, 256, 256);
+        IconAtlas.Icon[] icons = new IconAtlas.Icon[4];
+        for (int i = 0; i < 4; i++) {
+            icons[i] = atlas.add(Integer.toString(i), drawable);
+        }
+        Canvas canvas = new Canvas(Bitmap.createBitmap(256, 256, Config.ARGB_8888));
+        assertTrue(atlas.draw(canvas, icons[0], 0, 0)); // now most recently used
+        atlas.add("4", drawable);
+        assertTrue(icons[0].isValid());
+        assertFalse(icons[1].isValid());
+        assertFalse(atlas.draw(canvas, icons[1], 0, 0));
+    }
+}
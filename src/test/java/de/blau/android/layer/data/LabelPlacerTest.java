@@ -0,0 +1,259 @@
+package de.blau.android.layer.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.blau.android.osm.Node;
+import de.blau.android.osm.OsmElement;
+import de.blau.android.osm.OsmElementFactory;
+
+public class LabelPlacerTest {
+
+    private static final int   WIDTH        = 1080;
+    private static final int   HEIGHT       = 1920;
+    private static final float CELL_SIZE    = 40;
+    private static final float LABEL_WIDTH  = 120;
+    private static final float LABEL_HEIGHT = 20;
+
+    /**
+     * Check that overlapping boxes are rejected
+     */
+    @Test
+    public void collision() {
+        LabelPlacer placer = new LabelPlacer();
+        placer.reset(WIDTH, HEIGHT, CELL_SIZE, 18);
+        placer.occupy(100, 100, 140, 140); // icon
+        assertFalse(placer.isFree(130, 130, 200, 150));
+        assertFalse(placer.isFree(120, 120, 120, 120)); // anchor only
+        assertTrue(placer.isFree(140, 100, 200, 140)); // touching
+        assertTrue(placer.isFree(500, 500, 600, 520));
+
+        Node n = node(1);
+        placer.addCandidate(n, null, 0, 170, 150, 0, 0);
+        assertEquals(1, placer.sortCandidates());
+        assertTrue(placer.place(0, 140, 140, 200, 160));
+        assertTrue(placer.wasPlaced(n));
+        assertFalse(placer.isFree(150, 150, 160, 155));
+        // boxes spanning multiple cells and off screen
+        placer.occupy(-100, 1000, 2000, 1010);
+        assertFalse(placer.isFree(1070, 1005, 1100, 1020));
+        assertTrue(placer.isFree(2000, 3000, 2100, 3100));
+
+        placer.reset(WIDTH, HEIGHT, CELL_SIZE, 18);
+        assertTrue(placer.isFree(100, 100, 140, 140));
+    }
+
+    /**
+     * Check that the icon of an element only blocks the labels of other elements
+     */
+    @Test
+    public void ownIcon() {
+        LabelPlacer placer = new LabelPlacer();
+        placer.reset(WIDTH, HEIGHT, CELL_SIZE, 18);
+        Node a = node(1);
+        Node b = node(2);
+        placer.occupy(a, 100, 100, 140, 140); // icon of a
+        placer.addCandidate(a, null, 0, 120, 150, 0, 0);
+        placer.addCandidate(b, null, 0, 120, 150, 0, 0);
+        assertEquals(2, placer.sortCandidates());
+        int candidateA = placer.getCandidate(0);
+        int candidateB = placer.getCandidate(1);
+        assertSame(a, placer.getElement(candidateA));
+        assertFalse(placer.isFree(120, 130, 120, 150));
+        assertFalse(placer.isFree(candidateB, 120, 130, 120, 150));
+        assertTrue(placer.isFree(candidateA, 120, 130, 120, 150));
+        assertTrue(placer.place(candidateA, 90, 130, 150, 150));
+        assertFalse(placer.place(candidateB, 90, 130, 150, 150));
+    }
+
+    /**
+     * Check that candidates are ordered by rank, then size and then the order they were added in
+     */
+    @Test
+    public void priority() {
+        LabelPlacer placer = new LabelPlacer();
+        placer.reset(WIDTH, HEIGHT, CELL_SIZE, 18);
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            nodes.add(node(i));
+        }
+        placer.addCandidate(nodes.get(0), null, 0, 0, 0, 0, 10);
+        placer.addCandidate(nodes.get(1), null, 0, 0, 0, 0, 10);
+        placer.addCandidate(nodes.get(2), null, 0, 0, 0, LabelPlacer.RANK_IMPORTANT, 0);
+        placer.addCandidate(nodes.get(3), null, 0, 0, 0, LabelPlacer.RANK_SELECTED, 0);
+        placer.addCandidate(nodes.get(4), null, 0, 0, 0, 0, 1000);
+        placer.addCandidate(nodes.get(5), null, 0, 0, 0, 0, 0);
+        assertEquals(6, placer.sortCandidates());
+        int[] expected = { 3, 2, 4, 0, 1, 5 };
+        for (int i = 0; i < expected.length; i++) {
+            assertSame(nodes.get(expected[i]), placer.getElement(placer.getCandidate(i)));
+        }
+    }
+
+    /**
+     * Check that a label placed in the previous frame wins against an overlapping one when panning, but not after
+     * zooming
+     */
+    @Test
+    public void stability() {
+        LabelPlacer placer = new LabelPlacer();
+        Node a = node(1);
+        Node b = node(2);
+        assertSame(a, frame(placer, 18, a, 100, b, 10));
+        assertSame(a, frame(placer, 18, a, 10, b, 100)); // panning
+        assertSame(b, frame(placer, 19, a, 10, b, 100)); // zoomed
+    }
+
+    /**
+     * Render a frame with two overlapping candidates
+     *
+     * @param placer the LabelPlacer
+     * @param zoom the zoom level
+     * @param a first element
+     * @param sizeA size of the first element
+     * @param b second element
+     * @param sizeB size of the second element
+     * @return the element whose label was placed
+     */
+    private OsmElement frame(LabelPlacer placer, int zoom, OsmElement a, float sizeA, OsmElement b, float sizeB) {
+        placer.reset(WIDTH, HEIGHT, CELL_SIZE, zoom);
+        placer.addCandidate(a, null, 0, 100, 100, 0, sizeA);
+        placer.addCandidate(b, null, 0, 110, 105, 0, sizeB);
+        OsmElement result = null;
+        int count = placer.sortCandidates();
+        for (int i = 0; i < count; i++) {
+            int candidate = placer.getCandidate(i);
+            float x = placer.getX(candidate);
+            float y = placer.getY(candidate);
+            if (placer.place(candidate, x - LABEL_WIDTH / 2, y - LABEL_HEIGHT, x + LABEL_WIDTH / 2, y)) {
+                assertNull(result);
+                result = placer.getElement(candidate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check the label width cache
+     */
+    @Test
+    public void widths() {
+        LabelPlacer placer = new LabelPlacer();
+        assertNull(placer.getWidth(null, "test"));
+        placer.putWidth(null, "test", 12.5f);
+        assertEquals(12.5f, placer.getWidth(null, "test"), 0f);
+        placer.clearWidths();
+        assertNull(placer.getWidth(null, "test"));
+    }
+
+    /**
+     * Place labels for a dense synthetic data set and compare with checking every placed label
+     *
+     * The timing comparison is in LabelPlacerBenchmark
+     */
+    @Test
+    public void dense() {
+        final int count = 2000;
+        Random random = new Random(1234);
+        List<Node> nodes = new ArrayList<>();
+        float[] xs = new float[count];
+        float[] ys = new float[count];
+        float[] sizes = new float[count];
+        for (int i = 0; i < count; i++) {
+            nodes.add(node(i));
+            xs[i] = random.nextFloat() * WIDTH;
+            ys[i] = random.nextFloat() * HEIGHT;
+            sizes[i] = random.nextFloat() * 10000;
+        }
+        int placed = placeAll(new LabelPlacer(), nodes, xs, ys, sizes, 18);
+        assertEquals(placeNaive(nodes, xs, ys, sizes), placed);
+        assertTrue(placed < count / 2); // many labels are dropped
+    }
+
+    /**
+     * Place all candidates with the LabelPlacer
+     *
+     * @param placer the LabelPlacer
+     * @param nodes the elements
+     * @param xs the x coordinates
+     * @param ys the y coordinates
+     * @param sizes the sizes
+     * @param zoom the zoom level
+     * @return the number of placed labels
+     */
+    private int placeAll(LabelPlacer placer, List<Node> nodes, float[] xs, float[] ys, float[] sizes, int zoom) {
+        placer.reset(WIDTH, HEIGHT, CELL_SIZE, zoom);
+        for (int i = 0; i < nodes.size(); i++) {
+            placer.addCandidate(nodes.get(i), null, 0, xs[i], ys[i], 0, sizes[i]);
+        }
+        int placed = 0;
+        int count = placer.sortCandidates();
+        for (int i = 0; i < count; i++) {
+            int candidate = placer.getCandidate(i);
+            float x = placer.getX(candidate);
+            float y = placer.getY(candidate);
+            if (placer.isFree(x, y - LABEL_HEIGHT, x, y) && placer.place(candidate, x - LABEL_WIDTH / 2, y - LABEL_HEIGHT, x + LABEL_WIDTH / 2, y)) {
+                placed++;
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * Place all candidates by checking against all placed labels
+     *
+     * @param nodes the elements
+     * @param xs the x coordinates
+     * @param ys the y coordinates
+     * @param sizes the sizes
+     * @return the number of placed labels
+     */
+    private int placeNaive(List<Node> nodes, float[] xs, float[] ys, float[] sizes) {
+        final int count = nodes.size();
+        List<Integer> sorted = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            sorted.add(i);
+        }
+        sorted.sort((i1, i2) -> {
+            int result = Long.compare((long) sizes[i2], (long) sizes[i1]);
+            return result != 0 ? result : Integer.compare(i1, i2);
+        });
+        List<float[]> placed = new ArrayList<>();
+        for (int i : sorted) {
+            float left = xs[i] - LABEL_WIDTH / 2;
+            float right = xs[i] + LABEL_WIDTH / 2;
+            float top = ys[i] - LABEL_HEIGHT;
+            float bottom = ys[i];
+            boolean free = true;
+            for (float[] box : placed) {
+                if (left < box[2] && right > box[0] && top < box[3] && bottom > box[1]) {
+                    free = false;
+                    break;
+                }
+            }
+            if (free) {
+                placed.add(new float[] { left, top, right, bottom });
+            }
+        }
+        return placed.size();
+    }
+
+    /**
+     * Create a Node
+     *
+     * @param id the id
+     * @return a new Node
+     */
+    private static Node node(long id) {
+        return OsmElementFactory.createNode(id, 1L, 0L, OsmElement.STATE_UNCHANGED, 0, 0);
+    }
+}
@@ -0,0 +1 @@
+package de.blau.android.layer.data;
\ No newline at end of file
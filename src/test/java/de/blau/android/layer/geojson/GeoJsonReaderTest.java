@@ -0,0 +1,163 @@
+package de.blau.android.layer.geojson;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gson.JsonSyntaxException;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+
+import de.blau.android.osm.BoundingBox;
+import de.blau.android.util.GeoJSONConstants;
+import de.blau.android.util.rtree.PackedRTree;
+
+public class GeoJsonReaderTest {
+
+    private static final String COLLECTION = "{\"features\":[" // type intentionally after the features
+            + "{\"type\":\"Feature\",\"id\":7,\"properties\":{\"name\":\"a\",\"nested\":{\"x\":1}},"
+            + "\"geometry\":{\"coordinates\":[1.5,47.25,400],\"type\":\"Point\"}},"
+            + "{\"type\":\"Feature\",\"properties\":null,\"geometry\":null},"
+            + "{\"type\":\"Feature\",\"properties\":{},\"geometry\":{\"type\":\"MultiPolygon\",\"coordinates\":["
+            + "[[[0,0],[4,0],[4,4],[0,4],[0,0]],[[1,1],[1,2],[2,2],[2,1],[1,1]]]," //
+            + "[[[10,10],[11,10],[11,11],[10,10]]]]}}," //
+            + "{\"type\":\"Feature\",\"properties\":{\"name\":\"c\"},\"geometry\":{\"type\":\"GeometryCollection\",\"geometries\":["
+            + "{\"type\":\"LineString\",\"coordinates\":[[20,20],[21,21]]},{\"type\":\"Point\",\"coordinates\":[22,22]}]}}"
+            + "],\"type\":\"FeatureCollection\",\"foreign\":[1,2,3]}";
+
+    /**
+     * Read a FeatureCollection
+     */
+    @Test
+    public void readCollection() {
+        List<CompactFeature> features = read(COLLECTION);
+        assertEquals(3, features.size()); // feature without geometry skipped
+
+        CompactFeature point = features.get(0);
+        assertEquals(GeoJSONConstants.POINT, point.getGeometry().getType());
+        assertEquals("a", point.getLabel("name"));
+        assertNull(point.getLabel("nested"));
+        Feature f = point.toFeature();
+        assertEquals("7", f.id());
+        assertEquals(1.5, ((Point) f.geometry()).longitude(), 1E-7);
+        assertEquals(47.25, ((Point) f.geometry()).latitude(), 1E-7);
+
+        CompactGeometry mp = features.get(1).getGeometry();
+        assertEquals(GeoJSONConstants.MULTIPOLYGON, mp.getType());
+        assertEquals(3, mp.parts.length);
+        assertEquals(2, mp.polygons.length);
+        assertTrue(mp.contains(5000000, 35000000));
+        assertFalse(mp.contains(15000000, 15000000)); // in the hole
+        assertTrue(mp.contains(107000000, 103000000));
+        MultiPolygon g = (MultiPolygon) mp.toGeometry();
+        assertEquals(2, g.coordinates().size());
+        assertEquals(2, g.coordinates().get(0).size());
+        assertEquals(4, g.coordinates().get(1).get(0).size());
+
+        CompactGeometry gc = features.get(2).getGeometry();
+        assertEquals(GeoJSONConstants.GEOMETRYCOLLECTION, gc.getType());
+        assertEquals(2, gc.geometries.length);
+        BoundingBox box = gc.getBounds();
+        assertEquals(200000000, box.getLeft());
+        assertEquals(220000000, box.getTop());
+    }
+
+    /**
+     * Read single Features and bare geometries
+     */
+    @Test
+    public void readSingle() {
+        List<CompactFeature> features = read("{\"type\":\"Feature\",\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[1,1],[2,2],[3,1]]}}");
+        assertEquals(1, features.size());
+        assertEquals(1, features.get(0).getGeometry().parts.length);
+        features = read("{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[1,0],[1,1],[0,0]]]}");
+        assertEquals(1, features.size());
+        assertEquals(GeoJSONConstants.POLYGON, features.get(0).toFeature().geometry().type());
+    }
+
+    /**
+     * Coordinates that don't fit the geometry type are rejected
+     */
+    @Test
+    public void invalidCoordinates() {
+        try {
+            read("{\"type\":\"Polygon\",\"coordinates\":[[0,0],[1,0],[1,1],[0,0]]}");
+            fail("Expected JsonSyntaxException");
+        } catch (JsonSyntaxException e) {
+            // expected
+        }
+        try {
+            read("{\"type\":\"LineString\",\"coordinates\":[[0,0],[[1,0]]]}");
+            fail("Expected JsonSyntaxException");
+        } catch (JsonSyntaxException e) {
+            // expected
+        }
+        try {
+            read("{\"type\":\"Point\",\"coordinates\":[0,");
+            fail("Expected JsonSyntaxException");
+        } catch (JsonSyntaxException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Query the packed index
+     */
+    @Test
+    public void index() {
+        StringBuilder json = new StringBuilder("{\"type\":\"FeatureCollection\",\"features\":[");
+        for (int i = 0; i < 1000; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            double lon = (i % 40) * 0.01;
+            double lat = (i / 40) * 0.01;
+            json.append("{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[" + lon + "," + lat + "]}}");
+        }
+        json.append("]}");
+        PackedRTree<CompactFeature> tree = new PackedRTree<>(read(json.toString()));
+        assertEquals(1000, tree.size());
+        BoundingBox bounds = tree.getBounds();
+        assertEquals(0, bounds.getLeft());
+        assertEquals(3900000, bounds.getRight());
+        assertEquals(2400000, bounds.getTop());
+
+        List<CompactFeature> result = new ArrayList<>();
+        tree.query(result, new BoundingBox(0.095, 0.095, 0.205, 0.155));
+        assertEquals(11 * 6, result.size());
+        for (CompactFeature cf : result) {
+            int lon = cf.getGeometry().lons[0];
+            int lat = cf.getGeometry().lats[0];
+            assertTrue(lon >= 1000000 && lon <= 2000000);
+            assertTrue(lat >= 1000000 && lat <= 1500000);
+        }
+        result.clear();
+        tree.query(result);
+        assertEquals(1000, result.size());
+    }
+
+    /**
+     * Read a string
+     *
+     * @param json the GeoJSON
+     * @return a List of CompactFeature
+     */
+    private List<CompactFeature> read(String json) {
+        try {
+            return GeoJsonReader.read(new StringReader(json));
+        } catch (IOException e) {
+            fail(e.getMessage());
+            return null;
+        }
+    }
+}
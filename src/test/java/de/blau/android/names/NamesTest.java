@@ -0,0 +1,96 @@
+package de.blau.android.names;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.filters.LargeTest;
+import de.blau.android.App;
+import de.blau.android.names.Names.NameAndTags;
+import de.blau.android.osm.Tags;
+
+@RunWith(RobolectricTestRunner.class)
+@LargeTest
+public class NamesTest {
+
+    /**
+     * Check that the generated index returns the expected entries
+     */
+    @Test
+    public void nameSuggestions() {
+        Context ctx = ApplicationProvider.getApplicationContext();
+        Names names = App.getNames(ctx);
+        NameIndex index = names.getSearchIndex();
+        assertNotNull(index);
+        assertTrue(new File(ctx.getFilesDir(), NameIndex.INDEX_FILE).exists());
+
+        SortedMap<String, String> tags = new TreeMap<>();
+        tags.put(Tags.KEY_AMENITY, "bank");
+        List<NameAndTags> all = names.getNames(tags, null);
+        List<NameAndTags> spain = names.getNames(tags, Arrays.asList("ES"));
+        assertFalse(spain.isEmpty());
+        assertTrue(spain.size() < all.size());
+        NameAndTags abanca = null;
+        for (NameAndTags nat : spain) {
+            assertTrue(nat.inUseIn(Arrays.asList("ES")));
+            if ("ABANCA".equals(nat.getName())) {
+                abanca = nat;
+            }
+        }
+        assertNotNull(abanca);
+        assertEquals("bank", abanca.getTags().get(Tags.KEY_AMENITY));
+        assertEquals("ABANCA", abanca.getTags().get(Tags.KEY_BRAND));
+        assertNull(abanca.getTags().get(Tags.KEY_BRAND_WIKIDATA));
+
+        // the search index should return the same entry for the normalized name
+        boolean found = false;
+        for (int i = 0; i < index.getNormalizedNameCount(); i++) {
+            if ("abanca".equals(index.getNormalizedName(i))) {
+                for (int entry : index.getEntriesForNormalizedName(i)) {
+                    found = found || abanca.equals(names.getEntry(entry));
+                }
+            }
+        }
+        assertTrue(found);
+
+        // re-opening with a different stamp should fail
+        assertNull(NameIndex.open(new File(ctx.getFilesDir(), NameIndex.INDEX_FILE), index.getStamp() + 1));
+        assertNotNull(NameIndex.open(new File(ctx.getFilesDir(), NameIndex.INDEX_FILE), index.getStamp()));
+    }
+
+    /**
+     * Check that an index is created without categories if they can't be read
+     * 
+     * @throws IOException if creating the index fails
+     */
+    @Test
+    public void brokenCategories() throws IOException {
+        Context ctx = ApplicationProvider.getApplicationContext();
+        String nsi = "{\"amenity\": {\"bank\": {\"ABANCA\": {\"count\": 100, \"tags\": {\"brand\": \"ABANCA\"}}}}}";
+        String categories = "{\"banks\": {\"amenity\": [\"bank\"";
+        File file = new File(ctx.getFilesDir(), "broken-" + NameIndex.INDEX_FILE);
+        NameIndex index = NameIndex.create(new ByteArrayInputStream(nsi.getBytes(StandardCharsets.UTF_8)),
+                new ByteArrayInputStream(categories.getBytes(StandardCharsets.UTF_8)), file, 1);
+        assertEquals(0, index.getCategoryCount());
+        assertEquals(1, index.getNormalizedNameCount());
+        assertEquals("abanca", index.getNormalizedName(0));
+        file.delete(); // NOSONAR
+    }
+}
@@ -0,0 +1 @@
+package de.blau.android.names;
\ No newline at end of file
@@ -0,0 +1,125 @@
+package de.blau.android.osm;
+
+import static de.blau.android.osm.StorageDelegatorTest.toE7;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import androidx.annotation.NonNull;
+
+public class AutoPrunerTest {
+
+    private static final BoundingBox NEAR = new BoundingBox(-0.001, 51.475, 0.004, 51.479);
+
+    StorageDelegator d;
+
+    /**
+     * Pre-test setup, merge some downloaded data in two areas far apart from each other
+     */
+    @Before
+    public void setup() {
+        d = new StorageDelegator();
+        d.getAutoPruner();
+        Storage downloaded = new Storage();
+        Way near = addWay(downloaded, 1, 0.001, 51.477);
+        Way far = addWay(downloaded, 11, 1.001, 52.001);
+        Map<String, String> tags = new HashMap<>();
+        tags.put(Tags.KEY_AMENITY, "bench");
+        Node poi = OsmElementFactory.createNode(14L, 1L, 0L, OsmElement.STATE_UNCHANGED, toE7(52.0015), toE7(1.0015));
+        poi.setTags(tags);
+        downloaded.insertElementUnsafe(poi);
+        addRelation(downloaded, 1, near, far);
+        addRelation(downloaded, 2, far);
+        assertTrue(d.mergeData(downloaded, null));
+        d.getAutoPruner().viewed(NEAR);
+    }
+
+    /**
+     * Add an unchanged Way with three Nodes
+     *
+     * @param storage the Storage to add to
+     * @param id the id of the Way and the first Node
+     * @param lon WGS84 longitude of the first Node
+     * @param lat WGS84 latitude of the first Node
+     * @return the Way
+     */
+    @NonNull
+    private Way addWay(@NonNull Storage storage, long id, double lon, double lat) {
+        Way w = OsmElementFactory.createWay(id, 1L, 0L, OsmElement.STATE_UNCHANGED);
+        for (int i = 0; i < 3; i++) {
+            Node n = OsmElementFactory.createNode(id + i, 1L, 0L, OsmElement.STATE_UNCHANGED, toE7(lat), toE7(lon + i * 0.0005));
+            storage.insertElementUnsafe(n);
+            w.addNode(n);
+        }
+        storage.insertElementUnsafe(w);
+        return w;
+    }
+
+    /**
+     * Add an unchanged Relation
+     *
+     * @param storage the Storage to add to
+     * @param id the id of the Relation
+     * @param members the member elements
+     */
+    private void addRelation(@NonNull Storage storage, long id, @NonNull OsmElement... members) {
+        Relation r = OsmElementFactory.createRelation(id, 1L, 0L, OsmElement.STATE_UNCHANGED);
+        for (OsmElement e : members) {
+            r.addMember(new RelationMember("", e));
+            e.addParentRelation(r);
+        }
+        storage.insertElementUnsafe(r);
+    }
+
+    /**
+     * Data that hasn't been viewed is removed together with relations that no longer have any members
+     */
+    @Test
+    public void prune() {
+        Storage current = d.getCurrentStorage();
+        assertEquals(7, current.getNodeCount());
+        // target not reached
+        assertEquals(0, d.getAutoPruner().prune(null, NEAR, 7));
+        assertEquals(6, d.getAutoPruner().prune(null, NEAR, 0));
+        current = d.getCurrentStorage();
+        assertEquals(3, current.getNodeCount());
+        assertEquals(1, current.getWayCount());
+        assertNotNull(current.getWay(1L));
+        assertNull(current.getWay(11L));
+        assertNull(current.getNode(14L));
+        assertNull(current.getRelation(2L));
+        Relation r = current.getRelation(1L);
+        assertNotNull(r);
+        List<RelationMember> members = r.getMembers();
+        assertEquals(2, members.size());
+        assertNotNull(members.get(0).getElement());
+        assertNull(members.get(1).getElement());
+        assertTrue(d.isDirty());
+    }
+
+    /**
+     * Changed data and the elements it depends on is retained, the index is rebuilt from the current data
+     */
+    @Test
+    public void keepChanged() {
+        Way far = d.getCurrentStorage().getWay(11L);
+        Map<String, String> tags = new HashMap<>();
+        tags.put(Tags.KEY_HIGHWAY, "path");
+        d.setTags(far, tags);
+        d.getAutoPruner().invalidate();
+        assertEquals(1, d.getAutoPruner().prune(null, NEAR, 0));
+        Storage current = d.getCurrentStorage();
+        assertEquals(6, current.getNodeCount());
+        assertNotNull(current.getWay(11L));
+        assertNull(current.getNode(14L));
+        assertNotNull(current.getRelation(2L));
+    }
+}
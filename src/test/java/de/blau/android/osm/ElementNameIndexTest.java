@@ -0,0 +1,124 @@
+package de.blau.android.osm;
+
+import static de.blau.android.osm.StorageDelegatorTest.toE7;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ElementNameIndexTest {
+
+    private static final BoundingBox NEAR = new BoundingBox(-0.001, 51.475, 0.004, 51.479);
+    private static final BoundingBox FAR  = new BoundingBox(1.0, 52.0, 1.01, 52.01);
+
+    StorageDelegator d;
+    Way              street;
+
+    /**
+     * Pre-test setup
+     */
+    @Before
+    public void setup() {
+        d = new StorageDelegator();
+        street = StorageDelegatorTest.addWayToStorage(d, false);
+        Map<String, String> tags = new HashMap<>();
+        tags.put(Tags.KEY_HIGHWAY, "residential");
+        tags.put(Tags.KEY_NAME, "Main Street");
+        d.setTags(street, tags);
+    }
+
+    /**
+     * Create a Node with tags
+     *
+     * @param lat WGS84 latitude
+     * @param lon WGS84 longitude
+     * @param tags the tags
+     * @return the Node
+     */
+    private Node addNode(double lat, double lon, Map<String, String> tags) {
+        Node n = d.getFactory().createNodeWithNewId(toE7(lat), toE7(lon));
+        d.insertElementSafe(n);
+        d.setTags(n, tags);
+        return n;
+    }
+
+    /**
+     * Look up streets by name and area
+     */
+    @Test
+    public void streets() {
+        ElementNameIndex index = d.getNameIndex();
+        List<Way> ways = index.getStreets(NEAR);
+        assertEquals(1, ways.size());
+        assertSame(street, ways.get(0));
+        assertTrue(index.getStreets(FAR).isEmpty());
+        assertEquals(1, index.getStreets((BoundingBox) null).size());
+        assertEquals(1, index.getStreets("Main Street").size());
+        assertTrue(index.getStreets("main street").isEmpty()); // same key but different value
+        assertSame(street, index.getNearestStreet("Main Street", new int[] { toE7(0.001), toE7(51.477) }, NEAR));
+        assertNull(index.getNearestStreet("Main Street", new int[] { toE7(1.005), toE7(52.005) }, FAR));
+    }
+
+    /**
+     * Changes to tags and geometry are picked up incrementally
+     */
+    @Test
+    public void changes() {
+        ElementNameIndex index = d.getNameIndex();
+        assertEquals(1, index.getStreets("Main Street").size());
+        Map<String, String> tags = new HashMap<>(street.getTags());
+        tags.put(Tags.KEY_NAME, "High Street");
+        d.setTags(street, tags);
+        assertSame(index, d.getNameIndex());
+        assertTrue(index.getStreets("Main Street").isEmpty());
+        assertEquals(1, index.getStreets("High Street").size());
+
+        d.moveWay(street, toE7(0.5), toE7(1.0));
+        assertTrue(index.getStreets(NEAR).isEmpty());
+        assertEquals(1, index.getStreets(new BoundingBox(0.999, 51.975, 1.004, 51.979)).size());
+
+        d.removeWay(street);
+        assertTrue(index.getStreets((BoundingBox) null).isEmpty());
+        assertTrue(index.getStreets("High Street").isEmpty());
+    }
+
+    /**
+     * Look up places and addresses
+     */
+    @Test
+    public void placesAndAddresses() {
+        Map<String, String> tags = new HashMap<>();
+        tags.put(Tags.KEY_PLACE, "village");
+        tags.put(Tags.KEY_NAME, "Testhausen");
+        Node place = addNode(51.477, 0.002, tags);
+        tags.clear();
+        tags.put(Tags.KEY_ADDR_STREET, "Main Street");
+        tags.put(Tags.KEY_ADDR_HOUSENUMBER, "1");
+        Node house = addNode(51.4785, 0.001, tags);
+        tags.put(Tags.KEY_ADDR_STREET, "Other Street");
+        addNode(51.4785, 0.002, tags);
+
+        ElementNameIndex index = d.getNameIndex();
+        List<OsmElement> places = index.getPlaces(NEAR);
+        assertEquals(1, places.size());
+        assertSame(place, places.get(0));
+        assertTrue(index.getPlaces(FAR).isEmpty());
+        List<OsmElement> addresses = index.getAddresses("Main Street");
+        assertEquals(1, addresses.size());
+        assertSame(house, addresses.get(0));
+
+        tags = new HashMap<>(house.getTags());
+        tags.remove(Tags.KEY_ADDR_HOUSENUMBER);
+        d.setTags(house, tags);
+        assertTrue(index.getAddresses("Main Street").isEmpty());
+        assertFalse(index.getAddresses("Other Street").isEmpty());
+    }
+}
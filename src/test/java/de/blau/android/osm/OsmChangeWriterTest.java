@@ -0,0 +1,270 @@
+package de.blau.android.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.xmlpull.v1.XmlPullParserException;
+
+import android.content.Context;
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.filters.LargeTest;
+import de.blau.android.exception.OsmServerException;
+import de.blau.android.prefs.API;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+@RunWith(RobolectricTestRunner.class)
+@LargeTest
+public class OsmChangeWriterTest {
+
+    private static final int MAX_ELEMENTS = 2;
+
+    private static final String CAPABILITIES = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<osm version=\"0.6\" generator=\"test\">\n<api>\n"
+            + "<version minimum=\"0.6\" maximum=\"0.6\"/>\n<area maximum=\"0.25\"/>\n<waynodes maximum=\"2001\"/>\n<changesets maximum_elements=\""
+            + MAX_ELEMENTS + "\"/>\n<timeout seconds=\"300\"/>\n<status database=\"online\" api=\"online\" gpx=\"online\"/>\n</api>\n</osm>\n";
+
+    private static final Pattern ELEMENT = Pattern.compile("<(create|modify|delete)>|<(node|way|relation) ([^>]*?)/?>|<nd ref=\"(-?[0-9]+)\"");
+    private static final Pattern ID      = Pattern.compile("(?:^|\\s)id=\"(-?[0-9]+)\"");
+    private static final Pattern VERSION = Pattern.compile("(?:^|\\s)version=\"([0-9]+)\"");
+
+    MockWebServer mockServer;
+    Context       context;
+    AtomicInteger uploads;
+    AtomicInteger failAt;
+    List<String>  sources;
+    List<Long>    nodeRefs;
+    long          nextId;
+
+    /**
+     * Pre-test setup
+     */
+    @Before
+    public void setup() {
+        context = ApplicationProvider.getApplicationContext();
+        uploads = new AtomicInteger();
+        failAt = new AtomicInteger(-1);
+        sources = new ArrayList<>();
+        nodeRefs = new ArrayList<>();
+        nextId = 1000;
+        mockServer = new MockWebServer();
+        mockServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                MockResponse response = new MockResponse().setResponseCode(HttpURLConnection.HTTP_OK);
+                if (path.endsWith("/capabilities")) {
+                    return response.setBody(CAPABILITIES);
+                } else if (path.endsWith("/changeset/create")) {
+                    String body = request.getBody().readUtf8();
+                    Matcher m = Pattern.compile("k=\"source\" v=\"([^\"]*)\"").matcher(body);
+                    if (m.find()) {
+                        sources.add(m.group(1));
+                    }
+                    return response.setBody("1234567");
+                } else if (path.endsWith("/upload")) {
+                    if (uploads.incrementAndGet() == failAt.get()) {
+                        return new MockResponse().setResponseCode(HttpURLConnection.HTTP_INTERNAL_ERROR).setBody("failed");
+                    }
+                    return response.setBody(diffResult(request.getBody().readUtf8()));
+                } else if (path.endsWith("/close")) {
+                    return response;
+                }
+                return new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_FOUND);
+            }
+        });
+    }
+
+    /**
+     * Post-test teardown
+     */
+    @After
+    public void teardown() {
+        try {
+            mockServer.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Create a diffResult document for an uploaded OsmChange document
+     *
+     * @param osc the OsmChange document
+     * @return the diffResult document
+     */
+    @NonNull
+    private synchronized String diffResult(@NonNull String osc) {
+        StringBuilder result = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<diffResult version=\"0.6\">\n");
+        Matcher m = ELEMENT.matcher(osc);
+        String block = null;
+        while (m.find()) {
+            if (m.group(1) != null) {
+                block = m.group(1);
+            } else if (m.group(4) != null) {
+                nodeRefs.add(Long.parseLong(m.group(4)));
+            } else {
+                Matcher idMatcher = ID.matcher(m.group(3));
+                Matcher versionMatcher = VERSION.matcher(m.group(3));
+                assertTrue(idMatcher.find());
+                long id = Long.parseLong(idMatcher.group(1));
+                result.append('<').append(m.group(2)).append(" old_id=\"").append(id).append('"');
+                if (OsmXml.CREATE.equals(block)) {
+                    result.append(" new_id=\"").append(nextId++).append("\" new_version=\"1\"");
+                } else if (OsmXml.MODIFY.equals(block)) {
+                    assertTrue(versionMatcher.find());
+                    result.append(" new_id=\"").append(id).append("\" new_version=\"").append(Long.parseLong(versionMatcher.group(1)) + 1).append('"');
+                }
+                result.append("/>\n");
+            }
+        }
+        return result.append("</diffResult>\n").toString();
+    }
+
+    /**
+     * Create a Server instance for the mock API
+     *
+     * @return a Server
+     */
+    @NonNull
+    private Server getServer() {
+        return new Server(context, new API("Test", "Test", mockServer.url("/api/0.6/").toString(), null, null, "user", "pass", 0, null, null), "test");
+    }
+
+    /**
+     * Add a parent relation to the test relation
+     *
+     * @param d the StorageDelegator
+     * @param w the test way
+     * @return the parent Relation
+     */
+    @NonNull
+    private Relation addParent(@NonNull StorageDelegator d, @NonNull Way w) {
+        Relation child = w.getParentRelations().get(0);
+        Relation parent = d.getFactory().createRelationWithNewId();
+        parent.addMember(new RelationMember("test", child));
+        child.addParentRelation(parent);
+        d.insertElementSafe(parent);
+        return parent;
+    }
+
+    /**
+     * Check that changes are ordered so that they can be uploaded in chunks
+     */
+    @Test
+    public void order() {
+        StorageDelegator d = new StorageDelegator();
+        Way w = StorageDelegatorTest.addWayToStorage(d, false);
+        Relation child = w.getParentRelations().get(0);
+        Relation parent = addParent(d, w);
+        Storage api = d.getApiStorage();
+        OsmChangeWriter writer = new OsmChangeWriter(api, MAX_ELEMENTS);
+        assertEquals(7, writer.size());
+        assertEquals(4, writer.getChunkCount());
+        for (OsmElement e : writer.getChunk(0)) {
+            assertTrue(e instanceof Node);
+        }
+        for (OsmElement e : writer.getChunk(1)) {
+            assertTrue(e instanceof Node);
+        }
+        assertEquals(w, writer.getChunk(2).get(0));
+        assertEquals(child, writer.getChunk(2).get(1));
+        assertEquals(parent, writer.getChunk(3).get(0));
+
+        // deletions in reverse order
+        Storage deleted = new Storage();
+        Relation deletedParent = OsmElementFactory.createRelation(1L, 1L, 0L, OsmElement.STATE_DELETED);
+        Relation deletedChild = OsmElementFactory.createRelation(2L, 1L, 0L, OsmElement.STATE_DELETED);
+        deletedChild.addParentRelation(deletedParent);
+        Way deletedWay = OsmElementFactory.createWay(3L, 1L, 0L, OsmElement.STATE_DELETED);
+        Node deletedNode = OsmElementFactory.createNode(4L, 1L, 0L, OsmElement.STATE_DELETED, 0, 0);
+        Node modifiedNode = OsmElementFactory.createNode(5L, 1L, 0L, OsmElement.STATE_MODIFIED, 0, 0);
+        deleted.insertElementUnsafe(deletedNode);
+        deleted.insertElementUnsafe(deletedWay);
+        deleted.insertElementUnsafe(deletedChild);
+        deleted.insertElementUnsafe(deletedParent);
+        deleted.insertElementUnsafe(modifiedNode);
+        writer = new OsmChangeWriter(deleted, 10);
+        assertEquals(1, writer.getChunkCount());
+        List<OsmElement> chunk = writer.getChunk(0);
+        assertEquals(modifiedNode, chunk.get(0));
+        assertEquals(deletedParent, chunk.get(1));
+        assertEquals(deletedChild, chunk.get(2));
+        assertEquals(deletedWay, chunk.get(3));
+        assertEquals(deletedNode, chunk.get(4));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writer.write(0, out, 1L, "test");
+        } catch (IOException | XmlPullParserException e) {
+            fail(e.getMessage());
+        }
+        String osc = out.toString();
+        assertTrue(osc.indexOf("<modify>") < osc.indexOf("<delete>"));
+        assertEquals(osc.indexOf("<delete>"), osc.lastIndexOf("<delete>"));
+    }
+
+    /**
+     * Upload in chunks, fail one chunk and resume
+     */
+    @Test
+    public void resume() {
+        StorageDelegator d = new StorageDelegator();
+        Way w = StorageDelegatorTest.addWayToStorage(d, false);
+        addParent(d, w);
+        assertEquals(7, d.getApiElementCount());
+        failAt.set(3);
+        Server server = getServer();
+        try {
+            d.uploadToServer(server, "test", "survey", false, true, null, null);
+            fail("expected an exception");
+        } catch (OsmServerException e) {
+            assertEquals(HttpURLConnection.HTTP_INTERNAL_ERROR, e.getErrorCode());
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+        // the two parts with nodes have been uploaded
+        assertEquals(3, d.getApiElementCount());
+        assertEquals(3, uploads.get());
+        for (Node n : w.getNodes()) {
+            assertTrue(n.getOsmId() > 0);
+            assertEquals(OsmElement.STATE_UNCHANGED, n.getState());
+        }
+        try {
+            d.uploadToServer(server, "test", "survey", false, true, null, null);
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+        assertEquals(0, d.getApiElementCount());
+        assertEquals(5, uploads.get());
+        assertTrue(w.getOsmId() > 0);
+        assertEquals(OsmElement.STATE_UNCHANGED, w.getState());
+        // part numbers continue after the resume
+        assertEquals("survey [1]", sources.get(0));
+        assertEquals("survey [3]", sources.get(2));
+        assertEquals("survey [3]", sources.get(3));
+        assertEquals("survey [4]", sources.get(4));
+        // the way was written with the new node ids
+        assertFalse(nodeRefs.isEmpty());
+        for (Long ref : nodeRefs) {
+            assertTrue(ref > 0);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package de.blau.android.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+public class RelationMemberIndexTest {
+
+    Relation         r;
+    List<OsmElement> elements;
+    Random           random;
+
+    /**
+     * Pre-test setup, a Relation with enough members to be indexed, some elements are present more than once
+     */
+    @Before
+    public void setup() {
+        random = new Random(4711);
+        r = OsmElementFactory.createRelation(1, 1L, 0L, OsmElement.STATE_UNCHANGED);
+        elements = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            elements.add(OsmElementFactory.createNode(i, 1L, 0L, OsmElement.STATE_UNCHANGED, i, i));
+            elements.add(OsmElementFactory.createWay(i, 1L, 0L, OsmElement.STATE_UNCHANGED));
+        }
+        for (int i = 0; i < 2 * Relation.INDEX_THRESHOLD; i++) {
+            r.addMember(member(random.nextInt(elements.size())));
+        }
+        r.addMember(new RelationMember(Way.NAME, 1000L, "outer")); // not downloaded
+    }
+
+    /**
+     * Lookups with the index return the same as a sequential scan
+     */
+    @Test
+    public void lookup() {
+        assertConsistent();
+        RelationMember notDownloaded = r.getMember(Way.NAME, 1000L);
+        assertEquals("outer", notDownloaded.getRole());
+        assertEquals(r.getMembers().size() - 1, r.getPosition(notDownloaded));
+        assertNull(r.getMember(Way.NAME, 1001L));
+        assertEquals(-1, r.getPosition(new RelationMember(Way.NAME, 1000L, "outer")));
+        // a different element with the same type and id is not a member
+        Node other = OsmElementFactory.createNode(1, 1L, 0L, OsmElement.STATE_UNCHANGED, 1, 1);
+        assertNull(r.getMember(other));
+        assertEquals(0, r.getAllMembers(other).size());
+    }
+
+    /**
+     * The index stays consistent with the member list over a random sequence of changes
+     */
+    @Test
+    public void mutations() {
+        for (int i = 0; i < 2000; i++) {
+            List<RelationMember> members = r.getMembers();
+            RelationMember existing = members.get(random.nextInt(members.size()));
+            switch (random.nextInt(8)) {
+            case 0:
+                r.addMember(member(random.nextInt(elements.size())));
+                break;
+            case 1:
+                r.addMemberAfter(existing, member(random.nextInt(elements.size())));
+                break;
+            case 2:
+                r.addMemberBefore(existing, member(random.nextInt(elements.size())));
+                break;
+            case 3:
+                r.addMember(random.nextInt(members.size() + 1), member(random.nextInt(elements.size())));
+                break;
+            case 4:
+                if (members.size() > Relation.INDEX_THRESHOLD) {
+                    r.removeMember(existing);
+                }
+                break;
+            case 5:
+                // same element with a new role, or a different element
+                r.replaceMember(existing, random.nextBoolean() && existing.downloaded() ? new RelationMember("new", existing.getElement())
+                        : member(random.nextInt(elements.size())));
+                break;
+            case 6:
+                List<RelationMember> newMembers = new ArrayList<>();
+                newMembers.add(member(random.nextInt(elements.size())));
+                newMembers.add(member(random.nextInt(elements.size())));
+                r.addMembers(newMembers, random.nextBoolean());
+                break;
+            default:
+                // lookups rebuild the index
+                r.getMember(elements.get(random.nextInt(elements.size())));
+            }
+            assertConsistent();
+        }
+    }
+
+    /**
+     * Changing the id of a member element updates the references and the index
+     */
+    @Test
+    public void idChange() {
+        Way w = (Way) elements.get(1);
+        r.addMember(new RelationMember("test", w));
+        w.addParentRelation(r);
+        int count = r.getAllMembers(w).size();
+        w.setOsmId(-1234L);
+        assertEquals(count, r.getAllMembers(w).size());
+        assertSame(w, r.getMember(Way.NAME, -1234L).getElement());
+        assertNull(r.getMember(Way.NAME, 1L));
+        assertConsistent();
+    }
+
+    /**
+     * Create a new RelationMember
+     *
+     * @param index the index of the element in elements
+     * @return a RelationMember
+     */
+    @NonNull
+    private RelationMember member(int index) {
+        return new RelationMember("role" + index, elements.get(index));
+    }
+
+    /**
+     * Check all lookups against a sequential scan of the members
+     */
+    private void assertConsistent() {
+        List<RelationMember> members = r.getMembers();
+        for (OsmElement e : elements) {
+            List<RelationMember> expected = new ArrayList<>();
+            List<Integer> expectedPositions = new ArrayList<>();
+            for (int i = 0; i < members.size(); i++) {
+                if (members.get(i).getElement() == e) {
+                    expected.add(members.get(i));
+                    expectedPositions.add(i);
+                }
+            }
+            assertEquals(expected, r.getAllMembers(e));
+            List<RelationMemberPosition> withPosition = r.getAllMembersWithPosition(e);
+            assertEquals(expected.size(), withPosition.size());
+            for (int i = 0; i < withPosition.size(); i++) {
+                assertSame(expected.get(i), withPosition.get(i).getRelationMember());
+                assertEquals((int) expectedPositions.get(i), withPosition.get(i).getPosition());
+            }
+            assertSame(first(expected), r.getMember(e));
+            assertSame(first(expected), r.getMember(e.getName(), e.getOsmId()));
+        }
+        for (int i = 0; i < members.size(); i++) {
+            assertEquals(members.indexOf(members.get(i)), r.getPosition(members.get(i)));
+        }
+    }
+
+    /**
+     * Get the first element of a list
+     *
+     * @param list the List
+     * @return the first element or null if the list is empty
+     */
+    @Nullable
+    private static RelationMember first(@NonNull List<RelationMember> list) {
+        return list.isEmpty() ? null : list.get(0);
+    }
+}
@@ -0,0 +1,159 @@
+package de.blau.android.osm;
+
+import static de.blau.android.osm.StorageDelegatorTest.toE7;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import androidx.annotation.NonNull;
+import de.blau.android.util.Winding;
+
+public class RingCacheTest {
+
+    StorageDelegator d;
+    Relation         mp;
+    Node             corner;
+
+    /**
+     * Pre-test setup, a multipolygon with an outer ring made from two ways and one inner ring
+     */
+    @Before
+    public void setup() {
+        d = new StorageDelegator();
+        Storage downloaded = new Storage();
+        Node n1 = addNode(downloaded, 1, 0, 51);
+        Node n2 = addNode(downloaded, 2, 0.01, 51);
+        Node n3 = addNode(downloaded, 3, 0.01, 51.01);
+        corner = addNode(downloaded, 4, 0, 51.01);
+        // counter-clockwise
+        Way outer1 = addWay(downloaded, 1, n1, n2, n3);
+        Way outer2 = addWay(downloaded, 2, n3, corner, n1);
+        Node i1 = addNode(downloaded, 11, 0.004, 51.004);
+        Node i2 = addNode(downloaded, 12, 0.006, 51.004);
+        Node i3 = addNode(downloaded, 13, 0.006, 51.006);
+        Way inner = addWay(downloaded, 3, i1, i3, i2, i1); // clockwise
+
+        mp = OsmElementFactory.createRelation(1, 1L, 0L, OsmElement.STATE_UNCHANGED);
+        Map<String, String> tags = new HashMap<>();
+        tags.put(Tags.KEY_TYPE, Tags.VALUE_MULTIPOLYGON);
+        mp.setTags(tags);
+        addMember(mp, Tags.ROLE_INNER, inner);
+        addMember(mp, Tags.ROLE_OUTER, outer2);
+        addMember(mp, Tags.ROLE_OUTER, outer1);
+        downloaded.insertElementUnsafe(mp);
+        assertTrue(d.mergeData(downloaded, null));
+        mp = (Relation) d.getOsmElement(Relation.NAME, 1);
+        corner = (Node) d.getOsmElement(Node.NAME, 4);
+    }
+
+    /**
+     * Add an unchanged Node
+     *
+     * @param storage the Storage to add to
+     * @param id the id of the Node
+     * @param lon WGS84 longitude
+     * @param lat WGS84 latitude
+     * @return the Node
+     */
+    @NonNull
+    private Node addNode(@NonNull Storage storage, long id, double lon, double lat) {
+        Node n = OsmElementFactory.createNode(id, 1L, 0L, OsmElement.STATE_UNCHANGED, toE7(lat), toE7(lon));
+        storage.insertElementUnsafe(n);
+        return n;
+    }
+
+    /**
+     * Add an unchanged Way
+     *
+     * @param storage the Storage to add to
+     * @param id the id of the Way
+     * @param nodes the Nodes
+     * @return the Way
+     */
+    @NonNull
+    private Way addWay(@NonNull Storage storage, long id, @NonNull Node... nodes) {
+        Way w = OsmElementFactory.createWay(id, 1L, 0L, OsmElement.STATE_UNCHANGED);
+        for (Node n : nodes) {
+            w.addNode(n);
+        }
+        storage.insertElementUnsafe(w);
+        return w;
+    }
+
+    /**
+     * Add a member to a Relation
+     *
+     * @param r the Relation
+     * @param role the role
+     * @param e the member element
+     */
+    private void addMember(@NonNull Relation r, @NonNull String role, @NonNull OsmElement e) {
+        r.addMember(new RelationMember(role, e));
+        e.addParentRelation(r);
+    }
+
+    /**
+     * Check ring assembly, winding and area
+     */
+    @Test
+    public void assemble() {
+        RingCache.Rings rings = RingCache.assemble(mp);
+        assertEquals(1, rings.getOuter().size());
+        assertEquals(1, rings.getInner().size());
+        assertTrue(rings.getUnknown().isEmpty());
+        assertTrue(rings.isComplete());
+        RingCache.Ring outer = rings.getOuter().get(0);
+        assertEquals(5, outer.size());
+        assertTrue(outer.isClosed());
+        assertEquals(toE7(51), outer.getBounds().getBottom());
+        assertEquals(toE7(0.01), outer.getBounds().getRight());
+        assertEquals(Winding.CLOCKWISE, winding(outer));
+        assertEquals(Winding.COUNTERCLOCKWISE, winding(rings.getInner().get(0)));
+
+        // roughly 700m x 1113m minus a triangle of 140m x 222m
+        assertEquals(700 * 1113 - 140 * 222 / 2, rings.getArea(), 5000);
+    }
+
+    /**
+     * Cached rings are invalidated when a node moves
+     */
+    @Test
+    public void invalidate() {
+        RingCache cache = d.getRingCache();
+        RingCache.Rings rings = cache.get(mp);
+        assertSame(rings, cache.get(mp));
+        assertEquals(1, cache.size());
+
+        d.getUndo().createCheckpoint("move corner");
+        d.moveNode(corner, toE7(51.02), toE7(0));
+        RingCache.Rings moved = cache.get(mp);
+        assertNotSame(rings, moved);
+        assertEquals(toE7(51.02), moved.getBounds().getTop());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Determine winding of a Ring in the same way as Winding does for Nodes
+     *
+     * @param ring the Ring
+     * @return an int indicating winding direction
+     */
+    private int winding(@NonNull RingCache.Ring ring) {
+        double area = 0;
+        int[] lons = ring.getLons();
+        int[] lats = ring.getLats();
+        for (int i = 0; i < ring.size() - 1; i++) {
+            area = area + (double) (lats[i + 1] - lats[i]) * (double) (lons[i + 1] + lons[i]);
+        }
+        return area < 0 ? Winding.CLOCKWISE : area > 0 ? Winding.COUNTERCLOCKWISE : Winding.COLINEAR;
+    }
+}
@@ -3,12 +3,15 @@ package de.blau.android.osm;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -152,6 +155,102 @@ public class StorageTest {
         assertEquals(node, changed);
     }
 
+    /**
+     * Test that snapshots are published and don't change afterwards
+     */
+    @Test
+    public void snapshot() {
+        BoundingBox box = new BoundingBox(9.51947D, 47.13638D, 9.52300D, 47.14066D);
+        try {
+            storage.getSnapshot();
+            fail("expected an exception");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        storage.publish();
+        StorageSnapshot snapshot = storage.getSnapshot();
+        assertEquals(storage.getNodeCount(), snapshot.getNodeCount());
+        assertEquals(storage.getWayCount(), snapshot.getWayCount());
+        assertEquals(storage.getRelationCount(), snapshot.getRelationCount());
+        assertEquals(1260, snapshot.getNodes(box, new ArrayList<>()).size());
+        assertEquals(217, snapshot.getWays(box, new ArrayList<>()).size());
+
+        Node node = storage.getNode(300852915L);
+        assertNotNull(node);
+        storage.removeNode(node);
+        // changes are only published at the end of an operation
+        assertSame(snapshot, storage.getSnapshot());
+        storage.publishChanges();
+        StorageSnapshot snapshot2 = storage.getSnapshot();
+        assertTrue(snapshot2.getVersion() > snapshot.getVersion());
+        assertNull(snapshot2.getNode(300852915L));
+        assertEquals(node, snapshot.getNode(300852915L));
+        assertEquals(storage.getNodeCount() + 1, snapshot.getNodeCount());
+
+        // nothing is published during a batch
+        storage.beginBatch();
+        storage.insertNodeUnsafe(node);
+        storage.publishChanges();
+        assertSame(snapshot2, storage.getSnapshot());
+        storage.endBatch();
+        assertEquals(node, storage.getSnapshot().getNode(300852915L));
+
+        // copies share the indexes but are independent
+        Storage copy = new Storage(storage);
+        copy.removeNode(node);
+        copy.publish();
+        assertNull(copy.getSnapshot().getNode(300852915L));
+        assertEquals(node, storage.getSnapshot().getNode(300852915L));
+    }
+
+    /**
+     * Read snapshots while another thread is modifying the storage
+     */
+    @Test
+    public void concurrentSnapshot() {
+        storage.publish();
+        final List<Node> nodes = storage.getNodes();
+        final int nodeCount = nodes.size();
+        final AtomicBoolean done = new AtomicBoolean(false);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 20; i++) {
+                storage.beginBatch();
+                for (int j = 0; j < 1000; j++) {
+                    storage.removeNode(nodes.get(j));
+                }
+                storage.endBatch();
+                storage.beginBatch();
+                for (int j = 0; j < 1000; j++) {
+                    storage.insertNodeUnsafe(nodes.get(j));
+                }
+                storage.endBatch();
+            }
+            done.set(true);
+        });
+        writer.start();
+        int reads = 0;
+        while (!done.get() || reads == 0) {
+            StorageSnapshot snapshot = storage.getSnapshot();
+            int count = snapshot.getNodeCount();
+            // a snapshot always reflects the state before or after a complete batch
+            assertTrue(count == nodeCount || count == nodeCount - 1000);
+            final int[] visited = new int[1];
+            snapshot.visitNodes(n -> {
+                visited[0]++;
+                return true;
+            });
+            assertEquals(count, visited[0]);
+            reads++;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            fail(e.getMessage());
+        }
+        assertEquals(nodeCount, storage.getSnapshot().getNodeCount());
+        Log.d(DEBUG_TAG, "Read " + reads + " snapshots");
+    }
+
     private class LineCounter extends PrintStream {
         int lineCount = 0;
 
@@ -0,0 +1,186 @@
+package de.blau.android.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.xml.sax.SAXException;
+
+import androidx.annotation.NonNull;
+import androidx.test.filters.LargeTest;
+import de.blau.android.App;
+import de.blau.android.exception.OsmServerException;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+@RunWith(RobolectricTestRunner.class)
+@LargeTest
+public class TiledDownloaderTest {
+
+    private static final long SHARED_NODE_ID = 1L;
+
+    MockWebServer mockServer;
+    AtomicBoolean failFirst;
+    int           errorCode;
+
+    /**
+     * Pre-test setup
+     */
+    @Before
+    public void setup() {
+        App.getDelegator().reset(true);
+        failFirst = new AtomicBoolean(false);
+        errorCode = 0;
+        mockServer = new MockWebServer();
+        mockServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (errorCode != 0) {
+                    return new MockResponse().setResponseCode(errorCode);
+                }
+                if (failFirst.getAndSet(false)) {
+                    return new MockResponse().setResponseCode(HttpURLConnection.HTTP_UNAVAILABLE);
+                }
+                String[] bbox = request.getRequestUrl().queryParameter("bbox").split(",");
+                return new MockResponse().setResponseCode(HttpURLConnection.HTTP_OK).setBody(tileData(bbox));
+            }
+        });
+    }
+
+    /**
+     * Post-test teardown
+     */
+    @After
+    public void teardown() {
+        try {
+            mockServer.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Create OSM data for a tile, one node in the center plus one node that is returned for every tile
+     *
+     * @param bbox the bbox parameter split in to its parts
+     * @return an OSM XML document
+     */
+    @NonNull
+    private static String tileData(@NonNull String[] bbox) {
+        double left = Double.parseDouble(bbox[0]);
+        double bottom = Double.parseDouble(bbox[1]);
+        double right = Double.parseDouble(bbox[2]);
+        double top = Double.parseDouble(bbox[3]);
+        double lon = (left + right) / 2;
+        double lat = (bottom + top) / 2;
+        long id = 1000000L + Math.round(lon * 1000) * 1000 + Math.round(lat * 1000);
+        return "<?xml version='1.0' encoding='UTF-8'?>\n<osm version=\"0.6\" generator=\"test\">\n" + "<bounds minlat=\"" + bottom + "\" minlon=\"" + left
+                + "\" maxlat=\"" + top + "\" maxlon=\"" + right + "\"/>\n" + "<node id=\"" + id + "\" version=\"1\" lat=\"" + lat + "\" lon=\"" + lon
+                + "\"/>\n" + "<node id=\"" + SHARED_NODE_ID + "\" version=\"1\" lat=\"" + bottom + "\" lon=\"" + left + "\"/>\n" + "</osm>\n";
+    }
+
+    /**
+     * Get a TileSource that reads from the mock server
+     *
+     * @return a TileSource
+     */
+    @NonNull
+    private TiledDownloader.TileSource mockSource() {
+        return tile -> Server.openConnection(null, new URL(mockServer.url("/api/0.6/map?bbox=" + tile.toApiString()).toString()));
+    }
+
+    /**
+     * Check that splitting creates tiles that are valid for the API and cover the original box
+     */
+    @Test
+    public void split() {
+        BoundingBox box = new BoundingBox(8.0, 47.0, 9.2, 47.7);
+        assertFalse(box.isValidForApi());
+        List<BoundingBox> tiles = TiledDownloader.split(box);
+        assertEquals(6, tiles.size());
+        assertEquals(6, TiledDownloader.tileCount(box));
+        BoundingBox union = null;
+        for (BoundingBox tile : tiles) {
+            assertTrue(tile.isValidForApi());
+            if (union == null) {
+                union = new BoundingBox(tile);
+            } else {
+                union.union(tile);
+            }
+        }
+        assertEquals(box, union);
+        assertEquals(1, TiledDownloader.split(new BoundingBox(8.0, 47.0, 8.1, 47.1)).size());
+    }
+
+    /**
+     * Download tiles in parallel with one transient failure and merge them
+     */
+    @Test
+    public void download() {
+        StorageDelegator d = App.getDelegator();
+        BoundingBox box = new BoundingBox(8.0, 47.0, 9.2, 47.7);
+        List<BoundingBox> tiles = TiledDownloader.split(box);
+        failFirst.set(true);
+        final List<Integer> progress = new ArrayList<>();
+        try {
+            assertTrue(new TiledDownloader(mockSource(), 3, 2, 10).download(tiles, (tile, storage) -> {
+                if (!d.mergeData(storage, null)) {
+                    return false;
+                }
+                d.mergeBoundingBox(tile);
+                return true;
+            }, (tile, done, total) -> {
+                assertEquals(tiles.size(), total);
+                progress.add(done);
+            }));
+        } catch (IOException | SAXException | ParserConfigurationException e) {
+            fail(e.getMessage());
+        }
+        assertEquals(tiles.size() + 1, mockServer.getRequestCount()); // one retry
+        assertEquals(tiles.size(), progress.size());
+        for (int i = 0; i < progress.size(); i++) {
+            assertEquals(i + 1, (int) progress.get(i));
+        }
+        // one node per tile plus the shared one
+        assertEquals(tiles.size() + 1, d.getCurrentStorage().getNodeCount());
+        assertNotNull(d.getCurrentStorage().getNode(SHARED_NODE_ID));
+        assertEquals(tiles.size(), d.getCurrentStorage().getBoundingBoxes().size());
+    }
+
+    /**
+     * A client error is not retried and stops the download
+     */
+    @Test
+    public void clientError() {
+        BoundingBox box = new BoundingBox(8.0, 47.0, 9.2, 47.7);
+        List<BoundingBox> tiles = TiledDownloader.split(box);
+        errorCode = HttpURLConnection.HTTP_BAD_REQUEST;
+        try {
+            new TiledDownloader(mockSource(), 1, 2, 10).download(tiles, (tile, storage) -> true, null);
+            fail("expected an exception");
+        } catch (OsmServerException e) {
+            assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, e.getErrorCode());
+        } catch (IOException | SAXException | ParserConfigurationException e) {
+            fail(e.getMessage());
+        }
+        assertTrue(mockServer.getRequestCount() < tiles.size());
+    }
+}
@@ -4,6 +4,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -13,7 +20,9 @@ import org.robolectric.RobolectricTestRunner;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.filters.LargeTest;
 import de.blau.android.App;
+import de.blau.android.exception.StorageException;
 import de.blau.android.osm.UndoStorage.UndoElement;
+import de.blau.android.osm.UndoStorage.UndoNode;
 import de.blau.android.osm.UndoStorage.UndoRelation;
 import de.blau.android.osm.UndoStorage.UndoWay;
 import de.blau.android.util.Util;
@@ -112,4 +121,145 @@ public class UndoStorageTest {
         assertEquals(2, w.getParentRelations().size());
         assertTrue(w.getParentRelations().contains(r));
     }
+
+    /**
+     * Spill checkpoints to disk - undo - redo - undo
+     */
+    @Test
+    public void spilledCheckpoints() {
+        File dir = new File(ApplicationProvider.getApplicationContext().getCacheDir(), UndoStorage.SPILL_DIRECTORY);
+        UndoStorage.configure(dir, 1); // spill everything but the last checkpoint
+        try {
+            StorageDelegator d = App.getDelegator();
+            UndoStorage undo = d.getUndo();
+            Way w = StorageDelegatorTest.addWayToStorage(d, false);
+            Node n = w.getFirstNode();
+            int lat = n.getLat();
+            undo.createCheckpoint("move node");
+            d.moveNode(n, lat + 1000, n.getLon());
+            undo.createCheckpoint("delete way");
+            d.removeWay(w);
+            assertEquals(0, d.getCurrentStorage().getWayCount());
+            assertEquals(2, dir.listFiles().length);
+            assertTrue(undo.getEstimatedSize() > 0);
+
+            // read from disk without restoring
+            assertEquals(3, undo.getUndoActions(ApplicationProvider.getApplicationContext()).length);
+            UndoElement ue = undo.getOriginal(w);
+            assertTrue(ue instanceof UndoWay);
+            assertEquals(4, ((UndoWay) ue).nodeCount());
+            ue = undo.getOriginal(n);
+            assertTrue(ue instanceof UndoNode);
+            assertEquals(lat, ((UndoNode) ue).getLat());
+
+            // undo
+            assertEquals("delete way", undo.undo());
+            assertEquals(1, d.getCurrentStorage().getWayCount());
+            assertEquals("move node", undo.undo());
+            assertEquals(lat, n.getLat());
+            assertEquals("add test way", undo.undo());
+            assertFalse(undo.canUndo());
+            assertEquals(0, d.getCurrentStorage().getWayCount());
+            assertEquals(0, d.getCurrentStorage().getNodeCount());
+            assertEquals(0, d.getCurrentStorage().getRelationCount());
+
+            // redo, this will spill again
+            assertNotNull(undo.redo());
+            assertNotNull(undo.redo());
+            assertEquals(1, d.getCurrentStorage().getWayCount());
+            assertEquals(lat + 1000, n.getLat());
+            assertNotNull(undo.undo());
+            assertEquals(lat, n.getLat());
+
+            // files for checkpoints that have been undone are removed, the copy of the remaining one is retained
+            undo.removeUnusedSpillFiles();
+            assertEquals(1, dir.listFiles().length);
+        } finally {
+            UndoStorage.configure(null, UndoStorage.DEFAULT_MEMORY_BUDGET);
+        }
+    }
+
+    /**
+     * Spill checkpoints to disk - lose the files - undo
+     */
+    @Test
+    public void lostSpilledCheckpoints() {
+        File dir = new File(ApplicationProvider.getApplicationContext().getCacheDir(), UndoStorage.SPILL_DIRECTORY);
+        UndoStorage.configure(dir, 1); // spill everything but the last checkpoint
+        try {
+            StorageDelegator d = App.getDelegator();
+            UndoStorage undo = d.getUndo();
+            Way w = StorageDelegatorTest.addWayToStorage(d, false);
+            Node n = w.getFirstNode();
+            int lat = n.getLat();
+            undo.createCheckpoint("move node");
+            d.moveNode(n, lat + 1000, n.getLon());
+            undo.createCheckpoint("delete way");
+            d.removeWay(w);
+            assertEquals(2, dir.listFiles().length);
+            for (File f : dir.listFiles()) {
+                assertTrue(f.delete());
+            }
+
+            assertEquals("delete way", undo.undo());
+            assertEquals(1, d.getCurrentStorage().getWayCount());
+            try {
+                undo.undo();
+                fail("expected an exception");
+            } catch (StorageException e) {
+                assertEquals(StorageException.UNDO_LOST, e.getCode());
+            }
+            assertEquals(lat + 1000, n.getLat());
+        } finally {
+            UndoStorage.configure(null, UndoStorage.DEFAULT_MEMORY_BUDGET);
+        }
+    }
+
+    /**
+     * Spill checkpoints to disk - renumber the new elements as an upload does - undo
+     */
+    @Test
+    public void spilledCheckpointsRenumbered() {
+        File dir = new File(ApplicationProvider.getApplicationContext().getCacheDir(), UndoStorage.SPILL_DIRECTORY);
+        UndoStorage.configure(dir, 1); // spill everything but the last checkpoint
+        try {
+            StorageDelegator d = App.getDelegator();
+            UndoStorage undo = d.getUndo();
+            Way w = StorageDelegatorTest.addWayToStorage(d, false);
+            Node n = w.getFirstNode();
+            int lat = n.getLat();
+            undo.createCheckpoint("move node");
+            d.moveNode(n, lat + 1000, n.getLon());
+            undo.createCheckpoint("tag way");
+            Map<String, String> tags = new HashMap<>();
+            tags.put(Tags.KEY_HIGHWAY, "residential");
+            d.setTags(w, tags);
+            assertEquals(2, dir.listFiles().length);
+
+            // what Server does with the diff result
+            List<OsmElement> created = new ArrayList<>();
+            created.addAll(d.getCurrentStorage().getNodes());
+            created.addAll(d.getCurrentStorage().getWays());
+            created.addAll(d.getCurrentStorage().getRelations());
+            long newId = 1000;
+            for (OsmElement e : created) {
+                assertTrue(e.getOsmId() < 0);
+                d.getApiStorage().removeElement(e);
+                undo.renumber(e, newId);
+                e.setOsmId(newId++);
+                e.setState(OsmElement.STATE_UNCHANGED);
+            }
+            d.getCurrentStorage().rehash();
+            d.getApiStorage().rehash();
+
+            assertEquals("tag way", undo.undo());
+            assertEquals("move node", undo.undo());
+            assertEquals(4, d.getCurrentStorage().getNodeCount());
+            assertEquals(1, d.getCurrentStorage().getWayCount());
+            assertEquals(lat, n.getLat());
+            assertEquals(n, w.getFirstNode());
+        } finally {
+            UndoStorage.configure(null, UndoStorage.DEFAULT_MEMORY_BUDGET);
+        }
+    }
 }
@@ -0,0 +1,142 @@
+package de.blau.android.photos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import android.content.Context;
+import android.os.Environment;
+import androidx.annotation.NonNull;
+import androidx.exifinterface.media.ExifInterface;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.filters.LargeTest;
+import de.blau.android.util.rtree.RTree;
+
+@RunWith(RobolectricTestRunner.class)
+@LargeTest
+public class PhotoIndexTest {
+
+    private static final int    FILES         = 6;
+    private static final int    FILES_PER_DIR = 3;
+    private static final byte[] EMPTY_JPEG    = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xD9 };
+
+    private File fixture;
+
+    /**
+     * Create a directory tree with FILES images of which every second one has a location
+     * 
+     * @throws IOException if creating the files fails
+     */
+    @Before
+    public void setup() throws IOException {
+        fixture = new File(Environment.getExternalStorageDirectory(), "DCIM/fixture");
+        for (int i = 0; i < FILES; i++) {
+            File dir = new File(fixture, Integer.toString(i / FILES_PER_DIR));
+            dir.mkdirs();
+            File f = getFile(i);
+            try (FileOutputStream out = new FileOutputStream(f)) {
+                out.write(EMPTY_JPEG);
+            }
+            if (i % 2 == 0) {
+                setLocation(f, i);
+            }
+        }
+    }
+
+    /**
+     * Get the file for an index
+     * 
+     * @param i the index
+     * @return the File
+     */
+    private File getFile(int i) {
+        return new File(fixture, (i / FILES_PER_DIR) + "/" + i + ".jpg");
+    }
+
+    /**
+     * Add a location to an image
+     * 
+     * @param f the image File
+     * @param i the index of the image
+     * @throws IOException if writing the EXIF data fails
+     */
+    private void setLocation(@NonNull File f, int i) throws IOException {
+        ExifInterface exif = new ExifInterface(f.getAbsolutePath());
+        exif.setLatLong(47.0 + i / 1000d, 8.0 + i / 1000d);
+        exif.saveAttributes();
+    }
+
+    /**
+     * Get the paths of the photos in an index
+     * 
+     * @param index the index
+     * @return a Set of paths
+     */
+    private Set<String> refs(@NonNull RTree<Photo> index) {
+        List<Photo> photos = new ArrayList<>();
+        index.query(photos);
+        Set<String> result = new HashSet<>();
+        for (Photo p : photos) {
+            result.add(p.getRef());
+        }
+        return result;
+    }
+
+    /**
+     * Get the paths of fixture files
+     * 
+     * @param indices the indices of the files
+     * @return a Set of paths
+     */
+    private Set<String> paths(int... indices) {
+        Set<String> result = new HashSet<>();
+        for (int i : indices) {
+            result.add(getFile(i).getAbsolutePath());
+        }
+        return result;
+    }
+
+    /**
+     * Index the fixture, re-index without changes and with a small number of changes
+     * 
+     * @throws IOException if changing the fixture fails
+     */
+    @Test
+    public void incrementalIndex() throws IOException {
+        Context ctx = ApplicationProvider.getApplicationContext();
+        PhotoIndex index = new PhotoIndex(ctx);
+        RTree<Photo> photos = new RTree<>(20, 50);
+
+        assertEquals(FILES, index.createOrUpdateIndex(photos));
+        assertEquals(paths(0, 2, 4), refs(photos));
+
+        assertEquals(0, index.createOrUpdateIndex(photos));
+        assertEquals(paths(0, 2, 4), refs(photos));
+
+        // remove one geo-referenced and one plain file, add a location to one plain file
+        assertTrue(getFile(0).delete());
+        assertTrue(getFile(1).delete());
+        File changed = getFile(3);
+        setLocation(changed, 3);
+        assertTrue(changed.setLastModified(changed.lastModified() + 10000));
+        assertEquals(1, index.createOrUpdateIndex(photos));
+        assertEquals(paths(2, 3, 4), refs(photos));
+
+        // the database should contain the same photos as the in memory index
+        RTree<Photo> filled = new RTree<>(20, 50);
+        index.fill(filled);
+        assertEquals(paths(2, 3, 4), refs(filled));
+    }
+}
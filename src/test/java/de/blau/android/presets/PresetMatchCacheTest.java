@@ -0,0 +1,72 @@
+package de.blau.android.presets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class PresetMatchCacheTest {
+
+    /**
+     * The same tags in different maps result in equal keys
+     */
+    @Test
+    public void tagSet() {
+        Map<String, String> tags = new TreeMap<>();
+        tags.put("amenity", "restaurant");
+        tags.put("building", "yes");
+        tags.put("name", "Test");
+        Map<String, String> hashTags = new HashMap<>(tags);
+        PresetMatchCache.TagSet key = new PresetMatchCache.TagSet(tags, null, false);
+        assertEquals(key, new PresetMatchCache.TagSet(hashTags, null, false));
+        assertEquals(key.hashCode(), new PresetMatchCache.TagSet(hashTags, null, false).hashCode());
+        assertNotEquals(key, new PresetMatchCache.TagSet(tags, null, true));
+
+        PresetMatchCache.TagSet ignored = new PresetMatchCache.TagSet(tags, "building", false);
+        assertNotEquals(key, ignored);
+        tags.remove("building");
+        assertEquals(ignored, new PresetMatchCache.TagSet(tags, null, false));
+        hashTags.put("name", "Other");
+        assertNotEquals(key, new PresetMatchCache.TagSet(hashTags, null, false));
+    }
+
+    /**
+     * Results are retained for the same presets and version, and are bounded in number
+     */
+    @Test
+    public void cache() {
+        PresetMatchCache cache = new PresetMatchCache();
+        Preset[] presets = new Preset[1];
+        Map<String, String> tags = new HashMap<>();
+        tags.put("amenity", "bench");
+        PresetMatchCache.TagSet key = new PresetMatchCache.TagSet(tags, null, false);
+        assertNull(cache.get(presets, 0, key));
+        cache.put(presets, 0, key, null);
+        assertSame(PresetMatchCache.NO_MATCH, cache.get(presets, 0, key));
+        // a copy of the array with the same presets can use the same results
+        assertSame(PresetMatchCache.NO_MATCH, cache.get(new Preset[1], 0, key));
+        // modified presets
+        assertNull(cache.get(presets, 1, key));
+        assertEquals(0, cache.size());
+        // different presets
+        cache.put(presets, 1, key, null);
+        assertNull(cache.get(new Preset[2], 1, key));
+        cache.put(presets, 1, key, null); // ignored
+        assertEquals(0, cache.size());
+
+        assertNull(cache.get(presets, 1, key));
+        for (int i = 0; i < PresetMatchCache.MAX_SIZE + 10; i++) {
+            tags.put("name", Integer.toString(i));
+            cache.put(presets, 1, new PresetMatchCache.TagSet(tags, null, false), null);
+        }
+        assertEquals(PresetMatchCache.MAX_SIZE, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,140 @@
+package de.blau.android.propertyeditor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import androidx.annotation.NonNull;
+import de.blau.android.osm.Node;
+import de.blau.android.osm.OsmElement;
+import de.blau.android.osm.RelationMember;
+import de.blau.android.osm.RelationMemberDescription;
+import de.blau.android.osm.StorageDelegator;
+import de.blau.android.osm.Way;
+import de.blau.android.propertyeditor.MemberEntry.Connected;
+
+public class MemberEntryTest {
+
+    StorageDelegator d;
+    Node[]           nodes;
+
+    /**
+     * Pre-test setup
+     */
+    @Before
+    public void setup() {
+        d = new StorageDelegator();
+        nodes = new Node[10];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = d.getFactory().createNodeWithNewId(510000000 + i * 1000, i * 1000);
+            d.insertElementUnsafe(nodes[i]);
+        }
+    }
+
+    /**
+     * Check that a ring and a following chain are detected
+     */
+    @Test
+    public void ring() {
+        List<MemberEntry> entries = new ArrayList<>();
+        entries.add(entry(way(0, 1)));
+        entries.add(entry(way(1, 2)));
+        entries.add(entry(way(2, 0)));
+        entries.add(entry(way(3, 4)));
+        entries.add(entry(way(4, 5)));
+        entries.add(entry(nodes[5]));
+        int[] range = MemberEntry.updateConnections(entries, 0, entries.size() - 1);
+        assertArrayEquals(new int[] { 0, 5 }, range);
+        assertEquals(Connected.RING_TOP, entries.get(0).connected);
+        assertEquals(Connected.RING, entries.get(1).connected);
+        assertEquals(Connected.RING_BOTTOM, entries.get(2).connected);
+        assertEquals(Connected.DOWN, entries.get(3).connected);
+        assertEquals(Connected.BOTH, entries.get(4).connected);
+        assertEquals(Connected.UP, entries.get(5).connected);
+    }
+
+    /**
+     * Check that incremental updates give the same result as recomputing everything and don't touch unaffected
+     * members
+     */
+    @Test
+    public void incremental() {
+        List<MemberEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            entries.add(entry(way(0, 1)));
+            entries.add(entry(way(1, 2)));
+            entries.add(entry(way(2, 0)));
+            entries.add(entry(way(3, 4)));
+            entries.add(entry(way(4, 5)));
+        }
+        MemberEntry.updateConnections(entries, 0, entries.size() - 1);
+
+        // break the second ring by swapping two members
+        Collections.swap(entries, 5, 6);
+        int[] range = MemberEntry.updateConnections(entries, 5, 6);
+        assertTrue(range[0] <= 5 && range[1] >= 6);
+        assertTrue(range[1] < entries.size() - 1); // stopped early
+        assertSame(entries);
+
+        // remove a member
+        entries.remove(12);
+        MemberEntry.updateConnections(entries, 12, 12);
+        assertSame(entries);
+
+        // insert a member
+        entries.add(3, entry(way(5, 3)));
+        MemberEntry.updateConnections(entries, 3, 3);
+        assertSame(entries);
+    }
+
+    /**
+     * Compare the status of the entries with a complete recomputation
+     *
+     * @param entries the incrementally updated entries
+     */
+    private void assertSame(@NonNull List<MemberEntry> entries) {
+        List<MemberEntry> fresh = new ArrayList<>();
+        for (MemberEntry entry : entries) {
+            fresh.add(new MemberEntry(entry.rmd));
+        }
+        MemberEntry.updateConnections(fresh, 0, fresh.size() - 1);
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals("position " + i, fresh.get(i).connected, entries.get(i).connected);
+        }
+    }
+
+    /**
+     * Create a Way from some of the Nodes
+     *
+     * @param indices the indices of the Nodes
+     * @return the Way
+     */
+    @NonNull
+    private Way way(int... indices) {
+        Way w = d.createAndInsertWay(nodes[indices[0]]);
+        for (int i = 1; i < indices.length; i++) {
+            d.addNodeToWay(nodes[indices[i]], w);
+        }
+        return w;
+    }
+
+    /**
+     * Create a MemberEntry for a downloaded element
+     *
+     * @param e the OsmElement
+     * @return the MemberEntry
+     */
+    @NonNull
+    private MemberEntry entry(@NonNull OsmElement e) {
+        RelationMemberDescription rmd = new RelationMemberDescription(new RelationMember("", e));
+        rmd.setElement(e);
+        return new MemberEntry(rmd);
+    }
+}
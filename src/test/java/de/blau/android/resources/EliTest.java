@@ -10,9 +10,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 
+import com.mapbox.geojson.Feature;
+
 import androidx.annotation.NonNull;
 import de.blau.android.osm.OsmXml;
 import de.blau.android.resources.eli.EliFeatureCollection;
@@ -46,6 +50,24 @@ public class EliTest {
         assertEquals("2020-12-06 10:02:10", fc.generated());
     }
 
+    /**
+     * Parse a sample ELI geojson config feature by feature, the meta data is at the end
+     */
+    @Test
+    public void parseStreaming() {
+        final List<Feature> features = new ArrayList<>();
+        try (InputStream is = getClass().getResourceAsStream("/imagery_test_with_meta.geojson")) {
+            Version formatVersion = EliFeatureCollection.parse(new BufferedReader(new InputStreamReader(is, Charset.forName(OsmXml.UTF_8))),
+                    (f, version) -> features.add(f));
+            assertNotNull(formatVersion);
+            assertEquals("1.0.0", formatVersion.toString());
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+        EliFeatureCollection fc = EliFeatureCollection.fromJson(stringFromResource("/imagery_test_with_meta.geojson"));
+        assertEquals(fc.features(), features);
+    }
+
     /**
      * Get a resource file as a String
      * 
@@ -5,7 +5,10 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.junit.After;
 import org.junit.Before;
@@ -15,6 +18,7 @@ import org.robolectric.RobolectricTestRunner;
 
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.filters.LargeTest;
+import de.blau.android.osm.BoundingBox;
 import de.blau.android.resources.TileLayerSource.Provider.CoverageArea;
 
 @RunWith(RobolectricTestRunner.class)
@@ -85,4 +89,36 @@ public class TileLayerSourceTest {
             fail(e.getMessage());
         }
     }
+
+    /**
+     * Check that filtering via the coverage index returns the same layers as testing each layer
+     */
+    @Test
+    public void coverageIndex() {
+        try {
+            TileLayerDatabase.addSource(db.getWritableDatabase(), TileLayerDatabase.SOURCE_ELI);
+            TileLayerSource.parseImageryFile(ApplicationProvider.getApplicationContext(), db.getWritableDatabase(), TileLayerDatabase.SOURCE_ELI,
+                    getClass().getResourceAsStream("/imagery_test_with_meta.geojson"), true);
+            TileLayerSource.getListsLocked(ApplicationProvider.getApplicationContext(), db.getReadableDatabase(), true);
+            TileLayerSource b = TileLayerSource.get(ApplicationProvider.getApplicationContext(), "B", false);
+            assertNotNull(b);
+            BoundingBox inB = b.getCoverage().get(0).getBoundingBox();
+            assertNotNull(inB);
+            BoundingBox[] boxes = { new BoundingBox(inB.getLeft(), inB.getBottom(), inB.getLeft() + 1000, inB.getBottom() + 1000),
+                    new BoundingBox(-179.0, -89.0, -178.9, -88.9), new BoundingBox(-180.0, -85.0, 180.0, 85.0) };
+            String[] all = TileLayerSource.getIds(null, false, null);
+            for (BoundingBox box : boxes) {
+                Set<String> expected = new HashSet<>();
+                for (String id : all) {
+                    if (TileLayerSource.get(ApplicationProvider.getApplicationContext(), id, false).covers(box)) {
+                        expected.add(id);
+                    }
+                }
+                assertEquals(expected, new HashSet<>(Arrays.asList(TileLayerSource.getIds(box, true, null))));
+            }
+            assertEquals(all.length, TileLayerSource.getIds(boxes[2], true, null).length);
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,259 @@
+package de.blau.android.taginfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.filters.LargeTest;
+import de.blau.android.prefs.Preferences;
+import de.blau.android.taginfo.TaginfoServer.SearchResult;
+import de.blau.android.taginfo.TaginfoServer.ValueResult;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+@RunWith(RobolectricTestRunner.class)
+@LargeTest
+public class TaginfoCacheTest {
+
+    private static final String VALUES = "{\"data\":[{\"value\":\"residential\",\"count\":100},{\"value\":\"service\",\"count\":50}]}";
+
+    private static final String SEARCH = "{\"data\":[{\"key\":\"landuse\",\"value\":\"residential\",\"count_all\":100},"
+            + "{\"key\":\"highway\",\"value\":\"RESIDENTIAL\",\"count_all\":20},{\"key\":\"building\",\"value\":\"resort\",\"count_all\":10}]}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    MockWebServer mockServer;
+    Context       context;
+    AtomicInteger requests;
+
+    /**
+     * Pre-test setup
+     */
+    @Before
+    public void setup() {
+        context = ApplicationProvider.getApplicationContext();
+        TaginfoCache.getInstance(context).clear();
+        requests = new AtomicInteger();
+        mockServer = new MockWebServer();
+        mockServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                requests.incrementAndGet();
+                String path = request.getPath();
+                MockResponse response = new MockResponse().setResponseCode(HttpURLConnection.HTTP_OK);
+                if (path.contains("/key/values")) {
+                    return response.setBody(VALUES);
+                } else if (path.contains("/search/by_value")) {
+                    return response.setBody(SEARCH);
+                }
+                return new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_FOUND);
+            }
+        });
+        new Preferences(context).setTaginfoServer(mockServer.url("/").toString());
+    }
+
+    /**
+     * Post-test teardown
+     */
+    @After
+    public void teardown() {
+        try {
+            mockServer.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Check that repeated queries are answered from the cache
+     */
+    @Test
+    public void repeatedQuery() {
+        List<ValueResult> first = TaginfoServer.keyValues(context, "highway", 20);
+        assertNotNull(first);
+        assertEquals(2, first.size());
+        List<ValueResult> second = TaginfoServer.keyValues(context, "highway", 20);
+        assertNotNull(second);
+        assertEquals(2, second.size());
+        assertEquals("residential", second.get(0).getValue());
+        assertEquals(1, requests.get());
+        // different parameters
+        assertNotNull(TaginfoServer.keyValues(context, "highway", 10));
+        assertEquals(2, requests.get());
+        // failed requests are not cached
+        assertNull(TaginfoServer.tagStats(context, "highway", "residential"));
+        assertNull(TaginfoServer.tagStats(context, "highway", "residential"));
+        assertEquals(4, requests.get());
+    }
+
+    /**
+     * Check that a value search is answered from the complete result of a shorter query
+     */
+    @Test
+    public void prefixQuery() {
+        List<SearchResult> first = TaginfoServer.searchByValue(context, "res", 10);
+        assertNotNull(first);
+        assertEquals(3, first.size());
+        List<SearchResult> second = TaginfoServer.searchByValue(context, "resi", 10);
+        assertNotNull(second);
+        assertEquals(2, second.size());
+        assertEquals("landuse", second.get(0).getKey());
+        assertEquals("highway", second.get(1).getKey());
+        assertEquals(1, requests.get());
+        // the result for "res" may have been truncated when only 3 results are requested
+        assertNotNull(TaginfoServer.searchByValue(context, "res", 3));
+        assertNotNull(TaginfoServer.searchByValue(context, "resi", 3));
+        assertEquals(3, requests.get());
+    }
+
+    /**
+     * Check case insensitive matching
+     */
+    @Test
+    public void contains() {
+        assertTrue(TaginfoServer.containsIgnoreAsciiCase("Residential", "resi"));
+        assertTrue(TaginfoServer.containsIgnoreAsciiCase("residential", "DENT"));
+        assertTrue(TaginfoServer.containsIgnoreAsciiCase("residential", ""));
+        assertFalse(TaginfoServer.containsIgnoreAsciiCase("residential", "residentials"));
+        assertFalse(TaginfoServer.containsIgnoreAsciiCase("Äpfel", "äpf")); // like SQLite
+        assertFalse(TaginfoServer.containsIgnoreAsciiCase(null, "a"));
+    }
+
+    /**
+     * Check that responses survive a new cache instance and expire
+     *
+     * @throws IOException if the loader fails
+     * @throws InterruptedException if sleeping is interrupted
+     */
+    @Test
+    public void persistence() throws IOException, InterruptedException {
+        File directory = folder.newFolder();
+        TaginfoCache cache = new TaginfoCache(directory, 200, 100000, 100000);
+        assertEquals("body", cache.get("url", () -> "body"));
+        TaginfoCache reopened = new TaginfoCache(directory, 200, 100000, 100000);
+        assertEquals("body", reopened.getCached("url"));
+        assertEquals("body", reopened.get("url", () -> {
+            fail("should be cached");
+            return null;
+        }));
+        Thread.sleep(300);
+        assertNull(cache.getCached("url"));
+        assertNull(reopened.getCached("url"));
+        assertEquals("new", reopened.get("url", () -> "new"));
+        reopened.remove("url");
+        assertNull(reopened.getCached("url"));
+        assertNull(new TaginfoCache(directory, 200, 100000, 100000).getCached("url"));
+    }
+
+    /**
+     * Check that the memory and disk caches stay within their bounds and keep the most recently used entries
+     *
+     * @throws IOException if the loader fails
+     */
+    @Test
+    public void bounds() throws IOException {
+        File directory = folder.newFolder();
+        final int maxDisk = 20000;
+        TaginfoCache cache = new TaginfoCache(directory, TaginfoCache.DEFAULT_TTL, maxDisk, 5000);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append('x');
+        }
+        final String body = builder.toString();
+        for (int i = 0; i < 100; i++) {
+            cache.get("url" + i, () -> body);
+            cache.getCached("url0"); // keep in use
+            long size = 0;
+            for (File f : directory.listFiles()) {
+                size += f.length();
+            }
+            assertTrue(size <= maxDisk);
+        }
+        assertNotNull(cache.getCached("url0"));
+        assertNotNull(cache.getCached("url99"));
+        assertNull(cache.getCached("url1"));
+        // too large for either cache
+        builder.setLength(0);
+        for (int i = 0; i < maxDisk; i++) {
+            builder.append('x');
+        }
+        final String large = builder.toString();
+        assertEquals(large, cache.get("large", () -> large));
+        assertNull(cache.getCached("large"));
+    }
+
+    /**
+     * Check that concurrent requests for the same URL only load once
+     *
+     * @throws InterruptedException if waiting is interrupted
+     */
+    @Test
+    public void coalescing() throws InterruptedException {
+        final TaginfoCache cache = new TaginfoCache(null, TaginfoCache.DEFAULT_TTL, 0, 100000);
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final int threadCount = 8;
+        final List<String> results = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    String result = cache.get("url", () -> {
+                        loads.incrementAndGet();
+                        started.countDown();
+                        try {
+                            release.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                        return "body";
+                    });
+                    synchronized (results) {
+                        results.add(result);
+                    }
+                } catch (IOException e) {
+                    fail(e.getMessage());
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100); // let the other threads queue up
+        release.countDown();
+        for (Thread t : threads) {
+            t.join(5000);
+        }
+        assertEquals(1, loads.get());
+        assertEquals(threadCount, results.size());
+        for (String result : results) {
+            assertEquals("body", result);
+        }
+    }
+}
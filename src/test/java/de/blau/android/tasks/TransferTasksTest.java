@@ -0,0 +1,161 @@
+package de.blau.android.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.filters.LargeTest;
+import de.blau.android.App;
+import de.blau.android.R;
+import de.blau.android.osm.BoundingBox;
+import de.blau.android.osm.Server;
+import de.blau.android.prefs.API;
+import de.blau.android.prefs.Preferences;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+@RunWith(RobolectricTestRunner.class)
+@LargeTest
+public class TransferTasksTest {
+
+    private static final String NOTES = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<osm version=\"0.6\" generator=\"test\">\n"
+            + "<note lon=\"8.4\" lat=\"47.4\">\n<id>1</id>\n<date_created>2020-01-01 10:00:00 UTC</date_created>\n<status>open</status>\n"
+            + "<comments>\n<comment>\n<date>2020-01-01 10:00:00 UTC</date>\n<uid>1</uid>\n<user>test</user>\n<action>opened</action>\n"
+            + "<text>test</text>\n<html>&lt;p&gt;test&lt;/p&gt;</html>\n</comment>\n</comments>\n</note>\n</osm>\n";
+
+    private static final String OSMOSE = "{\"description\": [\"lat\", \"lon\", \"error_id\", \"item\", \"source\", \"class\", \"elems\", \"subclass\", "
+            + "\"subtitle\", \"title\", \"level\", \"update\", \"username\"], \"errors\": [[\"47.405\", \"8.405\", \"11187837418\", \"3070\", \"1023\", "
+            + "\"3070\", \"way396965872\", \"0\", \"Multiple values\", \"Multiple values\", \"2\", \"2017-03-26 20:30:16+02:00\", \"test\"]]}";
+
+    private static final String MAPROULETTE = "[{\"id\": 1001, \"parentId\": 10, \"point\": {\"lat\": 47.41, \"lng\": 8.41}, \"status\": 0},"
+            + "{\"id\": 1002, \"parentId\": 11, \"point\": {\"lat\": 47.42, \"lng\": 8.42}, \"status\": 0}]";
+
+    MockWebServer mockServer;
+    Context       context;
+    Server        server;
+    Set<String>   filter;
+    AtomicInteger challengeRequests;
+    long          osmoseDelay;
+
+    /**
+     * Pre-test setup
+     */
+    @Before
+    public void setup() {
+        context = ApplicationProvider.getApplicationContext();
+        App.getTaskStorage().reset();
+        App.getTaskStorage().getChallenges().clear();
+        challengeRequests = new AtomicInteger();
+        osmoseDelay = 0;
+        mockServer = new MockWebServer();
+        mockServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                MockResponse response = new MockResponse().setResponseCode(HttpURLConnection.HTTP_OK);
+                if (path.contains("/notes")) {
+                    return response.setBody(NOTES);
+                } else if (path.contains("/api/0.2/errors")) {
+                    return response.setBody(OSMOSE).setHeadersDelay(osmoseDelay, TimeUnit.MILLISECONDS);
+                } else if (path.contains("/api/v2/tasks/box/")) {
+                    return response.setBody(MAPROULETTE);
+                } else if (path.contains("/api/v2/challenge/")) {
+                    challengeRequests.incrementAndGet();
+                    String id = path.substring(path.lastIndexOf('/') + 1);
+                    return response.setBody("{\"id\": " + id + ", \"name\": \"Challenge " + id + "\", \"blurb\": \"\", \"instruction\": \"\", \"description\": \"\"}");
+                }
+                return new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_FOUND);
+            }
+        });
+        HttpUrl base = mockServer.url("/");
+        Preferences prefs = new Preferences(context);
+        prefs.putString(R.string.config_osmoseServer_key, base.toString());
+        prefs.putString(R.string.config_maprouletteServer_key, base.toString());
+        server = new Server(context, new API("Test", "Test", mockServer.url("/api/0.6/").toString(), null, null, null, null, 0, null, null), "test");
+        filter = new HashSet<>();
+        filter.add(context.getString(R.string.bugfilter_notes));
+        filter.add(context.getString(R.string.bugfilter_osmose_error));
+        filter.add(context.getString(R.string.bugfilter_maproulette));
+    }
+
+    /**
+     * Post-test teardown
+     */
+    @After
+    public void teardown() {
+        try {
+            mockServer.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Query all sources concurrently and check that results are delivered per source on the calling thread
+     */
+    @Test
+    public void query() {
+        final Thread caller = Thread.currentThread();
+        final List<Task> tasks = new ArrayList<>();
+        final AtomicInteger results = new AtomicInteger();
+        TransferTasks.query(context, server, new BoundingBox(8.3, 47.3, 8.5, 47.5), filter, TransferTasks.SOURCE_TIMEOUT, result -> {
+            assertSame(caller, Thread.currentThread());
+            results.incrementAndGet();
+            tasks.addAll(result);
+        });
+        assertEquals(3, results.get());
+        assertEquals(4, tasks.size());
+        int notes = 0;
+        for (Task t : tasks) {
+            if (t instanceof Note) {
+                notes++;
+            }
+        }
+        assertEquals(1, notes);
+        // both challenges retrieved once
+        assertEquals(2, challengeRequests.get());
+        assertNotNull(App.getTaskStorage().getChallenges().get(10L));
+        assertNotNull(App.getTaskStorage().getChallenges().get(11L));
+        // already known challenges are not requested again
+        TransferTasks.query(context, server, new BoundingBox(8.3, 47.3, 8.5, 47.5), filter, TransferTasks.SOURCE_TIMEOUT, result -> {
+        });
+        assertEquals(2, challengeRequests.get());
+    }
+
+    /**
+     * A slow source doesn't hold up the others
+     */
+    @Test
+    public void timeout() {
+        osmoseDelay = 5000;
+        final List<Task> tasks = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        TransferTasks.query(context, server, new BoundingBox(8.3, 47.3, 8.5, 47.5), filter, 1000, tasks::addAll);
+        assertTrue(System.currentTimeMillis() - start < osmoseDelay);
+        assertEquals(3, tasks.size());
+        for (Task t : tasks) {
+            assertTrue(!(t instanceof OsmoseBug));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package de.blau.android.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class MetricsTest {
+
+    /**
+     * Pre-test setup
+     */
+    @Before
+    public void setup() {
+        Metrics.reset();
+        Metrics.setEnabled(true);
+    }
+
+    /**
+     * Post-test teardown
+     */
+    @After
+    public void teardown() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    /**
+     * Counters only count when enabled
+     */
+    @Test
+    public void counter() {
+        Metrics.Counter counter = Metrics.counter("test.counter");
+        assertSame(counter, Metrics.counter("test.counter"));
+        counter.inc();
+        counter.add(2);
+        assertEquals(3, counter.get());
+        Metrics.setEnabled(false);
+        counter.inc();
+        assertEquals(3, counter.get());
+        try {
+            Metrics.timer("test.counter");
+            fail("expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Histogram statistics
+     */
+    @Test
+    public void histogram() {
+        Metrics.Histogram histogram = Metrics.histogram("test.histogram");
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.5, histogram.getMean(), 0.001);
+        assertEquals(100, histogram.getMax());
+        assertEquals(63, histogram.getPercentile(50)); // 50 is in the 32-63 bucket
+        assertEquals(100, histogram.getPercentile(99));
+        histogram.record(0);
+        histogram.record(-1);
+        assertEquals(102, histogram.getCount());
+        Metrics.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    /**
+     * Timers and JSON output
+     */
+    @Test
+    public void timerAndJson() {
+        Metrics.Timer timer = Metrics.timer("test.timer");
+        long start = timer.start();
+        timer.stop(start);
+        assertEquals(1, timer.getCount());
+        Metrics.setEnabled(false);
+        start = timer.start();
+        Metrics.setEnabled(true);
+        timer.stop(start); // started while disabled
+        assertEquals(1, timer.getCount());
+        Metrics.counter("test.json").inc();
+
+        JsonObject json = new JsonParser().parse(Metrics.toJson()).getAsJsonObject();
+        assertTrue(json.has("timestamp"));
+        JsonObject metrics = json.getAsJsonObject("metrics");
+        JsonObject t = metrics.getAsJsonObject("test.timer");
+        assertEquals("timer", t.get("type").getAsString());
+        assertEquals("ms", t.get("unit").getAsString());
+        assertEquals(1, t.get("count").getAsLong());
+        assertEquals(1, metrics.getAsJsonObject("test.json").get("count").getAsLong());
+
+        StringBuilder builder = new StringBuilder();
+        Metrics.appendTo(builder, "\n");
+        assertTrue(builder.toString().contains("test.timer n=1"));
+    }
+}